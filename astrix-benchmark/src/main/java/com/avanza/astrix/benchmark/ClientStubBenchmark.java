@@ -0,0 +1,292 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.benchmark;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import rx.Observable;
+
+import com.avanza.astrix.beans.core.AstrixConfigAware;
+import com.avanza.astrix.beans.core.AstrixSettings;
+import com.avanza.astrix.beans.service.BoundServiceBeanInstance;
+import com.avanza.astrix.beans.service.ServiceComponent;
+import com.avanza.astrix.beans.service.ServiceDefinition;
+import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.beans.service.SimpleBoundServiceBeanInstance;
+import com.avanza.astrix.benchmark.MethodInvokerBenchmark.PricingService;
+import com.avanza.astrix.benchmark.MethodInvokerBenchmark.PricingServiceImpl;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.context.AstrixContext;
+import com.avanza.astrix.context.TestAstrixConfigurer;
+import com.avanza.astrix.core.AstrixObjectSerializer;
+import com.avanza.astrix.provider.core.AstrixApiProvider;
+import com.avanza.astrix.provider.core.AstrixConfigDiscovery;
+import com.avanza.astrix.provider.core.Service;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.client.RemotingProxy;
+import com.avanza.astrix.remoting.client.RemotingProxyOptions;
+import com.avanza.astrix.remoting.client.RemotingTransport;
+import com.avanza.astrix.remoting.client.RemotingTransportSpi;
+import com.avanza.astrix.remoting.client.RoutedServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.Router;
+import com.avanza.astrix.remoting.client.RoutingKey;
+import com.avanza.astrix.remoting.client.RoutingStrategy;
+import com.avanza.astrix.remoting.server.AdmissionControlSettings;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+import com.avanza.astrix.remoting.util.ServiceMethodTable;
+/**
+ * Measures the client side overhead of invoking a remote service through an astrix bean, using dynamic proxies
+ * (the default) or generated stubs (see {@link AstrixSettings#GENERATED_SERVICE_STUBS}). <p>
+ * 
+ * The bean is bound to a RemotingProxy using a transport that invokes an {@link AstrixServiceActivator}
+ * in the calling thread, hence the results include server side dispatch but no network or serialization. The
+ * local benchmarks measures a bean bound directly to a service instance, ie only the overhead of the bean itself. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientStubBenchmark {
+	
+	private static final AstrixObjectSerializer SERIALIZER = new AstrixObjectSerializer.NoVersioningSupport();
+	private static final String COMPONENT_NAME = "in-thread";
+	private static final String LOCAL = "local";
+	private static final String REMOTE = "remote";
+	
+	private AstrixServiceActivator serviceActivator;
+	private AstrixContext proxyContext;
+	private AstrixContext stubContext;
+	private AstrixContext localProxyContext;
+	private AstrixContext localStubContext;
+	private PricingService proxyBean;
+	private PricingService stubBean;
+	private PricingService localProxyBean;
+	private PricingService localStubBean;
+	private PricingService remotingProxy;
+	private PricingService remotingStub;
+	
+	@Setup
+	public void setup() {
+		serviceActivator = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		serviceActivator.register(new PricingServiceImpl(), SERIALIZER, PricingService.class);
+		
+		remotingProxy = createRemotingProxy(serviceActivator, false);
+		remotingStub = createRemotingProxy(serviceActivator, true);
+		
+		proxyContext = createContext(REMOTE, false);
+		stubContext = createContext(REMOTE, true);
+		localProxyContext = createContext(LOCAL, false);
+		localStubContext = createContext(LOCAL, true);
+		proxyBean = proxyContext.getBean(PricingService.class);
+		stubBean = stubContext.getBean(PricingService.class);
+		localProxyBean = localProxyContext.getBean(PricingService.class);
+		localStubBean = localStubContext.getBean(PricingService.class);
+	}
+	
+	@TearDown
+	public void destroy() {
+		proxyContext.destroy();
+		stubContext.destroy();
+		localProxyContext.destroy();
+		localStubContext.destroy();
+	}
+	
+	private AstrixContext createContext(String binding, boolean generatedStubs) {
+		TestAstrixConfigurer configurer = new TestAstrixConfigurer();
+		configurer.registerApiProvider(PricingApiProvider.class);
+		configurer.registerPlugin(ServiceComponent.class, new InThreadComponent(serviceActivator));
+		configurer.set("pricingUri", COMPONENT_NAME + ":" + binding);
+		configurer.set(AstrixSettings.GENERATED_SERVICE_STUBS, generatedStubs);
+		return configurer.configure();
+	}
+	
+	private static PricingService createRemotingProxy(AstrixServiceActivator serviceActivator, boolean generateStub) {
+		String checksum = Long.toString(ServiceMethodTable.create(PricingService.class).getChecksum());
+		return RemotingProxy.create(PricingService.class, PricingService.class, RemotingTransport.create(new InThreadTransport(serviceActivator)), 
+									SERIALIZER, new NoRoutingStrategy(), RemotingProxyOptions.create().serverMethodTableChecksum(checksum).generateStub(generateStub));
+	}
+	
+	@Benchmark
+	public double remotingProxy() {
+		return remotingProxy.price("ERIC-B", 100);
+	}
+
+	@Benchmark
+	public double remotingStub() {
+		return remotingStub.price("ERIC-B", 100);
+	}
+	
+	@Benchmark
+	public double beanUsingProxies() {
+		return proxyBean.price("ERIC-B", 100);
+	}
+	
+	@Benchmark
+	public double beanUsingGeneratedStubs() {
+		return stubBean.price("ERIC-B", 100);
+	}
+	
+	@Benchmark
+	public double localBeanUsingProxy() {
+		return localProxyBean.price("ERIC-B", 100);
+	}
+	
+	@Benchmark
+	public double localBeanUsingGeneratedStub() {
+		return localStubBean.price("ERIC-B", 100);
+	}
+	
+	@AstrixApiProvider
+	public interface PricingApiProvider {
+		@AstrixConfigDiscovery("pricingUri")
+		@Service
+		PricingService pricingService();
+	}
+	
+	/*
+	 * Binds to the given AstrixServiceActivator using a RemotingProxy ("in-thread:remote"), or directly 
+	 * to a PricingServiceImpl ("in-thread:local").
+	 */
+	public static class InThreadComponent implements ServiceComponent, AstrixConfigAware {
+		
+		private final AstrixServiceActivator serviceActivator;
+		private DynamicConfig config;
+		
+		public InThreadComponent(AstrixServiceActivator serviceActivator) {
+			this.serviceActivator = serviceActivator;
+		}
+
+		@Override
+		public <T> BoundServiceBeanInstance<T> bind(ServiceDefinition<T> serviceDefinition, ServiceProperties serviceProperties) {
+			Class<T> serviceType = serviceDefinition.getServiceType();
+			if (LOCAL.equals(serviceProperties.getProperty("binding"))) {
+				return SimpleBoundServiceBeanInstance.create(serviceType.cast(new PricingServiceImpl()));
+			}
+			String checksum = Long.toString(ServiceMethodTable.create(serviceType).getChecksum());
+			T proxy = RemotingProxy.create(serviceType, serviceType, RemotingTransport.create(new InThreadTransport(serviceActivator)),
+										   SERIALIZER, new NoRoutingStrategy(), RemotingProxyOptions.create()
+												   .serverMethodTableChecksum(checksum)
+												   .generateStub(AstrixSettings.GENERATED_SERVICE_STUBS.getFrom(config).get()));
+			return SimpleBoundServiceBeanInstance.create(proxy);
+		}
+
+		@Override
+		public ServiceProperties parseServiceProviderUri(String serviceProviderUri) {
+			ServiceProperties serviceProperties = new ServiceProperties();
+			serviceProperties.setComponent(COMPONENT_NAME);
+			serviceProperties.setProperty("binding", serviceProviderUri);
+			return serviceProperties;
+		}
+
+		@Override
+		public <T> ServiceProperties createServiceProperties(ServiceDefinition<T> exportedServiceDefinition) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public String getName() {
+			return COMPONENT_NAME;
+		}
+
+		@Override
+		public boolean canBindType(Class<?> type) {
+			return true;
+		}
+
+		@Override
+		public <T> void exportService(Class<T> providedApi, T provider, ServiceDefinition<T> serviceDefinition) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean requiresProviderInstance() {
+			return false;
+		}
+		
+		@Override
+		public void setConfig(DynamicConfig config) {
+			this.config = config;
+		}
+	}
+	
+	private static class NoRoutingStrategy implements RoutingStrategy {
+		@Override
+		public Router create(Method serviceMethod) {
+			return new Router() {
+				@Override
+				public RoutingKey getRoutingKey(Object... args) {
+					return RoutingKey.create(1);
+				}
+			};
+		}
+	}
+	
+	private static class InThreadTransport implements RemotingTransportSpi {
+		
+		private final AstrixServiceActivator serviceActivator;
+		
+		public InThreadTransport(AstrixServiceActivator serviceActivator) {
+			this.serviceActivator = serviceActivator;
+		}
+
+		@Override
+		public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+			return Observable.just(serviceActivator.invokeService(request));
+		}
+		
+		@Override
+		public AstrixServiceInvocationResponse invokeRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+			return serviceActivator.invokeService(request);
+		}
+
+		@Override
+		public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(AstrixServiceInvocationRequest request) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int partitionCount() {
+			return 1;
+		}
+	}
+	
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import rx.Observable;
+
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
+import com.avanza.astrix.core.AstrixObjectSerializer;
+import com.avanza.astrix.core.AstrixRouting;
+import com.avanza.astrix.http.EnvelopeWireCodec;
+import com.avanza.astrix.http.HttpBody;
+import com.avanza.astrix.http.HttpRemotingEndpoint;
+import com.avanza.astrix.http.HttpRemotingSettings;
+import com.avanza.astrix.http.HttpRemotingTransport;
+import com.avanza.astrix.http.HttpRemotingTransport.ClusterMember;
+import com.avanza.astrix.http.HttpWireCodec;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.client.ConsistentHashRing;
+import com.avanza.astrix.remoting.client.DefaultAstrixRoutingStrategy;
+import com.avanza.astrix.remoting.client.RemotingProxy;
+import com.avanza.astrix.remoting.client.RemotingTransport;
+import com.avanza.astrix.remoting.client.RemotingTransportSpi;
+import com.avanza.astrix.remoting.client.RoutedServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.RoutingKey;
+import com.avanza.astrix.remoting.server.AdmissionControlSettings;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+/**
+ * Measures the latency and throughput of remote service invocations using the {@link HttpRemotingTransport} against
+ * a {@link HttpRemotingEndpoint} hosted by the http server included in the jdk, on the loopback interface. <p>
+ * 
+ * The codec benchmark encodes each request, and encodes and compresses each response, without any network, which separates the cost of the wire format from the cost of the http round trip. <p>
+ * 
+ * The GigaSpaces transport can't be started without a GigaSpaces runtime, hence it is not included. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+@SuppressWarnings("restriction")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpRemotingBenchmark {
+	
+	private static final AstrixObjectSerializer SERIALIZER = new AstrixObjectSerializer.NoVersioningSupport();
+	
+	@Param({"1", "1000"})
+	public int quoteCount;
+	
+	@Param({"-1", "8192"})
+	public int compressionThreshold;
+	
+	private HttpServer server;
+	private ExecutorService serverExecutor;
+	private HttpRemotingEndpoint endpoint;
+	private HttpRemotingTransport transport;
+	private QuoteService httpQuoteService;
+	private QuoteService codecQuoteService;
+	
+	@Setup
+	public void setup() throws IOException {
+		HttpRemotingSettings settings = new HttpRemotingSettings() {
+			@Override
+			public int getCompressionThreshold() {
+				return compressionThreshold;
+			}
+		};
+		AstrixServiceActivator serviceActivator = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		serviceActivator.register(new QuoteServiceImpl(), SERIALIZER, QuoteService.class);
+		endpoint = new HttpRemotingEndpoint(serviceActivator, new EnvelopeWireCodec(), settings, new DynamicConfig(new MapConfigSource()));
+		
+		// Avoid the delayed ack stall caused by Nagle's algorithm when the response headers and body are written separately
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		serverExecutor = Executors.newFixedThreadPool(8);
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 128);
+		server.createContext("/astrix", new EndpointHandler(endpoint));
+		server.setExecutor(serverExecutor);
+		server.start();
+		
+		ConsistentHashRing<ClusterMember> clusterMembers = new ConsistentHashRing<>();
+		clusterMembers.setMember("localhost", new ClusterMember("http://localhost:" + server.getAddress().getPort() + "/astrix"), 1);
+		transport = new HttpRemotingTransport(clusterMembers, new EnvelopeWireCodec(), settings);
+		transport.init();
+		
+		httpQuoteService = RemotingProxy.create(QuoteService.class, QuoteService.class, RemotingTransport.create(transport), 
+												SERIALIZER, new DefaultAstrixRoutingStrategy());
+		codecQuoteService = RemotingProxy.create(QuoteService.class, QuoteService.class, RemotingTransport.create(new CodecTransport(endpoint, new EnvelopeWireCodec())), 
+												 SERIALIZER, new DefaultAstrixRoutingStrategy());
+	}
+	
+	@TearDown
+	public void destroy() throws IOException {
+		transport.destroy();
+		server.stop(0);
+		serverExecutor.shutdown();
+		endpoint.destroy();
+	}
+	
+	@Benchmark
+	public Object http() {
+		return httpQuoteService.quotes("ERIC-B", quoteCount);
+	}
+	
+	@Benchmark
+	@Threads(8)
+	public Object httpConcurrent() {
+		return httpQuoteService.quotes("ERIC-B", quoteCount);
+	}
+	
+	@Benchmark
+	public Object codec() {
+		return codecQuoteService.quotes("ERIC-B", quoteCount);
+	}
+	
+	public interface QuoteService {
+		ArrayList<String> quotes(@AstrixRouting String instrument, int count);
+	}
+	
+	public static class QuoteServiceImpl implements QuoteService {
+		@Override
+		public ArrayList<String> quotes(String instrument, int count) {
+			ArrayList<String> result = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				result.add(instrument + ":" + (100 + i % 50) + "." + (i % 100));
+			}
+			return result;
+		}
+	}
+	
+	private static class EndpointHandler implements HttpHandler {
+		
+		private final HttpRemotingEndpoint endpoint;
+		
+		public EndpointHandler(HttpRemotingEndpoint endpoint) {
+			this.endpoint = endpoint;
+		}
+
+		@Override
+		public void handle(final HttpExchange exchange) throws IOException {
+			endpoint.process(exchange.getRequestBody(), 
+							 exchange.getRequestHeaders().getFirst("Content-Encoding"), 
+							 exchange.getRequestHeaders().getFirst("Accept-Encoding"))
+					.thenAccept(new Consumer<HttpBody>() {
+						@Override
+						public void accept(HttpBody body) {
+							try {
+								writeResponse(exchange, body);
+							} catch (IOException e) {
+								exchange.close();
+							}
+						}
+					});
+		}
+		
+		private void writeResponse(HttpExchange exchange, HttpBody body) throws IOException {
+			exchange.getResponseHeaders().set("Content-Type", endpoint.getContentType());
+			if (body.getContentEncoding() != null) {
+				exchange.getResponseHeaders().set("Content-Encoding", body.getContentEncoding());
+			}
+			exchange.sendResponseHeaders(200, body.getLength());
+			try (OutputStream responseBody = exchange.getResponseBody()) {
+				body.writeTo(responseBody);
+			}
+		}
+	}
+	
+	/*
+	 * Passes each encoded request directly to the endpoint, without any network
+	 */
+	private static class CodecTransport implements RemotingTransportSpi {
+		
+		private final HttpRemotingEndpoint endpoint;
+		private final HttpWireCodec codec;
+		
+		public CodecTransport(HttpRemotingEndpoint endpoint, HttpWireCodec codec) {
+			this.endpoint = endpoint;
+			this.codec = codec;
+		}
+
+		@Override
+		public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+			return Observable.just(invokeRoutedRequest(request, routingKey));
+		}
+		
+		@Override
+		public AstrixServiceInvocationResponse invokeRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+			try {
+				ByteArrayOutputStream encodedRequest = new ByteArrayOutputStream();
+				codec.writeRequest(request, encodedRequest);
+				HttpBody responseBody = endpoint.process(new ByteArrayInputStream(encodedRequest.toByteArray()), null, HttpBody.GZIP).get();
+				ByteArrayOutputStream encodedResponse = new ByteArrayOutputStream(responseBody.getLength());
+				responseBody.writeTo(encodedResponse);
+				return codec.readResponse(HttpBody.decode(new ByteArrayInputStream(encodedResponse.toByteArray()), responseBody.getContentEncoding()));
+			} catch (IOException | InterruptedException | ExecutionException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		@Override
+		public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(AstrixServiceInvocationRequest request) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int partitionCount() {
+			return 1;
+		}
+	}
+
+}
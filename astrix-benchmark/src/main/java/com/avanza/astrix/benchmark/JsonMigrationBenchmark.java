@@ -0,0 +1,219 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.benchmark;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.avanza.astrix.beans.service.ObjectSerializerDefinition;
+import com.avanza.astrix.context.versioning.JacksonVersioningPlugin;
+import com.avanza.astrix.core.AstrixObjectSerializer;
+import com.avanza.astrix.provider.versioning.AstrixJsonApiMigration;
+import com.avanza.astrix.provider.versioning.AstrixJsonMessageMigration;
+import com.avanza.astrix.provider.versioning.JacksonObjectMapperBuilder;
+import com.avanza.astrix.versioning.plugin.Jackson1ObjectSerializerConfigurer;
+/**
+ * Measures the cost of the json migrations for a type that has been migrated in each of
+ * the {@link #MIGRATION_COUNT} previous versions of an api. Version 1 runs the full migration chain, 
+ * version {@link #MIGRATION_COUNT} runs a single migration and the current version runs no migrations at all. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonMigrationBenchmark {
+	
+	private static final int MIGRATION_COUNT = 6;
+	private static final int CURRENT_VERSION = MIGRATION_COUNT + 1;
+	
+	@Param({"1", "6", "7"})
+	public int version;
+	
+	private final Type orderListType = getOrderListType();
+	private AstrixObjectSerializer serializer;
+	private List<Order> orders;
+	private Object json;
+	
+	@Setup
+	public void setup() {
+		serializer = new JacksonVersioningPlugin().create(ObjectSerializerDefinition.versionedService(CURRENT_VERSION, OrderApiJsonConfigurer.class));
+		orders = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			Order order = new Order();
+			order.setId(i);
+			order.setField1("field-1-" + i);
+			order.setField2("field-2-" + i);
+			order.setField3("field-3-" + i);
+			order.setField4("field-4-" + i);
+			order.setField5("field-5-" + i);
+			order.setField6("field-6-" + i);
+			orders.add(order);
+		}
+		json = serializer.serialize(orders, version);
+	}
+	
+	@Benchmark
+	public Object serialize() {
+		return serializer.serialize(orders, version);
+	}
+	
+	@Benchmark
+	public Object deserialize() {
+		return serializer.deserialize(json, orderListType, version);
+	}
+	
+	public List<Order> orderList() {
+		return null;
+	}
+	
+	private static Type getOrderListType() {
+		try {
+			return JsonMigrationBenchmark.class.getMethod("orderList").getGenericReturnType();
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/*
+	 * fieldN was added in version N + 1
+	 */
+	public static class Order {
+		private long id;
+		private String field1;
+		private String field2;
+		private String field3;
+		private String field4;
+		private String field5;
+		private String field6;
+		
+		public long getId() {
+			return id;
+		}
+		public void setId(long id) {
+			this.id = id;
+		}
+		public String getField1() {
+			return field1;
+		}
+		public void setField1(String field1) {
+			this.field1 = field1;
+		}
+		public String getField2() {
+			return field2;
+		}
+		public void setField2(String field2) {
+			this.field2 = field2;
+		}
+		public String getField3() {
+			return field3;
+		}
+		public void setField3(String field3) {
+			this.field3 = field3;
+		}
+		public String getField4() {
+			return field4;
+		}
+		public void setField4(String field4) {
+			this.field4 = field4;
+		}
+		public String getField5() {
+			return field5;
+		}
+		public void setField5(String field5) {
+			this.field5 = field5;
+		}
+		public String getField6() {
+			return field6;
+		}
+		public void setField6(String field6) {
+			this.field6 = field6;
+		}
+	}
+	
+	public static class OrderApiJsonConfigurer implements Jackson1ObjectSerializerConfigurer {
+		@Override
+		public List<? extends AstrixJsonApiMigration> apiMigrations() {
+			List<AstrixJsonApiMigration> result = new ArrayList<>();
+			for (int fromVersion = 1; fromVersion <= MIGRATION_COUNT; fromVersion++) {
+				result.add(new AddOrderFieldMigration(fromVersion));
+			}
+			return result;
+		}
+
+		@Override
+		public void configure(JacksonObjectMapperBuilder objectMapperBuilder) {
+		}
+	}
+	
+	public static class AddOrderFieldMigration implements AstrixJsonApiMigration {
+		
+		private final int fromVersion;
+		private final String field;
+		
+		public AddOrderFieldMigration(int fromVersion) {
+			this.fromVersion = fromVersion;
+			this.field = "field" + fromVersion;
+		}
+
+		@Override
+		public int fromVersion() {
+			return fromVersion;
+		}
+		
+		@Override
+		public AstrixJsonMessageMigration<?>[] getMigrations() {
+			return new AstrixJsonMessageMigration<?>[] {
+				new AstrixJsonMessageMigration<Order>() {
+					@Override
+					public void upgrade(ObjectNode json) {
+						json.put(field, "unknown");
+					}
+					
+					@Override
+					public void downgrade(ObjectNode json) {
+						json.remove(field);
+					}
+
+					@Override
+					public Class<Order> getJavaType() {
+						return Order.class;
+					}
+				}
+			};
+		}
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.avanza.astrix.core.util.MethodInvoker;
+import com.avanza.astrix.core.util.MethodInvokerCache;
+import com.avanza.astrix.core.util.ReflectionUtil;
+/**
+ * Compares {@link ReflectionUtil#invokeMethod(Method, Object, Object[])} with {@link MethodInvoker}, both
+ * when invoked directly and when used from a dynamic proxy, which is how service beans, fault tolerance
+ * proxies and the direct component dispatches invocations on the client side. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MethodInvokerBenchmark {
+	
+	public interface PricingService {
+		double price(String instrument, int volume);
+	}
+	
+	public static class PricingServiceImpl implements PricingService {
+		@Override
+		public double price(String instrument, int volume) {
+			return instrument.length() * volume;
+		}
+	}
+	
+	private PricingService service;
+	private Method priceMethod;
+	private MethodInvoker priceInvoker;
+	private Object[] args;
+	private PricingService reflectiveProxy;
+	private PricingService methodInvokerProxy;
+	
+	@Setup
+	public void setup() throws Exception {
+		service = new PricingServiceImpl();
+		priceMethod = PricingService.class.getMethod("price", String.class, int.class);
+		priceInvoker = MethodInvoker.create(priceMethod);
+		args = new Object[] { "ERIC-B", 100 };
+		reflectiveProxy = ReflectionUtil.newProxy(PricingService.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				return ReflectionUtil.invokeMethod(method, service, args);
+			}
+		});
+		final MethodInvokerCache invokers = MethodInvokerCache.create(PricingService.class);
+		methodInvokerProxy = ReflectionUtil.newProxy(PricingService.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				return invokers.get(method).invoke(service, args);
+			}
+		});
+	}
+	
+	@Benchmark
+	public double directInvocation() {
+		return service.price("ERIC-B", 100);
+	}
+	
+	@Benchmark
+	public Object reflectionUtilInvokeMethod() throws Throwable {
+		return ReflectionUtil.invokeMethod(priceMethod, service, args);
+	}
+	
+	@Benchmark
+	public Object methodInvoker() throws Throwable {
+		return priceInvoker.invoke(service, args);
+	}
+	
+	@Benchmark
+	public double proxyUsingReflectionUtil() {
+		return reflectiveProxy.price("ERIC-B", 100);
+	}
+	
+	@Benchmark
+	public double proxyUsingMethodInvoker() {
+		return methodInvokerProxy.price("ERIC-B", 100);
+	}
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.benchmark;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.beans.service.ObjectSerializerDefinition;
+import com.avanza.astrix.context.versioning.JacksonVersioningPlugin;
+import com.avanza.astrix.core.AstrixObjectSerializer;
+import com.avanza.astrix.provider.versioning.AstrixJsonApiMigration;
+import com.avanza.astrix.provider.versioning.AstrixJsonMessageMigration;
+import com.avanza.astrix.provider.versioning.JacksonObjectMapperBuilder;
+import com.avanza.astrix.versioning.BinaryCodec;
+import com.avanza.astrix.versioning.plugin.BinaryObjectSerializerConfigurer;
+import com.avanza.astrix.versioning.plugin.Jackson1ObjectSerializerConfigurer;
+/**
+ * Compares the json serializer with the binary codec when serializing the lunch api domain objects
+ * used by the integration tests, both in the current version and when migrating from/to the previous version. <p>
+ * 
+ * The serialized size of each format is logged when the benchmark is set up. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectSerializerBenchmark {
+	
+	private static final Logger log = LoggerFactory.getLogger(ObjectSerializerBenchmark.class);
+	private static final int CURRENT_VERSION = 2;
+	
+	@Param({"1", "100"})
+	public int restaurantCount;
+	
+	@Param({"1", "2"})
+	public int version;
+	
+	private final Type restaurantListType = getRestaurantListType();
+	private AstrixObjectSerializer jsonSerializer;
+	private AstrixObjectSerializer binarySerializer;
+	private List<LunchRestaurant> restaurants;
+	private Object json;
+	private Object binary;
+	
+	@Setup
+	public void setup() {
+		JacksonVersioningPlugin versioningPlugin = new JacksonVersioningPlugin();
+		jsonSerializer = versioningPlugin.create(ObjectSerializerDefinition.versionedService(CURRENT_VERSION, LunchApiJsonConfigurer.class));
+		binarySerializer = versioningPlugin.create(ObjectSerializerDefinition.versionedService(CURRENT_VERSION, LunchApiBinaryConfigurer.class));
+		restaurants = new ArrayList<>(restaurantCount);
+		for (int i = 0; i < restaurantCount; i++) {
+			restaurants.add(new LunchRestaurant("restaurant-" + i, i % 2 == 0 ? "thai" : "sushi"));
+		}
+		json = jsonSerializer.serialize(restaurants, version);
+		binary = binarySerializer.serialize(restaurants, version);
+		log.info(String.format("Serialized size, restaurantCount=%s version=%s: json=%s bytes, binary=%s bytes", 
+				restaurantCount, version, ((byte[]) json).length, ((byte[]) binary).length));
+	}
+	
+	@Benchmark
+	public Object serializeJson() {
+		return jsonSerializer.serialize(restaurants, version);
+	}
+	
+	@Benchmark
+	public Object deserializeJson() {
+		return jsonSerializer.deserialize(json, restaurantListType, version);
+	}
+	
+	@Benchmark
+	public Object serializeBinary() {
+		return binarySerializer.serialize(restaurants, version);
+	}
+	
+	@Benchmark
+	public Object deserializeBinary() {
+		return binarySerializer.deserialize(binary, restaurantListType, version);
+	}
+	
+	public List<LunchRestaurant> restaurantList() {
+		return null;
+	}
+	
+	private static Type getRestaurantListType() {
+		try {
+			return ObjectSerializerBenchmark.class.getMethod("restaurantList").getGenericReturnType();
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/*
+	 * Mirrors the lunch api in astrix-integration-tests, which can't be used here since it depends on GigaSpaces
+	 */
+	public static class LunchRestaurant {
+		private String name;
+		private String foodType;
+
+		public LunchRestaurant(String name, String foodType) {
+			this.name = name;
+			this.foodType = foodType;
+		}
+		
+		public LunchRestaurant() {
+		}
+
+		public String getName() {
+			return name;
+		}
+		
+		public void setName(String name) {
+			this.name = name;
+		}
+		
+		public String getFoodType() {
+			return foodType;
+		}
+		
+		public void setFoodType(String foodType) {
+			this.foodType = foodType;
+		}
+	}
+	
+	public static class LunchApiJsonConfigurer implements Jackson1ObjectSerializerConfigurer {
+		@Override
+		public List<? extends AstrixJsonApiMigration> apiMigrations() {
+			return Arrays.asList(new LunchApiV1Migration());
+		}
+
+		@Override
+		public void configure(JacksonObjectMapperBuilder objectMapperBuilder) {
+		}
+	}
+	
+	public static class LunchApiBinaryConfigurer implements BinaryObjectSerializerConfigurer {
+		@Override
+		public void configure(BinaryCodec.Builder codecBuilder) {
+			codecBuilder.registerType(LunchRestaurant.class)
+						.field("name")
+						.field("foodType", 2, "unknown");
+		}
+	}
+	
+	public static class LunchApiV1Migration implements AstrixJsonApiMigration {
+		@Override
+		public int fromVersion() {
+			return 1;
+		}
+		
+		@Override
+		public AstrixJsonMessageMigration<?>[] getMigrations() {
+			return new AstrixJsonMessageMigration<?>[] {
+				new AstrixJsonMessageMigration<LunchRestaurant>() {
+					@Override
+					public void upgrade(ObjectNode json) {
+						json.put("foodType", "unknown");
+					}
+					
+					@Override
+					public void downgrade(ObjectNode json) {
+						json.remove("foodType");
+					}
+
+					@Override
+					public Class<LunchRestaurant> getJavaType() {
+						return LunchRestaurant.class;
+					}
+				}
+			};
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.avanza.astrix.core.AstrixObjectSerializer;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.server.AdmissionControlSettings;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+import com.avanza.astrix.remoting.util.ServiceMethodTable;
+/**
+ * Measures server side dispatch of a service invocation in {@link AstrixServiceActivator}, 
+ * excluding transport and serialization of the invocation envelope. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceActivatorBenchmark {
+	
+	private AstrixServiceActivator serviceActivator;
+	private AstrixServiceInvocationRequest signatureRequest;
+	private AstrixServiceInvocationRequest methodIdRequest;
+	
+	@Setup
+	public void setup() {
+		AstrixObjectSerializer serializer = new AstrixObjectSerializer.NoVersioningSupport();
+		serviceActivator = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		serviceActivator.register(new MethodInvokerBenchmark.PricingServiceImpl(), serializer, MethodInvokerBenchmark.PricingService.class);
+		
+		ServiceMethodTable methodTable = ServiceMethodTable.create(MethodInvokerBenchmark.PricingService.class);
+		String signature = "price(java.lang.String, int)";
+		
+		signatureRequest = new AstrixServiceInvocationRequest();
+		signatureRequest.setApiVersion(serializer.version());
+		signatureRequest.setServiceApi(MethodInvokerBenchmark.PricingService.class.getName());
+		signatureRequest.setServiceMethodSignature(signature);
+		signatureRequest.setArguments(new Object[] { "ERIC-B", 100 });
+		
+		methodIdRequest = new AstrixServiceInvocationRequest();
+		methodIdRequest.copyHeaders(signatureRequest);
+		methodIdRequest.setServiceMethodSignature(null);
+		methodIdRequest.setServiceMethodId(methodTable.getMethodId(signature), methodTable.getChecksum());
+		methodIdRequest.setArguments(new Object[] { "ERIC-B", 100 });
+	}
+	
+	@Benchmark
+	public AstrixServiceInvocationResponse dispatchOnMethodSignature() {
+		return serviceActivator.invokeService(signatureRequest);
+	}
+	
+	@Benchmark
+	public AstrixServiceInvocationResponse dispatchOnMethodId() {
+		return serviceActivator.invokeService(methodIdRequest);
+	}
+
+}
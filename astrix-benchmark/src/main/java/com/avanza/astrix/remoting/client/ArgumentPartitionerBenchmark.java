@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+/**
+ * Measures the time to split the partitioned argument of a service method annotated with
+ * {@link com.avanza.astrix.core.AstrixPartitionedRouting} into one container per server partition,
+ * using the invoking thread ("sequential") or the common ForkJoinPool ("parallel"). <p>
+ * 
+ * Located in the remoting client package since {@link ArgumentPartitioner} is package private. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ArgumentPartitionerBenchmark {
+	
+	private static final PartitionMapping PARTITION_MAPPING = PartitionMapping.modulo(8);
+	private static final int PARALLEL_THRESHOLD = 16_384;
+	
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static final Class<? extends Collection<?>> ARRAY_LIST = (Class) ArrayList.class;
+	
+	@Param({ "1000", "100000", "1000000" })
+	private int size;
+	
+	private long[] longArray;
+	private String[] stringArray;
+	private List<Long> longList;
+	
+	private ArgumentPartitioner longArrayPartitioner;
+	private ArgumentPartitioner parallelLongArrayPartitioner;
+	private ArgumentPartitioner stringArrayPartitioner;
+	private ArgumentPartitioner parallelStringArrayPartitioner;
+	private ArgumentPartitioner longListPartitioner;
+	private ArgumentPartitioner parallelLongListPartitioner;
+	
+	@Setup
+	public void setup() {
+		longArray = new long[size];
+		stringArray = new String[size];
+		longList = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			long element = ThreadLocalRandom.current().nextLong();
+			longArray[i] = element;
+			stringArray[i] = Long.toString(element);
+			longList.add(element);
+		}
+		longArrayPartitioner = ArgumentPartitioner.create(long[].class, null, PartitionedRouter.identity(), -1);
+		parallelLongArrayPartitioner = ArgumentPartitioner.create(long[].class, null, PartitionedRouter.identity(), PARALLEL_THRESHOLD);
+		stringArrayPartitioner = ArgumentPartitioner.create(String[].class, null, PartitionedRouter.identity(), -1);
+		parallelStringArrayPartitioner = ArgumentPartitioner.create(String[].class, null, PartitionedRouter.identity(), PARALLEL_THRESHOLD);
+		longListPartitioner = ArgumentPartitioner.create(List.class, ARRAY_LIST, PartitionedRouter.identity(), -1);
+		parallelLongListPartitioner = ArgumentPartitioner.create(List.class, ARRAY_LIST, PartitionedRouter.identity(), PARALLEL_THRESHOLD);
+	}
+	
+	@Benchmark
+	public Object[] sequentialLongArray() {
+		return longArrayPartitioner.partition(longArray, PARTITION_MAPPING);
+	}
+	
+	@Benchmark
+	public Object[] parallelLongArray() {
+		return parallelLongArrayPartitioner.partition(longArray, PARTITION_MAPPING);
+	}
+	
+	@Benchmark
+	public Object[] sequentialStringArray() {
+		return stringArrayPartitioner.partition(stringArray, PARTITION_MAPPING);
+	}
+	
+	@Benchmark
+	public Object[] parallelStringArray() {
+		return parallelStringArrayPartitioner.partition(stringArray, PARTITION_MAPPING);
+	}
+	
+	@Benchmark
+	public Object[] sequentialLongList() {
+		return longListPartitioner.partition(longList, PARTITION_MAPPING);
+	}
+	
+	@Benchmark
+	public Object[] parallelLongList() {
+		return parallelLongListPartitioner.partition(longList, PARTITION_MAPPING);
+	}
+
+}
@@ -43,6 +43,30 @@ public final class AstrixBeanSettings {
 	public static final IntBeanSetting INITIAL_TIMEOUT = 
 			new IntBeanSetting("faultTolerance.timeout", DefaultBeanSettings.DEFAULT_INITIAL_TIMEOUT);
 	
+	/**
+	 * Determines whether results of remote service methods annotated with AstrixCached
+	 * should be cached for the associated Astrix bean. Changes to this setting at runtime
+	 * takes effect immediately.
+	 */
+	public static final BooleanBeanSetting RESULT_CACHE_ENABLED = 
+			new BooleanBeanSetting("resultCache.enabled", true);
+	
+	/**
+	 * Overrides the maximum number of results cached for each method annotated with 
+	 * AstrixCached on the associated bean. A negative value means that the value defined by
+	 * the annotation is used.
+	 */
+	public static final IntBeanSetting RESULT_CACHE_MAX_ENTRIES = 
+			new IntBeanSetting("resultCache.maxEntries", -1);
+	
+	/**
+	 * Overrides the time (in milliseconds) a result is cached for each method annotated with 
+	 * AstrixCached on the associated bean. A negative value means that the value defined by
+	 * the annotation is used.
+	 */
+	public static final LongBeanSetting RESULT_CACHE_TTL = 
+			new LongBeanSetting("resultCache.ttl", -1);
+	
 	private AstrixBeanSettings() {
 	}
 
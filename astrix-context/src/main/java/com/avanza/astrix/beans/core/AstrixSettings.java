@@ -16,6 +16,7 @@
 package com.avanza.astrix.beans.core;
 
 import com.avanza.astrix.config.BooleanSetting;
+import com.avanza.astrix.config.IntSetting;
 import com.avanza.astrix.config.LongSetting;
 import com.avanza.astrix.config.StringSetting;
 import com.avanza.astrix.provider.component.AstrixServiceComponentNames;
@@ -87,6 +88,24 @@ public final class AstrixSettings {
 	
 	public static final BooleanSetting ENABLE_FAULT_TOLERANCE = BooleanSetting.create("AstrixContext.enableFaultTolerance", true);
 	public static final BooleanSetting ENABLE_VERSIONING = BooleanSetting.create("AstrixContext.enableVersioning", true);
+	
+	/**
+	 * When enabled, service beans and remoting proxies are implemented using generated stubs rather than
+	 * dynamic proxies (java.lang.reflect.Proxy), which avoids reflective dispatch for each invocation.
+	 * Only applies to public service api's. Read when a service bean is created (bound).
+	 * 
+	 * Defaults to false.
+	 */
+	public static final BooleanSetting GENERATED_SERVICE_STUBS = BooleanSetting.create("AstrixContext.generatedServiceStubs", false);
+	
+	/**
+	 * Number of threads used to marshall the arguments, and unmarshall the response, for each partition targeted by a 
+	 * partitioned or broadcasted service method. When set to 0 all payloads are (un)marshalled by the invoking thread. 
+	 * The threads are shared by all remoting proxies within an AstrixContext. 
+	 * 
+	 * Defaults to 0.
+	 */
+	public static final IntSetting REMOTING_MARSHALLING_POOL_SIZE = IntSetting.create("AstrixRemoting.marshallingPoolSize", 0);
 	public static final StringSetting GIGA_SPACE_BEAN_NAME = StringSetting.create("AstrixGsComponent.gigaSpaceBeanName", null);
 	public static final StringSetting DYNAMIC_CONFIG_FACTORY = StringSetting.create("com.avanza.astrix.context.AstrixDynamicConfigFactory", null);
 	/**
@@ -20,14 +20,13 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.kohsuke.MetaInfServices;
@@ -35,6 +34,8 @@ import org.kohsuke.MetaInfServices;
 import com.avanza.astrix.beans.core.AstrixBeanKey;
 import com.avanza.astrix.beans.inject.AstrixInject;
 import com.avanza.astrix.core.AstrixObjectSerializer;
+import com.avanza.astrix.core.util.MethodInvoker;
+import com.avanza.astrix.core.util.MethodInvokerCache;
 import com.avanza.astrix.core.util.ReflectionUtil;
 import com.avanza.astrix.provider.component.AstrixServiceComponentNames;
 /**
@@ -83,58 +84,38 @@ public class DirectComponent implements ServiceComponent {
 	}
 	
 	private <T> T createProxy(Class<T> proxyApi, final Object targetProvider) {
+		Map<Method, MethodInvoker> targetInvokerByMethod = new HashMap<>();
+		for (Method method : proxyApi.getMethods()) {
+			try {
+				Method targetMethod = targetProvider.getClass().getMethod(method.getName(), method.getParameterTypes());
+				targetInvokerByMethod.put(method, MethodInvoker.create(targetMethod));
+			} catch (NoSuchMethodException e) {
+				// Reported when invoked
+			}
+		}
+		final MethodInvokerCache targetInvokers = new MethodInvokerCache(targetInvokerByMethod);
 		return ReflectionUtil.newProxy(proxyApi, new InvocationHandler() {
 			@Override
 			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				MethodInvoker targetMethod = targetInvokers.get(method);
+				if (targetMethod == null) {
+					throw new RuntimeException("Target service does not contain method: " + ReflectionUtil.fullMethodName(method));
+				}
+				if (!CompletionStage.class.isAssignableFrom(method.getReturnType())) {
+					return CompletableFuture.completedFuture(targetMethod.invoke(targetProvider, args));
+				}
+				// Methods returning a CompletionStage reports exceptions through the returned future
+				CompletableFuture<Object> result = new CompletableFuture<>();
 				try {
-					Method targetMethod = targetProvider.getClass().getMethod(method.getName(), method.getParameterTypes());
-					if (method.getReturnType().isAssignableFrom(Future.class)) {
-						return new DoneFuture(targetMethod.invoke(targetProvider, args));
-					}
-					return new DoneFuture(targetMethod.invoke(targetProvider, args));
-				} catch (NoSuchMethodException e) {
-					throw new RuntimeException("Target service does not contain method: " + e.getMessage());
+					result.complete(targetMethod.invoke(targetProvider, args));
+				} catch (Throwable e) {
+					result.completeExceptionally(e);
 				}
+				return result;
 			}
 		});
 	}
 	
-	private static final class DoneFuture implements Future<Object>{ 
-
-		private Object result;
-		
-		public DoneFuture(Object result) {
-			this.result = result;
-		}
-
-		@Override
-		public boolean cancel(boolean mayInterruptIfRunning) {
-			return false;
-		}
-
-		@Override
-		public boolean isCancelled() {
-			return false;
-		}
-
-		@Override
-		public boolean isDone() {
-			return true;
-		}
-
-		@Override
-		public Object get() throws InterruptedException, ExecutionException {
-			return result;
-		}
-
-		@Override
-		public Object get(long timeout, TimeUnit unit)
-				throws InterruptedException, ExecutionException,
-				TimeoutException {
-			return result;
-		}
-	}
-
 	@Override
 	public ServiceProperties parseServiceProviderUri(String serviceProviderUri) {
 		return getServiceProperties(serviceProviderUri);
@@ -19,6 +19,8 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
@@ -33,7 +35,11 @@ import com.avanza.astrix.beans.core.AstrixSettings;
 import com.avanza.astrix.config.DynamicConfig;
 import com.avanza.astrix.core.IllegalServiceMetadataException;
 import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.core.util.DelegatingStub;
+import com.avanza.astrix.core.util.MethodInvoker;
+import com.avanza.astrix.core.util.MethodInvokerCache;
 import com.avanza.astrix.core.util.ReflectionUtil;
+import com.avanza.astrix.core.util.StubGenerator;
 
 /**
  * 
@@ -67,6 +73,7 @@ public class ServiceBeanInstance<T> implements StatefulAstrixBean, InvocationHan
 	
 	private volatile ServiceProperties currentProperties;
 	private volatile BeanState currentState;
+	private volatile GeneratedStub generatedStub;
 
 	private ServiceBeanInstance(ServiceDefinition<T> serviceDefinition, 
 								AstrixBeanKey<T> beanKey, 
@@ -89,6 +96,26 @@ public class ServiceBeanInstance<T> implements StatefulAstrixBean, InvocationHan
 		return new ServiceBeanInstance<T>(serviceDefinition, beanKey, serviceDiscovery, serviceComponents, config);
 	}
 	
+	/**
+	 * Creates a generated stub for this bean, to be used instead of a dynamic proxy using this
+	 * ServiceBeanInstance as InvocationHandler. The generated stub invokes the bound service
+	 * directly, and is updated each time this bean changes state. <p>
+	 * 
+	 * @see AstrixSettings#GENERATED_SERVICE_STUBS
+	 * @return
+	 */
+	T createGeneratedStub() {
+		beanStateLock.lock();
+		try {
+			GeneratedStub stub = StubGenerator.createDelegatingStub(beanKey.getBeanType(), GeneratedStub.class, this);
+			stub.setDelegate(currentState.getStubDelegate());
+			this.generatedStub = stub;
+			return beanKey.getBeanType().cast(stub);
+		} finally {
+			beanStateLock.unlock();
+		}
+	}
+	
 	public void renewLease() {
 		beanStateLock.lock();
 		try {
@@ -248,6 +275,9 @@ public class ServiceBeanInstance<T> implements StatefulAstrixBean, InvocationHan
 				log.info(String.format("Service bean entering new state. newState=%s bean=%s id=%s", newState.name(), beanKey, id));
 			}
 			currentState = newState;
+			if (generatedStub != null) {
+				generatedStub.setDelegate(newState.getStubDelegate());
+			}
 			if (isBoundState(newState)) {
 				notifyBound();
 			}
@@ -258,6 +288,13 @@ public class ServiceBeanInstance<T> implements StatefulAstrixBean, InvocationHan
 			return !newState.getClass().equals(Unbound.class);
 		}
 
+		/**
+		 * @return the instance invoked by the generated stub (if any) while in this state.
+		 */
+		protected Object getStubDelegate() {
+			return ReflectionUtil.newProxy(beanKey.getBeanType(), this);
+		}
+
 		protected abstract String name();
 		
 		protected abstract void releaseInstance();
@@ -267,14 +304,25 @@ public class ServiceBeanInstance<T> implements StatefulAstrixBean, InvocationHan
 	private class Bound extends BeanState {
 
 		private final BoundServiceBeanInstance<T> serviceBeanInstance;
+		private final MethodInvokerCache invokers;
 		
 		public Bound(BoundServiceBeanInstance<T> bean) {
 			this.serviceBeanInstance = bean;
+			this.invokers = MethodInvokerCache.create(beanKey.getBeanType());
 		}
 
 		@Override
 		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-			return ReflectionUtil.invokeMethod(method, serviceBeanInstance.get(), args);
+			MethodInvoker invoker = invokers.get(method);
+			if (invoker == null) {
+				return ReflectionUtil.invokeMethod(method, serviceBeanInstance.get(), args);
+			}
+			return invoker.invoke(serviceBeanInstance.get(), args);
+		}
+		
+		@Override
+		protected Object getStubDelegate() {
+			return serviceBeanInstance.get();
 		}
 		
 		@Override
@@ -288,11 +336,24 @@ public class ServiceBeanInstance<T> implements StatefulAstrixBean, InvocationHan
 		}
 	}
 	
+	/*
+	 * Methods returning a CompletionStage reports failures through the returned future, 
+	 * all other methods throws the exception.
+	 */
+	private static Object failInvocation(Method method, RuntimeException e) {
+		if (CompletionStage.class.isAssignableFrom(method.getReturnType())) {
+			CompletableFuture<Object> result = new CompletableFuture<>();
+			result.completeExceptionally(e);
+			return result;
+		}
+		throw e;
+	}
+	
 	private class Unbound extends BeanState {
 
 		@Override
 		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-			throw new ServiceUnavailableException("astrixBeanId=" + id + " bean="+ beanKey);
+			return failInvocation(method, new ServiceUnavailableException("astrixBeanId=" + id + " bean="+ beanKey));
 		}
 		
 		@Override
@@ -316,7 +377,7 @@ public class ServiceBeanInstance<T> implements StatefulAstrixBean, InvocationHan
 
 		@Override
 		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-			throw new IllegalServiceMetadataException(String.format("bean=%s astrixBeanId=%s message=%s", beanKey, id, message));
+			return failInvocation(method, new IllegalServiceMetadataException(String.format("bean=%s astrixBeanId=%s message=%s", beanKey, id, message)));
 		}
 		
 		@Override
@@ -328,4 +389,30 @@ public class ServiceBeanInstance<T> implements StatefulAstrixBean, InvocationHan
 			return "IllegalServiceMetadata";
 		}
 	}
+	
+	/**
+	 * Base class for the stub generated by {@link #createGeneratedStub()}. Methods of the
+	 * service api are generated, see {@link StubGenerator}. <p>
+	 * 
+	 * @author Elias Lindholm (elilin)
+	 *
+	 */
+	public abstract static class GeneratedStub extends DelegatingStub implements StatefulAstrixBean {
+		
+		private final ServiceBeanInstance<?> serviceBeanInstance;
+
+		public GeneratedStub(ServiceBeanInstance<?> serviceBeanInstance) {
+			this.serviceBeanInstance = serviceBeanInstance;
+		}
+
+		@Override
+		public void waitUntilBound(long timeoutMillis) throws InterruptedException {
+			serviceBeanInstance.waitUntilBound(timeoutMillis);
+		}
+		
+		@Override
+		public String toString() {
+			return serviceBeanInstance.toString();
+		}
+	}
 }
@@ -19,11 +19,13 @@ import java.lang.reflect.Proxy;
 import java.util.Objects;
 
 import com.avanza.astrix.beans.core.AstrixBeanKey;
+import com.avanza.astrix.beans.core.AstrixSettings;
 import com.avanza.astrix.beans.factory.AstrixBeans;
 import com.avanza.astrix.beans.factory.DynamicFactoryBean;
 import com.avanza.astrix.beans.factory.FactoryBean;
 import com.avanza.astrix.beans.factory.StandardFactoryBean;
 import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.core.util.StubGenerator;
 
 /**
  * 
@@ -56,6 +58,9 @@ public class ServiceFactory<T> implements DynamicFactoryBean<T> {
 		ServiceBeanInstance<T> serviceBeanInstance = ServiceBeanInstance.create(serviceDefinition, beanKey, serviceDiscovery, serviceComponents, config);
 		serviceBeanInstance.bind();
 		leaseManager.startManageLease(serviceBeanInstance);
+		if (AstrixSettings.GENERATED_SERVICE_STUBS.getFrom(config).get() && StubGenerator.canGenerateStub(beanKey.getBeanType())) {
+			return serviceBeanInstance.createGeneratedStub();
+		}
 		return beanKey.getBeanType().cast(
 				Proxy.newProxyInstance(beanKey.getBeanType().getClassLoader(), 
 									   new Class[]{beanKey.getBeanType(), StatefulAstrixBean.class}, 
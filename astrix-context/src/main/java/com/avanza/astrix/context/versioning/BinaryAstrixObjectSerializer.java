@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.context.versioning;
+
+import java.lang.reflect.Type;
+
+import com.avanza.astrix.beans.service.ObjectSerializerDefinition;
+import com.avanza.astrix.context.JavaSerializationSerializer;
+import com.avanza.astrix.core.AstrixObjectSerializer;
+import com.avanza.astrix.core.ServiceInvocationException;
+import com.avanza.astrix.versioning.BinaryCodec;
+import com.avanza.astrix.versioning.plugin.BinaryObjectSerializerConfigurer;
+/**
+ * Serializes objects using the compact {@link BinaryCodec} configured by the 
+ * {@link BinaryObjectSerializerConfigurer} of an api. <p>
+ * 
+ * Exceptions are serialized using java serialization. A {@link ServiceInvocationException} thrown by a 
+ * service is deserialized into the abstract ServiceInvocationException type, hence the concrete type must be
+ * carried by the serialized form, which the schema based BinaryCodec doesn't do. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public class BinaryAstrixObjectSerializer implements AstrixObjectSerializer {
+
+	private final BinaryCodec codec;
+	private final int version;
+	private final JavaSerializationSerializer exceptionSerializer;
+
+	public BinaryAstrixObjectSerializer(ObjectSerializerDefinition serializerDefinition) {
+		this.version = serializerDefinition.version();
+		this.exceptionSerializer = new JavaSerializationSerializer(version);
+		try {
+			BinaryObjectSerializerConfigurer configurer = BinaryObjectSerializerConfigurer.class.cast(serializerDefinition.getObjectSerializerConfigurerClass().newInstance());
+			BinaryCodec.Builder codecBuilder = BinaryCodec.builder();
+			configurer.configure(codecBuilder);
+			this.codec = codecBuilder.build();
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to init BinaryCodec", e);
+		}
+	}
+
+	@Override
+	public <T> T deserialize(Object element, Type type, int fromVersion) {
+		if (fromVersion == NoVersioningSupport.NO_VERSIONING) {
+			return (T) element;
+		}
+		if (isException(type)) {
+			return exceptionSerializer.deserialize(element, type, fromVersion);
+		}
+		return codec.deserialize((byte[]) element, type, fromVersion);
+	}
+
+	@Override
+	public Object serialize(Object element, int version) {
+		if (version == NoVersioningSupport.NO_VERSIONING) {
+			return element;
+		}
+		if (element instanceof Throwable) {
+			return exceptionSerializer.serialize(element, version);
+		}
+		return codec.serialize(element, version);
+	}
+	
+	private static boolean isException(Type type) {
+		return type instanceof Class && Throwable.class.isAssignableFrom((Class<?>) type);
+	}
+
+	@Override
+	public int version() {
+		return version;
+	}
+
+}
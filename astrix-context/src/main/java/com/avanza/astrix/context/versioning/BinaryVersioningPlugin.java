@@ -0,0 +1,48 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.context.versioning;
+
+import com.avanza.astrix.beans.service.AstrixVersioningPlugin;
+import com.avanza.astrix.beans.service.ObjectSerializerDefinition;
+import com.avanza.astrix.core.AstrixObjectSerializer;
+import com.avanza.astrix.versioning.plugin.BinaryObjectSerializerConfigurer;
+/**
+ * Versioning plugin that serializes the objects of all versioned apis using the compact binary
+ * codec, see {@link BinaryAstrixObjectSerializer}. <p>
+ * 
+ * The {@link JacksonVersioningPlugin} delegates to this plugin for all apis whose
+ * objectSerializerConfigurer is a {@link BinaryObjectSerializerConfigurer}, which allows the
+ * serialization format to be selected per api. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public class BinaryVersioningPlugin implements AstrixVersioningPlugin {
+	
+	static boolean isBinary(ObjectSerializerDefinition serializerDefinition) {
+		return serializerDefinition.isVersioned() 
+				&& BinaryObjectSerializerConfigurer.class.isAssignableFrom(serializerDefinition.getObjectSerializerConfigurerClass());
+	}
+	
+	@Override
+	public AstrixObjectSerializer create(ObjectSerializerDefinition serializerDefinition) {
+		if (serializerDefinition.isVersioned()) {
+			return new BinaryAstrixObjectSerializer(serializerDefinition);
+		}
+		return new AstrixObjectSerializer.NoVersioningSupport();
+	}
+
+}
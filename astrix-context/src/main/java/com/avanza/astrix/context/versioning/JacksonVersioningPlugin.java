@@ -25,6 +25,9 @@ import com.avanza.astrix.core.AstrixObjectSerializer;
 public class JacksonVersioningPlugin implements AstrixVersioningPlugin {
 	@Override
 	public AstrixObjectSerializer create(ObjectSerializerDefinition serializerDefinition) {
+		if (BinaryVersioningPlugin.isBinary(serializerDefinition)) {
+			return new BinaryVersioningPlugin().create(serializerDefinition);
+		}
 		if (serializerDefinition.isVersioned()) {
 			return new VersionJacksonAstrixObjectSerializer(serializerDefinition);
 		}
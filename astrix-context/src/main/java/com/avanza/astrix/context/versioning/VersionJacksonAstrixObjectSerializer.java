@@ -24,6 +24,15 @@ import com.avanza.astrix.versioning.JsonObjectMapper;
 import com.avanza.astrix.versioning.VersionedJsonObjectMapper.VersionedObjectMapperBuilder;
 import com.avanza.astrix.versioning.plugin.Jackson1ObjectSerializerConfigurer;
 
+/**
+ * Serializes objects into UTF-8 encoded json, which is carried as a byte[] by the
+ * service invocation envelopes and hence never encoded again by the transport. <p>
+ * 
+ * Json carried as a String, as produced by earlier versions, is still accepted when deserializing. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
 public class VersionJacksonAstrixObjectSerializer implements AstrixObjectSerializer {
 
 	private JsonObjectMapper objectMapper;
@@ -50,6 +59,9 @@ public class VersionJacksonAstrixObjectSerializer implements AstrixObjectSeriali
 		if (fromVersion == NoVersioningSupport.NO_VERSIONING) {
 			return (T) element;
 		}
+		if (element instanceof byte[]) {
+			return objectMapper.deserialize((byte[]) element, type, fromVersion);
+		}
 		return objectMapper.deserialize((String) element, type, fromVersion);
 	}
 
@@ -58,7 +70,7 @@ public class VersionJacksonAstrixObjectSerializer implements AstrixObjectSeriali
 		if (version == NoVersioningSupport.NO_VERSIONING) {
 			return element;
 		}
-		return objectMapper.serialize(element, version);
+		return objectMapper.serializeToBytes(element, version);
 	}
 
 	@Override
@@ -16,7 +16,10 @@
 package com.avanza.astrix.beans.service;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Future;
 
 import org.junit.Test;
@@ -47,6 +50,21 @@ public class DirectComponentTest {
 		assertEquals("foo", ping.ping("foo").get());
 	}
 	
+	@Test
+	public void completableFutureReturnedByAsyncServiceIsCompletedExceptionallyWhenServiceThrowsException() throws Exception {
+		InMemoryServiceRegistry serviceRegistry = new InMemoryServiceRegistry();
+		serviceRegistry.registerProvider(Greeting.class, new GreetingImpl());
+		TestAstrixConfigurer astrixConfigurer = new TestAstrixConfigurer();
+		astrixConfigurer.registerApiProvider(GreetingApiProvider.class);
+		astrixConfigurer.set(AstrixSettings.SERVICE_REGISTRY_URI, serviceRegistry.getServiceUri());
+		AstrixContext astrixContext = astrixConfigurer.configure();
+		
+		GreetingAsync greeting = astrixContext.getBean(GreetingAsync.class);
+		assertEquals("hello kalle", greeting.greet("kalle").get());
+		assertEquals("hello kalle", greeting.greetStage("kalle").toCompletableFuture().get());
+		assertTrue(greeting.greet(null).isCompletedExceptionally());
+	}
+	
 	public interface Ping {
 		String ping(String msg);
 	}
@@ -67,5 +85,33 @@ public class DirectComponentTest {
 		@Service
 		Ping ping();
 	}
+	
+	public interface Greeting {
+		String greet(String name);
+		String greetStage(String name);
+	}
+	
+	public interface GreetingAsync {
+		CompletableFuture<String> greet(String name);
+		CompletionStage<String> greetStage(String name);
+	}
+	
+	public static class GreetingImpl implements Greeting {
+		public String greet(String name) {
+			if (name == null) {
+				throw new IllegalArgumentException("name");
+			}
+			return "hello " + name;
+		}
+		public String greetStage(String name) {
+			return greet(name);
+		}
+	}
+	
+	@AstrixApiProvider
+	public static interface GreetingApiProvider {
+		@Service
+		Greeting greeting();
+	}
 
 }
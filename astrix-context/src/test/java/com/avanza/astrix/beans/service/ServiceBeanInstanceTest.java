@@ -20,9 +20,12 @@ import static com.avanza.astrix.test.util.AstrixTestUtil.serviceInvocationResult
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
+import java.lang.reflect.Proxy;
+
 import org.hamcrest.CoreMatchers;
 import org.junit.After;
 import org.junit.Test;
@@ -161,6 +164,40 @@ public class ServiceBeanInstanceTest {
 	}
 	
 	
+	@Test
+	public void generatedServiceStubFollowsStateOfServiceBean() throws Exception {
+		InMemoryServiceRegistry serviceRegistry = new InMemoryServiceRegistry();
+		
+		TestAstrixConfigurer astrixConfigurer = new TestAstrixConfigurer();
+		astrixConfigurer.registerApiProvider(PingApiProvider.class);
+		astrixConfigurer.set(AstrixSettings.GENERATED_SERVICE_STUBS, true);
+		astrixConfigurer.set(AstrixSettings.BEAN_BIND_ATTEMPT_INTERVAL, 1);
+		astrixConfigurer.set(AstrixSettings.SERVICE_LEASE_RENEW_INTERVAL, 5);
+		astrixConfigurer.set(AstrixSettings.SERVICE_REGISTRY_URI, serviceRegistry.getServiceUri());
+		astrixContext = astrixConfigurer.configure();
+		
+		final Ping ping = astrixContext.getBean(Ping.class);
+		assertFalse(Proxy.isProxyClass(ping.getClass()));
+		try {
+			ping.ping("foo");
+			fail("Bean should not be bound");
+		} catch (ServiceUnavailableException e) {
+			// expected
+		}
+		
+		serviceRegistry.registerProvider(Ping.class, new PingImpl());
+		astrixContext.waitForBean(Ping.class, 1000);
+		assertEquals("foo", ping.ping("foo"));
+		
+		serviceRegistry.clear();
+		assertEventually(serviceInvocationException(new Supplier<String>() {
+			@Override
+			public String get() {
+				return ping.ping("foo");
+			}
+		}, CoreMatchers.any(ServiceUnavailableException.class)));
+	}
+	
 	private void assertEventually(Probe serviceInvocationException)
 			throws InterruptedException {
 		new Poller(100, 1).check(serviceInvocationException);
@@ -16,6 +16,7 @@
 package com.avanza.astrix.context.versioning;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
 import java.util.List;
@@ -25,10 +26,13 @@ import org.junit.Test;
 
 import com.avanza.astrix.beans.service.ObjectSerializerDefinition;
 import com.avanza.astrix.core.AstrixObjectSerializer;
+import com.avanza.astrix.core.ServiceInvocationException;
 import com.avanza.astrix.provider.versioning.AstrixJsonApiMigration;
 import com.avanza.astrix.provider.versioning.AstrixJsonMessageMigration;
 import com.avanza.astrix.provider.versioning.AstrixVersioned;
 import com.avanza.astrix.provider.versioning.JacksonObjectMapperBuilder;
+import com.avanza.astrix.versioning.BinaryCodec;
+import com.avanza.astrix.versioning.plugin.BinaryObjectSerializerConfigurer;
 import com.avanza.astrix.versioning.plugin.Jackson1ObjectSerializerConfigurer;
 
 public class JacksonVersioningPluginTest {
@@ -63,6 +67,51 @@ public class JacksonVersioningPluginTest {
 		assertEquals(null, deserializedPojo.getBar()); // bar is stripped during downgrade
 	}
 	
+	@Test
+	public void usesBinaryCodecForApisWithBinaryObjectSerializerConfigurer() throws Exception {
+		AstrixObjectSerializer astrixObjectSerializer = new JacksonVersioningPlugin().create(ObjectSerializerDefinition.versionedService(2, TestBinaryConfigurer.class));
+		
+		Object serializedV1 = astrixObjectSerializer.serialize(new TestPojoV2("foo", "bar"), 1);
+		TestPojoV2 deserializedPojo = astrixObjectSerializer.deserialize(serializedV1, TestPojoV2.class, 1);
+		
+		assertTrue(astrixObjectSerializer instanceof BinaryAstrixObjectSerializer);
+		assertEquals("foo", deserializedPojo.getFoo());
+		assertEquals("defaultBar", deserializedPojo.getBar());
+	}
+	
+	@Test
+	public void binaryCodecSerializesServiceInvocationExceptionsUsingJavaSerialization() throws Exception {
+		AstrixObjectSerializer astrixObjectSerializer = new JacksonVersioningPlugin().create(ObjectSerializerDefinition.versionedService(2, TestBinaryConfigurer.class));
+		
+		Object serialized = astrixObjectSerializer.serialize(new TestServiceException("foo"), 2);
+		ServiceInvocationException deserialized = astrixObjectSerializer.deserialize(serialized, ServiceInvocationException.class, 2);
+		
+		assertEquals(TestServiceException.class, deserialized.getClass());
+		assertEquals("foo", deserialized.getMessage());
+	}
+	
+	public static class TestServiceException extends ServiceInvocationException {
+		private static final long serialVersionUID = 1L;
+		
+		public TestServiceException(String msg) {
+			super(msg);
+		}
+		
+		@Override
+		protected ServiceInvocationException recreateOnClientSide() {
+			return new TestServiceException(getMessage());
+		}
+	}
+	
+	public static class TestBinaryConfigurer implements BinaryObjectSerializerConfigurer {
+		@Override
+		public void configure(BinaryCodec.Builder codecBuilder) {
+			codecBuilder.registerType(TestPojoV2.class)
+						.field("foo")
+						.field("bar", 2, "defaultBar");
+		}
+	}
+	
 	@AstrixVersioned(
 		version = 2,
 		objectSerializerConfigurer = TestObjectMapperConfigurer.class
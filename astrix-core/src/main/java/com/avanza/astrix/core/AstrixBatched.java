@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates that concurrent invocations of a routed remote service method should be
+ * batched on the client side. <p>
+ * 
+ * Invocations that are routed to the same server partition within a short time window
+ * are sent together in a single request, and the server executes each invocation
+ * and returns the responses together. An invocation waits at most {@link #maxDelayMicros()} 
+ * for other invocations to join the batch, hence batching trades a small amount of latency for 
+ * fewer remote requests under high load. <p>
+ * 
+ * Batching only applies to routed service methods, i.e it does not apply to methods annotated with
+ * {@link AstrixBroadcast}, or methods with an argument annotated with {@link AstrixPartitionedRouting}. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ */
+@Target(value={ElementType.METHOD})
+@Retention(value=RetentionPolicy.RUNTIME)
+@Documented
+public @interface AstrixBatched {
+	
+	/**
+	 * The maximum time (in microseconds) an invocation waits for other invocations 
+	 * before the batch is sent.
+	 * 
+	 * @return
+	 */
+	long maxDelayMicros() default 200;
+	
+	/**
+	 * The maximum number of invocations in a single batch. A batch is sent
+	 * as soon as it contains maxBatchSize invocations.
+	 * 
+	 * @return
+	 */
+	int maxBatchSize() default 64;
+	
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates that the result of a routed remote service method should be cached on the 
+ * client side. <p>
+ * 
+ * The result of an invocation is cached using the (serialized) arguments as key. An invocation
+ * of a cached service method with the same arguments as a previous invocation is not sent to the server 
+ * as long as the cached result has not expired. Only successful invocations are cached. Hence, only use
+ * result caching for methods without side effects that returns data that is allowed to be stale for 
+ * the duration of the ttl, typically reference data. <p>
+ * 
+ * For apis that are not versioned, see {@link AstrixObjectSerializer.NoVersioningSupport}, all invocations
+ * served by a given cached result share the same result instance, hence the result must not be modified 
+ * by the caller. <p>
+ * 
+ * The size of the cache and the ttl might be overridden for a given astrix bean using the
+ * "resultCache.maxEntries" and "resultCache.ttl" bean settings. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ */
+@Target(value={ElementType.METHOD})
+@Retention(value=RetentionPolicy.RUNTIME)
+@Documented
+public @interface AstrixCached {
+	
+	/**
+	 * The time (in milliseconds) a result is cached after it was received.
+	 */
+	long ttlMillis() default 60_000;
+	
+	/**
+	 * The maximum number of results cached for the service method. When the cache is full the oldest
+	 * entry is evicted.
+	 */
+	int maxEntries() default 1000;
+	
+}
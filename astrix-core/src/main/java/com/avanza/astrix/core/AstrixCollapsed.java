@@ -0,0 +1,43 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates that concurrent identical invocations of a routed remote service method should 
+ * be collapsed on the client side. <p>
+ * 
+ * An invocation of a collapsed service method that is identical to an invocation that
+ * is already in flight, i.e an invocation of the same method with the same (serialized) arguments,
+ * is not sent to the server. Instead it receives the response of the in-flight invocation. Hence, 
+ * only use request collapsing for methods without side effects, typically reads. <p>
+ * 
+ * For apis that are not versioned, see {@link AstrixObjectSerializer.NoVersioningSupport}, the
+ * invocations sharing an in-flight invocation also share the same result instance, hence the 
+ * result must not be modified by the caller. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ */
+@Target(value={ElementType.METHOD})
+@Retention(value=RetentionPolicy.RUNTIME)
+@Documented
+public @interface AstrixCollapsed {
+}
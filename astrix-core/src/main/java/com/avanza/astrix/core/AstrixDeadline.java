@@ -0,0 +1,133 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The point in time when the caller of a service invocation gives up waiting for the result. <p>
+ * 
+ * The deadline of the invocation currently being served by a thread is available using {@link #current()}, 
+ * which allows a provider to check how much of the time budget of the caller that remains. The current deadline
+ * is propagated to all remote service invocations made by the same thread, hence nested invocations are
+ * abandoned by the server once the original caller has given up. Note that a provider completing an invocation
+ * asynchronously must attach the deadline to the thread making the nested invocations using
+ * {@link #attach(AstrixDeadline)}. <p>
+ * 
+ * Deadlines are based on {@link System#nanoTime()} and are only meaningful within a single jvm. They are
+ * transferred between jvm:s as the remaining time budget. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class AstrixDeadline {
+	
+	private static final ThreadLocal<AstrixDeadline> current = new ThreadLocal<>();
+	
+	private final long deadlineNanos;
+	
+	private AstrixDeadline(long deadlineNanos) {
+		this.deadlineNanos = deadlineNanos;
+	}
+	
+	/**
+	 * @param timeout
+	 * @param unit
+	 * @return a deadline that expires after the given timeout
+	 */
+	public static AstrixDeadline after(long timeout, TimeUnit unit) {
+		return new AstrixDeadline(System.nanoTime() + unit.toNanos(timeout));
+	}
+	
+	/**
+	 * @param deadlineNanos - the value of {@link System#nanoTime()} when the deadline expires
+	 * @return
+	 */
+	public static AstrixDeadline at(long deadlineNanos) {
+		return new AstrixDeadline(deadlineNanos);
+	}
+	
+	/**
+	 * @return the deadline attached to the current thread, or null if the thread is not bound to a deadline
+	 */
+	public static AstrixDeadline current() {
+		return current.get();
+	}
+	
+	/**
+	 * Attaches a deadline to the current thread. The previous deadline must be restored when 
+	 * the deadline no longer applies to the thread, typically in a finally block: <p>
+	 * 
+	 * <pre>
+	 * AstrixDeadline previous = AstrixDeadline.attach(deadline);
+	 * try {
+	 *     ...
+	 * } finally {
+	 *     AstrixDeadline.restore(previous);
+	 * }
+	 * </pre>
+	 * 
+	 * @param deadline
+	 * @return the deadline previously attached to the current thread, might be null
+	 */
+	public static AstrixDeadline attach(AstrixDeadline deadline) {
+		AstrixDeadline previous = current.get();
+		current.set(deadline);
+		return previous;
+	}
+	
+	/**
+	 * Restores the deadline returned by {@link #attach(AstrixDeadline)}.
+	 * 
+	 * @param previous
+	 */
+	public static void restore(AstrixDeadline previous) {
+		if (previous == null) {
+			current.remove();
+		} else {
+			current.set(previous);
+		}
+	}
+	
+	/**
+	 * @param unit
+	 * @return the remaining time until this deadline expires, or zero if it already has expired
+	 */
+	public long getRemaining(TimeUnit unit) {
+		return unit.convert(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+	}
+	
+	public boolean isExpired() {
+		return deadlineNanos - System.nanoTime() <= 0;
+	}
+	
+	/**
+	 * @param other - another deadline, might be null
+	 * @return the deadline that expires first out of this deadline and the given deadline
+	 */
+	public AstrixDeadline earliest(AstrixDeadline other) {
+		if (other == null || deadlineNanos - other.deadlineNanos <= 0) {
+			return this;
+		}
+		return other;
+	}
+	
+	@Override
+	public String toString() {
+		return "AstrixDeadline[remainingMillis=" + getRemaining(TimeUnit.MILLISECONDS) + "]";
+	}
+
+}
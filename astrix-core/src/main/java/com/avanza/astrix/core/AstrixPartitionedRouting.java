@@ -67,5 +67,15 @@ public @interface AstrixPartitionedRouting {
 	 */
 	@SuppressWarnings("rawtypes")
 	Class<? extends Collection> collectionFactory() default ArrayList.class;
-	
+
+	/**
+	 * If the partitioned argument contains more elements than the given threshold, then
+	 * the argument will be split into ranges of at most threshold elements, which are
+	 * partitioned in parallel using the common ForkJoinPool. The elements routed
+	 * to a given partition are kept in the same order as in the partitioned argument. <p>
+	 *
+	 * Defaults to -1, which means that the argument is always partitioned by the invoking thread. <p>
+	 */
+	int parallelPartitioningThreshold() default -1;
+
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indicates that the result from each partition of a broadcasted or partitioned service method should
+ * be emitted as soon as it arrives when the method is invoked using an Observable returning proxy,
+ * rather than emitting a single reduced result. <p>
+ * 
+ * For instance, given the following service api
+ * 
+ * <pre>
+ * interface LunchService {
+ *     &#64;AstrixBroadcast
+ *     &#64;AstrixStreamed
+ *     List&lt;LunchRestaurant&gt; getAllRestaurants();
+ * }
+ * 
+ * interface ObservableLunchService {
+ *     Observable&lt;List&lt;LunchRestaurant&gt;&gt; getAllRestaurants();
+ * }
+ * </pre>
+ * 
+ * The Observable returned by ObservableLunchService emits one List for each partition. The 
+ * RemoteResultReducer is still used for synchronous and asynchronous invocations. Timeouts applies
+ * to the entire invocation, i.e the Observable fails with a timeout if the results from all partitions 
+ * are not received in time, even if results from some partitions were already emitted. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ */
+@Target(value={ElementType.METHOD})
+@Retention(value=RetentionPolicy.RUNTIME)
+@Documented
+public @interface AstrixStreamed {
+}
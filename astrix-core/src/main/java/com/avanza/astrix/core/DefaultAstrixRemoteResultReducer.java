@@ -20,20 +20,35 @@ import java.util.Collection;
 import java.util.List;
 
 /**
- *
+ * Concatenates the lists returned from each partition into a single list. <p>
  */
-public class DefaultAstrixRemoteResultReducer<T> implements RemoteResultReducer<List<T>> {
+public class DefaultAstrixRemoteResultReducer<T> implements IncrementalRemoteResultReducer<List<T>> {
+	
+	private final List<T> result = new ArrayList<>();
 
 	@Override
 	public List<T> reduce(List<AstrixRemoteResult<List<T>>> results) {
 		List<T> result = new ArrayList<>();
 		for (AstrixRemoteResult<List<T>> remoteResult : results) {
 			Collection<T> r = remoteResult.getResult();
-			if (result != null) {
+			if (r != null) {
 				result.addAll(r);
 			}
 		}
 		return result;
 	}
+	
+	@Override
+	public void accumulate(AstrixRemoteResult<List<T>> remoteResult) {
+		Collection<T> r = remoteResult.getResult();
+		if (r != null) {
+			result.addAll(r);
+		}
+	}
+	
+	@Override
+	public List<T> result() {
+		return result;
+	}
 
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core;
+
+import java.util.List;
+
+/**
+ * A RemoteResultReducer that accumulates the response from each partition as soon as it is unmarshalled,
+ * rather than waiting for the responses from all partitions to be unmarshalled before reducing them into 
+ * a single result. This avoids holding all unmarshalled responses in memory at once. <p>
+ * 
+ * A new reducer instance is created for each invocation (and for each subscription to the Observable
+ * returned by an Observable returning proxy), hence implementations might keep the 
+ * accumulated state in instance fields. Responses are accumulated one at a time, i.e
+ * {@link #accumulate(AstrixRemoteResult)} is never invoked concurrently on the same instance. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ */
+public interface IncrementalRemoteResultReducer<T> extends RemoteResultReducer<T> {
+	
+	/**
+	 * Accumulates the response from a single partition.
+	 * 
+	 * @param result
+	 */
+	void accumulate(AstrixRemoteResult<T> result);
+	
+	/**
+	 * Invoked when the responses from all partitions have been accumulated.
+	 * 
+	 * @return the reduced result
+	 */
+	T result();
+	
+	@Override
+	default T reduce(List<AstrixRemoteResult<T>> results) {
+		for (AstrixRemoteResult<T> result : results) {
+			accumulate(result);
+		}
+		return result();
+	}
+
+}
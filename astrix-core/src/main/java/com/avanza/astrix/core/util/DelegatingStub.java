@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.util;
+/**
+ * Base class for stubs created using {@link StubGenerator#createDelegatingStub(Class, Class, Object...)}. <p>
+ *
+ * The generated subclass implements each method of the stubbed api by invoking the same
+ * method on the current delegate, which is held in a single volatile field and might
+ * be replaced at any time using {@link #setDelegate(Object)}. <p>
+ *
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public abstract class DelegatingStub {
+
+	/*
+	 * Read by the generated subclass on each invocation.
+	 */
+	protected volatile Object delegate;
+
+	/**
+	 * @param delegate - an instance of the stubbed api
+	 */
+	public final void setDelegate(Object delegate) {
+		this.delegate = delegate;
+	}
+
+	public final Object getDelegate() {
+		return delegate;
+	}
+
+}
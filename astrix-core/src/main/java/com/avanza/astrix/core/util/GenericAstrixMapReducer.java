@@ -20,13 +20,15 @@ import java.util.List;
 import java.util.Map;
 
 import com.avanza.astrix.core.AstrixRemoteResult;
-import com.avanza.astrix.core.RemoteResultReducer;
+import com.avanza.astrix.core.IncrementalRemoteResultReducer;
 
 /**
  * Reduce {@link Map}s into one {@link Map} containing the union of all input data
  * @author joasah
  */
-public class GenericAstrixMapReducer<K, V> implements RemoteResultReducer<Map<K, V>> {
+public class GenericAstrixMapReducer<K, V> implements IncrementalRemoteResultReducer<Map<K, V>> {
+	
+	private final Map<K, V> map = new HashMap<K, V>();
 
 	@Override
 	public Map<K, V> reduce(List<AstrixRemoteResult<Map<K, V>>> results) {
@@ -36,5 +38,15 @@ public class GenericAstrixMapReducer<K, V> implements RemoteResultReducer<Map<K,
 		}
 		return map;
 	}
+	
+	@Override
+	public void accumulate(AstrixRemoteResult<Map<K, V>> result) {
+		map.putAll(result.getResult());
+	}
+	
+	@Override
+	public Map<K, V> result() {
+		return map;
+	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.util;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+/**
+ * Invokes a given Method using an invoker that is created once, when the MethodInvoker
+ * is created, rather than resolving the target on each invocation. <p>
+ *
+ * Public instance methods with at most {@link #MAX_GENERATED_ARITY} parameters, whose types are all visible
+ * from the class loader of astrix, are invoked through a class generated by {@link LambdaMetafactory}.
+ * All other methods are invoked through a {@link MethodHandle}. Public methods declared in a non-public
+ * type, for instance a package private service api, are made accessible before the MethodHandle is created.
+ * If that is not allowed, the method is invoked using {@link ReflectionUtil#invokeMethod(Method, Object, Object[])}. <p>
+ *
+ * Unlike {@link Method#invoke(Object, Object...)}, exceptions thrown by the invoked method
+ * are propagated as is, ie they are not wrapped in an InvocationTargetException. <p>
+ *
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public abstract class MethodInvoker {
+
+	static final int MAX_GENERATED_ARITY = 3;
+
+	private static final MethodType SPREAD_INVOKER_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+	private static final MethodHandle REFLECTIVE_INVOKER;
+	private static final Class<?>[] INVOKER_INTERFACES = { Invoke0.class, Invoke1.class, Invoke2.class, Invoke3.class };
+	private static final Class<?>[] VOID_INVOKER_INTERFACES = { InvokeVoid0.class, InvokeVoid1.class, InvokeVoid2.class, InvokeVoid3.class };
+
+	static {
+		try {
+			REFLECTIVE_INVOKER = MethodHandles.lookup().findStatic(ReflectionUtil.class, "invokeMethod",
+					MethodType.methodType(Object.class, Method.class, Object.class, Object[].class));
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private final Method method;
+
+	private MethodInvoker(Method method) {
+		this.method = method;
+	}
+
+	public static MethodInvoker create(Method method) {
+		MethodInvoker generatedInvoker = createGeneratedInvoker(method);
+		if (generatedInvoker != null) {
+			return generatedInvoker;
+		}
+		return new MethodHandleInvoker(method, createSpreadInvoker(method));
+	}
+
+	/**
+	 * Creates a MethodInvoker for each public method of a given type.
+	 *
+	 * @param type
+	 * @return
+	 */
+	public static Map<Method, MethodInvoker> createInvokers(Class<?> type) {
+		Method[] methods = type.getMethods();
+		Map<Method, MethodInvoker> result = new HashMap<>(methods.length * 2);
+		for (Method method : methods) {
+			result.put(method, create(method));
+		}
+		return result;
+	}
+
+	/**
+	 * Invokes the underlying method on a given target.
+	 *
+	 * @param target - the object to invoke the method on, ignored for static methods
+	 * @param args - the arguments, might be null for methods without parameters
+	 * @return the value returned by the method, or null for void methods
+	 * @throws Throwable - any exception thrown by the invoked method
+	 */
+	public abstract Object invoke(Object target, Object[] args) throws Throwable;
+
+	public final Method getMethod() {
+		return method;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + ReflectionUtil.fullMethodName(method) + "]";
+	}
+
+	private static MethodInvoker createGeneratedInvoker(Method method) {
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		int arity = parameterTypes.length;
+		if (arity > MAX_GENERATED_ARITY
+				|| Modifier.isStatic(method.getModifiers())
+				|| !Modifier.isPublic(method.getModifiers())
+				|| !Modifier.isPublic(method.getDeclaringClass().getModifiers())
+				|| !isVisibleFromAstrix(method.getDeclaringClass())
+				|| !isVisibleFromAstrix(method.getReturnType())
+				|| !isVisibleFromAstrix(parameterTypes)) {
+			return null;
+		}
+		boolean isVoid = method.getReturnType().equals(Void.TYPE);
+		Class<?> invokerInterface = isVoid ? VOID_INVOKER_INTERFACES[arity] : INVOKER_INTERFACES[arity];
+		Object generated;
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			MethodHandle implementation = lookup.unreflect(method);
+			MethodType samType = MethodType.genericMethodType(arity + 1);
+			MethodType instantiatedType = implementation.type().wrap();
+			if (isVoid) {
+				samType = samType.changeReturnType(Void.TYPE);
+				instantiatedType = instantiatedType.changeReturnType(Void.TYPE);
+			}
+			generated = LambdaMetafactory.metafactory(lookup, "invoke", MethodType.methodType(invokerInterface), samType, implementation, instantiatedType)
+										 .getTarget()
+										 .invoke();
+		} catch (Throwable e) {
+			return null;
+		}
+		switch (arity) {
+		case 0:
+			return isVoid ? new VoidArity0(method, (InvokeVoid0) generated) : new Arity0(method, (Invoke0) generated);
+		case 1:
+			return isVoid ? new VoidArity1(method, (InvokeVoid1) generated) : new Arity1(method, (Invoke1) generated);
+		case 2:
+			return isVoid ? new VoidArity2(method, (InvokeVoid2) generated) : new Arity2(method, (Invoke2) generated);
+		default:
+			return isVoid ? new VoidArity3(method, (InvokeVoid3) generated) : new Arity3(method, (Invoke3) generated);
+		}
+	}
+
+	/*
+	 * The class generated by the LambdaMetafactory is defined in the class loader of astrix, hence
+	 * all types referenced by the invoked method must be resolvable from that class loader.
+	 */
+	private static boolean isVisibleFromAstrix(Class<?>... types) {
+		ClassLoader astrixClassLoader = MethodInvoker.class.getClassLoader();
+		for (Class<?> type : types) {
+			if (type.isPrimitive()) {
+				continue;
+			}
+			try {
+				if (Class.forName(type.getName(), false, astrixClassLoader) != type) {
+					return false;
+				}
+			} catch (ClassNotFoundException | LinkageError e) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static MethodHandle createSpreadInvoker(Method method) {
+		int parameterCount = method.getParameterTypes().length;
+		MethodHandle methodHandle;
+		try {
+			methodHandle = unreflect(method).asFixedArity();
+		} catch (IllegalAccessException | NoSuchMethodException | RuntimeException e) {
+			return REFLECTIVE_INVOKER.bindTo(method);
+		}
+		if (Modifier.isStatic(method.getModifiers())) {
+			methodHandle = MethodHandles.dropArguments(methodHandle, 0, Object.class);
+		}
+		return methodHandle.asType(MethodType.genericMethodType(parameterCount + 1))
+						   .asSpreader(Object[].class, parameterCount)
+						   .asType(SPREAD_INVOKER_TYPE);
+	}
+
+	private static MethodHandle unreflect(Method method) throws IllegalAccessException, NoSuchMethodException {
+		if (Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+			return MethodHandles.publicLookup().unreflect(method);
+		}
+		// Use a private copy to avoid changing the accessible flag on the given Method instance
+		Method accessibleMethod = method.getDeclaringClass().getDeclaredMethod(method.getName(), method.getParameterTypes());
+		accessibleMethod.setAccessible(true);
+		return MethodHandles.lookup().unreflect(accessibleMethod);
+	}
+
+	private static final class MethodHandleInvoker extends MethodInvoker {
+		private final MethodHandle spreadInvoker;
+
+		public MethodHandleInvoker(Method method, MethodHandle spreadInvoker) {
+			super(method);
+			this.spreadInvoker = spreadInvoker;
+		}
+
+		@Override
+		public Object invoke(Object target, Object[] args) throws Throwable {
+			return (Object) spreadInvoker.invokeExact(target, args);
+		}
+	}
+
+	interface Invoke0 { Object invoke(Object target); }
+	interface Invoke1 { Object invoke(Object target, Object arg0); }
+	interface Invoke2 { Object invoke(Object target, Object arg0, Object arg1); }
+	interface Invoke3 { Object invoke(Object target, Object arg0, Object arg1, Object arg2); }
+	interface InvokeVoid0 { void invoke(Object target); }
+	interface InvokeVoid1 { void invoke(Object target, Object arg0); }
+	interface InvokeVoid2 { void invoke(Object target, Object arg0, Object arg1); }
+	interface InvokeVoid3 { void invoke(Object target, Object arg0, Object arg1, Object arg2); }
+
+	private static final class Arity0 extends MethodInvoker {
+		private final Invoke0 invoker;
+		Arity0(Method method, Invoke0 invoker) {
+			super(method);
+			this.invoker = invoker;
+		}
+		@Override
+		public Object invoke(Object target, Object[] args) {
+			return invoker.invoke(target);
+		}
+	}
+
+	private static final class Arity1 extends MethodInvoker {
+		private final Invoke1 invoker;
+		Arity1(Method method, Invoke1 invoker) {
+			super(method);
+			this.invoker = invoker;
+		}
+		@Override
+		public Object invoke(Object target, Object[] args) {
+			return invoker.invoke(target, args[0]);
+		}
+	}
+
+	private static final class Arity2 extends MethodInvoker {
+		private final Invoke2 invoker;
+		Arity2(Method method, Invoke2 invoker) {
+			super(method);
+			this.invoker = invoker;
+		}
+		@Override
+		public Object invoke(Object target, Object[] args) {
+			return invoker.invoke(target, args[0], args[1]);
+		}
+	}
+
+	private static final class Arity3 extends MethodInvoker {
+		private final Invoke3 invoker;
+		Arity3(Method method, Invoke3 invoker) {
+			super(method);
+			this.invoker = invoker;
+		}
+		@Override
+		public Object invoke(Object target, Object[] args) {
+			return invoker.invoke(target, args[0], args[1], args[2]);
+		}
+	}
+
+	private static final class VoidArity0 extends MethodInvoker {
+		private final InvokeVoid0 invoker;
+		VoidArity0(Method method, InvokeVoid0 invoker) {
+			super(method);
+			this.invoker = invoker;
+		}
+		@Override
+		public Object invoke(Object target, Object[] args) {
+			invoker.invoke(target);
+			return null;
+		}
+	}
+
+	private static final class VoidArity1 extends MethodInvoker {
+		private final InvokeVoid1 invoker;
+		VoidArity1(Method method, InvokeVoid1 invoker) {
+			super(method);
+			this.invoker = invoker;
+		}
+		@Override
+		public Object invoke(Object target, Object[] args) {
+			invoker.invoke(target, args[0]);
+			return null;
+		}
+	}
+
+	private static final class VoidArity2 extends MethodInvoker {
+		private final InvokeVoid2 invoker;
+		VoidArity2(Method method, InvokeVoid2 invoker) {
+			super(method);
+			this.invoker = invoker;
+		}
+		@Override
+		public Object invoke(Object target, Object[] args) {
+			invoker.invoke(target, args[0], args[1]);
+			return null;
+		}
+	}
+
+	private static final class VoidArity3 extends MethodInvoker {
+		private final InvokeVoid3 invoker;
+		VoidArity3(Method method, InvokeVoid3 invoker) {
+			super(method);
+			this.invoker = invoker;
+		}
+		@Override
+		public Object invoke(Object target, Object[] args) {
+			invoker.invoke(target, args[0], args[1], args[2]);
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.IdentityHashMap;
+import java.util.Map;
+/**
+ * Resolves the {@link MethodInvoker} to use for a Method passed to an {@link InvocationHandler}. <p>
+ *
+ * All invokers are created up front. A dynamic proxy passes the same Method instance on each
+ * invocation of a given method, which allows resolving the invoker using an identity lookup,
+ * rather than {@link Method#equals(Object)}, once a Method instance has been seen. <p>
+ *
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class MethodInvokerCache {
+
+	private final Map<Method, MethodInvoker> invokerByMethod;
+	private volatile IdentityHashMap<Method, MethodInvoker> invokerByMethodInstance = new IdentityHashMap<>();
+
+	public MethodInvokerCache(Map<Method, MethodInvoker> invokerByMethod) {
+		this.invokerByMethod = invokerByMethod;
+	}
+
+	/**
+	 * Creates a MethodInvokerCache containing an invoker for each public method of a given type.
+	 *
+	 * @param type
+	 * @return
+	 */
+	public static MethodInvokerCache create(Class<?> type) {
+		return new MethodInvokerCache(MethodInvoker.createInvokers(type));
+	}
+
+	/**
+	 * @param method
+	 * @return the invoker for the given method, or null if this cache does not contain the given method.
+	 */
+	public MethodInvoker get(Method method) {
+		MethodInvoker invoker = invokerByMethodInstance.get(method);
+		if (invoker != null) {
+			return invoker;
+		}
+		invoker = invokerByMethod.get(method);
+		if (invoker != null) {
+			rememberMethodInstance(method, invoker);
+		}
+		return invoker;
+	}
+
+	private synchronized void rememberMethodInstance(Method method, MethodInvoker invoker) {
+		if (invokerByMethodInstance.size() >= 2 * invokerByMethod.size()) {
+			// Not invoked from a dynamic proxy, avoid growing without bound
+			return;
+		}
+		IdentityHashMap<Method, MethodInvoker> invokers = new IdentityHashMap<>(invokerByMethodInstance);
+		invokers.put(method, invoker);
+		invokerByMethodInstance = invokers;
+	}
+
+}
@@ -0,0 +1,508 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.util;
+
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.AASTORE;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ANEWARRAY;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SIPUSH;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+/**
+ * Generates classes implementing a given interface, to be used instead of a {@link java.lang.reflect.Proxy}
+ * when the overhead of the proxy (reflective dispatch and resolving the target for each invoked Method)
+ * is noticeable. Two kinds of stubs are supported: <p>
+ *
+ * <ul>
+ * <li>A dispatching stub, see {@link #createDispatchingStub(Class, Map, String)}, holds one {@link StubMethod} per
+ * method in a dedicated field, and invokes that StubMethod directly.</li>
+ * <li>A delegating stub, see {@link #createDelegatingStub(Class, Class, Object...)}, extends a given
+ * {@link DelegatingStub} and invokes each method directly on the current delegate.</li>
+ * </ul>
+ *
+ * Each stub class is generated once per api (and superclass) and defined in a class loader that delegates to the
+ * class loader of the api. Only public interfaces can be stubbed, see {@link #canGenerateStub(Class)}. <p>
+ *
+ * Note that methods that are also declared by {@link Object}, ie equals, hashCode and toString, are never forwarded
+ * to the StubMethod or delegate. <p>
+ *
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class StubGenerator {
+
+	private static final AtomicInteger nextStubId = new AtomicInteger(0);
+	private static final String OBJECT = Type.getInternalName(Object.class);
+	private static final String STUB_METHOD = Type.getInternalName(StubMethod.class);
+	private static final String STUB_METHOD_DESCRIPTOR = Type.getDescriptor(StubMethod.class);
+	private static final String INVOKE_DESCRIPTOR = Type.getMethodDescriptor(Type.getType(Object.class), Type.getType(Object[].class));
+	private static final String DESCRIPTION_FIELD = "description";
+
+	private static final ClassValue<Constructor<?>> dispatchingStubs = new ClassValue<Constructor<?>>() {
+		@Override
+		protected Constructor<?> computeValue(Class<?> api) {
+			return generateDispatchingStub(api);
+		}
+	};
+
+	private static final ClassValue<ConcurrentMap<Class<?>, Constructor<?>>> delegatingStubs = new ClassValue<ConcurrentMap<Class<?>, Constructor<?>>>() {
+		@Override
+		protected ConcurrentMap<Class<?>, Constructor<?>> computeValue(Class<?> api) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	private StubGenerator() {
+	}
+
+	/**
+	 * @param api
+	 * @return true if a stub can be generated for the given type, ie if it is a public interface
+	 * 		   and all types used in the signatures of its methods are public.
+	 */
+	public static boolean canGenerateStub(Class<?> api) {
+		if (!api.isInterface() || !Modifier.isPublic(api.getModifiers())) {
+			return false;
+		}
+		for (Method method : api.getMethods()) {
+			if (!isPublic(method.getReturnType()) || !isPublic(method.getParameterTypes())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isPublic(Class<?>... types) {
+		for (Class<?> type : types) {
+			while (type.isArray()) {
+				type = type.getComponentType();
+			}
+			if (!type.isPrimitive() && !Modifier.isPublic(type.getModifiers())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the methods that are implemented by a dispatching stub for the given api, ie the methods
+	 * that a StubMethod must be provided for when creating the stub.
+	 *
+	 * @param api
+	 * @return
+	 */
+	public static Collection<Method> getStubbedMethods(Class<?> api) {
+		return getStubbedMethods(api, Object.class).values();
+	}
+
+	/**
+	 * Creates a stub that implements each method of the given api by invoking the corresponding
+	 * {@link StubMethod}.
+	 *
+	 * @param api - the interface to implement
+	 * @param stubMethods - the StubMethod to invoke for each Method returned by {@link #getStubbedMethods(Class)}
+	 * @param description - returned by toString on the stub
+	 * @return
+	 * @throws IllegalArgumentException if no stub could be generated for the given api, or if a StubMethod is missing.
+	 */
+	public static <T> T createDispatchingStub(Class<T> api, Map<Method, ? extends StubMethod> stubMethods, String description) {
+		Constructor<?> constructor = getDispatchingStubConstructor(api);
+		Collection<Method> methods = getStubbedMethods(api);
+		StubMethod[] stubMethodByIndex = new StubMethod[methods.size()];
+		int index = 0;
+		for (Method method : methods) {
+			StubMethod stubMethod = stubMethods.get(method);
+			if (stubMethod == null) {
+				throw new IllegalArgumentException("No StubMethod provided for: " + ReflectionUtil.fullMethodName(method));
+			}
+			stubMethodByIndex[index++] = stubMethod;
+		}
+		return api.cast(newInstance(constructor, description, stubMethodByIndex));
+	}
+
+	/**
+	 * Creates a stub that extends the given superclass and implements each method of the given api
+	 * by invoking the same method on the current {@link DelegatingStub#getDelegate() delegate}. Methods
+	 * that are implemented by the superclass are not overridden. <p>
+	 *
+	 * The superclass must be public and declare exactly one public or protected constructor, which
+	 * is invoked with the given constructorArgs. <p>
+	 *
+	 * @param api - the interface to implement
+	 * @param superclass
+	 * @param constructorArgs
+	 * @return an instance of the superclass that implements the given api
+	 * @throws IllegalArgumentException if no stub could be generated for the given api and superclass.
+	 */
+	public static <S extends DelegatingStub> S createDelegatingStub(Class<?> api, Class<S> superclass, Object... constructorArgs) {
+		ConcurrentMap<Class<?>, Constructor<?>> stubsBySuperclass = delegatingStubs.get(api);
+		Constructor<?> constructor = stubsBySuperclass.get(superclass);
+		if (constructor == null) {
+			constructor = generateDelegatingStub(api, superclass);
+			Constructor<?> existing = stubsBySuperclass.putIfAbsent(superclass, constructor);
+			if (existing != null) {
+				constructor = existing;
+			}
+		}
+		return superclass.cast(newInstance(constructor, constructorArgs));
+	}
+
+	private static Constructor<?> getDispatchingStubConstructor(Class<?> api) {
+		try {
+			return dispatchingStubs.get(api);
+		} catch (IllegalArgumentException e) {
+			throw e;
+		} catch (RuntimeException | LinkageError e) {
+			throw new IllegalArgumentException("Failed to generate stub for: " + api.getName(), e);
+		}
+	}
+
+	private static Object newInstance(Constructor<?> constructor, Object... args) {
+		try {
+			return constructor.newInstance(args);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalArgumentException("Failed to create stub: " + constructor.getDeclaringClass().getName(), e.getCause());
+		} catch (InstantiationException | IllegalAccessException e) {
+			throw new IllegalArgumentException("Failed to create stub: " + constructor.getDeclaringClass().getName(), e);
+		}
+	}
+
+	private static Constructor<?> generateDispatchingStub(Class<?> api) {
+		assertCanGenerateStub(api);
+		String stubName = stubName(api, "AstrixStub");
+		String stubInternalName = stubName.replace('.', '/');
+		ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		classWriter.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, stubInternalName, null, OBJECT, new String[] { Type.getInternalName(api) });
+		classWriter.visitField(ACC_PRIVATE | ACC_FINAL, DESCRIPTION_FIELD, Type.getDescriptor(String.class), null, null).visitEnd();
+		Collection<Method> methods = getStubbedMethods(api);
+		for (int index = 0; index < methods.size(); index++) {
+			classWriter.visitField(ACC_PRIVATE | ACC_FINAL, stubMethodField(index), STUB_METHOD_DESCRIPTOR, null, null).visitEnd();
+		}
+
+		MethodVisitor constructor = classWriter.visitMethod(ACC_PUBLIC, "<init>",
+				Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(String.class), Type.getType(StubMethod[].class)), null, null);
+		constructor.visitCode();
+		constructor.visitVarInsn(ALOAD, 0);
+		constructor.visitMethodInsn(INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+		constructor.visitVarInsn(ALOAD, 0);
+		constructor.visitVarInsn(ALOAD, 1);
+		constructor.visitFieldInsn(PUTFIELD, stubInternalName, DESCRIPTION_FIELD, Type.getDescriptor(String.class));
+		for (int index = 0; index < methods.size(); index++) {
+			constructor.visitVarInsn(ALOAD, 0);
+			constructor.visitVarInsn(ALOAD, 2);
+			pushInt(constructor, index);
+			constructor.visitInsn(AALOAD);
+			constructor.visitFieldInsn(PUTFIELD, stubInternalName, stubMethodField(index), STUB_METHOD_DESCRIPTOR);
+		}
+		constructor.visitInsn(RETURN);
+		constructor.visitMaxs(0, 0);
+		constructor.visitEnd();
+
+		int index = 0;
+		for (Method method : methods) {
+			MethodVisitor mv = visitMethod(classWriter, method);
+			mv.visitCode();
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitFieldInsn(GETFIELD, stubInternalName, stubMethodField(index++), STUB_METHOD_DESCRIPTOR);
+			pushArgumentArray(mv, method.getParameterTypes());
+			mv.visitMethodInsn(INVOKEINTERFACE, STUB_METHOD, "invoke", INVOKE_DESCRIPTOR, true);
+			returnFromObject(mv, method.getReturnType());
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+
+		MethodVisitor toString = classWriter.visitMethod(ACC_PUBLIC, "toString", Type.getMethodDescriptor(Type.getType(String.class)), null, null);
+		toString.visitCode();
+		toString.visitVarInsn(ALOAD, 0);
+		toString.visitFieldInsn(GETFIELD, stubInternalName, DESCRIPTION_FIELD, Type.getDescriptor(String.class));
+		toString.visitInsn(ARETURN);
+		toString.visitMaxs(0, 0);
+		toString.visitEnd();
+		classWriter.visitEnd();
+
+		Class<?> stubClass = new StubClassLoader(api.getClassLoader(), Collections.<Class<?>>singletonList(StubMethod.class)).defineStub(stubName, classWriter.toByteArray());
+		try {
+			return stubClass.getConstructor(String.class, StubMethod[].class);
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static Constructor<?> generateDelegatingStub(Class<?> api, Class<? extends DelegatingStub> superclass) {
+		assertCanGenerateStub(api);
+		if (!Modifier.isPublic(superclass.getModifiers()) || Modifier.isFinal(superclass.getModifiers())) {
+			throw new IllegalArgumentException("Superclass of delegating stub must be public and non final: " + superclass.getName());
+		}
+		Constructor<?> superConstructor = getSuperConstructor(superclass);
+		String stubName = stubName(api, "AstrixDelegatingStub");
+		String stubInternalName = stubName.replace('.', '/');
+		String apiInternalName = Type.getInternalName(api);
+		String superInternalName = Type.getInternalName(superclass);
+		ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		classWriter.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, stubInternalName, null, superInternalName, new String[] { apiInternalName });
+
+		String constructorDescriptor = Type.getConstructorDescriptor(superConstructor);
+		MethodVisitor constructor = classWriter.visitMethod(ACC_PUBLIC, "<init>", constructorDescriptor, null, null);
+		constructor.visitCode();
+		constructor.visitVarInsn(ALOAD, 0);
+		loadArguments(constructor, superConstructor.getParameterTypes());
+		constructor.visitMethodInsn(INVOKESPECIAL, superInternalName, "<init>", constructorDescriptor, false);
+		constructor.visitInsn(RETURN);
+		constructor.visitMaxs(0, 0);
+		constructor.visitEnd();
+
+		for (Method method : getStubbedMethods(api, superclass).values()) {
+			MethodVisitor mv = visitMethod(classWriter, method);
+			mv.visitCode();
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitFieldInsn(GETFIELD, Type.getInternalName(DelegatingStub.class), "delegate", Type.getDescriptor(Object.class));
+			mv.visitTypeInsn(CHECKCAST, apiInternalName);
+			loadArguments(mv, method.getParameterTypes());
+			mv.visitMethodInsn(INVOKEINTERFACE, apiInternalName, method.getName(), Type.getMethodDescriptor(method), true);
+			mv.visitInsn(Type.getType(method.getReturnType()).getOpcode(IRETURN));
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		classWriter.visitEnd();
+
+		try {
+			List<Class<?>> astrixTypes = new ArrayList<>();
+			astrixTypes.add(superclass);
+			astrixTypes.add(DelegatingStub.class);
+			for (Class<?> parameterType : superConstructor.getParameterTypes()) {
+				if (!parameterType.isPrimitive() && !parameterType.isArray()) {
+					astrixTypes.add(parameterType);
+				}
+			}
+			Class<?> stubClass = new StubClassLoader(api.getClassLoader(), astrixTypes).defineStub(stubName, classWriter.toByteArray());
+			return stubClass.getConstructor(superConstructor.getParameterTypes());
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		} catch (RuntimeException | LinkageError e) {
+			throw new IllegalArgumentException("Failed to generate stub for: " + api.getName(), e);
+		}
+	}
+
+	private static void assertCanGenerateStub(Class<?> api) {
+		if (!canGenerateStub(api)) {
+			throw new IllegalArgumentException("Can only generate stubs for public interfaces with public method signatures: " + api.getName());
+		}
+	}
+
+	private static Constructor<?> getSuperConstructor(Class<?> superclass) {
+		List<Constructor<?>> accessibleConstructors = new ArrayList<>();
+		for (Constructor<?> constructor : superclass.getDeclaredConstructors()) {
+			if (Modifier.isPublic(constructor.getModifiers()) || Modifier.isProtected(constructor.getModifiers())) {
+				accessibleConstructors.add(constructor);
+			}
+		}
+		if (accessibleConstructors.size() != 1) {
+			throw new IllegalArgumentException("Superclass of delegating stub must declare exactly one public or protected constructor: " + superclass.getName());
+		}
+		return accessibleConstructors.get(0);
+	}
+
+	/*
+	 * Returns the methods to implement, keyed by name and descriptor (in order to
+	 * only implement a method once even if declared by several interfaces).
+	 */
+	private static Map<String, Method> getStubbedMethods(Class<?> api, Class<?> superclass) {
+		Map<String, Method> result = new TreeMap<>();
+		for (Method method : api.getMethods()) {
+			if (Modifier.isStatic(method.getModifiers()) || isImplementedBy(superclass, method)) {
+				continue;
+			}
+			String key = method.getName() + Type.getMethodDescriptor(method);
+			if (!result.containsKey(key)) {
+				result.put(key, method);
+			}
+		}
+		return result;
+	}
+
+	private static boolean isImplementedBy(Class<?> type, Method method) {
+		try {
+			Method implementation = type.getMethod(method.getName(), method.getParameterTypes());
+			return !Modifier.isAbstract(implementation.getModifiers());
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	private static String stubName(Class<?> api, String kind) {
+		return api.getName() + "$$" + kind + nextStubId.incrementAndGet();
+	}
+
+	private static String stubMethodField(int index) {
+		return "m" + index;
+	}
+
+	private static MethodVisitor visitMethod(ClassWriter classWriter, Method method) {
+		Class<?>[] exceptionTypes = method.getExceptionTypes();
+		String[] exceptions = new String[exceptionTypes.length];
+		for (int i = 0; i < exceptionTypes.length; i++) {
+			exceptions[i] = Type.getInternalName(exceptionTypes[i]);
+		}
+		return classWriter.visitMethod(ACC_PUBLIC, method.getName(), Type.getMethodDescriptor(method), null, exceptions);
+	}
+
+	private static void pushInt(MethodVisitor mv, int value) {
+		mv.visitIntInsn(SIPUSH, value);
+	}
+
+	private static void loadArguments(MethodVisitor mv, Class<?>[] parameterTypes) {
+		int slot = 1;
+		for (Class<?> parameterType : parameterTypes) {
+			Type type = Type.getType(parameterType);
+			mv.visitVarInsn(type.getOpcode(ILOAD), slot);
+			slot += type.getSize();
+		}
+	}
+
+	private static void pushArgumentArray(MethodVisitor mv, Class<?>[] parameterTypes) {
+		if (parameterTypes.length == 0) {
+			// Same as java.lang.reflect.Proxy
+			mv.visitInsn(ACONST_NULL);
+			return;
+		}
+		pushInt(mv, parameterTypes.length);
+		mv.visitTypeInsn(ANEWARRAY, OBJECT);
+		int slot = 1;
+		for (int i = 0; i < parameterTypes.length; i++) {
+			Type type = Type.getType(parameterTypes[i]);
+			mv.visitInsn(DUP);
+			pushInt(mv, i);
+			mv.visitVarInsn(type.getOpcode(ILOAD), slot);
+			box(mv, type);
+			mv.visitInsn(AASTORE);
+			slot += type.getSize();
+		}
+	}
+
+	private static void box(MethodVisitor mv, Type type) {
+		if (type.getSort() == Type.OBJECT || type.getSort() == Type.ARRAY) {
+			return;
+		}
+		Type boxedType = boxedType(type);
+		mv.visitMethodInsn(INVOKESTATIC, boxedType.getInternalName(), "valueOf", Type.getMethodDescriptor(boxedType, type), false);
+	}
+
+	private static void returnFromObject(MethodVisitor mv, Class<?> returnType) {
+		Type type = Type.getType(returnType);
+		switch (type.getSort()) {
+		case Type.VOID:
+			mv.visitInsn(POP);
+			mv.visitInsn(RETURN);
+			return;
+		case Type.OBJECT:
+		case Type.ARRAY:
+			if (!returnType.equals(Object.class)) {
+				mv.visitTypeInsn(CHECKCAST, type.getInternalName());
+			}
+			mv.visitInsn(ARETURN);
+			return;
+		default:
+			Type boxedType = boxedType(type);
+			mv.visitTypeInsn(CHECKCAST, boxedType.getInternalName());
+			mv.visitMethodInsn(INVOKEVIRTUAL, boxedType.getInternalName(), type.getClassName() + "Value", Type.getMethodDescriptor(type), false);
+			mv.visitInsn(type.getOpcode(IRETURN));
+		}
+	}
+
+	private static Type boxedType(Type primitiveType) {
+		switch (primitiveType.getSort()) {
+		case Type.BOOLEAN: return Type.getType(Boolean.class);
+		case Type.CHAR: return Type.getType(Character.class);
+		case Type.BYTE: return Type.getType(Byte.class);
+		case Type.SHORT: return Type.getType(Short.class);
+		case Type.INT: return Type.getType(Integer.class);
+		case Type.FLOAT: return Type.getType(Float.class);
+		case Type.LONG: return Type.getType(Long.class);
+		case Type.DOUBLE: return Type.getType(Double.class);
+		default: throw new IllegalArgumentException("Not a primitive type: " + primitiveType);
+		}
+	}
+
+	/*
+	 * Defines a single stub class. All types referenced by the stubbed api are resolved using the class loader
+	 * of the api, whereas the given astrix types are resolved to the exact same classes as used by this generator.
+	 */
+	private static final class StubClassLoader extends ClassLoader {
+
+		private final Map<String, Class<?>> astrixTypes = new HashMap<>();
+
+		StubClassLoader(ClassLoader apiClassLoader, List<Class<?>> astrixTypes) {
+			super(apiClassLoader);
+			for (Class<?> astrixType : astrixTypes) {
+				this.astrixTypes.put(astrixType.getName(), astrixType);
+			}
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			Class<?> astrixType = astrixTypes.get(name);
+			if (astrixType != null) {
+				return astrixType;
+			}
+			return super.loadClass(name, resolve);
+		}
+
+		Class<?> defineStub(String name, byte[] classFile) {
+			return defineClass(name, classFile, 0, classFile.length);
+		}
+	}
+
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.util;
+/**
+ * Handles invocations of a single method on a stub created using
+ * {@link StubGenerator#createDispatchingStub(Class, java.util.Map, String)}. <p>
+ *
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public interface StubMethod {
+
+	/**
+	 * @param args - the arguments passed to the stub, or null if the method has no parameters
+	 * @return the value to return from the stub, ignored for void methods
+	 * @throws Throwable - propagated as is to the caller of the stub
+	 */
+	Object invoke(Object[] args) throws Throwable;
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads when running on a jvm that supports them (java 21 or later). <p>
+ * 
+ * Astrix is compiled for java 8, hence the virtual thread api is accessed reflectively. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class VirtualThreads {
+	
+	private static final Method OF_VIRTUAL = findOfVirtual();
+	
+	private VirtualThreads() {
+	}
+	
+	private static Method findOfVirtual() {
+		try {
+			return Thread.class.getMethod("ofVirtual");
+		} catch (NoSuchMethodException | SecurityException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * @return true if the running jvm supports virtual threads
+	 */
+	public static boolean isSupported() {
+		return OF_VIRTUAL != null;
+	}
+	
+	/**
+	 * Creates a ThreadFactory that starts each task on a new virtual thread. Thread 
+	 * names will be namePrefix-&lt;threadId&gt;. <p>
+	 * 
+	 * @param namePrefix
+	 * @return a ThreadFactory creating virtual threads, or null if virtual threads are not supported
+	 */
+	public static ThreadFactory factory(String namePrefix) {
+		if (OF_VIRTUAL == null) {
+			return null;
+		}
+		try {
+			Object builder = OF_VIRTUAL.invoke(null);
+			Class<?> builderType = OF_VIRTUAL.getReturnType();
+			builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix + "-", 1L);
+			return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+}
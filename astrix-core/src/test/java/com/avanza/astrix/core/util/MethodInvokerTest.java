@@ -0,0 +1,156 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class MethodInvokerTest {
+
+	public interface Calculator {
+		int add(int a, int b);
+		String concat(String... parts);
+		void reset();
+		String name();
+		long sum(int a, long b, short c, byte d);
+	}
+
+	public static class CalculatorImpl implements Calculator {
+		int resetCount = 0;
+		@Override
+		public int add(int a, int b) {
+			return a + b;
+		}
+		@Override
+		public String concat(String... parts) {
+			StringBuilder result = new StringBuilder();
+			for (String part : parts) {
+				result.append(part);
+			}
+			return result.toString();
+		}
+		@Override
+		public void reset() {
+			resetCount++;
+		}
+		@Override
+		public String name() {
+			throw new IllegalStateException("no name");
+		}
+		@Override
+		public long sum(int a, long b, short c, byte d) {
+			return a + b + c + d;
+		}
+	}
+
+	public static String staticHello(String name) {
+		return "hello " + name;
+	}
+
+	private static class NonPublicCalculator extends CalculatorImpl {
+		@SuppressWarnings("unused")
+		public int multiply(int a, int b) {
+			return a * b;
+		}
+	}
+
+	@Test
+	public void invokesMethodWithPrimitiveArgumentsAndReturnType() throws Throwable {
+		MethodInvoker invoker = MethodInvoker.create(Calculator.class.getMethod("add", int.class, int.class));
+		assertEquals(5, invoker.invoke(new CalculatorImpl(), new Object[] { 2, 3 }));
+	}
+
+	@Test
+	public void generatesInvokerForPublicMethodsWithFewArguments() throws Throwable {
+		MethodInvoker add = MethodInvoker.create(Calculator.class.getMethod("add", int.class, int.class));
+		MethodInvoker sum = MethodInvoker.create(Calculator.class.getMethod("sum", int.class, long.class, short.class, byte.class));
+		assertFalse(add.toString().startsWith("MethodHandleInvoker"));
+		assertTrue(sum.toString().startsWith("MethodHandleInvoker"));
+	}
+
+	@Test
+	public void invokesMethodWithManyArguments() throws Throwable {
+		MethodInvoker invoker = MethodInvoker.create(Calculator.class.getMethod("sum", int.class, long.class, short.class, byte.class));
+		assertEquals(10L, invoker.invoke(new CalculatorImpl(), new Object[] { 1, 2L, (short) 3, (byte) 4 }));
+	}
+
+	@Test
+	public void varArgsParameterIsPassedAsArray() throws Throwable {
+		MethodInvoker invoker = MethodInvoker.create(Calculator.class.getMethod("concat", String[].class));
+		assertEquals("ab", invoker.invoke(new CalculatorImpl(), new Object[] { new String[] { "a", "b" } }));
+	}
+
+	@Test
+	public void voidMethodReturnsNull() throws Throwable {
+		CalculatorImpl calculator = new CalculatorImpl();
+		MethodInvoker invoker = MethodInvoker.create(Calculator.class.getMethod("reset"));
+		assertNull(invoker.invoke(calculator, null));
+		assertNull(invoker.invoke(calculator, new Object[0]));
+		assertEquals(2, calculator.resetCount);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void exceptionsThrownByInvokedMethodAreNotWrapped() throws Throwable {
+		MethodInvoker invoker = MethodInvoker.create(Calculator.class.getMethod("name"));
+		invoker.invoke(new CalculatorImpl(), null);
+	}
+
+	@Test
+	public void invokesStaticMethod() throws Throwable {
+		MethodInvoker invoker = MethodInvoker.create(MethodInvokerTest.class.getMethod("staticHello", String.class));
+		assertEquals("hello kalle", invoker.invoke(null, new Object[] { "kalle" }));
+	}
+
+	@Test
+	public void invokesMethodDeclaredInNonPublicClass() throws Throwable {
+		Method multiply = NonPublicCalculator.class.getMethod("multiply", int.class, int.class);
+		multiply.setAccessible(true);
+		MethodInvoker invoker = MethodInvoker.create(multiply);
+		assertEquals(6, invoker.invoke(new NonPublicCalculator(), new Object[] { 2, 3 }));
+	}
+
+	@Test
+	public void methodInvokerCacheResolvesInvokersForMethodsPassedToInvocationHandler() throws Throwable {
+		final MethodInvokerCache invokers = MethodInvokerCache.create(Calculator.class);
+		final CalculatorImpl target = new CalculatorImpl();
+		Calculator proxy = ReflectionUtil.newProxy(Calculator.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				return invokers.get(method).invoke(target, args);
+			}
+		});
+		assertEquals(5, proxy.add(2, 3));
+		assertEquals(7, proxy.add(3, 4));
+		assertNull(invokers.get(Object.class.getMethod("hashCode")));
+	}
+
+	@Test
+	public void createsInvokerForEachPublicMethodOfType() throws Throwable {
+		Map<Method, MethodInvoker> invokers = MethodInvoker.createInvokers(Calculator.class);
+		assertEquals(5, invokers.size());
+		Method add = Calculator.class.getMethod("add", int.class, int.class);
+		assertEquals(add, invokers.get(add).getMethod());
+	}
+
+}
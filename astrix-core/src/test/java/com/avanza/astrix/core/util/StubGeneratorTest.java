@@ -0,0 +1,182 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class StubGeneratorTest {
+
+	public interface PingService {
+		String ping(String msg);
+		int add(int a, long b);
+		void reset();
+		double[] values(char c, boolean b, float f, double d);
+		void close() throws IOException;
+	}
+
+	public interface ExtendedPingService extends PingService {
+		String ping(String msg);
+		String echo(String msg);
+	}
+
+	interface PackagePrivateService {
+		String ping(String msg);
+	}
+
+	public static class PingServiceImpl implements PingService {
+		int resetCount = 0;
+		@Override
+		public String ping(String msg) {
+			return msg;
+		}
+		@Override
+		public int add(int a, long b) {
+			return (int) (a + b);
+		}
+		@Override
+		public void reset() {
+			resetCount++;
+		}
+		@Override
+		public double[] values(char c, boolean b, float f, double d) {
+			return new double[] { c, b ? 1 : 0, f, d };
+		}
+		@Override
+		public void close() throws IOException {
+			throw new IOException("closed");
+		}
+	}
+
+	public static abstract class SwappableStub extends DelegatingStub {
+		private final String name;
+		public SwappableStub(String name, Object delegate) {
+			this.name = name;
+			setDelegate(delegate);
+		}
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	@Test
+	public void dispatchingStubInvokesStubMethodForEachMethod() throws Exception {
+		final PingServiceImpl impl = new PingServiceImpl();
+		Map<Method, StubMethod> stubMethods = new HashMap<>();
+		for (final Method method : StubGenerator.getStubbedMethods(PingService.class)) {
+			stubMethods.put(method, new StubMethod() {
+				@Override
+				public Object invoke(Object[] args) throws Throwable {
+					return ReflectionUtil.invokeMethod(method, impl, args);
+				}
+			});
+		}
+		PingService stub = StubGenerator.createDispatchingStub(PingService.class, stubMethods, "PingStub");
+
+		assertEquals("foo", stub.ping("foo"));
+		assertEquals(5, stub.add(2, 3L));
+		stub.reset();
+		assertEquals(1, impl.resetCount);
+		assertArrayEquals(new double[] { 'a', 1, 2.5f, 3.5 }, stub.values('a', true, 2.5f, 3.5), 0.0);
+		assertEquals("PingStub", stub.toString());
+		assertFalse(java.lang.reflect.Proxy.isProxyClass(stub.getClass()));
+	}
+
+	@Test
+	public void dispatchingStubPassesNullArgumentsForMethodsWithoutParameters() throws Exception {
+		final Object[][] lastArgs = new Object[1][];
+		Map<Method, StubMethod> stubMethods = new HashMap<>();
+		for (Method method : StubGenerator.getStubbedMethods(PingService.class)) {
+			stubMethods.put(method, new StubMethod() {
+				@Override
+				public Object invoke(Object[] args) throws Throwable {
+					lastArgs[0] = args;
+					return null;
+				}
+			});
+		}
+		PingService stub = StubGenerator.createDispatchingStub(PingService.class, stubMethods, "PingStub");
+		stub.reset();
+		assertNull(lastArgs[0]);
+		stub.ping("foo");
+		assertArrayEquals(new Object[] { "foo" }, lastArgs[0]);
+	}
+
+	@Test(expected = IOException.class)
+	public void exceptionsThrownByStubMethodArePropagatedAsIs() throws Exception {
+		Map<Method, StubMethod> stubMethods = new HashMap<>();
+		for (Method method : StubGenerator.getStubbedMethods(PingService.class)) {
+			stubMethods.put(method, new StubMethod() {
+				@Override
+				public Object invoke(Object[] args) throws Throwable {
+					throw new IOException("closed");
+				}
+			});
+		}
+		StubGenerator.createDispatchingStub(PingService.class, stubMethods, "PingStub").close();
+	}
+
+	@Test
+	public void methodsDeclaredInSeveralInterfacesAreOnlyStubbedOnce() throws Exception {
+		assertEquals(6, StubGenerator.getStubbedMethods(ExtendedPingService.class).size());
+	}
+
+	@Test
+	public void delegatingStubInvokesCurrentDelegate() throws Exception {
+		PingServiceImpl first = new PingServiceImpl();
+		SwappableStub stub = StubGenerator.createDelegatingStub(PingService.class, SwappableStub.class, "pingStub", first);
+		PingService ping = (PingService) stub;
+
+		assertEquals("foo", ping.ping("foo"));
+		ping.reset();
+		assertEquals(1, first.resetCount);
+		assertEquals("pingStub", stub.toString());
+
+		PingServiceImpl second = new PingServiceImpl();
+		stub.setDelegate(second);
+		ping.reset();
+		assertEquals(1, first.resetCount);
+		assertEquals(1, second.resetCount);
+		assertSame(second, stub.getDelegate());
+	}
+
+	@Test
+	public void stubClassIsOnlyGeneratedOncePerApi() throws Exception {
+		SwappableStub first = StubGenerator.createDelegatingStub(PingService.class, SwappableStub.class, "first", new PingServiceImpl());
+		SwappableStub second = StubGenerator.createDelegatingStub(PingService.class, SwappableStub.class, "second", new PingServiceImpl());
+		assertSame(first.getClass(), second.getClass());
+	}
+
+	@Test
+	public void canOnlyGenerateStubsForPublicInterfaces() throws Exception {
+		assertTrue(StubGenerator.canGenerateStub(PingService.class));
+		assertFalse(StubGenerator.canGenerateStub(PackagePrivateService.class));
+		assertFalse(StubGenerator.canGenerateStub(PingServiceImpl.class));
+	}
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class VirtualThreadsTest {
+
+	@Test
+	public void factoryIsOnlyCreatedWhenVirtualThreadsAreSupported() throws Exception {
+		ThreadFactory factory = VirtualThreads.factory("test");
+		if (!VirtualThreads.isSupported()) {
+			assertNull(factory);
+			return;
+		}
+		final CountDownLatch done = new CountDownLatch(1);
+		final AtomicReference<String> threadName = new AtomicReference<>();
+		factory.newThread(new Runnable() {
+			@Override
+			public void run() {
+				threadName.set(Thread.currentThread().getName());
+				done.countDown();
+			}
+		}).start();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals("test-1", threadName.get());
+	}
+
+}
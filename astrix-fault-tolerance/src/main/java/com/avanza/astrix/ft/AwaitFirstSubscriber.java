@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.ft;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+
+import rx.Subscriber;
+import rx.exceptions.Exceptions;
+/**
+ * Subscriber used to wait for the first item emitted by an Observable. Has the same semantics
+ * as Observable.toBlocking().first(), but without creating any intermediate operators. If the
+ * item is emitted on the subscribing thread the result is available without blocking. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ * @param <T>
+ */
+final class AwaitFirstSubscriber<T> extends Subscriber<T> {
+	
+	private final CountDownLatch done = new CountDownLatch(1);
+	private volatile boolean hasValue = false;
+	private volatile T value;
+	private volatile Throwable error;
+
+	@Override
+	public void onNext(T t) {
+		if (hasValue) {
+			return;
+		}
+		this.value = t;
+		this.hasValue = true;
+		done.countDown();
+	}
+
+	@Override
+	public void onError(Throwable e) {
+		this.error = e;
+		done.countDown();
+	}
+
+	@Override
+	public void onCompleted() {
+		done.countDown();
+	}
+	
+	/**
+	 * Waits until the first item is emitted, or the Observable terminates. <p>
+	 * 
+	 * @return the first item emitted 
+	 * @throws NoSuchElementException if the Observable completed without emitting any item. 
+	 * @throws RuntimeException - the error emitted by the Observable, checked exceptions are wrapped in a RuntimeException
+	 */
+	T awaitFirst() {
+		if (done.getCount() > 0) {
+			try {
+				done.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while waiting for subscription to complete.", e);
+			}
+		}
+		if (hasValue) {
+			return value;
+		}
+		if (error != null) {
+			throw Exceptions.propagate(error);
+		}
+		throw new NoSuchElementException("Sequence contains no elements");
+	}
+
+}
@@ -16,8 +16,14 @@
 package com.avanza.astrix.ft;
 
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 import rx.Observable;
+import rx.Observable.OnSubscribe;
+import rx.Observer;
+import rx.Subscriber;
+import rx.functions.Action1;
+import rx.observers.SerializedSubscriber;
 
 import com.avanza.astrix.beans.core.AstrixBeanSettings;
 import com.avanza.astrix.beans.core.AstrixSettings;
@@ -26,6 +32,7 @@ import com.avanza.astrix.beans.publish.PublishedAstrixBean;
 import com.avanza.astrix.config.DynamicBooleanProperty;
 import com.avanza.astrix.config.DynamicConfig;
 import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.core.AstrixDeadline;
 import com.avanza.astrix.core.function.Supplier;
 import com.netflix.hystrix.HystrixCommandGroupKey;
 import com.netflix.hystrix.HystrixCommandKey;
@@ -33,6 +40,11 @@ import com.netflix.hystrix.HystrixCommandProperties;
 import com.netflix.hystrix.HystrixObservableCommand.Setter;
 import com.netflix.hystrix.HystrixThreadPoolProperties;
 /**
+ * Applies fault tolerance to the invocations of a given bean. <p>
+ * 
+ * Each protected invocation is executed with an {@link AstrixDeadline} attached, defined by the timeout
+ * of the bean, or by the deadline already attached to the invoking thread if that expires earlier. The 
+ * deadline is propagated to the server by remote service invocations. <p>
  * 
  * @author Elias Lindholm (elilin)
  *
@@ -59,19 +71,127 @@ public class BeanFaultTolerance {
 		if (!faultToleranceEnabled()) {
 			return observable.get();
 		}
-		Setter setter = Setter.withGroupKey(getGroupKey())
-				  .andCommandKey(getCommandKey())
-				  .andCommandPropertiesDefaults(com.netflix.hystrix.HystrixCommandProperties.Setter()
-						  .withExecutionTimeoutInMilliseconds(getTimeoutMillis())
-						  .withExecutionIsolationSemaphoreMaxConcurrentRequests(settings.getSemaphoreMaxConcurrentRequests()));
-		return provider.observe(observable, setter);
+		return provider.observe(withDeadline(observable), createObservableSetter(settings));
+	}
+	
+	/**
+	 * Protects an Observable that emits multiple items. Each item is emitted as soon as it's
+	 * emitted by the underlying Observable. <p>
+	 * 
+	 * The timeout used by {@link #observe(Supplier, HystrixObservableCommandSettings)} only relates to 
+	 * the first emitted item. The timeout used by this method applies to the entire stream, i.e the returned
+	 * Observable fails if the underlying Observable does not complete in time, even if some items were
+	 * already emitted. <p>
+	 * 
+	 * @param stream
+	 * @param settings
+	 * @return
+	 */
+	public <T> Observable<T> observeStream(final Supplier<Observable<T>> stream, final HystrixObservableCommandSettings settings) {
+		if (!faultToleranceEnabled()) {
+			return stream.get();
+		}
+		return Observable.create(new OnSubscribe<T>() {
+			@Override
+			public void call(Subscriber<? super T> t1) {
+				final Subscriber<T> subscriber = new SerializedSubscriber<>(t1);
+				// The protected command emits a single item when the underlying stream completes
+				Observable<Integer> streamCompleted = observe(new Supplier<Observable<Integer>>() {
+					@Override
+					public Observable<Integer> get() {
+						return stream.get().doOnNext(new Action1<T>() {
+							@Override
+							public void call(T item) {
+								subscriber.onNext(item);
+							}
+						}).count();
+					}
+				}, settings);
+				t1.add(streamCompleted.subscribe(new Observer<Integer>() {
+					@Override
+					public void onCompleted() {
+						subscriber.onCompleted();
+					}
+					@Override
+					public void onError(Throwable e) {
+						subscriber.onError(e);
+					}
+					@Override
+					public void onNext(Integer itemCount) {
+					}
+				}));
+			}
+		});
+	}
+	
+	/**
+	 * Same as observe(observable, settings).toBlocking().first(), but lets the BeanFaultToleranceProvider
+	 * wait for the result without composing additional operators on the Observable.
+	 * 
+	 * @param observable
+	 * @param settings
+	 * @return
+	 */
+	public <T> T await(Supplier<Observable<T>> observable, HystrixObservableCommandSettings settings) {
+		if (!faultToleranceEnabled()) {
+			AwaitFirstSubscriber<T> subscriber = new AwaitFirstSubscriber<>();
+			observable.get().subscribe(subscriber);
+			return subscriber.awaitFirst();
+		}
+		return provider.await(withDeadline(observable), createObservableSetter(settings));
 	}
 	
 	public <T> T execute(final CheckedCommand<T> command, HystrixCommandSettings settings) throws Throwable {
 		if (!faultToleranceEnabled()) {
 			return command.call();
 		} 
-		return provider.execute(command, createHystrixConfiguration(settings));
+		return provider.execute(withDeadline(command), createHystrixConfiguration(settings));
+	}
+	
+	/*
+	 * The deadline is created on the invoking thread, but the supplier/command might be executed 
+	 * by another thread, for instance a hystrix thread, which the deadline is attached to. 
+	 */
+	private <T> Supplier<T> withDeadline(final Supplier<T> supplier) {
+		final AstrixDeadline deadline = createDeadline();
+		return new Supplier<T>() {
+			@Override
+			public T get() {
+				AstrixDeadline previous = AstrixDeadline.attach(deadline);
+				try {
+					return supplier.get();
+				} finally {
+					AstrixDeadline.restore(previous);
+				}
+			}
+		};
+	}
+	
+	private <T> CheckedCommand<T> withDeadline(final CheckedCommand<T> command) {
+		final AstrixDeadline deadline = createDeadline();
+		return new CheckedCommand<T>() {
+			@Override
+			public T call() throws Throwable {
+				AstrixDeadline previous = AstrixDeadline.attach(deadline);
+				try {
+					return command.call();
+				} finally {
+					AstrixDeadline.restore(previous);
+				}
+			}
+		};
+	}
+	
+	private AstrixDeadline createDeadline() {
+		return AstrixDeadline.after(getTimeoutMillis(), TimeUnit.MILLISECONDS).earliest(AstrixDeadline.current());
+	}
+	
+	private Setter createObservableSetter(HystrixObservableCommandSettings settings) {
+		return Setter.withGroupKey(getGroupKey())
+				  .andCommandKey(getCommandKey())
+				  .andCommandPropertiesDefaults(com.netflix.hystrix.HystrixCommandProperties.Setter()
+						  .withExecutionTimeoutInMilliseconds(getTimeoutMillis())
+						  .withExecutionIsolationSemaphoreMaxConcurrentRequests(settings.getSemaphoreMaxConcurrentRequests()));
 	}
 	
 	private com.netflix.hystrix.HystrixCommand.Setter createHystrixConfiguration(HystrixCommandSettings settings) {
@@ -27,5 +27,18 @@ import com.netflix.hystrix.HystrixObservableCommand.Setter;
 @AstrixStrategy(HystrixBeanFaultToleranceProvider.class)
 public interface BeanFaultToleranceProvider {
 	<T> Observable<T> observe(final Supplier<Observable<T>> observableFactory, Setter settings);
+	/**
+	 * Executes the Observable created by the given factory with the same fault tolerance as {@link #observe(Supplier, Setter)},
+	 * and waits for the first emitted item. <p>
+	 * 
+	 * The default implementation blocks on the Observable returned by {@link #observe(Supplier, Setter)}. <p>
+	 * 
+	 * @param observableFactory
+	 * @param settings
+	 * @return
+	 */
+	default <T> T await(final Supplier<Observable<T>> observableFactory, Setter settings) {
+		return observe(observableFactory, settings).toBlocking().first();
+	}
 	<T> T execute(CheckedCommand<T> command, com.netflix.hystrix.HystrixCommand.Setter settings) throws Throwable;
 }
\ No newline at end of file
@@ -34,6 +34,11 @@ public class HystrixBeanFaultToleranceProvider implements BeanFaultToleranceProv
 		return HystrixObservableCommandFacade.observe(observableFactory, settings);
 	}
 
+	@Override
+	public <T> T await(Supplier<Observable<T>> observableFactory, Setter settings) {
+		return HystrixObservableCommandFacade.await(observableFactory, settings);
+	}
+
 	@Override
 	public <T> T execute(CheckedCommand<T> command, com.netflix.hystrix.HystrixCommand.Setter settings)
 			throws Throwable {
@@ -22,6 +22,8 @@ import org.kohsuke.MetaInfServices;
 
 import com.avanza.astrix.beans.inject.AstrixInject;
 import com.avanza.astrix.beans.publish.PublishedAstrixBean;
+import com.avanza.astrix.core.util.MethodInvoker;
+import com.avanza.astrix.core.util.MethodInvokerCache;
 import com.avanza.astrix.core.util.ReflectionUtil;
 
 /**
@@ -40,29 +42,36 @@ public class HystrixFaultToleranceProxyProvider implements BeanFaultTolerancePro
 	}
 	@Override
 	public <T> T addFaultToleranceProxy(PublishedAstrixBean<T> beanDefinition, T rawProvider) {
-		return ReflectionUtil.newProxy(beanDefinition.getBeanKey().getBeanType(), 
-									   new HystrixFaultToleranceProxy(rawProvider, faultToleranceFactory.create(beanDefinition), new HystrixCommandSettings()));
+		Class<T> beanType = beanDefinition.getBeanKey().getBeanType();
+		return ReflectionUtil.newProxy(beanType, 
+									   new HystrixFaultToleranceProxy(rawProvider, MethodInvokerCache.create(beanType), faultToleranceFactory.create(beanDefinition), new HystrixCommandSettings()));
 	}
 	
 	private static class HystrixFaultToleranceProxy implements InvocationHandler {
 
 		private final Object provider;
+		private final MethodInvokerCache invokers;
 		private final BeanFaultTolerance faultTolerance;
 		private final HystrixCommandSettings settings;
 		
-		public HystrixFaultToleranceProxy(Object rawProvider,
+		public HystrixFaultToleranceProxy(Object rawProvider, MethodInvokerCache invokers,
 				BeanFaultTolerance faultTolerance, HystrixCommandSettings settings) {
 			this.provider = rawProvider;
+			this.invokers = invokers;
 			this.faultTolerance = faultTolerance;
 			this.settings = settings;
 		}
 
 		@Override
 		public Object invoke(Object proxy, final Method method, final Object[] args) throws Throwable {
+			final MethodInvoker invoker = invokers.get(method);
 			return faultTolerance.execute(new CheckedCommand<Object>() {
 				@Override
 				public Object call() throws Throwable {
-					return ReflectionUtil.invokeMethod(method, provider, args);
+					if (invoker == null) {
+						return ReflectionUtil.invokeMethod(method, provider, args);
+					}
+					return invoker.invoke(provider, args);
 				}
 			}, settings);
 		}
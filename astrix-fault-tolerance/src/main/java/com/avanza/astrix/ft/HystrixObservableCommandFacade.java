@@ -16,6 +16,7 @@
 package com.avanza.astrix.ft;
 
 import rx.Observable;
+import rx.exceptions.Exceptions;
 import rx.functions.Func1;
 
 import com.avanza.astrix.core.ServiceUnavailableException;
@@ -32,68 +33,7 @@ import com.netflix.hystrix.exception.HystrixRuntimeException;
 class HystrixObservableCommandFacade<T> {
 
 	public static <T> Observable<T> observe(final Supplier<Observable<T>> observableFactory, Setter settings) {
-		Observable<Result<T>> faultToleranceProtectedObservable = new HystrixObservableCommand<Result<T>>(settings) {
-			@Override
-			protected Observable<Result<T>> construct() {
-				return observableFactory.get().map(new Func1<T, Result<T>>() {
-					@Override
-					public Result<T> call(T t1) {
-						return Result.success(t1);
-					}
-				}).onErrorResumeNext(new Func1<Throwable, Observable<? extends Result<T>>>() {
-					@Override
-					public Observable<? extends Result<T>> call(Throwable t1) {
-						if (t1 instanceof ServiceUnavailableException) {
-							return Observable.error(t1);
-						}
-						// Wrap all exception thrown by underlying observable
-						// in Result.exception. This will by-pass hystrix
-						// circuit-breaker logic and not count as a failure.
-						// I.e we don't want the circuit-breaker to open 
-						// due to exceptions thrown by the underlying service.
-						return Observable.just(Result.<T>exception(t1));
-					}
-				});
-			}
-			
-			@Override
-			protected Observable<Result<T>> resumeWithFallback() {
-				/* 
-				 * This method will will be invoked in any of these circumstances:
-				 *  - Underlying observable did not emit event before timeout, "service timeout"
-				 *  - Circuit Breaker rejected subscription to underlying observable, "circuit open"
-				 *  - Bulk Head rejected subscription to underlying observable, "too many outstanding requests"
-				 *  - Underlying observable threw ServiceUnavailableException
-				 *  
-				 *  Either way, just return a ServiceUnavailableException.
-				 * 
-				 */
-				return Observable.just(Result.<T>exception(createServiceUnavailableException()));
-			}
-
-			private ServiceUnavailableException createServiceUnavailableException() {
-				if (isResponseRejected()) {
-					return new ServiceUnavailableException(String.format("cause=%s service=%s", 
-															"REJECTED_EXECUTION", getCommandKey().name()));
-				}
-				if (isResponseTimedOut()) {
-					return new ServiceUnavailableException(String.format("cause=%s service=%s executionTime=%s", 
-															"TIMEOUT", getCommandKey().name(), getExecutionTimeInMilliseconds()));
-				}
-				if (isResponseShortCircuited()) {
-					return new ServiceUnavailableException(String.format("cause=%s service=%s", 
-															"SHORT_CIRCUITED", getCommandKey().name()));
-				}
-				if (isFailedExecution() && (getFailedExecutionException() instanceof ServiceUnavailableException)) {
-					ServiceUnavailableException result = (ServiceUnavailableException) getFailedExecutionException();
-					appendStackTrace(result, new ServiceUnavailableException(String.format("service=%s", getCommandKey().name())));
-					return result;
-				}
-				return new ServiceUnavailableException(String.format("cause=%s service=%s", 
-															"UNKNOWN", getCommandKey().name()));
-			}
-			
-		}.observe(); // Eagerly start execution of underlying observable
+		Observable<Result<T>> faultToleranceProtectedObservable = new FaultToleranceCommand<T>(observableFactory, settings).observe(); // Eagerly start execution of underlying observable
 		return faultToleranceProtectedObservable.flatMap(new Func1<Result<T>, Observable<T>>() {
 			@Override
 			public Observable<T> call(Result<T> t1) {
@@ -111,6 +51,100 @@ class HystrixObservableCommandFacade<T> {
 		});
 	}
 	
+	
+	/**
+	 * Executes the Observable created by the given factory with the same fault tolerance as {@link #observe(Supplier, Setter)}, and
+	 * waits for the first emitted item. <p>
+	 * 
+	 * Same as observe(observableFactory, settings).toBlocking().first(), but avoids creating the operators
+	 * required to unwrap the result of the underlying HystrixObservableCommand asynchronously. <p>
+	 * 
+	 * @param observableFactory
+	 * @param settings
+	 * @return
+	 */
+	public static <T> T await(final Supplier<Observable<T>> observableFactory, Setter settings) {
+		AwaitFirstSubscriber<Result<T>> subscriber = new AwaitFirstSubscriber<>();
+		new FaultToleranceCommand<T>(observableFactory, settings).toObservable().subscribe(subscriber);
+		Result<T> result;
+		try {
+			result = subscriber.awaitFirst();
+		} catch (HystrixRuntimeException e) {
+			throw Exceptions.propagate(e.getCause());
+		}
+		return result.get();
+	}
+	
+	private static class FaultToleranceCommand<T> extends HystrixObservableCommand<Result<T>> {
+		
+		private final Supplier<Observable<T>> observableFactory;
+		
+		public FaultToleranceCommand(Supplier<Observable<T>> observableFactory, Setter settings) {
+			super(settings);
+			this.observableFactory = observableFactory;
+		}
+
+		@Override
+		protected Observable<Result<T>> construct() {
+			return observableFactory.get().map(new Func1<T, Result<T>>() {
+				@Override
+				public Result<T> call(T t1) {
+					return Result.success(t1);
+				}
+			}).onErrorResumeNext(new Func1<Throwable, Observable<? extends Result<T>>>() {
+				@Override
+				public Observable<? extends Result<T>> call(Throwable t1) {
+					if (t1 instanceof ServiceUnavailableException) {
+						return Observable.error(t1);
+					}
+					// Wrap all exception thrown by underlying observable
+					// in Result.exception. This will by-pass hystrix
+					// circuit-breaker logic and not count as a failure.
+					// I.e we don't want the circuit-breaker to open 
+					// due to exceptions thrown by the underlying service.
+					return Observable.just(Result.<T>exception(t1));
+				}
+			});
+		}
+		
+		@Override
+		protected Observable<Result<T>> resumeWithFallback() {
+			/* 
+			 * This method will will be invoked in any of these circumstances:
+			 *  - Underlying observable did not emit event before timeout, "service timeout"
+			 *  - Circuit Breaker rejected subscription to underlying observable, "circuit open"
+			 *  - Bulk Head rejected subscription to underlying observable, "too many outstanding requests"
+			 *  - Underlying observable threw ServiceUnavailableException
+			 *  
+			 *  Either way, just return a ServiceUnavailableException.
+			 * 
+			 */
+			return Observable.just(Result.<T>exception(createServiceUnavailableException()));
+		}
+
+		private ServiceUnavailableException createServiceUnavailableException() {
+			if (isResponseRejected()) {
+				return new ServiceUnavailableException(String.format("cause=%s service=%s", 
+														"REJECTED_EXECUTION", getCommandKey().name()));
+			}
+			if (isResponseTimedOut()) {
+				return new ServiceUnavailableException(String.format("cause=%s service=%s executionTime=%s", 
+														"TIMEOUT", getCommandKey().name(), getExecutionTimeInMilliseconds()));
+			}
+			if (isResponseShortCircuited()) {
+				return new ServiceUnavailableException(String.format("cause=%s service=%s", 
+														"SHORT_CIRCUITED", getCommandKey().name()));
+			}
+			if (isFailedExecution() && (getFailedExecutionException() instanceof ServiceUnavailableException)) {
+				ServiceUnavailableException result = (ServiceUnavailableException) getFailedExecutionException();
+				appendStackTrace(result, new ServiceUnavailableException(String.format("service=%s", getCommandKey().name())));
+				return result;
+			}
+			return new ServiceUnavailableException(String.format("cause=%s service=%s", 
+														"UNKNOWN", getCommandKey().name()));
+		}
+	}
+	
 	private static void appendStackTrace(Throwable target, Throwable trace) {
 		Throwable lastThowableInChain = target;
 		while (lastThowableInChain.getCause() != null) {
@@ -140,6 +174,13 @@ class HystrixObservableCommandFacade<T> {
 			return new Result<T>(null, throwable);
 		}
 		
+		public T get() {
+			if (this.exception != null) {
+				throw Exceptions.propagate(this.exception);
+			}
+			return this.value;
+		}
+		
 		public Observable<T> toObservable() {
 			if (this.value != null) {
 				return Observable.just(this.value);
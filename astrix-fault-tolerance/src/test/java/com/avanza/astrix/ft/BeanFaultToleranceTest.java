@@ -16,10 +16,19 @@
 package com.avanza.astrix.ft;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
 import com.avanza.astrix.beans.core.AstrixBeanKey;
 import com.avanza.astrix.beans.core.AstrixBeanSettings;
 import com.avanza.astrix.beans.core.AstrixSettings;
@@ -27,7 +36,10 @@ import com.avanza.astrix.beans.publish.ApiProvider;
 import com.avanza.astrix.beans.publish.SimplePublishedAstrixBean;
 import com.avanza.astrix.context.AstrixApplicationContext;
 import com.avanza.astrix.context.TestAstrixConfigurer;
+import com.avanza.astrix.core.AstrixDeadline;
 import com.avanza.astrix.core.AstrixFaultToleranceProxy;
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.core.function.Supplier;
 import com.avanza.astrix.provider.core.AstrixApiProvider;
 import com.avanza.astrix.provider.core.AstrixQualifier;
 import com.avanza.astrix.provider.core.Library;
@@ -96,6 +108,77 @@ public class BeanFaultToleranceTest {
 		
 	}
 
+	@Test
+	public void streamEmitsEachItemAsSoonAsItIsEmittedByUnderlyingObservable() throws Exception {
+		BeanFaultTolerance faultTolerance = createFaultTolerance(AstrixBeanKey.create(Ping.class, "stream-ping"));
+		final PublishSubject<String> stream = PublishSubject.create();
+		TestSubscriber<String> subscriber = new TestSubscriber<>();
+		faultTolerance.observeStream(new Supplier<Observable<String>>() {
+			@Override
+			public Observable<String> get() {
+				return stream;
+			}
+		}, new HystrixObservableCommandSettings()).subscribe(subscriber);
+		
+		stream.onNext("a");
+		subscriber.assertReceivedOnNext(Arrays.asList("a"));
+		stream.onNext("b");
+		stream.onCompleted();
+		subscriber.awaitTerminalEvent(1, TimeUnit.SECONDS);
+		subscriber.assertReceivedOnNext(Arrays.asList("a", "b"));
+		subscriber.assertTerminalEvent();
+		subscriber.assertNoErrors();
+	}
+	
+	@Test
+	public void timeoutAppliesToEntireStream() throws Exception {
+		AstrixBeanKey<Ping> beanKey = AstrixBeanKey.create(Ping.class, "slow-stream-ping");
+		astrixConfigurer.set(AstrixBeanSettings.INITIAL_TIMEOUT.nameFor(beanKey), "100");
+		BeanFaultTolerance faultTolerance = createFaultTolerance(beanKey);
+		final PublishSubject<String> stream = PublishSubject.create();
+		TestSubscriber<String> subscriber = new TestSubscriber<>();
+		faultTolerance.observeStream(new Supplier<Observable<String>>() {
+			@Override
+			public Observable<String> get() {
+				return stream;
+			}
+		}, new HystrixObservableCommandSettings()).subscribe(subscriber);
+		
+		stream.onNext("a");
+		subscriber.awaitTerminalEvent(2, TimeUnit.SECONDS);
+		subscriber.assertReceivedOnNext(Arrays.asList("a"));
+		assertEquals(1, subscriber.getOnErrorEvents().size());
+		assertEquals(ServiceUnavailableException.class, subscriber.getOnErrorEvents().get(0).getClass());
+	}
+	
+	@Test
+	public void attachesDeadlineDefinedByTimeoutOfBeanUnlessInheritedDeadlineExpiresEarlier() throws Exception {
+		AstrixBeanKey<Ping> beanKey = AstrixBeanKey.create(Ping.class, "deadline-ping");
+		astrixConfigurer.set(AstrixBeanSettings.INITIAL_TIMEOUT.nameFor(beanKey), "5000");
+		BeanFaultTolerance faultTolerance = createFaultTolerance(beanKey);
+		Supplier<Observable<AstrixDeadline>> currentDeadline = new Supplier<Observable<AstrixDeadline>>() {
+			@Override
+			public Observable<AstrixDeadline> get() {
+				return Observable.just(AstrixDeadline.current());
+			}
+		};
+		
+		long remainingMillis = faultTolerance.await(currentDeadline, new HystrixObservableCommandSettings()).getRemaining(TimeUnit.MILLISECONDS);
+		assertTrue("remainingMillis=" + remainingMillis, remainingMillis > 1000 && remainingMillis <= 5000);
+		
+		AstrixDeadline inherited = AstrixDeadline.after(500, TimeUnit.MILLISECONDS);
+		AstrixDeadline previous = AstrixDeadline.attach(inherited);
+		try {
+			assertSame(inherited, faultTolerance.await(currentDeadline, new HystrixObservableCommandSettings()));
+		} finally {
+			AstrixDeadline.restore(previous);
+		}
+	}
+	
+	private BeanFaultTolerance createFaultTolerance(AstrixBeanKey<Ping> beanKey) {
+		return context.getInstance(BeanFaultToleranceFactory.class).create(new SimplePublishedAstrixBean<>(ApiProvider.create(PingApiProvider.class.getName()), beanKey));
+	}
+
 	private int getAppliedFaultToleranceCount(Class<?> beanType) {
 		return getEventCountForCommand(HystrixRollingNumberEvent.SUCCESS, getCommandKey(AstrixBeanKey.create(beanType)));
 	}
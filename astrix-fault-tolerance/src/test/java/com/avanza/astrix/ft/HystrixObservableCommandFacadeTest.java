@@ -181,6 +181,73 @@ public class HystrixObservableCommandFacadeTest {
 		}, AstrixTestUtil.isExceptionOfType(ServiceUnavailableException.class));
 	}
 	
+	@Test
+	public void awaitReturnsFirstItemEmittedByUnderlyingObservable() throws Exception {
+		String result = HystrixObservableCommandFacade.await(new Supplier<Observable<String>>() {
+			@Override
+			public Observable<String> get() {
+				return Observable.just("foo");
+			}
+		}, commandSettings);
+		
+		assertEquals("foo", result);
+		assertEquals(1, getEventCountForCommand(HystrixRollingNumberEvent.SUCCESS, this.commandKey));
+	}
+	
+	@Test
+	public void awaitPropagatesNormalExceptionsAsIsWithoutCountingAsFailure() throws Exception {
+		try {
+			HystrixObservableCommandFacade.await(new Supplier<Observable<String>>() {
+				@Override
+				public Observable<String> get() {
+					return Observable.error(new MyDomainException());
+				}
+			}, commandSettings);
+			fail("All regular exception should be propagated as is from underlying observable");
+		} catch (MyDomainException e) {
+			// Expcected
+		}
+		assertEquals(1, getEventCountForCommand(HystrixRollingNumberEvent.SUCCESS, this.commandKey));
+		assertEquals(0, getEventCountForCommand(HystrixRollingNumberEvent.FAILURE, this.commandKey));
+	}
+	
+	@Test
+	public void awaitThrowsServiceUnavailableThrownByUnderlyingObservable() throws Exception {
+		try {
+			HystrixObservableCommandFacade.await(new Supplier<Observable<String>>() {
+				@Override
+				public Observable<String> get() {
+					return Observable.<String>error(new ServiceUnavailableException(""));
+				}
+			}, commandSettings);
+			fail("Expected service unavailable");
+		} catch (ServiceUnavailableException e) {
+			// Expcected
+		}
+		assertEquals(1, getEventCountForCommand(HystrixRollingNumberEvent.FAILURE, this.commandKey));
+	}
+	
+	@Test
+	public void awaitThrowsServiceUnavailableOnTimeouts() throws Exception {
+		try {
+			HystrixObservableCommandFacade.await(new Supplier<Observable<String>>() {
+				@Override
+				public Observable<String> get() {
+					return Observable.create(new OnSubscribe<String>() {
+						@Override
+						public void call(Subscriber<? super String> t1) {
+							// Simulate timeout by not invoking subscriber
+						}
+					});
+				}
+			}, commandSettings);
+			fail("All ServiceUnavailableException should be thrown on timeout");
+		} catch (ServiceUnavailableException e) {
+			// Expcected
+		}
+		assertEquals(1, getEventCountForCommand(HystrixRollingNumberEvent.TIMEOUT, this.commandKey));
+	}
+	
 	private int getEventCountForCommand(HystrixRollingNumberEvent hystrixRollingNumberEvent, String commandKey) {
 		HystrixCommandMetrics metrics = HystrixCommandMetrics.getInstance(HystrixCommandKey.Factory.asKey(commandKey));
 		int currentConcurrentExecutionCount = (int) metrics.getCumulativeCount(hystrixRollingNumberEvent);
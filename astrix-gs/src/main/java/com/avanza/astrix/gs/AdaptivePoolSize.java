@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+/**
+ * Decides the size of an adaptively sized {@link SpaceTaskDispatcher} thread pool based on the time
+ * spent blocking in GigaSpace.execute. <p>
+ * 
+ * The number of threads required to keep up with the submitted tasks is estimated as the total time spent
+ * in GigaSpace.execute during the last window divided by the length of the window (Little's law),
+ * with some headroom for bursts. The pool grows directly to the estimated size, and grows by at least one
+ * thread when tasks are queued, but only shrinks by one thread per window to avoid oscillation. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class AdaptivePoolSize {
+	
+	static final long DEFAULT_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+	private static final double HEADROOM = 1.5;
+	
+	private final LongAdder executeCount = new LongAdder();
+	private final LongAdder executeNanos = new LongAdder();
+	
+	void executed(long blockingNanos) {
+		executeCount.increment();
+		executeNanos.add(blockingNanos);
+	}
+	
+	/**
+	 * Computes the pool size to use for the next window and starts a new window.
+	 * 
+	 * @param currentSize - the current pool size
+	 * @param minSize - the smallest allowed pool size
+	 * @param maxSize - the largest allowed pool size
+	 * @param windowNanos - the length of the window that ends now
+	 * @param queueDepth - the number of tasks waiting for a thread
+	 * @return the new pool size, in the range [minSize, max(minSize, maxSize)]
+	 */
+	int nextSize(int currentSize, int minSize, int maxSize, long windowNanos, int queueDepth) {
+		long count = executeCount.sumThenReset();
+		long blockingNanos = executeNanos.sumThenReset();
+		int target = 0;
+		if (count > 0 && windowNanos > 0) {
+			double busyThreads = blockingNanos / (double) windowNanos;
+			target = (int) Math.min(Integer.MAX_VALUE, Math.ceil(busyThreads * HEADROOM));
+		}
+		if (queueDepth > 0) {
+			target = Math.max(target, currentSize + 1);
+		}
+		if (target < currentSize) {
+			target = currentSize - 1;
+		}
+		return Math.max(minSize, Math.min(maxSize, target));
+	}
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+/**
+ * Enforces a capacity on the tasks waiting for a thread in a ThreadPoolExecutor backed by an unbounded
+ * queue, which allows the capacity to be changed at runtime. <p>
+ * 
+ * A slot is reserved atomically before a task is queued, and released when the task starts, hence
+ * concurrent submissions never exceed the capacity. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class BoundedTaskQueue {
+	
+	private final ThreadPoolExecutor executor;
+	private final AtomicInteger waiting = new AtomicInteger();
+	
+	BoundedTaskQueue(ThreadPoolExecutor executor) {
+		this.executor = executor;
+	}
+	
+	/**
+	 * @param task
+	 * @param capacity - the maximum number of waiting tasks, a non-positive value disables the bound
+	 * @return false if the task was rejected because the queue is full
+	 * @throws RejectedExecutionException if the executor is shut down
+	 */
+	boolean execute(final Runnable task, int capacity) {
+		int queued = waiting.incrementAndGet();
+		if (capacity > 0 && queued > capacity) {
+			waiting.decrementAndGet();
+			return false;
+		}
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					waiting.decrementAndGet();
+					task.run();
+				}
+			});
+			return true;
+		} catch (RejectedExecutionException e) {
+			waiting.decrementAndGet();
+			throw e;
+		}
+	}
+	
+	/**
+	 * @return the number of tasks waiting for a thread
+	 */
+	int size() {
+		return waiting.get();
+	}
+
+}
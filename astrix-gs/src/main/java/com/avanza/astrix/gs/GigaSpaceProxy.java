@@ -22,6 +22,8 @@ import java.util.Objects;
 import org.openspaces.core.GigaSpace;
 
 import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.core.util.MethodInvoker;
+import com.avanza.astrix.core.util.MethodInvokerCache;
 import com.avanza.astrix.core.util.ReflectionUtil;
 import com.avanza.astrix.ft.BeanFaultTolerance;
 import com.avanza.astrix.ft.CheckedCommand;
@@ -39,6 +41,8 @@ import com.gigaspaces.internal.client.cache.SpaceCacheException;
  */
 public class GigaSpaceProxy implements InvocationHandler {
 
+	private static final MethodInvokerCache INVOKERS = MethodInvokerCache.create(GigaSpace.class);
+	
 	private final GigaSpace gigaSpace;
 	private final BeanFaultTolerance faultTolerance;
 	private final HystrixCommandSettings hystrixSettings;
@@ -55,11 +59,15 @@ public class GigaSpaceProxy implements InvocationHandler {
 
 	@Override
 	public Object invoke(Object proxy, final Method method, final Object[] args) throws Throwable {
+		final MethodInvoker invoker = INVOKERS.get(method);
 		return faultTolerance.execute(new CheckedCommand<Object>() {
 			@Override
 			public Object call() throws Throwable {
 				try {
-					return ReflectionUtil.invokeMethod(method, gigaSpace, args);
+					if (invoker == null) {
+						return ReflectionUtil.invokeMethod(method, gigaSpace, args);
+					}
+					return invoker.invoke(gigaSpace, args);
 				} catch (SpaceCacheException e) {
 					throw new ServiceUnavailableException("SpaceCacheNotAvailable", e);
 				}
@@ -16,11 +16,17 @@
 package com.avanza.astrix.gs;
 
 import java.io.Serializable;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.openspaces.core.ExecutorBuilder;
 import org.openspaces.core.GigaSpace;
 import org.openspaces.core.executor.DistributedTask;
 import org.openspaces.core.executor.Task;
@@ -31,15 +37,44 @@ import rx.Observable;
 import rx.Observable.OnSubscribe;
 import rx.Subscriber;
 
+import com.avanza.astrix.config.DynamicBooleanProperty;
 import com.avanza.astrix.config.DynamicConfig;
 import com.avanza.astrix.config.DynamicIntProperty;
 import com.avanza.astrix.config.DynamicPropertyListener;
+import com.avanza.astrix.config.DynamicStringProperty;
+import com.avanza.astrix.core.ServiceUnavailableException;
 import com.avanza.astrix.core.util.NamedThreadFactory;
+import com.avanza.astrix.core.util.VirtualThreads;
 import com.avanza.astrix.remoting.util.GsUtil;
 import com.gigaspaces.async.AsyncFuture;
+import com.gigaspaces.async.AsyncResult;
+import com.gigaspaces.async.AsyncResultsReducer;
 import com.gigaspaces.internal.client.spaceproxy.SpaceProxyImpl;
 import com.j_spaces.core.IJSpace;
 /**
+ * Submits tasks to a clustered space using a dedicated, bounded thread pool. <p>
+ * 
+ * The pool is configured using the following properties, all of which might be changed at runtime: <p>
+ * 
+ * <ul>
+ * <li>astrix.beans.gigaspace.[spaceName].spaceTaskDispatcher.poolsize - the number of threads in the pool, or the
+ * smallest number of threads when the pool is adaptive. Defaults to 10.</li>
+ * <li>astrix.beans.gigaspace.[spaceName].spaceTaskDispatcher.queueCapacity - the maximum number of tasks waiting
+ * for a thread. Tasks submitted when the queue is full fail fast with a {@link ServiceUnavailableException}.
+ * A non-positive value disables the bound. Defaults to 1000.</li>
+ * <li>astrix.beans.gigaspace.[spaceName].spaceTaskDispatcher.adaptive - whether the pool should grow and shrink
+ * based on the time spent blocking in GigaSpace.execute, see {@link AdaptivePoolSize}. Defaults to false.</li>
+ * <li>astrix.beans.gigaspace.[spaceName].spaceTaskDispatcher.maxPoolsize - the largest number of threads
+ * when the pool is adaptive. Defaults to 50.</li>
+ * <li>astrix.beans.gigaspace.[spaceName].spaceTaskDispatcher.mode - either "pool" or "virtual". In "virtual" mode
+ * each task is submitted on a new virtual thread rather than on the thread pool. Requires java 21 or later,
+ * otherwise the thread pool is used. Defaults to "pool".</li>
+ * <li>astrix.beans.gigaspace.[spaceName].spaceTaskDispatcher.maxConcurrency - the maximum number of tasks
+ * concurrently submitted on virtual threads. Tasks submitted when all permits are taken fail fast with a
+ * {@link ServiceUnavailableException}. Defaults to 1000.</li>
+ * </ul>
+ * 
+ * Queue depth, wait time and active thread count are exposed by {@link SpaceTaskDispatcherMetrics}. <p>
  * 
  * @author Elias Lindholm (elilin)
  *
@@ -59,33 +94,181 @@ public final class SpaceTaskDispatcher {
 	private static final Logger log = LoggerFactory.getLogger(SpaceTaskDispatcher.class);
 	private final GigaSpace gigaSpace;
 	private final ThreadPoolExecutor executorService;
+	private final BoundedTaskQueue taskQueue;
+	private final DynamicIntProperty poolSize;
+	private final DynamicIntProperty maxPoolSize;
+	private final DynamicIntProperty queueCapacity;
+	private final DynamicBooleanProperty adaptive;
+	private final AdaptivePoolSize adaptivePoolSize = new AdaptivePoolSize();
+	private final AtomicLong lastPoolSizeAdjustment = new AtomicLong(System.nanoTime());
+	private final SpaceTaskDispatcherMetrics metrics;
+	private final DynamicStringProperty mode;
+	private final DynamicIntProperty maxConcurrency;
+	private final ThreadFactory virtualThreadFactory;
+	private final AtomicInteger virtualThreadCount = new AtomicInteger();
 
 	public SpaceTaskDispatcher(GigaSpace gigaSpace, DynamicConfig config) {
 		this.gigaSpace = gigaSpace;
-		/* 
-		 * TODO 
-		 * 	(1) Improve configuration mechanism used to configure thread pool. 
-		 */
 		String spaceInstanceName = gigaSpace.getName();
-		DynamicIntProperty poolSize = config.getIntProperty("astrix.beans.gigaspace." + spaceInstanceName + ".spaceTaskDispatcher.poolsize", 10);
+		String propertyPrefix = "astrix.beans.gigaspace." + spaceInstanceName + ".spaceTaskDispatcher.";
+		this.poolSize = config.getIntProperty(propertyPrefix + "poolsize", 10);
+		this.maxPoolSize = config.getIntProperty(propertyPrefix + "maxPoolsize", 50);
+		this.queueCapacity = config.getIntProperty(propertyPrefix + "queueCapacity", 1000);
+		this.adaptive = config.getBooleanProperty(propertyPrefix + "adaptive", false);
+		this.mode = config.getStringProperty(propertyPrefix + "mode", "pool");
+		this.maxConcurrency = config.getIntProperty(propertyPrefix + "maxConcurrency", 1000);
+		this.virtualThreadFactory = VirtualThreads.factory(String.format("SpaceTaskDispatcher[%s]", spaceInstanceName));
+		/*
+		 * The queue itself is unbounded, the capacity is enforced on submission in order to allow
+		 * it to be changed at runtime.
+		 */
 		this.executorService = new ThreadPoolExecutor(poolSize.get(), 
 											 poolSize.get(), 
 											 0, 
 											 TimeUnit.SECONDS,
 											 new LinkedBlockingQueue<Runnable>(),
 											 new NamedThreadFactory(String.format("SpaceTaskDispatcher[%s]", spaceInstanceName)));
+		this.taskQueue = new BoundedTaskQueue(executorService);
+		this.metrics = SpaceTaskDispatcherMetrics.register(spaceInstanceName, executorService, virtualThreadCount);
+		if (isVirtualMode(mode.get()) && virtualThreadFactory == null) {
+			log.warn(String.format("Virtual threads are not supported by this jvm, using thread pool to submit tasks. space=%s", spaceInstanceName));
+		}
 		poolSize.addListener(new DynamicPropertyListener<Integer>() {
 			@Override
 			public void propertyChanged(Integer newValue) {
 				log.info(String.format("Changing pool-size for SpaceTaskDistpatcher. space=%s newSize=%s, oldSize=%s", 
 										SpaceTaskDispatcher.this.gigaSpace.getName(), 
 										newValue, executorService.getMaximumPoolSize()));
-				executorService.setCorePoolSize(newValue);
-				executorService.setMaximumPoolSize(newValue);
+				resize(newValue);
+			}
+		});
+		adaptive.addListener(new DynamicPropertyListener<Boolean>() {
+			@Override
+			public void propertyChanged(Boolean newValue) {
+				if (!newValue.booleanValue()) {
+					resize(poolSize.get());
+				}
 			}
 		});
 	}
 
+	private void resize(int newSize) {
+		if (newSize < 1) {
+			return;
+		}
+		synchronized (executorService) {
+			// The core size may never exceed the maximum size
+			if (newSize > executorService.getMaximumPoolSize()) {
+				executorService.setMaximumPoolSize(newSize);
+				executorService.setCorePoolSize(newSize);
+			} else {
+				executorService.setCorePoolSize(newSize);
+				executorService.setMaximumPoolSize(newSize);
+			}
+		}
+	}
+	
+	private void adjustPoolSize() {
+		if (!adaptive.get()) {
+			return;
+		}
+		long lastAdjustment = lastPoolSizeAdjustment.get();
+		long now = System.nanoTime();
+		long window = now - lastAdjustment;
+		if (window < AdaptivePoolSize.DEFAULT_WINDOW_NANOS || !lastPoolSizeAdjustment.compareAndSet(lastAdjustment, now)) {
+			return;
+		}
+		int currentSize = executorService.getMaximumPoolSize();
+		int newSize = adaptivePoolSize.nextSize(currentSize, poolSize.get(), maxPoolSize.get(), window, taskQueue.size());
+		if (newSize != currentSize) {
+			log.debug(String.format("Adjusting pool-size for SpaceTaskDispatcher. space=%s newSize=%s, oldSize=%s", 
+									gigaSpace.getName(), newSize, currentSize));
+			resize(newSize);
+		}
+	}
+	
+	private static boolean isVirtualMode(String mode) {
+		return "virtual".equalsIgnoreCase(mode);
+	}
+	
+	private void dispatch(Subscriber<?> subscriber, Runnable submission) {
+		if (virtualThreadFactory != null && isVirtualMode(mode.get())) {
+			dispatchOnVirtualThread(subscriber, submission);
+		} else {
+			dispatchOnPool(subscriber, submission);
+		}
+	}
+	
+	private void dispatchOnPool(final Subscriber<?> subscriber, final Runnable submission) {
+		int capacity = queueCapacity.get();
+		final long enqueuedAt = System.nanoTime();
+		boolean queued;
+		try {
+			queued = taskQueue.execute(new Runnable() {
+				@Override
+				public void run() {
+					long startedAt = System.nanoTime();
+					try {
+						submission.run();
+					} finally {
+						long executeNanos = System.nanoTime() - startedAt;
+						metrics.executed(startedAt - enqueuedAt, executeNanos);
+						adaptivePoolSize.executed(executeNanos);
+						adjustPoolSize();
+					}
+				}
+			}, capacity);
+		} catch (RejectedExecutionException e) {
+			metrics.rejected();
+			subscriber.onError(new ServiceUnavailableException("SpaceTaskDispatcher is destroyed. space=" + gigaSpace.getName(), e));
+			return;
+		}
+		if (!queued) {
+			metrics.rejected();
+			subscriber.onError(new ServiceUnavailableException(String.format(
+					"SpaceTaskDispatcher queue is full. space=%s queueCapacity=%s", gigaSpace.getName(), capacity)));
+			return;
+		}
+		// No task completes while all threads are blocked in GigaSpace.execute, hence the pool size
+		// is also adjusted on submission in order to grow the pool when tasks start to queue up
+		adjustPoolSize();
+	}
+	
+	/*
+	 * Each task is submitted on a new virtual thread, hence a GigaSpace.execute call that blocks only parks
+	 * a virtual thread. The number of concurrent submissions is bounded by maxConcurrency permits, which
+	 * are acquired without blocking the subscribing thread.
+	 */
+	private void dispatchOnVirtualThread(final Subscriber<?> subscriber, final Runnable submission) {
+		int permits = maxConcurrency.get();
+		int concurrency = virtualThreadCount.incrementAndGet();
+		if (concurrency > permits) {
+			virtualThreadCount.decrementAndGet();
+			metrics.rejected();
+			subscriber.onError(new ServiceUnavailableException(String.format(
+					"SpaceTaskDispatcher concurrency limit reached. space=%s maxConcurrency=%s", gigaSpace.getName(), permits)));
+			return;
+		}
+		final long enqueuedAt = System.nanoTime();
+		try {
+			virtualThreadFactory.newThread(new Runnable() {
+				@Override
+				public void run() {
+					long startedAt = System.nanoTime();
+					try {
+						submission.run();
+					} finally {
+						virtualThreadCount.decrementAndGet();
+						metrics.executed(startedAt - enqueuedAt, System.nanoTime() - startedAt);
+					}
+				}
+			}).start();
+		} catch (RuntimeException e) {
+			virtualThreadCount.decrementAndGet();
+			metrics.rejected();
+			subscriber.onError(new ServiceUnavailableException("Failed to start virtual thread. space=" + gigaSpace.getName(), e));
+		}
+	}
 
 	public IJSpace getSpace() {
 		return gigaSpace.getSpace();
@@ -103,7 +286,7 @@ public final class SpaceTaskDispatcher {
 		return Observable.create(new OnSubscribe<T>() {
 			@Override
 			public void call(final Subscriber<? super T> t1) {
-				executorService.execute(new Runnable() {
+				dispatch(t1, new Runnable() {
 					@Override
 					public void run() {
 						try {
@@ -123,7 +306,7 @@ public final class SpaceTaskDispatcher {
 		return Observable.create(new OnSubscribe<R>() {
 			@Override
 			public void call(final Subscriber<? super R> t1) {
-				executorService.execute(new Runnable() {
+				dispatch(t1, new Runnable() {
 					@Override
 					public void run() {
 						try {
@@ -139,11 +322,76 @@ public final class SpaceTaskDispatcher {
 		});
 	}
 	
+	/**
+	 * Executes a given DistributedTask on the partitions that the given routing keys are routed to.
+	 * 
+	 * @param distributedTask
+	 * @param routing - the routing keys identifying the target partitions
+	 * @return
+	 */
+	public <T extends Serializable, R> Observable<R> observe(final DistributedTask<T, R> distributedTask, final Object[] routing) {
+		return Observable.create(new OnSubscribe<R>() {
+			@Override
+			public void call(final Subscriber<? super R> t1) {
+				dispatch(t1, new Runnable() {
+					@Override
+					public void run() {
+						try {
+							// Submit task on current thread in executorService
+							AsyncFuture<R> taskResult = gigaSpace.execute(distributedTask, routing);
+							GsUtil.subscribe(taskResult, t1);
+						} catch (Exception e) {
+							t1.onError(e);
+						}
+					}
+				});
+			}
+		});
+	}
+	
+	/**
+	 * Executes each of the given tasks on the partition that the corresponding routing key is routed to,
+	 * in a single scatter/gather operation. <p>
+	 * 
+	 * @param tasks
+	 * @param routing - the routing key for each task
+	 * @return an Observable that emits the results from all tasks, in any order, once all tasks are completed.
+	 */
+	public <T extends Serializable> Observable<List<AsyncResult<T>>> observe(final List<? extends Task<T>> tasks, final List<?> routing) {
+		return Observable.create(new OnSubscribe<List<AsyncResult<T>>>() {
+			@Override
+			public void call(final Subscriber<? super List<AsyncResult<T>>> t1) {
+				dispatch(t1, new Runnable() {
+					@Override
+					public void run() {
+						try {
+							ExecutorBuilder<T, List<AsyncResult<T>>> executor = gigaSpace.executorBuilder(new AsyncResultsReducer<T, List<AsyncResult<T>>>() {
+								@Override
+								public List<AsyncResult<T>> reduce(List<AsyncResult<T>> results) throws Exception {
+									return results;
+								}
+							});
+							for (int i = 0; i < tasks.size(); i++) {
+								executor.add(tasks.get(i), routing.get(i));
+							}
+							// Submit tasks on current thread in executorService
+							AsyncFuture<List<AsyncResult<T>>> taskResult = executor.execute();
+							GsUtil.subscribe(taskResult, t1);
+						} catch (Exception e) {
+							t1.onError(e);
+						}
+					}
+				});
+			}
+		});
+	}
+	
 	/**
 	 * Destroys the {@link SpaceTaskDispatcher} by shutting down the underlying
 	 * {@link ExecutorService}. <p>
 	 */
 	public void destroy() {
+		this.metrics.unregister();
 		this.executorService.shutdown();
 	}
 
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+/**
+ * Exposes the state of the thread pool used by the {@link SpaceTaskDispatcher} for a given space,
+ * together with counters for the tasks submitted through it. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class SpaceTaskDispatcherMetrics {
+	
+	private static final ConcurrentMap<String, SpaceTaskDispatcherMetrics> metricsBySpaceName = new ConcurrentHashMap<>();
+	
+	private final String spaceName;
+	private final ThreadPoolExecutor executor;
+	private final AtomicInteger virtualThreadCount;
+	private final LongAdder dispatchedCount = new LongAdder();
+	private final LongAdder rejectedCount = new LongAdder();
+	private final LongAdder totalWaitNanos = new LongAdder();
+	private final LongAdder totalExecuteNanos = new LongAdder();
+	
+	private SpaceTaskDispatcherMetrics(String spaceName, ThreadPoolExecutor executor, AtomicInteger virtualThreadCount) {
+		this.spaceName = spaceName;
+		this.executor = executor;
+		this.virtualThreadCount = virtualThreadCount;
+	}
+	
+	static SpaceTaskDispatcherMetrics register(String spaceName, ThreadPoolExecutor executor, AtomicInteger virtualThreadCount) {
+		SpaceTaskDispatcherMetrics metrics = new SpaceTaskDispatcherMetrics(spaceName, executor, virtualThreadCount);
+		metricsBySpaceName.put(spaceName, metrics);
+		return metrics;
+	}
+	
+	void unregister() {
+		metricsBySpaceName.remove(spaceName, this);
+	}
+	
+	/**
+	 * @param spaceName
+	 * @return the metrics for the SpaceTaskDispatcher associated with the given space, or null
+	 * 		   if no such SpaceTaskDispatcher exists.
+	 */
+	public static SpaceTaskDispatcherMetrics get(String spaceName) {
+		return metricsBySpaceName.get(spaceName);
+	}
+	
+	/**
+	 * @return the metrics for all SpaceTaskDispatchers in this jvm.
+	 */
+	public static Collection<SpaceTaskDispatcherMetrics> getAll() {
+		return new ArrayList<>(metricsBySpaceName.values());
+	}
+	
+	void rejected() {
+		rejectedCount.increment();
+	}
+	
+	void executed(long waitNanos, long executeNanos) {
+		dispatchedCount.increment();
+		totalWaitNanos.add(waitNanos);
+		totalExecuteNanos.add(executeNanos);
+	}
+	
+	public String getSpaceName() {
+		return spaceName;
+	}
+	
+	/**
+	 * @return the number of tasks waiting for a thread
+	 */
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+	
+	/**
+	 * @return the number of threads currently submitting a task to the space
+	 */
+	public int getActiveCount() {
+		return executor.getActiveCount();
+	}
+	
+	/**
+	 * @return the current number of threads in the pool
+	 */
+	public int getPoolSize() {
+		return executor.getPoolSize();
+	}
+	
+	/**
+	 * @return the number of threads the pool is currently allowed to use
+	 */
+	public int getMaximumPoolSize() {
+		return executor.getMaximumPoolSize();
+	}
+	
+	/**
+	 * @return the number of virtual threads currently submitting a task to the space
+	 */
+	public int getVirtualThreadCount() {
+		return virtualThreadCount.get();
+	}
+	
+	/**
+	 * @return the number of tasks submitted to the space
+	 */
+	public long getDispatchedCount() {
+		return dispatchedCount.sum();
+	}
+	
+	/**
+	 * @return the number of tasks that failed fast with a ServiceUnavailableException 
+	 * 		   because the queue was full or the concurrency limit was reached
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.sum();
+	}
+	
+	/**
+	 * @return the average time a task waited in the queue before being submitted to the space, in milliseconds
+	 */
+	public double getAverageWaitTimeMillis() {
+		return averageMillis(totalWaitNanos.sum());
+	}
+	
+	/**
+	 * @return the average time spent blocking in GigaSpace.execute when submitting a task, in milliseconds
+	 */
+	public double getAverageExecuteTimeMillis() {
+		return averageMillis(totalExecuteNanos.sum());
+	}
+	
+	private double averageMillis(long totalNanos) {
+		long count = getDispatchedCount();
+		if (count == 0) {
+			return 0;
+		}
+		return totalNanos / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+	
+	@Override
+	public String toString() {
+		return "SpaceTaskDispatcherMetrics[space=" + spaceName + " queueDepth=" + getQueueDepth() 
+				+ " activeCount=" + getActiveCount() + " poolSize=" + getPoolSize() + " virtualThreads=" + getVirtualThreadCount()
+				+ " dispatched=" + getDispatchedCount() + " rejected=" + getRejectedCount() + "]";
+	}
+
+}
@@ -15,6 +15,8 @@
  */
 package com.avanza.astrix.gs.remoting;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.List;
 import java.util.Objects;
 
@@ -43,15 +45,22 @@ public class AstrixDistributedServiceInvocationTask implements DistributedTask<A
 	@Resource
 	private transient AstrixSpringContext astrixSpringContext;
 	private final AstrixServiceInvocationRequest request;
+	private transient long receivedNanos;
 	
 	public AstrixDistributedServiceInvocationTask(AstrixServiceInvocationRequest request) {
 		this.request = Objects.requireNonNull(request);
+		this.receivedNanos = System.nanoTime();
 	}
 
 	@Override
 	public AstrixServiceInvocationResponse execute() throws Exception {
 		AstrixServiceActivator serviceActivator = astrixSpringContext.getInstance(AstrixServiceActivator.class);
-		return serviceActivator.invokeService(request);
+		return serviceActivator.invokeService(request, receivedNanos);
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.receivedNanos = System.nanoTime();
 	}
 	
 	@Override
@@ -15,6 +15,8 @@
  */
 package com.avanza.astrix.gs.remoting;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.Objects;
 
 import javax.annotation.Resource;
@@ -39,15 +41,27 @@ public class AstrixServiceInvocationTask implements Task<AstrixServiceInvocation
 	@Resource
 	private transient AstrixSpringContext astrixSpringContext;
 	private final AstrixServiceInvocationRequest invocationRequest;
+	/*
+	 * The time when the task was deserialized by the space, which includes the time the 
+	 * task spends queued before it is executed. Tasks executed without serialization, 
+	 * ie in an embedded space, use the time when the task was created.
+	 */
+	private transient long receivedNanos;
 	
 	public AstrixServiceInvocationTask(AstrixServiceInvocationRequest invocationRequest) {
 		this.invocationRequest = Objects.requireNonNull(invocationRequest);
+		this.receivedNanos = System.nanoTime();
 	}
 
 	@Override
 	public AstrixServiceInvocationResponse execute() throws Exception {
 		AstrixServiceActivator serviceActivator = astrixSpringContext.getInstance(AstrixServiceActivator.class);
-		return serviceActivator.invokeService(invocationRequest);
+		return serviceActivator.invokeService(invocationRequest, receivedNanos);
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.receivedNanos = System.nanoTime();
 	}
 
 }
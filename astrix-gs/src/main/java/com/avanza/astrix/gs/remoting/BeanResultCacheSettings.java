@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs.remoting;
+
+import com.avanza.astrix.beans.core.AstrixBeanSettings;
+import com.avanza.astrix.beans.factory.BeanConfiguration;
+import com.avanza.astrix.config.DynamicBooleanProperty;
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.config.DynamicLongProperty;
+import com.avanza.astrix.core.AstrixCached;
+import com.avanza.astrix.remoting.client.ResultCacheSettings;
+/**
+ * Reads the result cache settings for a given astrix bean from the {@link BeanConfiguration}, 
+ * see {@link AstrixBeanSettings#RESULT_CACHE_MAX_ENTRIES} and {@link AstrixBeanSettings#RESULT_CACHE_TTL}. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class BeanResultCacheSettings extends ResultCacheSettings {
+	
+	private final DynamicBooleanProperty enabled;
+	private final DynamicIntProperty maxEntries;
+	private final DynamicLongProperty ttlMillis;
+	
+	BeanResultCacheSettings(BeanConfiguration beanConfiguration) {
+		this.enabled = beanConfiguration.get(AstrixBeanSettings.RESULT_CACHE_ENABLED);
+		this.maxEntries = beanConfiguration.get(AstrixBeanSettings.RESULT_CACHE_MAX_ENTRIES);
+		this.ttlMillis = beanConfiguration.get(AstrixBeanSettings.RESULT_CACHE_TTL);
+	}
+	
+	@Override
+	public boolean isEnabled() {
+		return enabled.get();
+	}
+	
+	@Override
+	public int getMaxEntries(AstrixCached cached) {
+		int maxEntriesOverride = maxEntries.get();
+		return maxEntriesOverride >= 0 ? maxEntriesOverride : cached.maxEntries();
+	}
+	
+	@Override
+	public long getTtlMillis(AstrixCached cached) {
+		long ttlOverride = ttlMillis.get();
+		return ttlOverride >= 0 ? ttlOverride : cached.ttlMillis();
+	}
+
+}
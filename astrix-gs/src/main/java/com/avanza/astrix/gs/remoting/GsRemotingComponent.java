@@ -18,12 +18,16 @@ package com.avanza.astrix.gs.remoting;
 import org.kohsuke.MetaInfServices;
 import org.openspaces.core.GigaSpace;
 
+import com.avanza.astrix.beans.core.AstrixConfigAware;
+import com.avanza.astrix.beans.core.AstrixSettings;
+import com.avanza.astrix.beans.factory.BeanConfigurations;
 import com.avanza.astrix.beans.inject.AstrixInject;
 import com.avanza.astrix.beans.service.AstrixVersioningPlugin;
 import com.avanza.astrix.beans.service.BoundServiceBeanInstance;
 import com.avanza.astrix.beans.service.ServiceComponent;
 import com.avanza.astrix.beans.service.ServiceDefinition;
 import com.avanza.astrix.beans.service.ServiceProperties;
+import com.avanza.astrix.config.DynamicConfig;
 import com.avanza.astrix.core.AstrixObjectSerializer;
 import com.avanza.astrix.core.util.ReflectionUtil;
 import com.avanza.astrix.ft.BeanFaultTolerance;
@@ -34,8 +38,12 @@ import com.avanza.astrix.gs.ClusteredProxyCache.GigaSpaceInstance;
 import com.avanza.astrix.gs.GsBinder;
 import com.avanza.astrix.provider.component.AstrixServiceComponentNames;
 import com.avanza.astrix.remoting.client.RemotingProxy;
+import com.avanza.astrix.remoting.client.RemotingProxyOptions;
 import com.avanza.astrix.remoting.client.RemotingTransport;
+import com.avanza.astrix.remoting.client.RequestBatchScheduler;
+import com.avanza.astrix.remoting.client.ResultCacheRegistry;
 import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+import com.avanza.astrix.remoting.util.ServiceMethodTable;
 import com.avanza.astrix.spring.AstrixSpringContext;
 /**
  * Provides remoting using a GigaSpace clustered proxy as transport. <p> 
@@ -44,7 +52,7 @@ import com.avanza.astrix.spring.AstrixSpringContext;
  *
  */
 @MetaInfServices(ServiceComponent.class)
-public class GsRemotingComponent implements ServiceComponent {
+public class GsRemotingComponent implements ServiceComponent, AstrixConfigAware {
 
 	private GsBinder gsBinder;
 	private BeanFaultToleranceFactory beanFaultToleranceFactory;
@@ -52,6 +60,11 @@ public class GsRemotingComponent implements ServiceComponent {
 	private AstrixServiceActivator serviceActivator;
 	private AstrixVersioningPlugin versioningPlugin;
 	private ClusteredProxyCache proxyCache;
+	private DynamicConfig config;
+	private BeanConfigurations beanConfigurations;
+	private RemotingMarshallingPool marshallingPool;
+	private RequestBatchScheduler requestBatchScheduler;
+	private ResultCacheRegistry resultCacheRegistry;
 	
 	@Override
 	public <T> BoundServiceBeanInstance<T> bind(ServiceDefinition<T> serviceDefinition, ServiceProperties serviceProperties) {
@@ -62,7 +75,13 @@ public class GsRemotingComponent implements ServiceComponent {
 		GsRemotingTransport gsRemotingTransport = new GsRemotingTransport(proxyInstance.getSpaceTaskDispatcher(), faultTolerance);
 		RemotingTransport remotingTransport = RemotingTransport.create(gsRemotingTransport);
 		T proxy = RemotingProxy.create(serviceDefinition.getServiceType(), ReflectionUtil.classForName(serviceProperties.getProperty(ServiceProperties.API))
-				, remotingTransport, objectSerializer, new GsRoutingStrategy());
+				, remotingTransport, objectSerializer, new GsRoutingStrategy(), RemotingProxyOptions.create()
+						.serverMethodTableChecksum(serviceProperties.getProperty(ServiceMethodTable.CHECKSUM_PROPERTY))
+						.generateStub(AstrixSettings.GENERATED_SERVICE_STUBS.getFrom(config).get())
+						.resultCacheSettings(new BeanResultCacheSettings(beanConfigurations.getBeanConfiguration(serviceDefinition.getBeanKey())))
+						.marshallingExecutor(marshallingPool)
+						.requestBatchScheduler(requestBatchScheduler)
+						.resultCacheRegistry(resultCacheRegistry));
 		return BoundProxyServiceBeanInstance.create(proxy, proxyInstance);
 	}
 	
@@ -75,6 +94,7 @@ public class GsRemotingComponent implements ServiceComponent {
 	public <T> ServiceProperties createServiceProperties(ServiceDefinition<T> serviceDefinition) {
 		GigaSpace space = gsBinder.getEmbeddedSpace(astrixSpringContext.getApplicationContext());
 		ServiceProperties serviceProperties = gsBinder.createProperties(space);
+		serviceProperties.setProperty(ServiceMethodTable.CHECKSUM_PROPERTY, Long.toString(ServiceMethodTable.create(serviceDefinition.getServiceType()).getChecksum()));
 		return serviceProperties;
 	}
 	
@@ -126,9 +146,34 @@ public class GsRemotingComponent implements ServiceComponent {
 		this.beanFaultToleranceFactory = beanFaultToleranceFactory;
 	}
 	
+	@AstrixInject
+	public void setBeanConfigurations(BeanConfigurations beanConfigurations) {
+		this.beanConfigurations = beanConfigurations;
+	}
+	
+	@AstrixInject
+	public void setMarshallingPool(RemotingMarshallingPool marshallingPool) {
+		this.marshallingPool = marshallingPool;
+	}
+	
+	@AstrixInject
+	public void setRequestBatchScheduler(RequestBatchScheduler requestBatchScheduler) {
+		this.requestBatchScheduler = requestBatchScheduler;
+	}
+	
+	@AstrixInject
+	public void setResultCacheRegistry(ResultCacheRegistry resultCacheRegistry) {
+		this.resultCacheRegistry = resultCacheRegistry;
+	}
+	
 	@AstrixInject
 	public void setVersioningPlugin(AstrixVersioningPlugin versioningPlugin) {
 		this.versioningPlugin = versioningPlugin;
 	}
 	
+	@Override
+	public void setConfig(DynamicConfig config) {
+		this.config = config;
+	}
+	
 }
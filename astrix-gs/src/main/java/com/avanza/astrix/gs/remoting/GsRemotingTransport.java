@@ -15,6 +15,7 @@
  */
 package com.avanza.astrix.gs.remoting;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -22,12 +23,14 @@ import java.util.List;
 import rx.Observable;
 import rx.functions.Func1;
 
+import com.avanza.astrix.core.AstrixDeadline;
 import com.avanza.astrix.core.function.Supplier;
 import com.avanza.astrix.ft.BeanFaultTolerance;
 import com.avanza.astrix.ft.HystrixObservableCommandSettings;
 import com.avanza.astrix.gs.SpaceTaskDispatcher;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.client.PartitionMapping;
 import com.avanza.astrix.remoting.client.RemotingTransportSpi;
 import com.avanza.astrix.remoting.client.RoutedServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.RoutingKey;
@@ -36,6 +39,11 @@ import com.gigaspaces.async.AsyncResult;
 /**
  * RemotingTransport implementation based on GigaSpaces task execution. <p> 
  * 
+ * Requests targeting multiple partitions are sent as one task per partition, carrying only the requests
+ * routed to that partition. Non-streamed requests submit all tasks in a single scatter/gather operation, 
+ * which delivers the responses from all partitions at once. Streamed requests submit each task separately,
+ * and emit the responses from each partition as soon as they arrive. <p>
+ * 
  * @author Elias Lindholm
  *
  */
@@ -58,6 +66,26 @@ public class GsRemotingTransport implements RemotingTransportSpi {
 			}
 		}, new HystrixObservableCommandSettings());
 	}
+	
+	@Override
+	public AstrixServiceInvocationResponse invokeRoutedRequest(final AstrixServiceInvocationRequest request, final RoutingKey routingKey) {
+		return faultTolerance.await(new Supplier<Observable<AstrixServiceInvocationResponse>>() {
+			@Override
+			public Observable<AstrixServiceInvocationResponse> get() {
+				return observeRoutedRequest(request, routingKey);
+			}
+		}, new HystrixObservableCommandSettings());
+	}
+
+	@Override
+	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequestBatch(final List<AstrixServiceInvocationRequest> requests, final RoutingKey routingKey) {
+		return faultTolerance.observe(new Supplier<Observable<List<AstrixServiceInvocationResponse>>>() {
+			@Override
+			public Observable<List<AstrixServiceInvocationResponse>> get() {
+				return observeRoutedRequestBatch(requests, routingKey);
+			}
+		}, new HystrixObservableCommandSettings());
+	}
 
 	@Override
 	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(final Collection<RoutedServiceInvocationRequest> requests) {
@@ -73,6 +101,20 @@ public class GsRemotingTransport implements RemotingTransportSpi {
 	}
 	
 	
+	@Override
+	public Observable<AstrixServiceInvocationResponse> streamRoutedRequests(final Collection<RoutedServiceInvocationRequest> requests) {
+		if (requests.isEmpty()) {
+			return Observable.empty();
+		}
+		return faultTolerance.observeStream(new Supplier<Observable<AstrixServiceInvocationResponse>>() {
+			@Override
+			public Observable<AstrixServiceInvocationResponse> get() {
+				return observeRoutedRequestStream(requests);
+			}
+		}, new HystrixObservableCommandSettings());
+	}
+
+
 	@Override
 	public Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(final AstrixServiceInvocationRequest request) {
 		return faultTolerance.observe(new Supplier<Observable<List<AstrixServiceInvocationResponse>>>() {
@@ -83,20 +125,91 @@ public class GsRemotingTransport implements RemotingTransportSpi {
 		}, new HystrixObservableCommandSettings());
 	}
 	
+	@Override
+	public Observable<AstrixServiceInvocationResponse> streamBroadcastRequest(final AstrixServiceInvocationRequest request) {
+		return faultTolerance.observeStream(new Supplier<Observable<AstrixServiceInvocationResponse>>() {
+			@Override
+			public Observable<AstrixServiceInvocationResponse> get() {
+				return observeBroadcastRequestStream(request);
+			}
+		}, new HystrixObservableCommandSettings());
+	}
+	
+	/*
+	 * The observe methods are invoked by the BeanFaultTolerance, which attaches the deadline of
+	 * the invocation to the current thread. The deadline is transmitted with each request.
+	 */
 	private Observable<AstrixServiceInvocationResponse> observeRoutedRequest(AstrixServiceInvocationRequest request,
 																			  RoutingKey routingKey) {
+		request.setDeadline(AstrixDeadline.current());
 		return spaceTaskDispatcher.observe(new AstrixServiceInvocationTask(request), routingKey);
 	}
 	
+	private Observable<List<AstrixServiceInvocationResponse>> observeRoutedRequestBatch(List<AstrixServiceInvocationRequest> requests, RoutingKey routingKey) {
+		for (AstrixServiceInvocationRequest request : requests) {
+			request.setDeadline(AstrixDeadline.current());
+		}
+		return spaceTaskDispatcher.observe(new AstrixServiceInvocationBatchTask(requests), routingKey)
+								  .map(new Func1<ArrayList<AstrixServiceInvocationResponse>, List<AstrixServiceInvocationResponse>>() {
+									  @Override
+									  public List<AstrixServiceInvocationResponse> call(ArrayList<AstrixServiceInvocationResponse> responses) {
+										  return responses;
+									  }
+								  });
+	}
+	
+	/*
+	 * Each partition is sent a task carrying only the requests routed to it. All tasks are submitted
+	 * in a single scatter/gather operation, hence the SpaceTaskDispatcher is only used once, regardless
+	 * of the number of target partitions.
+	 */
 	private Observable<List<AstrixServiceInvocationResponse>> observeRoutedReqeuests(Collection<RoutedServiceInvocationRequest> requests) {
-		Observable<AstrixServiceInvocationResponse> result = Observable.empty();
-		for (RoutedServiceInvocationRequest request : requests) {
-			result = result.mergeWith(spaceTaskDispatcher.observe(new AstrixServiceInvocationTask(request.getRequest()), request.getRoutingkey()));
+		final PartitionedRequests partitionedRequests = PartitionedRequests.group(requests, partitionMapping());
+		List<AstrixServiceInvocationBatchTask> tasks = new ArrayList<>(partitionedRequests.partitionCount());
+		List<RoutingKey> routing = new ArrayList<>(partitionedRequests.partitionCount());
+		for (int partition = 0; partition < partitionedRequests.partitionCount(); partition++) {
+			tasks.add(new AstrixServiceInvocationBatchTask(withDeadline(partitionedRequests.requests(partition))));
+			routing.add(partitionedRequests.routingKey(partition));
+		}
+		Func1<List<AsyncResult<ArrayList<AstrixServiceInvocationResponse>>>, Observable<ArrayList<AstrixServiceInvocationResponse>>> listToObservable = 
+				GsUtil.asyncResultListToObservable();
+		return spaceTaskDispatcher.observe(tasks, routing)
+								  .flatMap(listToObservable)
+								  .toList()
+								  .map(new Func1<List<ArrayList<AstrixServiceInvocationResponse>>, List<AstrixServiceInvocationResponse>>() {
+									  @Override
+									  public List<AstrixServiceInvocationResponse> call(List<ArrayList<AstrixServiceInvocationResponse>> partitionResponses) {
+										  return partitionedRequests.reassemble(partitionResponses);
+									  }
+								  });
+	}
+	
+	private Observable<AstrixServiceInvocationResponse> observeRoutedRequestStream(Collection<RoutedServiceInvocationRequest> requests) {
+		final PartitionedRequests partitionedRequests = PartitionedRequests.group(requests, partitionMapping());
+		List<Observable<AstrixServiceInvocationResponse>> responses = new ArrayList<>(partitionedRequests.partitionCount());
+		for (int partition = 0; partition < partitionedRequests.partitionCount(); partition++) {
+			final int partitionIndex = partition;
+			AstrixServiceInvocationBatchTask task = new AstrixServiceInvocationBatchTask(withDeadline(partitionedRequests.requests(partition)));
+			responses.add(spaceTaskDispatcher.observe(task, partitionedRequests.routingKey(partition))
+											 .flatMapIterable(new Func1<ArrayList<AstrixServiceInvocationResponse>, Iterable<AstrixServiceInvocationResponse>>() {
+												 @Override
+												 public Iterable<AstrixServiceInvocationResponse> call(ArrayList<AstrixServiceInvocationResponse> partitionResponses) {
+													 return partitionedRequests.verify(partitionIndex, partitionResponses);
+												 }
+											 }));
 		}
-		return result.toList();
+		return Observable.merge(responses);
+	}
+	
+	private static List<AstrixServiceInvocationRequest> withDeadline(List<AstrixServiceInvocationRequest> requests) {
+		for (AstrixServiceInvocationRequest request : requests) {
+			request.setDeadline(AstrixDeadline.current());
+		}
+		return requests;
 	}
 	
 	private Observable<List<AstrixServiceInvocationResponse>> observeBroadcastRequest(AstrixServiceInvocationRequest request) {
+		request.setDeadline(AstrixDeadline.current());
 		Observable<List<AsyncResult<AstrixServiceInvocationResponse>>> responses = spaceTaskDispatcher.observe(new AstrixDistributedServiceInvocationTask(request));
 		Func1<List<AsyncResult<AstrixServiceInvocationResponse>>, Observable<AstrixServiceInvocationResponse>> listToObservable = 
 				GsUtil.asyncResultListToObservable();
@@ -104,6 +217,16 @@ public class GsRemotingTransport implements RemotingTransportSpi {
 		return responseStream.toList();
 	}
 	
+	private Observable<AstrixServiceInvocationResponse> observeBroadcastRequestStream(AstrixServiceInvocationRequest request) {
+		request.setDeadline(AstrixDeadline.current());
+		PartitionMapping partitionMapping = partitionMapping();
+		List<Observable<AstrixServiceInvocationResponse>> responses = new ArrayList<>(partitionMapping.partitionCount());
+		for (int partition = 0; partition < partitionMapping.partitionCount(); partition++) {
+			responses.add(spaceTaskDispatcher.observe(new AstrixServiceInvocationTask(request), partitionMapping.routingKey(partition)));
+		}
+		return Observable.merge(responses);
+	}
+	
 	@Override
 	public int partitionCount() {
 		return this.spaceTaskDispatcher.partitionCount();
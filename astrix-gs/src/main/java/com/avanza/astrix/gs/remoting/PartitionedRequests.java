@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs.remoting;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.client.PartitionMapping;
+import com.avanza.astrix.remoting.client.RoutedServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.RoutingKey;
+/**
+ * Groups routed invocation requests by target partition, so that each partition is sent only the
+ * requests routed to it, and reassembles the responses from the partitions. <p>
+ * 
+ * Reassembly fails if the responses from any partition are missing, rather than silently
+ * returning a partial result. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class PartitionedRequests {
+	
+	private final List<RoutingKey> routingKeys = new ArrayList<>();
+	private final List<ArrayList<AstrixServiceInvocationRequest>> requests = new ArrayList<>();
+	private int requestCount;
+	
+	private PartitionedRequests() {
+	}
+	
+	static PartitionedRequests group(Collection<RoutedServiceInvocationRequest> requests, PartitionMapping partitionMapping) {
+		PartitionedRequests result = new PartitionedRequests();
+		Map<Integer, ArrayList<AstrixServiceInvocationRequest>> requestsByPartition = new HashMap<>();
+		for (RoutedServiceInvocationRequest request : requests) {
+			Integer partition = partitionMapping.partitionOf(request.getRoutingkey().hashCode());
+			ArrayList<AstrixServiceInvocationRequest> partitionRequests = requestsByPartition.get(partition);
+			if (partitionRequests == null) {
+				partitionRequests = new ArrayList<>();
+				requestsByPartition.put(partition, partitionRequests);
+				result.routingKeys.add(request.getRoutingkey());
+				result.requests.add(partitionRequests);
+			}
+			partitionRequests.add(request.getRequest());
+			result.requestCount++;
+		}
+		return result;
+	}
+	
+	/**
+	 * @return the number of partitions targeted by at least one request
+	 */
+	int partitionCount() {
+		return routingKeys.size();
+	}
+	
+	/**
+	 * @param partitionIndex - in the range [0, partitionCount())
+	 * @return a RoutingKey that is routed to the given partition
+	 */
+	RoutingKey routingKey(int partitionIndex) {
+		return routingKeys.get(partitionIndex);
+	}
+	
+	/**
+	 * @param partitionIndex - in the range [0, partitionCount())
+	 * @return the requests routed to the given partition
+	 */
+	ArrayList<AstrixServiceInvocationRequest> requests(int partitionIndex) {
+		return requests.get(partitionIndex);
+	}
+	
+	/**
+	 * Verifies that the given responses, received from the given partition, contains one response for each request
+	 * sent to that partition.
+	 * 
+	 * @param partitionIndex - in the range [0, partitionCount())
+	 * @param responses
+	 * @return the given responses
+	 */
+	List<AstrixServiceInvocationResponse> verify(int partitionIndex, List<AstrixServiceInvocationResponse> responses) {
+		int expected = requests.get(partitionIndex).size();
+		if (responses.size() != expected) {
+			throw new IllegalStateException("Expected " + expected + " responses from partition routed to by: " + routingKeys.get(partitionIndex) 
+												+ ", received: " + responses.size());
+		}
+		return responses;
+	}
+	
+	/**
+	 * Reassembles the responses received from all target partitions, in any order, into a single list. <p>
+	 * 
+	 * @param partitionResponses - the responses received from each target partition
+	 * @return all responses
+	 * @throws IllegalStateException if responses from any partition are missing
+	 */
+	List<AstrixServiceInvocationResponse> reassemble(List<? extends List<AstrixServiceInvocationResponse>> partitionResponses) {
+		if (partitionResponses.size() != partitionCount()) {
+			throw new IllegalStateException("Expected responses from " + partitionCount() + " partitions, received: " + partitionResponses.size());
+		}
+		List<AstrixServiceInvocationResponse> result = new ArrayList<>(requestCount);
+		for (List<AstrixServiceInvocationResponse> responses : partitionResponses) {
+			result.addAll(responses);
+		}
+		if (result.size() != requestCount) {
+			throw new IllegalStateException("Expected " + requestCount + " responses, received: " + result.size());
+		}
+		return result;
+	}
+	
+}
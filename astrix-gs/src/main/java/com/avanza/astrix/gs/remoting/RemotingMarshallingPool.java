@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs.remoting;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.beans.core.AstrixConfigAware;
+import com.avanza.astrix.beans.core.AstrixSettings;
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.config.DynamicPropertyListener;
+import com.avanza.astrix.core.util.NamedThreadFactory;
+/**
+ * Bounded pool of threads shared by all remoting proxies created by the {@link GsRemotingComponent}, used 
+ * to (un)marshall the payload for each partition targeted by a partitioned or broadcasted service method, 
+ * see {@link AstrixSettings#REMOTING_MARSHALLING_POOL_SIZE}. <p>
+ * 
+ * When the pool size is 0, or when all threads are busy and the queue is full, payloads are (un)marshalled by the
+ * thread submitting the task. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public class RemotingMarshallingPool implements Executor, AstrixConfigAware {
+	
+	private static final Logger log = LoggerFactory.getLogger(RemotingMarshallingPool.class);
+	private static final int QUEUE_CAPACITY_PER_THREAD = 64;
+	private static final int MAX_QUEUE_CAPACITY = 1024;
+	
+	private volatile ThreadPoolExecutor executor;
+	private DynamicIntProperty poolSize;
+	
+	@Override
+	public void execute(Runnable command) {
+		ThreadPoolExecutor executor = getExecutor();
+		if (executor == null) {
+			command.run();
+			return;
+		}
+		executor.execute(command);
+	}
+	
+	private ThreadPoolExecutor getExecutor() {
+		if (poolSize.get() <= 0) {
+			return null;
+		}
+		ThreadPoolExecutor result = this.executor;
+		if (result != null) {
+			return result;
+		}
+		synchronized (this) {
+			if (this.executor == null) {
+				int size = poolSize.get();
+				log.info(String.format("Creating remoting marshalling pool. poolSize=%s", size));
+				this.executor = new ThreadPoolExecutor(size, 
+													   size, 
+													   0, 
+													   TimeUnit.SECONDS, 
+													   new ArrayBlockingQueue<Runnable>(Math.min(size * QUEUE_CAPACITY_PER_THREAD, MAX_QUEUE_CAPACITY)),
+													   new NamedThreadFactory("RemotingMarshallingPool"),
+													   new ThreadPoolExecutor.CallerRunsPolicy());
+			}
+			return this.executor;
+		}
+	}
+	
+	@Override
+	public void setConfig(DynamicConfig config) {
+		this.poolSize = AstrixSettings.REMOTING_MARSHALLING_POOL_SIZE.getFrom(config);
+		this.poolSize.addListener(new DynamicPropertyListener<Integer>() {
+			@Override
+			public void propertyChanged(Integer newValue) {
+				ThreadPoolExecutor executor = RemotingMarshallingPool.this.executor;
+				if (executor == null || newValue <= 0) {
+					// The pool is created using the current pool size on first use
+					return;
+				}
+				log.info(String.format("Changing pool-size for remoting marshalling pool. newSize=%s, oldSize=%s", newValue, executor.getMaximumPoolSize()));
+				if (newValue > executor.getMaximumPoolSize()) {
+					executor.setMaximumPoolSize(newValue);
+					executor.setCorePoolSize(newValue);
+				} else {
+					executor.setCorePoolSize(newValue);
+					executor.setMaximumPoolSize(newValue);
+				}
+			}
+		});
+	}
+	
+	@PreDestroy
+	public void destroy() {
+		ThreadPoolExecutor executor = this.executor;
+		if (executor != null) {
+			executor.shutdown();
+		}
+	}
+
+}
@@ -23,7 +23,9 @@ import org.openspaces.remoting.SpaceRemotingResult;
 import rx.Observable;
 import rx.Observable.OnSubscribe;
 import rx.Subscriber;
+import rx.functions.Action0;
 import rx.functions.Func1;
+import rx.subscriptions.Subscriptions;
 
 import com.avanza.astrix.core.AstrixRemoteResult;
 import com.avanza.astrix.core.CorrelationId;
@@ -78,7 +80,22 @@ public class GsUtil {
 		});
 	}
 	
+	/**
+	 * Emits the result of the given AsyncFuture to the given Subscriber. The AsyncFuture is
+	 * cancelled if the Subscriber unsubscribes before the result is available.
+	 * 
+	 * @param asyncFuture
+	 * @param t1
+	 */
 	public static <T> void subscribe(final AsyncFuture<T> asyncFuture, final Subscriber<? super T> t1) {
+		t1.add(Subscriptions.create(new Action0() {
+			@Override
+			public void call() {
+				if (!asyncFuture.isDone()) {
+					asyncFuture.cancel(false);
+				}
+			}
+		}));
 		asyncFuture.setListener(new AsyncFutureListener<T>() {
 			@Override
 			public void onResult(AsyncResult<T> result) {
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+
+public class AdaptivePoolSizeTest {
+	
+	private static final long WINDOW = TimeUnit.SECONDS.toNanos(1);
+	private final AdaptivePoolSize adaptivePoolSize = new AdaptivePoolSize();
+	
+	@Test
+	public void growsToNumberOfThreadsBlockedInExecuteWithHeadroom() throws Exception {
+		for (int i = 0; i < 40; i++) {
+			adaptivePoolSize.executed(TimeUnit.MILLISECONDS.toNanos(200));
+		}
+		// 8 seconds blocking during a 1 second window -> 8 busy threads
+		assertEquals(12, adaptivePoolSize.nextSize(5, 5, 50, WINDOW, 0));
+	}
+	
+	@Test
+	public void neverGrowsBeyondMaxSize() throws Exception {
+		adaptivePoolSize.executed(TimeUnit.SECONDS.toNanos(100));
+		assertEquals(20, adaptivePoolSize.nextSize(10, 5, 20, WINDOW, 0));
+	}
+	
+	@Test
+	public void growsByOneThreadWhenTasksAreQueued() throws Exception {
+		adaptivePoolSize.executed(TimeUnit.MILLISECONDS.toNanos(1));
+		assertEquals(6, adaptivePoolSize.nextSize(5, 5, 50, WINDOW, 3));
+	}
+	
+	@Test
+	public void shrinksByOneThreadPerWindowDownToMinSize() throws Exception {
+		assertEquals(9, adaptivePoolSize.nextSize(10, 5, 50, WINDOW, 0));
+		assertEquals(5, adaptivePoolSize.nextSize(5, 5, 50, WINDOW, 0));
+	}
+	
+	@Test
+	public void startsNewWindowEachTimeSizeIsComputed() throws Exception {
+		adaptivePoolSize.executed(TimeUnit.SECONDS.toNanos(10));
+		assertEquals(15, adaptivePoolSize.nextSize(10, 5, 50, WINDOW, 0));
+		assertEquals(14, adaptivePoolSize.nextSize(15, 5, 50, WINDOW, 0));
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class BoundedTaskQueueTest {
+	
+	private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+	private final BoundedTaskQueue taskQueue = new BoundedTaskQueue(executor);
+	private final ExecutorService submitters = Executors.newFixedThreadPool(8);
+	private final CountDownLatch release = new CountDownLatch(1);
+	
+	@After
+	public void after() {
+		release.countDown();
+		submitters.shutdown();
+		executor.shutdown();
+	}
+	
+	@Test
+	public void concurrentSubmissionsNeverExceedQueueCapacity() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		assertTrue(taskQueue.execute(new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				await(release);
+			}
+		}, 3));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		
+		final CountDownLatch go = new CountDownLatch(1);
+		List<Future<Boolean>> submissions = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			submissions.add(submitters.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws Exception {
+					go.await();
+					return taskQueue.execute(new Runnable() {
+						@Override
+						public void run() {
+						}
+					}, 3);
+				}
+			}));
+		}
+		go.countDown();
+		int accepted = 0;
+		for (Future<Boolean> submission : submissions) {
+			if (submission.get(5, TimeUnit.SECONDS)) {
+				accepted++;
+			}
+		}
+		assertEquals(3, accepted);
+		assertEquals(3, taskQueue.size());
+	}
+	
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
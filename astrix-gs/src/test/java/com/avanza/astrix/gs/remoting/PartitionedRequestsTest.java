@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.gs.remoting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.client.PartitionMapping;
+import com.avanza.astrix.remoting.client.RoutedServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.RoutingKey;
+
+public class PartitionedRequestsTest {
+	
+	private final PartitionMapping partitionMapping = PartitionMapping.modulo(3);
+	
+	@Test
+	public void eachPartitionIsSentOnlyTheRequestsRoutedToIt() throws Exception {
+		AstrixServiceInvocationRequest a = new AstrixServiceInvocationRequest();
+		AstrixServiceInvocationRequest b = new AstrixServiceInvocationRequest();
+		AstrixServiceInvocationRequest c = new AstrixServiceInvocationRequest();
+		PartitionedRequests partitionedRequests = PartitionedRequests.group(Arrays.asList(
+				new RoutedServiceInvocationRequest(a, RoutingKey.create(1)),
+				new RoutedServiceInvocationRequest(b, RoutingKey.create(2)),
+				new RoutedServiceInvocationRequest(c, RoutingKey.create(4))), partitionMapping);
+		
+		assertEquals(2, partitionedRequests.partitionCount());
+		assertEquals(Arrays.asList(a, c), partitionedRequests.requests(0));
+		assertEquals(RoutingKey.create(1), partitionedRequests.routingKey(0));
+		assertEquals(Arrays.asList(b), partitionedRequests.requests(1));
+		assertEquals(RoutingKey.create(2), partitionedRequests.routingKey(1));
+	}
+	
+	@Test
+	public void reassemblesResponsesFromAllPartitionsInAnyOrder() throws Exception {
+		PartitionedRequests partitionedRequests = groupRequests(1, 2, 4);
+		AstrixServiceInvocationResponse r1 = new AstrixServiceInvocationResponse();
+		AstrixServiceInvocationResponse r2 = new AstrixServiceInvocationResponse();
+		AstrixServiceInvocationResponse r3 = new AstrixServiceInvocationResponse();
+		
+		List<AstrixServiceInvocationResponse> responses = partitionedRequests.reassemble(Arrays.asList(Arrays.asList(r3), Arrays.asList(r1, r2)));
+		
+		assertEquals(3, responses.size());
+		assertEquals(new HashSet<>(Arrays.asList(r1, r2, r3)), new HashSet<>(responses));
+	}
+	
+	@Test
+	public void failsWhenResponsesFromPartitionAreMissing() throws Exception {
+		PartitionedRequests partitionedRequests = groupRequests(1, 2, 4);
+		try {
+			partitionedRequests.reassemble(Arrays.asList(responses(2)));
+			fail("Expected reassembly to fail");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("partitions"));
+		}
+	}
+	
+	@Test
+	public void failsWhenPartitionReturnsEmptyResponse() throws Exception {
+		PartitionedRequests partitionedRequests = groupRequests(1, 2, 4);
+		try {
+			partitionedRequests.reassemble(Arrays.asList(responses(2), Collections.<AstrixServiceInvocationResponse>emptyList()));
+			fail("Expected reassembly to fail");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+	}
+	
+	@Test
+	public void verifiesResponsesFromSinglePartition() throws Exception {
+		PartitionedRequests partitionedRequests = groupRequests(1, 2, 4);
+		List<AstrixServiceInvocationResponse> partitionResponses = responses(2);
+		assertSame(partitionResponses, partitionedRequests.verify(0, partitionResponses));
+		try {
+			partitionedRequests.verify(1, Collections.<AstrixServiceInvocationResponse>emptyList());
+			fail("Expected verification to fail");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+	}
+	
+	private PartitionedRequests groupRequests(int... routingKeyHashes) {
+		List<RoutedServiceInvocationRequest> requests = new ArrayList<>();
+		for (int hash : routingKeyHashes) {
+			requests.add(new RoutedServiceInvocationRequest(new AstrixServiceInvocationRequest(), RoutingKey.create(hash)));
+		}
+		return PartitionedRequests.group(requests, partitionMapping);
+	}
+	
+	private static List<AstrixServiceInvocationResponse> responses(int count) {
+		List<AstrixServiceInvocationResponse> result = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			result.add(new AstrixServiceInvocationResponse());
+		}
+		return result;
+	}
+
+}
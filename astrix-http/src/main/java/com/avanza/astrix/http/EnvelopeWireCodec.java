@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+/**
+ * Default {@link HttpWireCodec}, which writes the compact externalized form of the invocation
+ * envelopes, without the class descriptors written by {@link ObjectOutputStream#writeObject(Object)}. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class EnvelopeWireCodec implements HttpWireCodec {
+	
+	public static final String CONTENT_TYPE = "application/x-astrix-envelope";
+
+	@Override
+	public String getContentType() {
+		return CONTENT_TYPE;
+	}
+
+	@Override
+	public void writeRequest(AstrixServiceInvocationRequest request, OutputStream out) throws IOException {
+		ObjectOutputStream objectOutput = new ObjectOutputStream(out);
+		request.writeExternal(objectOutput);
+		objectOutput.flush();
+	}
+
+	@Override
+	public AstrixServiceInvocationRequest readRequest(InputStream in) throws IOException {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		try {
+			request.readExternal(new ObjectInputStream(in));
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Failed to read request", e);
+		}
+		return request;
+	}
+
+	@Override
+	public void writeResponse(AstrixServiceInvocationResponse response, OutputStream out) throws IOException {
+		ObjectOutputStream objectOutput = new ObjectOutputStream(out);
+		response.writeExternal(objectOutput);
+		objectOutput.flush();
+	}
+
+	@Override
+	public AstrixServiceInvocationResponse readResponse(InputStream in) throws IOException {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		try {
+			response.readExternal(new ObjectInputStream(in));
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Failed to read response", e);
+		}
+		return response;
+	}
+
+}
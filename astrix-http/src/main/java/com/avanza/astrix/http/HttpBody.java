@@ -0,0 +1,141 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+/**
+ * An encoded, and possibly compressed, request or response body. <p>
+ * 
+ * The body is encoded into a buffer that is handed to the http layer without being copied, and
+ * bodies larger than the compression threshold are gzip-compressed. Received bodies are decoded
+ * directly from the stream, see {@link #decode(InputStream, String)}. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class HttpBody {
+	
+	public static final String GZIP = "gzip";
+	
+	private final byte[] bytes;
+	private final int length;
+	private final String contentEncoding;
+	
+	private HttpBody(byte[] bytes, int length, String contentEncoding) {
+		this.bytes = bytes;
+		this.length = length;
+		this.contentEncoding = contentEncoding;
+	}
+	
+	/**
+	 * @param buffer - the encoded body
+	 * @param compressionThreshold - compress the body if it is larger than the threshold, negative to disable compression
+	 * @param compressionAccepted - whether the receiver accepts a compressed body
+	 * @return
+	 * @throws IOException
+	 */
+	static HttpBody create(Buffer buffer, int compressionThreshold, boolean compressionAccepted) throws IOException {
+		if (!compressionAccepted || compressionThreshold < 0 || buffer.size() <= compressionThreshold) {
+			return new HttpBody(buffer.bytes(), buffer.size(), null);
+		}
+		Buffer compressed = new Buffer(buffer.size() / 2);
+		GZIPOutputStream gzip = new GZIPOutputStream(compressed, 8192);
+		gzip.write(buffer.bytes(), 0, buffer.size());
+		gzip.close();
+		return new HttpBody(compressed.bytes(), compressed.size(), GZIP);
+	}
+	
+	/**
+	 * Wraps the stream of a received body in a stream that decompresses the body according to 
+	 * the given content encoding.
+	 * 
+	 * @param in
+	 * @param contentEncoding - the value of the Content-Encoding header, might be null
+	 * @return
+	 * @throws IOException - if the content encoding is not supported
+	 */
+	public static InputStream decode(InputStream in, String contentEncoding) throws IOException {
+		if (contentEncoding == null || contentEncoding.isEmpty() || "identity".equalsIgnoreCase(contentEncoding)) {
+			return in;
+		}
+		if (GZIP.equalsIgnoreCase(contentEncoding)) {
+			return new GZIPInputStream(in, 8192);
+		}
+		throw new IOException("Unsupported Content-Encoding: " + contentEncoding);
+	}
+	
+	/**
+	 * @param acceptEncoding - the value of the Accept-Encoding header, might be null
+	 * @return true if the given header accepts gzip-compressed bodies
+	 */
+	public static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		for (String coding : acceptEncoding.split(",")) {
+			String[] codingAndParams = coding.split(";");
+			if (!GZIP.equalsIgnoreCase(codingAndParams[0].trim())) {
+				continue;
+			}
+			for (int i = 1; i < codingAndParams.length; i++) {
+				if (codingAndParams[i].replace(" ", "").matches("q=0(\\.0*)?")) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+	
+	public void writeTo(OutputStream out) throws IOException {
+		out.write(bytes, 0, length);
+	}
+	
+	byte[] bytes() {
+		return bytes;
+	}
+	
+	public int getLength() {
+		return length;
+	}
+	
+	/**
+	 * @return the Content-Encoding of the body, or null if the body is not compressed
+	 */
+	public String getContentEncoding() {
+		return contentEncoding;
+	}
+	
+	/**
+	 * ByteArrayOutputStream that exposes the underlying buffer to avoid copying it. <p>
+	 */
+	static final class Buffer extends ByteArrayOutputStream {
+		
+		Buffer(int initialSize) {
+			super(Math.max(initialSize, 32));
+		}
+		
+		byte[] bytes() {
+			return buf;
+		}
+	}
+	
+}
@@ -1,8 +1,3 @@
-package com.avanza.astrix.http;
-
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 /*
  * Copyright 2014 Avanza Bank AB
  *
@@ -18,41 +13,195 @@ import java.io.ObjectOutputStream;
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
+package com.avanza.astrix.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
+
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 import com.avanza.astrix.remoting.server.AstrixServiceActivator;
 /**
+ * Servlet that exports the services registered in an {@link AstrixServiceActivator} to clients using
+ * the {@link HttpRemotingTransport}. <p>
+ * 
+ * The request body is decoded directly from the request stream using the {@link HttpWireCodec}, and the 
+ * service is invoked on a bounded thread pool dedicated to the invoked service, see {@link ServiceExecutors}.
+ * An invocation that is rejected by a saturated pool immediately receives a service-unavailable response,
+ * hence one misbehaving service can't starve the other services exported by the same endpoint. <p>
  * 
- * @author Elias Lindholm
+ * When the container supports asynchronous processing the container thread is released as soon as the 
+ * request is decoded, and the response is written by the service thread. The response is compressed if it is 
+ * larger than the compression threshold and the client accepts gzip. <p>
+ * 
+ * @author Elias Lindholm (elilin)
  *
  */
 public class HttpRemotingEndpoint extends HttpServlet {
 	
-	/*
-	 * This is only a draft for remoting over http
-	 */
+	private static final long serialVersionUID = 1L;
+	private static final Logger log = LoggerFactory.getLogger(HttpRemotingEndpoint.class);
 	
 	private final AstrixServiceActivator serviceActivator;
+	private final HttpWireCodec codec;
+	private final HttpRemotingSettings settings;
+	private final ServiceExecutors serviceExecutors;
 	
 	public HttpRemotingEndpoint(AstrixServiceActivator serviceActivator) {
+		this(serviceActivator, new DynamicConfig(new MapConfigSource()));
+	}
+	
+	public HttpRemotingEndpoint(AstrixServiceActivator serviceActivator, DynamicConfig config) {
+		this(serviceActivator, new EnvelopeWireCodec(), HttpRemotingSettings.DEFAULT, config);
+	}
+	
+	public HttpRemotingEndpoint(AstrixServiceActivator serviceActivator, HttpWireCodec codec, HttpRemotingSettings settings, DynamicConfig config) {
 		this.serviceActivator = serviceActivator;
+		this.codec = codec;
+		this.settings = settings;
+		this.serviceExecutors = new ServiceExecutors(config);
 	}
 
 	@Override
-	protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+	protected void doPost(HttpServletRequest req, final HttpServletResponse resp) throws ServletException, IOException {
+		CompletableFuture<HttpBody> response;
 		try {
-			ObjectInputStream input = new ObjectInputStream(req.getInputStream());
-			AstrixServiceInvocationRequest invocationRequest = (AstrixServiceInvocationRequest) input.readObject();
-			AstrixServiceInvocationResponse invocationResponse = serviceActivator.invokeService(invocationRequest);
-			new ObjectOutputStream(resp.getOutputStream()).writeObject(invocationResponse);
-		} catch (Exception e) {
-			throw new ServletException(e);
+			response = process(req.getInputStream(), req.getHeader("Content-Encoding"), req.getHeader("Accept-Encoding"));
+		} catch (IOException e) {
+			log.warn("Failed to decode remoting request", e);
+			resp.sendError(HttpServletResponse.SC_BAD_REQUEST);
+			return;
 		}
+		if (!req.isAsyncSupported()) {
+			HttpBody body;
+			try {
+				body = response.join();
+			} catch (CompletionException e) {
+				log.warn("Failed to process remoting request", e.getCause());
+				resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+				return;
+			}
+			writeResponse(resp, body);
+			return;
+		}
+		final AsyncContext asyncContext = req.startAsync();
+		asyncContext.setTimeout(0);
+		response.whenComplete(new BiConsumer<HttpBody, Throwable>() {
+			@Override
+			public void accept(HttpBody body, Throwable error) {
+				try {
+					if (error != null) {
+						log.warn("Failed to process remoting request", error);
+						resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+					} else {
+						writeResponse(resp, body);
+					}
+				} catch (IOException e) {
+					log.warn("Failed to write remoting response", e);
+				} finally {
+					asyncContext.complete();
+				}
+			}
+		});
+	}
+	
+	private void writeResponse(HttpServletResponse resp, HttpBody body) throws IOException {
+		resp.setContentType(codec.getContentType());
+		resp.setContentLength(body.getLength());
+		if (body.getContentEncoding() != null) {
+			resp.setHeader("Content-Encoding", body.getContentEncoding());
+		}
+		body.writeTo(resp.getOutputStream());
+	}
+
+	/**
+	 * Decodes a request in the calling thread and invokes the target service on the thread 
+	 * pool of the service. The response is encoded by the thread that completes the invocation, 
+	 * which is the thread that completes the future returned by the provider for asynchronous 
+	 * service implementations. Hence the pool threads are not held while waiting for such providers. <p>
+	 * 
+	 * Allows the endpoint to be hosted outside a servlet container. <p>
+	 * 
+	 * @param requestBody - the (possibly compressed) request body
+	 * @param contentEncoding - the Content-Encoding of the request body, might be null
+	 * @param acceptEncoding - the Accept-Encoding of the request, might be null
+	 * @return a future that is completed with the encoded response, or completed exceptionally if the 
+	 * 		   invocation or the encoding of the response fails
+	 * @throws IOException - if the request could not be decoded
+	 */
+	public CompletableFuture<HttpBody> process(InputStream requestBody, String contentEncoding, final String acceptEncoding) throws IOException {
+		final long receivedNanos = System.nanoTime();
+		final AstrixServiceInvocationRequest request = codec.readRequest(HttpBody.decode(requestBody, contentEncoding));
+		final CompletableFuture<HttpBody> result = new CompletableFuture<>();
+		boolean accepted = serviceExecutors.execute(request.getServiceApi(), new Runnable() {
+			@Override
+			public void run() {
+				try {
+					serviceActivator.invokeServiceAsync(request, receivedNanos).whenComplete(new BiConsumer<AstrixServiceInvocationResponse, Throwable>() {
+						@Override
+						public void accept(AstrixServiceInvocationResponse response, Throwable error) {
+							if (error != null) {
+								result.completeExceptionally(error);
+								return;
+							}
+							try {
+								result.complete(encode(response, acceptEncoding));
+							} catch (IOException | RuntimeException e) {
+								result.completeExceptionally(e);
+							}
+						}
+					});
+				} catch (RuntimeException | Error e) {
+					result.completeExceptionally(e);
+				}
+			}
+		});
+		if (!accepted) {
+			result.complete(encode(serviceUnavailable(request), acceptEncoding));
+		}
+		return result;
+	}
+	
+	private HttpBody encode(AstrixServiceInvocationResponse response, String acceptEncoding) throws IOException {
+		HttpBody.Buffer buffer = new HttpBody.Buffer(512);
+		codec.writeResponse(response, buffer);
+		return HttpBody.create(buffer, settings.getCompressionThreshold(), HttpBody.acceptsGzip(acceptEncoding));
+	}
+
+	private static AstrixServiceInvocationResponse serviceUnavailable(AstrixServiceInvocationRequest request) {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setServiceUnavailable(true);
+		response.setExceptionMsg("Service is saturated in http remoting endpoint: " + request.getServiceApi());
+		response.setCorrelationId(UUID.randomUUID().toString());
+		return response;
+	}
+	
+	/**
+	 * @return the media type of the encoded responses
+	 */
+	public String getContentType() {
+		return codec.getContentType();
+	}
+	
+	@Override
+	public void destroy() {
+		serviceExecutors.shutdown();
+		super.destroy();
 	}
 
 }
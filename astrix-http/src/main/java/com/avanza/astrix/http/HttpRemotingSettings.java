@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+/**
+ * Settings used by the {@link HttpRemotingTransport} and the {@link HttpRemotingEndpoint}. <p>
+ * 
+ * The default settings are suitable for most deployments. Subclasses might override the settings, typically
+ * by reading them from the configuration. The connection pool settings are read once, when the transport is created,
+ * whereas the compression threshold is read every time a body is encoded. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public class HttpRemotingSettings {
+	
+	public static final HttpRemotingSettings DEFAULT = new HttpRemotingSettings();
+	
+	/**
+	 * @return the maximum number of pooled, persistent connections to each cluster member, unless 
+	 * 		   overridden by {@link HttpRemotingTransport.ClusterMember#getMaxConnections()} 
+	 */
+	public int getMaxConnectionsPerMember() {
+		return 20;
+	}
+	
+	/**
+	 * @return the maximum number of pooled connections to all cluster members
+	 */
+	public int getMaxConnectionsTotal() {
+		return 200;
+	}
+	
+	/**
+	 * @return the time (in milliseconds) to wait for a connection to be established
+	 */
+	public int getConnectTimeoutMillis() {
+		return 1000;
+	}
+	
+	/**
+	 * @return the number of io threads used by the transport
+	 */
+	public int getIoThreadCount() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+	
+	/**
+	 * Request and response bodies larger than the threshold are gzip-compressed. A negative value disables compression. 
+	 * 
+	 * @return the compression threshold in bytes
+	 */
+	public int getCompressionThreshold() {
+		return 8 * 1024;
+	}
+
+}
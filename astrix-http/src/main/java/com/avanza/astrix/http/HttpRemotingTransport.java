@@ -16,22 +16,37 @@
 package com.avanza.astrix.http;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.io.InputStream;
+import java.net.URI;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.utils.URIUtils;
 import org.apache.http.concurrent.FutureCallback;
-import org.apache.http.entity.SerializableEntity;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.ContentType;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.apache.http.nio.reactor.IOReactorException;
 
 import rx.Observable;
 import rx.Observable.OnSubscribe;
@@ -40,44 +55,106 @@ import rx.Subscriber;
 import com.avanza.astrix.core.ServiceUnavailableException;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.client.CancellableFuture;
+import com.avanza.astrix.remoting.client.ConsistentHashRing;
+import com.avanza.astrix.remoting.client.PartitionMapping;
 import com.avanza.astrix.remoting.client.RemotingTransportSpi;
 import com.avanza.astrix.remoting.client.RoutedServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.RoutingKey;
 /**
+ * RemotingTransportSpi that sends each invocation request as a http POST to a {@link HttpRemotingEndpoint}. <p>
  * 
- * @author Elias Lindholm
+ * Requests are sent using a pool of persistent connections to each cluster member, see {@link HttpRemotingSettings}. 
+ * The invocation envelopes are encoded using a {@link HttpWireCodec} directly into the request body, and the
+ * response is decoded directly from the response stream. Bodies larger than the compression threshold are gzip-compressed. <p>
+ * 
+ * @author Elias Lindholm (elilin)
  *
  */
 public final class HttpRemotingTransport implements RemotingTransportSpi {
 
-	private final CloseableHttpAsyncClient httpclient = HttpAsyncClients.createDefault();
-	private final Map<Integer, ClusterMember> clusterMembers = new ConcurrentHashMap<>();
-	private final int clusterSize; // may be larger than clusterMembers.size in case not all members are discovered yet.
+	private final ConsistentHashRing<ClusterMember> clusterMembers;
+	private final HttpWireCodec codec;
+	private final HttpRemotingSettings settings;
+	private final ContentType contentType;
+	private final PoolingNHttpClientConnectionManager connectionManager;
+	private final CloseableHttpAsyncClient httpclient;
+	private final Set<ClusterMember> membersWithConfiguredPool = ConcurrentHashMap.newKeySet();
+	
+	public HttpRemotingTransport(ConsistentHashRing<ClusterMember> clusterMembers) {
+		this(clusterMembers, new EnvelopeWireCodec(), HttpRemotingSettings.DEFAULT);
+	}
+	
+	public HttpRemotingTransport(ConsistentHashRing<ClusterMember> clusterMembers, HttpWireCodec codec, HttpRemotingSettings settings) {
+		this.clusterMembers = clusterMembers;
+		this.codec = codec;
+		this.settings = settings;
+		this.contentType = ContentType.create(codec.getContentType());
+		this.connectionManager = createConnectionManager(settings);
+		this.httpclient = HttpAsyncClients.custom()
+										  .setConnectionManager(connectionManager)
+										  .setDefaultRequestConfig(RequestConfig.custom()
+												  								.setConnectTimeout(settings.getConnectTimeoutMillis())
+												  								.build())
+										  .build();
+	}
 	
-	public HttpRemotingTransport(Collection<ClusterMember> clusterMembers, int clusterSize) {
-		this.clusterSize = clusterSize;
-		for (ClusterMember clusterMember : clusterMembers) {
-			this.clusterMembers.put(clusterMember.getClusterInstanceId(), clusterMember);
+	private static PoolingNHttpClientConnectionManager createConnectionManager(HttpRemotingSettings settings) {
+		IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+														 .setIoThreadCount(settings.getIoThreadCount())
+														 .setConnectTimeout(settings.getConnectTimeoutMillis())
+														 .setSoKeepAlive(true)
+														 .setTcpNoDelay(true)
+														 .build();
+		PoolingNHttpClientConnectionManager result;
+		try {
+			result = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioReactorConfig));
+		} catch (IOReactorException e) {
+			throw new IllegalStateException("Failed to create io reactor", e);
 		}
+		result.setMaxTotal(settings.getMaxConnectionsTotal());
+		result.setDefaultMaxPerRoute(settings.getMaxConnectionsPerMember());
+		return result;
 	}
 	
 	@Override
 	public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(
 			final AstrixServiceInvocationRequest request, final RoutingKey routingKey) {
-		ClusterMember clusterMember = getTargetMember(routingKey);
-		final HttpPost postRequest = new HttpPost(clusterMember.getRemoteEndpointUri());
-		postRequest.setEntity(new SerializableEntity(request));
-		return Observable.create(new OnSubscribe<AstrixServiceInvocationResponse>() {
-			@Override
-			public void call(final Subscriber<? super AstrixServiceInvocationResponse> t1) {
+		return submitRequest(request, getTargetMember(routingKey));
+	}
+	
+	@Override
+	public CompletableFuture<AstrixServiceInvocationResponse> invokeRoutedRequestAsync(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		final CancellableFuture<AstrixServiceInvocationResponse> result = new CancellableFuture<>();
+		HttpPost postRequest;
+		try {
+			postRequest = createPostRequest(getTargetMember(routingKey), request);
+		} catch (IOException | ServiceUnavailableException e) {
+			result.completeExceptionally(e);
+			return result;
+		}
+		final Future<HttpResponse> httpResponse = httpclient.execute(postRequest, new FutureCallback<HttpResponse>() {
+			public void completed(final HttpResponse response) {
 				try {
-					httpclient.execute(postRequest, serviceResponseCallback(t1));
+					result.complete(getResponse(response));
 				} catch (Exception e) {
-					t1.onError(e);
+					result.completeExceptionally(e);
 				}
 			}
-
+			public void failed(final Exception ex) {
+				result.completeExceptionally(ex);
+			}
+			public void cancelled() {
+				result.cancel(false);
+			}
+		});
+		result.onCancel(new Runnable() {
+			@Override
+			public void run() {
+				httpResponse.cancel(true);
+			}
 		});
+		return result;
 	}
 	
 	@Override
@@ -95,32 +172,54 @@ public final class HttpRemotingTransport implements RemotingTransportSpi {
 			AstrixServiceInvocationRequest request) {
 		Observable<AstrixServiceInvocationResponse> result = Observable.empty();
 		for (ClusterMember clusterMember : getAllClusterMembers()) {
-			final HttpPost postRequest = new HttpPost(clusterMember.getRemoteEndpointUri());
-			postRequest.setEntity(new SerializableEntity(request));
-			result = result.mergeWith(Observable.create(new OnSubscribe<AstrixServiceInvocationResponse>() {
-				@Override
-				public void call(final Subscriber<? super AstrixServiceInvocationResponse> t1) {
-					try {
-						httpclient.execute(postRequest, serviceResponseCallback(t1));
-					} catch (Exception e) {
-						t1.onError(e);
-					}
-				}
-
-			}));
+			result = result.mergeWith(submitRequest(request, clusterMember));
 		}
 		return result.toList();
 	}
 	
+	private Observable<AstrixServiceInvocationResponse> submitRequest(final AstrixServiceInvocationRequest request, final ClusterMember clusterMember) {
+		return Observable.create(new OnSubscribe<AstrixServiceInvocationResponse>() {
+			@Override
+			public void call(final Subscriber<? super AstrixServiceInvocationResponse> t1) {
+				try {
+					httpclient.execute(createPostRequest(clusterMember, request), serviceResponseCallback(t1));
+				} catch (Exception e) {
+					t1.onError(e);
+				}
+			}
+		});
+	}
+	
+	private HttpPost createPostRequest(ClusterMember clusterMember, AstrixServiceInvocationRequest request) throws IOException {
+		configureConnectionPool(clusterMember);
+		HttpBody.Buffer buffer = new HttpBody.Buffer(256);
+		codec.writeRequest(request, buffer);
+		int compressionThreshold = settings.getCompressionThreshold();
+		HttpBody body = HttpBody.create(buffer, compressionThreshold, true);
+		NByteArrayEntity entity = new NByteArrayEntity(body.bytes(), 0, body.getLength(), contentType);
+		entity.setContentEncoding(body.getContentEncoding());
+		HttpPost postRequest = new HttpPost(clusterMember.getUri());
+		postRequest.setEntity(entity);
+		if (compressionThreshold >= 0) {
+			postRequest.setHeader("Accept-Encoding", HttpBody.GZIP);
+		}
+		return postRequest;
+	}
+	
+	private void configureConnectionPool(ClusterMember clusterMember) {
+		if (clusterMember.getMaxConnections() > 0 && membersWithConfiguredPool.add(clusterMember)) {
+			connectionManager.setMaxPerRoute(new HttpRoute(clusterMember.getTarget()), clusterMember.getMaxConnections());
+		}
+	}
+	
 	private Collection<ClusterMember> getAllClusterMembers() {
-		return this.clusterMembers.values();
+		return this.clusterMembers.getMembers();
 	}
 	
 	private ClusterMember getTargetMember(RoutingKey routingKey) {
-		int targetPartition = routingKey.hashCode() % partitionCount();
-		ClusterMember target = this.clusterMembers.get(targetPartition);
+		ClusterMember target = this.clusterMembers.getMember(routingKey);
 		if (target == null) {
-			throw new ServiceUnavailableException("Failed to find cluster member with id: " + targetPartition);
+			throw new ServiceUnavailableException("Failed to find cluster member for routingKey: " + routingKey);
 		}
 		return target;
 	}
@@ -140,24 +239,33 @@ public final class HttpRemotingTransport implements RemotingTransportSpi {
 				t1.onError(ex);
 			}
 			public void cancelled() {
-				t1.onError(new RuntimeException("Request cancelled"));
+				t1.onError(new CancellationException("Request cancelled"));
 			}
 		};
 	}
 	
-	private AstrixServiceInvocationResponse getResponse(final HttpResponse response){
-		try {
-			HttpEntity entity = response.getEntity();
-			ObjectInputStream inputStream = new ObjectInputStream(entity.getContent());
-			return (AstrixServiceInvocationResponse) inputStream.readObject();
-		} catch (ClassNotFoundException | IOException e) {
-			throw new RuntimeException(e);
+	private AstrixServiceInvocationResponse getResponse(final HttpResponse response) {
+		int statusCode = response.getStatusLine().getStatusCode();
+		if (statusCode != HttpStatus.SC_OK) {
+			throw new ServiceUnavailableException("Remoting endpoint responded with: " + response.getStatusLine());
+		}
+		HttpEntity entity = response.getEntity();
+		Header contentEncoding = entity.getContentEncoding();
+		try (InputStream content = HttpBody.decode(entity.getContent(), contentEncoding != null ? contentEncoding.getValue() : null)) {
+			return codec.readResponse(content);
+		} catch (IOException e) {
+			throw new ServiceUnavailableException("Failed to read response from remoting endpoint", e);
 		}
 	}
 
 	@Override
 	public int partitionCount() {
-		return this.clusterSize;
+		return this.clusterMembers.size();
+	}
+	
+	@Override
+	public PartitionMapping partitionMapping() {
+		return this.clusterMembers.partitionMapping();
 	}
 	
 	@PostConstruct
@@ -170,23 +278,55 @@ public final class HttpRemotingTransport implements RemotingTransportSpi {
 		httpclient.close();
 	}
 	
-	private static class ClusterMember {
-		private String remoteEndpoint;
-		private int clusterInstanceId;
-		public ClusterMember(String remoteEndpoint, int clusterInstanceId) {
+	public static final class ClusterMember {
+		private final String remoteEndpoint;
+		private final URI uri;
+		private final HttpHost target;
+		private final int maxConnections;
+		
+		public ClusterMember(String remoteEndpoint) {
+			this(remoteEndpoint, 0);
+		}
+		
+		/**
+		 * @param remoteEndpoint - the uri of the {@link HttpRemotingEndpoint}
+		 * @param maxConnections - the maximum number of pooled connections to the member, or 0 to 
+		 * 						   use {@link HttpRemotingSettings#getMaxConnectionsPerMember()}
+		 */
+		public ClusterMember(String remoteEndpoint, int maxConnections) {
 			this.remoteEndpoint = remoteEndpoint;
-			this.clusterInstanceId = clusterInstanceId;
+			this.uri = URI.create(remoteEndpoint);
+			HttpHost host = URIUtils.extractHost(uri);
+			if (host == null) {
+				throw new IllegalArgumentException("Not an absolute uri: " + remoteEndpoint);
+			}
+			if (host.getPort() < 0) {
+				host = new HttpHost(host.getHostName(), "https".equalsIgnoreCase(host.getSchemeName()) ? 443 : 80, host.getSchemeName());
+			}
+			this.target = host;
+			this.maxConnections = maxConnections;
 		}
 		
 		public String getRemoteEndpointUri() {
 			return remoteEndpoint;
 		}
 		
-		public int getClusterInstanceId() {
-			return clusterInstanceId;
+		public int getMaxConnections() {
+			return maxConnections;
 		}
 		
+		URI getUri() {
+			return uri;
+		}
 		
+		HttpHost getTarget() {
+			return target;
+		}
+		
+		@Override
+		public String toString() {
+			return remoteEndpoint;
+		}
 	}
 
 }
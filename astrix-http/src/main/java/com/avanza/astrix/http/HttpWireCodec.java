@@ -0,0 +1,48 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+/**
+ * Encodes the invocation requests and responses sent over http. <p>
+ * 
+ * The encoded bodies might be compressed by the transport, see {@link HttpRemotingSettings#getCompressionThreshold()}, 
+ * hence a codec should not compress the bodies itself. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public interface HttpWireCodec {
+	
+	/**
+	 * @return the media type used for the encoded bodies
+	 */
+	String getContentType();
+	
+	void writeRequest(AstrixServiceInvocationRequest request, OutputStream out) throws IOException;
+	
+	AstrixServiceInvocationRequest readRequest(InputStream in) throws IOException;
+	
+	void writeResponse(AstrixServiceInvocationResponse response, OutputStream out) throws IOException;
+	
+	AstrixServiceInvocationResponse readResponse(InputStream in) throws IOException;
+
+}
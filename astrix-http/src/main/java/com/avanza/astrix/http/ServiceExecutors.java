@@ -0,0 +1,173 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.DynamicIntProperty;
+import com.avanza.astrix.config.DynamicPropertyListener;
+import com.avanza.astrix.core.util.NamedThreadFactory;
+/**
+ * Executes the invocations of each exported service on a dedicated, bounded thread pool, which
+ * ensures that a slow service can't starve the other services exported by the same endpoint. <p>
+ * 
+ * Each pool is created when the first invocation of the given service arrives and is configured using the
+ * following properties, both of which might be changed at runtime: <p>
+ * 
+ * <ul>
+ * <li>astrix.http.endpoint.[serviceApi].poolsize - the number of threads in the pool. Defaults to 10.</li>
+ * <li>astrix.http.endpoint.[serviceApi].queueCapacity - the maximum number of invocations waiting for a thread. 
+ * Invocations submitted when the queue is full are rejected. A non-positive value disables the bound. Defaults to 100.</li>
+ * </ul>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class ServiceExecutors {
+	
+	private static final Logger log = LoggerFactory.getLogger(ServiceExecutors.class);
+	
+	private final DynamicConfig config;
+	private final ConcurrentMap<String, ServiceExecutor> executorByService = new ConcurrentHashMap<>();
+	private volatile boolean shutdown = false;
+	
+	ServiceExecutors(DynamicConfig config) {
+		this.config = config;
+	}
+	
+	/**
+	 * Submits a task on the pool of the given service.
+	 * 
+	 * @param serviceApi
+	 * @param task
+	 * @return false if the task was rejected, ie if the queue of the pool is full
+	 */
+	boolean execute(String serviceApi, Runnable task) {
+		if (shutdown) {
+			return false;
+		}
+		return getExecutor(serviceApi).execute(task);
+	}
+	
+	private ServiceExecutor getExecutor(String serviceApi) {
+		ServiceExecutor result = executorByService.get(serviceApi);
+		if (result != null) {
+			return result;
+		}
+		synchronized (executorByService) {
+			result = executorByService.get(serviceApi);
+			if (result == null) {
+				result = new ServiceExecutor(serviceApi, config);
+				executorByService.put(serviceApi, result);
+			}
+			return result;
+		}
+	}
+	
+	void shutdown() {
+		shutdown = true;
+		synchronized (executorByService) {
+			for (ServiceExecutor executor : executorByService.values()) {
+				executor.executor.shutdown();
+			}
+		}
+	}
+	
+	private static final class ServiceExecutor {
+		
+		private final String serviceApi;
+		private final ThreadPoolExecutor executor;
+		private final DynamicIntProperty poolSize;
+		private final DynamicIntProperty queueCapacity;
+		/*
+		 * Number of invocations submitted but not yet picked up by a thread. A slot is reserved
+		 * before the invocation is handed to the (unbounded) queue of the executor, hence concurrent 
+		 * submissions never exceed the queueCapacity, which might be changed at any time.
+		 */
+		private final AtomicInteger waiting = new AtomicInteger();
+		
+		public ServiceExecutor(String serviceApi, DynamicConfig config) {
+			this.serviceApi = serviceApi;
+			String propertyPrefix = "astrix.http.endpoint." + serviceApi + ".";
+			this.poolSize = config.getIntProperty(propertyPrefix + "poolsize", 10);
+			this.queueCapacity = config.getIntProperty(propertyPrefix + "queueCapacity", 100);
+			this.executor = new ThreadPoolExecutor(poolSize.get(), 
+												   poolSize.get(), 
+												   0, 
+												   TimeUnit.SECONDS, 
+												   new LinkedBlockingQueue<Runnable>(), 
+												   new NamedThreadFactory(String.format("HttpRemotingEndpoint[%s]", serviceApi)));
+			this.poolSize.addListener(new DynamicPropertyListener<Integer>() {
+				@Override
+				public void propertyChanged(Integer newValue) {
+					log.info(String.format("Changing pool-size for HttpRemotingEndpoint. service=%s newSize=%s, oldSize=%s", 
+											ServiceExecutor.this.serviceApi, newValue, executor.getMaximumPoolSize()));
+					resize(newValue);
+				}
+			});
+		}
+		
+		private void resize(int newSize) {
+			if (newSize < 1) {
+				return;
+			}
+			synchronized (executor) {
+				// The core size may never exceed the maximum size
+				if (newSize > executor.getMaximumPoolSize()) {
+					executor.setMaximumPoolSize(newSize);
+					executor.setCorePoolSize(newSize);
+				} else {
+					executor.setCorePoolSize(newSize);
+					executor.setMaximumPoolSize(newSize);
+				}
+			}
+		}
+		
+		boolean execute(final Runnable task) {
+			int capacity = queueCapacity.get();
+			int queued = waiting.incrementAndGet();
+			if (capacity > 0 && queued > capacity) {
+				waiting.decrementAndGet();
+				log.debug(String.format("Rejecting invocation, queue is full. service=%s queueCapacity=%s", serviceApi, capacity));
+				return false;
+			}
+			try {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						waiting.decrementAndGet();
+						task.run();
+					}
+				});
+				return true;
+			} catch (RejectedExecutionException e) {
+				waiting.decrementAndGet();
+				return false;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.server.AdmissionControlSettings;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+
+public class HttpRemotingEndpointTest {
+	
+	private final EnvelopeWireCodec codec = new EnvelopeWireCodec();
+	private final AstrixServiceActivator failingActivator = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT) {
+		@Override
+		public CompletableFuture<AstrixServiceInvocationResponse> invokeServiceAsync(AstrixServiceInvocationRequest request, long receivedNanos) {
+			throw new IllegalStateException("invocation failed");
+		}
+	};
+	private final HttpRemotingEndpoint endpoint = new HttpRemotingEndpoint(failingActivator, codec, HttpRemotingSettings.DEFAULT, new DynamicConfig(new MapConfigSource()));
+	
+	@After
+	public void after() {
+		endpoint.destroy();
+	}
+	
+	@Test
+	public void failsResponseWhenInvocationFails() throws Exception {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setServiceApi("service");
+		request.setArguments(new Object[0]);
+		HttpBody.Buffer requestBody = new HttpBody.Buffer(256);
+		codec.writeRequest(request, requestBody);
+		
+		CompletableFuture<HttpBody> response = endpoint.process(new ByteArrayInputStream(requestBody.toByteArray()), null, null);
+		try {
+			response.get(5, TimeUnit.SECONDS);
+			fail("Expected response to fail");
+		} catch (ExecutionException e) {
+			assertEquals("invocation failed", e.getCause().getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
+import com.avanza.astrix.core.AstrixBroadcast;
+import com.avanza.astrix.core.AstrixObjectSerializer;
+import com.avanza.astrix.core.AstrixRemoteResult;
+import com.avanza.astrix.core.AstrixRouting;
+import com.avanza.astrix.core.RemoteResultReducer;
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.http.HttpRemotingTransport.ClusterMember;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
+import com.avanza.astrix.remoting.client.ConsistentHashRing;
+import com.avanza.astrix.remoting.client.DefaultAstrixRoutingStrategy;
+import com.avanza.astrix.remoting.client.RemotingProxy;
+import com.avanza.astrix.remoting.client.RemotingTransport;
+import com.avanza.astrix.remoting.client.RoutingKey;
+import com.avanza.astrix.remoting.server.AdmissionControlSettings;
+import com.avanza.astrix.remoting.server.AstrixServiceActivator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+@SuppressWarnings("restriction")
+public class HttpRemotingTransportTest {
+	
+	private static final AstrixObjectSerializer SERIALIZER = new AstrixObjectSerializer.NoVersioningSupport();
+	
+	private final List<String> requestEncodings = new CopyOnWriteArrayList<>();
+	private final List<String> responseEncodings = new CopyOnWriteArrayList<>();
+	private HttpServer server;
+	private HttpRemotingEndpoint endpoint;
+	private HttpRemotingTransport transport;
+	private final ConsistentHashRing<ClusterMember> clusterMembers = new ConsistentHashRing<>();
+	private final MapConfigSource config = new MapConfigSource();
+	private final CountDownLatch slowServiceLatch = new CountDownLatch(1);
+	
+	@Before
+	public void setup() throws Exception {
+		AstrixServiceActivator serviceActivator = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		serviceActivator.register(new EchoServiceImpl(), SERIALIZER, EchoService.class);
+		serviceActivator.register(new SlowServiceImpl(slowServiceLatch), SERIALIZER, SlowService.class);
+		HttpRemotingSettings settings = new HttpRemotingSettings() {
+			@Override
+			public int getCompressionThreshold() {
+				return 1024;
+			}
+		};
+		config.set("astrix.http.endpoint." + SlowService.class.getName() + ".poolsize", "1");
+		config.set("astrix.http.endpoint." + SlowService.class.getName() + ".queueCapacity", "1");
+		endpoint = new HttpRemotingEndpoint(serviceActivator, new EnvelopeWireCodec(), settings, new DynamicConfig(config));
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/astrix", new HttpHandler() {
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				requestEncodings.add(String.valueOf(exchange.getRequestHeaders().getFirst("Content-Encoding")));
+				endpoint.process(exchange.getRequestBody(), 
+								 exchange.getRequestHeaders().getFirst("Content-Encoding"), 
+								 exchange.getRequestHeaders().getFirst("Accept-Encoding"))
+						.thenAccept(new Consumer<HttpBody>() {
+							@Override
+							public void accept(HttpBody body) {
+								try {
+									writeResponse(exchange, body);
+								} catch (IOException e) {
+									exchange.close();
+								}
+							}
+						});
+			}
+		});
+		server.start();
+		clusterMembers.setMember("member-1", new ClusterMember("http://localhost:" + server.getAddress().getPort() + "/astrix", 5), 1);
+		transport = new HttpRemotingTransport(clusterMembers, new EnvelopeWireCodec(), settings);
+		transport.init();
+	}
+	
+	private void writeResponse(HttpExchange exchange, HttpBody body) throws IOException {
+		responseEncodings.add(String.valueOf(body.getContentEncoding()));
+		exchange.getResponseHeaders().set("Content-Type", endpoint.getContentType());
+		if (body.getContentEncoding() != null) {
+			exchange.getResponseHeaders().set("Content-Encoding", body.getContentEncoding());
+		}
+		exchange.sendResponseHeaders(200, body.getLength());
+		try (OutputStream responseBody = exchange.getResponseBody()) {
+			body.writeTo(responseBody);
+		}
+	}
+	
+	@After
+	public void after() throws Exception {
+		slowServiceLatch.countDown();
+		transport.destroy();
+		server.stop(0);
+		endpoint.destroy();
+	}
+	
+	@Test
+	public void invokesServiceOverHttp() throws Exception {
+		EchoService echoService = createProxy();
+		
+		assertEquals("hello", echoService.echo("hello"));
+		assertEquals("hello", echoService.echo("hello"));
+		assertEquals("null", requestEncodings.get(0));
+		assertEquals("null", responseEncodings.get(0));
+	}
+	
+	@Test
+	public void compressesBodiesLargerThanCompressionThreshold() throws Exception {
+		EchoService echoService = createProxy();
+		StringBuilder message = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			message.append("hello-").append(i);
+		}
+		
+		assertEquals(message.toString(), echoService.echo(message.toString()));
+		assertEquals(HttpBody.GZIP, requestEncodings.get(0));
+		assertEquals(HttpBody.GZIP, responseEncodings.get(0));
+	}
+	
+	@Test
+	public void broadcastsRequestToAllClusterMembers() throws Exception {
+		clusterMembers.setMember("member-2", new ClusterMember("http://localhost:" + server.getAddress().getPort() + "/astrix"), 1);
+		EchoService echoService = createProxy();
+		
+		assertEquals(Integer.valueOf(2), echoService.count());
+	}
+	
+	@Test(expected = ServiceUnavailableException.class)
+	public void throwsServiceUnavailableWhenEndpointRespondsWithError() throws Exception {
+		server.removeContext("/astrix");
+		createProxy().echo("hello");
+	}
+	
+	@Test
+	public void asyncInvocationFailsWithServiceUnavailableWhenNoClusterMemberIsAvailable() throws Exception {
+		clusterMembers.removeMember("member-1");
+		CompletableFuture<AstrixServiceInvocationResponse> response = transport.invokeRoutedRequestAsync(new AstrixServiceInvocationRequest(), RoutingKey.create(1));
+		try {
+			response.get(5, TimeUnit.SECONDS);
+			fail("Expected invocation to fail");
+		} catch (ExecutionException e) {
+			assertEquals(ServiceUnavailableException.class, e.getCause().getClass());
+		}
+	}
+	
+	@Test
+	public void rejectsInvocationsOfSaturatedServiceWithoutAffectingOtherServices() throws Exception {
+		SlowServiceAsync slowService = RemotingProxy.create(SlowServiceAsync.class, SlowService.class, RemotingTransport.create(transport), SERIALIZER, new DefaultAstrixRoutingStrategy());
+		List<CompletableFuture<String>> invocations = Arrays.asList(slowService.await("1"), slowService.await("2"), slowService.await("3"));
+		// The requests are sent on different connections, hence any of them might be the one rejected
+		try {
+			CompletableFuture.anyOf(invocations.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+			fail("Expected invocation of saturated service to be rejected");
+		} catch (ExecutionException e) {
+			assertEquals(ServiceUnavailableException.class, e.getCause().getClass());
+		}
+		assertEquals("hello", createProxy().echo("hello"));
+		
+		slowServiceLatch.countDown();
+		int completed = 0;
+		for (int i = 0; i < invocations.size(); i++) {
+			try {
+				assertEquals(Integer.toString(i + 1), invocations.get(i).get(5, TimeUnit.SECONDS));
+				completed++;
+			} catch (ExecutionException e) {
+				assertEquals(ServiceUnavailableException.class, e.getCause().getClass());
+			}
+		}
+		assertEquals(2, completed);
+	}
+	
+	@Test
+	public void acceptsGzipUnlessExplicitlyRejected() throws Exception {
+		assertEquals(true, HttpBody.acceptsGzip("gzip"));
+		assertEquals(true, HttpBody.acceptsGzip("deflate, gzip;q=0.5"));
+		assertEquals(false, HttpBody.acceptsGzip("gzip;q=0"));
+		assertEquals(false, HttpBody.acceptsGzip("deflate"));
+		assertEquals(false, HttpBody.acceptsGzip(null));
+		assertNull(HttpBody.create(new HttpBody.Buffer(16), 0, false).getContentEncoding());
+	}
+
+	private EchoService createProxy() {
+		return RemotingProxy.create(EchoService.class, EchoService.class, RemotingTransport.create(transport), SERIALIZER, new DefaultAstrixRoutingStrategy());
+	}
+	
+	public interface EchoService {
+		String echo(@AstrixRouting String message);
+		
+		@AstrixBroadcast(reducer = SumReducer.class)
+		Integer count();
+	}
+	
+	public static class EchoServiceImpl implements EchoService {
+		@Override
+		public String echo(String message) {
+			return message;
+		}
+		
+		@Override
+		public Integer count() {
+			return 1;
+		}
+	}
+	
+	public interface SlowService {
+		String await(@AstrixRouting String key);
+	}
+	
+	public interface SlowServiceAsync {
+		CompletableFuture<String> await(@AstrixRouting String key);
+	}
+	
+	public static class SlowServiceImpl implements SlowService {
+		private final CountDownLatch latch;
+		
+		public SlowServiceImpl(CountDownLatch latch) {
+			this.latch = latch;
+		}
+
+		@Override
+		public String await(String key) {
+			try {
+				latch.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return key;
+		}
+	}
+	
+	public static class SumReducer implements RemoteResultReducer<Integer> {
+		@Override
+		public Integer reduce(List<AstrixRemoteResult<Integer>> results) {
+			int sum = 0;
+			for (AstrixRemoteResult<Integer> result : results) {
+				sum += result.getResult();
+			}
+			return sum;
+		}
+	}
+
+}
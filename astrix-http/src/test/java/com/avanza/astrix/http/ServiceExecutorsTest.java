@@ -0,0 +1,97 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.avanza.astrix.config.DynamicConfig;
+import com.avanza.astrix.config.MapConfigSource;
+
+public class ServiceExecutorsTest {
+	
+	private final MapConfigSource config = new MapConfigSource();
+	private final ServiceExecutors serviceExecutors = new ServiceExecutors(new DynamicConfig(config));
+	private final ExecutorService submitters = Executors.newFixedThreadPool(8);
+	private final CountDownLatch release = new CountDownLatch(1);
+	
+	@After
+	public void after() {
+		release.countDown();
+		submitters.shutdown();
+		serviceExecutors.shutdown();
+	}
+	
+	@Test
+	public void concurrentSubmissionsNeverExceedQueueCapacity() throws Exception {
+		config.set("astrix.http.endpoint.service.poolsize", "1");
+		config.set("astrix.http.endpoint.service.queueCapacity", "3");
+		final CountDownLatch started = new CountDownLatch(1);
+		assertTrue(serviceExecutors.execute("service", new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				await(release);
+			}
+		}));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		
+		final CountDownLatch go = new CountDownLatch(1);
+		List<Future<Boolean>> submissions = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			submissions.add(submitters.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws Exception {
+					go.await();
+					return serviceExecutors.execute("service", new Runnable() {
+						@Override
+						public void run() {
+						}
+					});
+				}
+			}));
+		}
+		go.countDown();
+		int accepted = 0;
+		for (Future<Boolean> submission : submissions) {
+			if (submission.get(5, TimeUnit.SECONDS)) {
+				accepted++;
+			}
+		}
+		assertEquals(3, accepted);
+	}
+	
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
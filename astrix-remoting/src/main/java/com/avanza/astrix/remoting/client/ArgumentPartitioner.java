@@ -0,0 +1,574 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.core.util.ReflectionUtil;
+/**
+ * Splits the elements of a partitioned argument into one container for each server partition. <p>
+ * 
+ * The elements are collected into per partition buffers which are presized based on the size of the
+ * argument. Arrays of long, int and reference types are read and written directly, without
+ * going through {@link Array}, and long and int elements are routed without being boxed. <p>
+ * 
+ * If the argument contains more elements than the parallel partitioning threshold, then it is split
+ * into ranges which are partitioned in parallel using the common {@link ForkJoinPool}. The buffers for each
+ * range are concatenated in order, hence the elements routed to a given partition always keeps the
+ * order they had in the partitioned argument. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+abstract class ArgumentPartitioner {
+	
+	private final int parallelThreshold;
+	
+	private ArgumentPartitioner(int parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+	}
+	
+	/**
+	 * @param argumentType - the type of the partitioned argument, either an array or a Collection type
+	 * @param collectionFactory - used to create the partitioned containers when argumentType is a Collection
+	 * @param router
+	 * @param parallelThreshold - partitions arguments larger than this in parallel, a non positive value disables parallel partitioning
+	 * @return
+	 */
+	static ArgumentPartitioner create(Class<?> argumentType, 
+									  Class<? extends Collection<?>> collectionFactory, 
+									  PartitionedRouter router, 
+									  int parallelThreshold) {
+		if (long[].class.equals(argumentType)) {
+			return new LongArrayPartitioner(parallelThreshold);
+		}
+		if (int[].class.equals(argumentType)) {
+			return new IntArrayPartitioner(parallelThreshold);
+		}
+		if (argumentType.isArray() && argumentType.getComponentType().isPrimitive()) {
+			return new PrimitiveArrayPartitioner(argumentType.getComponentType(), router, parallelThreshold);
+		}
+		if (argumentType.isArray()) {
+			return new ObjectArrayPartitioner(argumentType, router, parallelThreshold);
+		}
+		return new CollectionPartitioner(collectionFactory, router, parallelThreshold);
+	}
+	
+	/**
+	 * @param argument
+	 * @param partitionMapping
+	 * @return the container holding the elements routed to each partition, indexed by partition, 
+	 * 		   or null for partitions without any elements.
+	 */
+	final Object[] partition(Object argument, PartitionMapping partitionMapping) {
+		if (partitionMapping.partitionCount() <= 0) {
+			throw new ServiceUnavailableException("No partitions available in target cluster: " + partitionMapping);
+		}
+		int size = size(argument);
+		if (parallelThreshold > 0 && size > parallelThreshold) {
+			Object elements = toIndexedElements(argument);
+			return ForkJoinPool.commonPool().invoke(new PartitionTask(elements, 0, size, partitionMapping)).build();
+		}
+		return partitionAll(argument, size, partitionMapping).build();
+	}
+	
+	abstract int size(Object argument);
+
+	/**
+	 * Partitions all elements in a given argument using the invoking thread.
+	 */
+	abstract PartitionBuffers partitionAll(Object argument, int size, PartitionMapping partitionMapping);
+	
+	/**
+	 * Converts a given argument to a form that supports partitioning a range of the elements, see {@link #partitionRange(Object, int, int, int)}
+	 */
+	abstract Object toIndexedElements(Object argument);
+	
+	abstract PartitionBuffers partitionRange(Object indexedElements, int fromIndex, int toIndex, PartitionMapping partitionMapping);
+	
+	private static int expectedPartitionSize(int size, int partitionCount) {
+		int average = size / partitionCount;
+		// Leave some room for uneven distribution of the routing keys
+		return average + (average >> 3) + 8;
+	}
+	
+	private final class PartitionTask extends RecursiveTask<PartitionBuffers> {
+		
+		private static final long serialVersionUID = 1L;
+		private final Object elements;
+		private final int fromIndex;
+		private final int toIndex;
+		private final PartitionMapping partitionMapping;
+		
+		public PartitionTask(Object elements, int fromIndex, int toIndex, PartitionMapping partitionMapping) {
+			this.elements = elements;
+			this.fromIndex = fromIndex;
+			this.toIndex = toIndex;
+			this.partitionMapping = partitionMapping;
+		}
+
+		@Override
+		protected PartitionBuffers compute() {
+			if (toIndex - fromIndex <= parallelThreshold) {
+				return partitionRange(elements, fromIndex, toIndex, partitionMapping);
+			}
+			int middle = (fromIndex + toIndex) >>> 1;
+			PartitionTask head = new PartitionTask(elements, fromIndex, middle, partitionMapping);
+			head.fork();
+			PartitionBuffers tail = new PartitionTask(elements, middle, toIndex, partitionMapping).compute();
+			PartitionBuffers result = head.join();
+			result.append(tail);
+			return result;
+		}
+	}
+	
+	abstract static class PartitionBuffers {
+		
+		final int[] sizes;
+		final int expectedPartitionSize;
+		
+		PartitionBuffers(int partitionCount, int expectedPartitionSize) {
+			this.sizes = new int[partitionCount];
+			this.expectedPartitionSize = expectedPartitionSize;
+		}
+		
+		/**
+		 * Appends all elements in the given buffers after the elements in this instance.
+		 */
+		abstract void append(PartitionBuffers other);
+		
+		abstract Object[] build();
+		
+		final int newCapacity(int currentCapacity, int requiredCapacity) {
+			return Math.max(currentCapacity + (currentCapacity >> 1) + 1, requiredCapacity);
+		}
+	}
+	
+	private static final class LongBuffers extends PartitionBuffers {
+		
+		private final long[][] buffers;
+		
+		LongBuffers(int partitionCount, int expectedPartitionSize) {
+			super(partitionCount, expectedPartitionSize);
+			this.buffers = new long[partitionCount][];
+		}
+		
+		void add(int partition, long element) {
+			long[] buffer = buffers[partition];
+			int size = sizes[partition];
+			if (buffer == null) {
+				buffer = buffers[partition] = new long[expectedPartitionSize];
+			} else if (size == buffer.length) {
+				buffer = buffers[partition] = Arrays.copyOf(buffer, newCapacity(size, size + 1));
+			}
+			buffer[size] = element;
+			sizes[partition] = size + 1;
+		}
+
+		@Override
+		void append(PartitionBuffers other) {
+			LongBuffers tail = (LongBuffers) other;
+			for (int partition = 0; partition < buffers.length; partition++) {
+				int tailSize = tail.sizes[partition];
+				if (tailSize == 0) {
+					continue;
+				}
+				int size = sizes[partition];
+				if (buffers[partition] == null) {
+					buffers[partition] = tail.buffers[partition];
+				} else {
+					if (buffers[partition].length < size + tailSize) {
+						buffers[partition] = Arrays.copyOf(buffers[partition], newCapacity(buffers[partition].length, size + tailSize));
+					}
+					System.arraycopy(tail.buffers[partition], 0, buffers[partition], size, tailSize);
+				}
+				sizes[partition] = size + tailSize;
+			}
+		}
+
+		@Override
+		Object[] build() {
+			Object[] result = new Object[buffers.length];
+			for (int partition = 0; partition < buffers.length; partition++) {
+				if (buffers[partition] != null) {
+					result[partition] = Arrays.copyOf(buffers[partition], sizes[partition]);
+				}
+			}
+			return result;
+		}
+	}
+	
+	private static final class IntBuffers extends PartitionBuffers {
+		
+		private final int[][] buffers;
+		
+		IntBuffers(int partitionCount, int expectedPartitionSize) {
+			super(partitionCount, expectedPartitionSize);
+			this.buffers = new int[partitionCount][];
+		}
+		
+		void add(int partition, int element) {
+			int[] buffer = buffers[partition];
+			int size = sizes[partition];
+			if (buffer == null) {
+				buffer = buffers[partition] = new int[expectedPartitionSize];
+			} else if (size == buffer.length) {
+				buffer = buffers[partition] = Arrays.copyOf(buffer, newCapacity(size, size + 1));
+			}
+			buffer[size] = element;
+			sizes[partition] = size + 1;
+		}
+		
+		@Override
+		void append(PartitionBuffers other) {
+			IntBuffers tail = (IntBuffers) other;
+			for (int partition = 0; partition < buffers.length; partition++) {
+				int tailSize = tail.sizes[partition];
+				if (tailSize == 0) {
+					continue;
+				}
+				int size = sizes[partition];
+				if (buffers[partition] == null) {
+					buffers[partition] = tail.buffers[partition];
+				} else {
+					if (buffers[partition].length < size + tailSize) {
+						buffers[partition] = Arrays.copyOf(buffers[partition], newCapacity(buffers[partition].length, size + tailSize));
+					}
+					System.arraycopy(tail.buffers[partition], 0, buffers[partition], size, tailSize);
+				}
+				sizes[partition] = size + tailSize;
+			}
+		}
+		
+		@Override
+		Object[] build() {
+			Object[] result = new Object[buffers.length];
+			for (int partition = 0; partition < buffers.length; partition++) {
+				if (buffers[partition] != null) {
+					result[partition] = Arrays.copyOf(buffers[partition], sizes[partition]);
+				}
+			}
+			return result;
+		}
+	}
+	
+	/**
+	 * Buffers elements of a reference type, the container for each partition is created
+	 * by a given {@link ObjectPartitioner}. 
+	 */
+	private static final class ObjectBuffers extends PartitionBuffers {
+		
+		private final Object[][] buffers;
+		private final ObjectPartitioner partitioner;
+		
+		ObjectBuffers(int partitionCount, int expectedPartitionSize, ObjectPartitioner partitioner) {
+			super(partitionCount, expectedPartitionSize);
+			this.buffers = new Object[partitionCount][];
+			this.partitioner = partitioner;
+		}
+		
+		void add(int partition, Object element) {
+			Object[] buffer = buffers[partition];
+			int size = sizes[partition];
+			if (buffer == null) {
+				buffer = buffers[partition] = new Object[expectedPartitionSize];
+			} else if (size == buffer.length) {
+				buffer = buffers[partition] = Arrays.copyOf(buffer, newCapacity(size, size + 1));
+			}
+			buffer[size] = element;
+			sizes[partition] = size + 1;
+		}
+		
+		@Override
+		void append(PartitionBuffers other) {
+			ObjectBuffers tail = (ObjectBuffers) other;
+			for (int partition = 0; partition < buffers.length; partition++) {
+				int tailSize = tail.sizes[partition];
+				if (tailSize == 0) {
+					continue;
+				}
+				int size = sizes[partition];
+				if (buffers[partition] == null) {
+					buffers[partition] = tail.buffers[partition];
+				} else {
+					if (buffers[partition].length < size + tailSize) {
+						buffers[partition] = Arrays.copyOf(buffers[partition], newCapacity(buffers[partition].length, size + tailSize));
+					}
+					System.arraycopy(tail.buffers[partition], 0, buffers[partition], size, tailSize);
+				}
+				sizes[partition] = size + tailSize;
+			}
+		}
+		
+		@Override
+		Object[] build() {
+			Object[] result = new Object[buffers.length];
+			for (int partition = 0; partition < buffers.length; partition++) {
+				if (buffers[partition] != null) {
+					result[partition] = partitioner.createContainer(buffers[partition], sizes[partition]);
+				}
+			}
+			return result;
+		}
+	}
+	
+	private static final class LongArrayPartitioner extends ArgumentPartitioner {
+		
+		LongArrayPartitioner(int parallelThreshold) {
+			super(parallelThreshold);
+		}
+
+		@Override
+		int size(Object argument) {
+			return ((long[]) argument).length;
+		}
+
+		@Override
+		PartitionBuffers partitionAll(Object argument, int size, PartitionMapping partitionMapping) {
+			return partitionRange(argument, 0, size, partitionMapping);
+		}
+
+		@Override
+		Object toIndexedElements(Object argument) {
+			return argument;
+		}
+
+		@Override
+		PartitionBuffers partitionRange(Object indexedElements, int fromIndex, int toIndex, PartitionMapping partitionMapping) {
+			long[] elements = (long[]) indexedElements;
+			LongBuffers buffers = new LongBuffers(partitionMapping.partitionCount(), expectedPartitionSize(toIndex - fromIndex, partitionMapping.partitionCount()));
+			for (int i = fromIndex; i < toIndex; i++) {
+				long element = elements[i];
+				// Same as Long.valueOf(element).hashCode()
+				buffers.add(partitionMapping.partitionOf((int) (element ^ (element >>> 32))), element);
+			}
+			return buffers;
+		}
+	}
+	
+	private static final class IntArrayPartitioner extends ArgumentPartitioner {
+		
+		IntArrayPartitioner(int parallelThreshold) {
+			super(parallelThreshold);
+		}
+		
+		@Override
+		int size(Object argument) {
+			return ((int[]) argument).length;
+		}
+		
+		@Override
+		PartitionBuffers partitionAll(Object argument, int size, PartitionMapping partitionMapping) {
+			return partitionRange(argument, 0, size, partitionMapping);
+		}
+		
+		@Override
+		Object toIndexedElements(Object argument) {
+			return argument;
+		}
+		
+		@Override
+		PartitionBuffers partitionRange(Object indexedElements, int fromIndex, int toIndex, PartitionMapping partitionMapping) {
+			int[] elements = (int[]) indexedElements;
+			IntBuffers buffers = new IntBuffers(partitionMapping.partitionCount(), expectedPartitionSize(toIndex - fromIndex, partitionMapping.partitionCount()));
+			for (int i = fromIndex; i < toIndex; i++) {
+				int element = elements[i];
+				// Same as Integer.valueOf(element).hashCode()
+				buffers.add(partitionMapping.partitionOf(element), element);
+			}
+			return buffers;
+		}
+	}
+	
+	/**
+	 * Base class for partitioners of arguments holding elements of reference type, or 
+	 * primitive types that are boxed before routed.
+	 */
+	private abstract static class ObjectPartitioner extends ArgumentPartitioner {
+		
+		private final PartitionedRouter router;
+		
+		ObjectPartitioner(PartitionedRouter router, int parallelThreshold) {
+			super(parallelThreshold);
+			this.router = Objects.requireNonNull(router);
+		}
+		
+		final ObjectBuffers newBuffers(int size, PartitionMapping partitionMapping) {
+			return new ObjectBuffers(partitionMapping.partitionCount(), expectedPartitionSize(size, partitionMapping.partitionCount()), this);
+		}
+		
+		final void add(ObjectBuffers buffers, Object element, PartitionMapping partitionMapping) {
+			buffers.add(partitionMapping.partitionOf(router.getRoutingKey(element).hashCode()), element);
+		}
+		
+		abstract Object createContainer(Object[] elements, int size);
+	}
+	
+	private static final class ObjectArrayPartitioner extends ObjectPartitioner {
+		
+		private final Class<? extends Object[]> arrayType;
+		
+		@SuppressWarnings("unchecked")
+		ObjectArrayPartitioner(Class<?> arrayType, PartitionedRouter router, int parallelThreshold) {
+			super(router, parallelThreshold);
+			this.arrayType = (Class<? extends Object[]>) arrayType;
+		}
+		
+		@Override
+		int size(Object argument) {
+			return ((Object[]) argument).length;
+		}
+		
+		@Override
+		PartitionBuffers partitionAll(Object argument, int size, PartitionMapping partitionMapping) {
+			return partitionRange(argument, 0, size, partitionMapping);
+		}
+		
+		@Override
+		Object toIndexedElements(Object argument) {
+			return argument;
+		}
+		
+		@Override
+		PartitionBuffers partitionRange(Object indexedElements, int fromIndex, int toIndex, PartitionMapping partitionMapping) {
+			Object[] elements = (Object[]) indexedElements;
+			ObjectBuffers buffers = newBuffers(toIndex - fromIndex, partitionMapping);
+			for (int i = fromIndex; i < toIndex; i++) {
+				add(buffers, elements[i], partitionMapping);
+			}
+			return buffers;
+		}
+
+		@Override
+		Object createContainer(Object[] elements, int size) {
+			return Arrays.copyOf(elements, size, arrayType);
+		}
+	}
+	
+	/**
+	 * Partitions arrays of primitive types other than long and int. 
+	 */
+	private static final class PrimitiveArrayPartitioner extends ObjectPartitioner {
+		
+		private final Class<?> elementType;
+		
+		PrimitiveArrayPartitioner(Class<?> elementType, PartitionedRouter router, int parallelThreshold) {
+			super(router, parallelThreshold);
+			this.elementType = elementType;
+		}
+		
+		@Override
+		int size(Object argument) {
+			return Array.getLength(argument);
+		}
+		
+		@Override
+		PartitionBuffers partitionAll(Object argument, int size, PartitionMapping partitionMapping) {
+			return partitionRange(argument, 0, size, partitionMapping);
+		}
+		
+		@Override
+		Object toIndexedElements(Object argument) {
+			return argument;
+		}
+		
+		@Override
+		PartitionBuffers partitionRange(Object indexedElements, int fromIndex, int toIndex, PartitionMapping partitionMapping) {
+			ObjectBuffers buffers = newBuffers(toIndex - fromIndex, partitionMapping);
+			for (int i = fromIndex; i < toIndex; i++) {
+				add(buffers, Array.get(indexedElements, i), partitionMapping);
+			}
+			return buffers;
+		}
+		
+		@Override
+		Object createContainer(Object[] elements, int size) {
+			Object array = Array.newInstance(elementType, size);
+			for (int i = 0; i < size; i++) {
+				Array.set(array, i, elements[i]);
+			}
+			return array;
+		}
+	}
+	
+	private static final class CollectionPartitioner extends ObjectPartitioner {
+		
+		private final Class<? extends Collection<?>> collectionFactory;
+		
+		CollectionPartitioner(Class<? extends Collection<?>> collectionFactory, PartitionedRouter router, int parallelThreshold) {
+			super(router, parallelThreshold);
+			this.collectionFactory = Objects.requireNonNull(collectionFactory);
+		}
+		
+		@Override
+		int size(Object argument) {
+			return ((Collection<?>) argument).size();
+		}
+		
+		@Override
+		PartitionBuffers partitionAll(Object argument, int size, PartitionMapping partitionMapping) {
+			ObjectBuffers buffers = newBuffers(size, partitionMapping);
+			for (Object element : (Collection<?>) argument) {
+				add(buffers, element, partitionMapping);
+			}
+			return buffers;
+		}
+		
+		@Override
+		Object toIndexedElements(Object argument) {
+			return ((Collection<?>) argument).toArray();
+		}
+		
+		@Override
+		PartitionBuffers partitionRange(Object indexedElements, int fromIndex, int toIndex, PartitionMapping partitionMapping) {
+			Object[] elements = (Object[]) indexedElements;
+			ObjectBuffers buffers = newBuffers(toIndex - fromIndex, partitionMapping);
+			for (int i = fromIndex; i < toIndex; i++) {
+				add(buffers, elements[i], partitionMapping);
+			}
+			return buffers;
+		}
+		
+		@Override
+		Object createContainer(Object[] elements, int size) {
+			Collection<Object> result = newCollection(size);
+			for (int i = 0; i < size; i++) {
+				result.add(elements[i]);
+			}
+			return result;
+		}
+
+		@SuppressWarnings("unchecked")
+		private Collection<Object> newCollection(int size) {
+			if (ArrayList.class.equals(collectionFactory)) {
+				return new ArrayList<>(size);
+			}
+			if (HashSet.class.equals(collectionFactory)) {
+				return new HashSet<>(Math.max((int) (size / .75f) + 1, 16));
+			}
+			return (Collection<Object>) ReflectionUtil.newInstance(collectionFactory);
+		}
+	}
+
+}
@@ -15,50 +15,293 @@
  */
 package com.avanza.astrix.remoting.client;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.avanza.astrix.core.AstrixDeadline;
 /**
- * 
+ * Envelope used to carry a service invocation from client to server. <p>
+ *
+ * The information required to dispatch the invocation on the server side (api version,
+ * service api, service method and the time budget of the caller) is held in typed fields and written using a compact
+ * custom wire format. The service method is identified either by its signature, or by a
+ * method id negotiated with the server (see {@link #setServiceMethodId(int, long)}). Arbitrary string headers, for instance tracing data, might be attached
+ * using {@link #setHeader(String, String)}. The header map is only allocated (and transferred)
+ * when at least one such extension header is used. <p>
+ *
  * @author Elias Lindholm (elilin)
  *
  */
-public class AstrixServiceInvocationRequest implements Serializable {
-	
-	private static final long serialVersionUID = 1L;
+public class AstrixServiceInvocationRequest implements Externalizable {
+
+	private static final long serialVersionUID = 2L;
+
+	/**
+	 * Indicates that the target method is identified by its signature rather than a method id.
+	 */
+	public static final int NO_METHOD_ID = -1;
 	
-	private final Map<String, String> headers = new HashMap<>();
+	/**
+	 * Indicates that the request does not carry a deadline.
+	 */
+	public static final long NO_TIMEOUT = -1;
+
+	private int apiVersion;
+	private String serviceApi;
+	private String serviceMethodSignature;
+	private int serviceMethodId = NO_METHOD_ID;
+	private long methodTableChecksum;
+	private long timeoutMillis = NO_TIMEOUT;
+	private Map<String, String> extensionHeaders;
 	private Object[] arguments;
-	
+
 	public void setArguments(Object[] requestBody) {
 		this.arguments = requestBody;
 	}
-	
+
 	public Object[] getArguments() {
 		return arguments;
 	}
 
+	public int getApiVersion() {
+		return apiVersion;
+	}
+
+	public void setApiVersion(int apiVersion) {
+		this.apiVersion = apiVersion;
+	}
+
+	public String getServiceApi() {
+		return serviceApi;
+	}
+
+	public void setServiceApi(String serviceApi) {
+		this.serviceApi = serviceApi;
+	}
+
+	public String getServiceMethodSignature() {
+		return serviceMethodSignature;
+	}
+
+	public void setServiceMethodSignature(String serviceMethodSignature) {
+		this.serviceMethodSignature = serviceMethodSignature;
+	}
+
+	/**
+	 * Identifies the target service method using its id in the {@link com.avanza.astrix.remoting.util.ServiceMethodTable}
+	 * negotiated with the server. When a method id is set the method signature is not transferred to the server,
+	 * instead the checksum of the table is sent along with the id to allow the server to detect tables that
+	 * does not match. <p>
+	 *
+	 * @param serviceMethodId
+	 * @param methodTableChecksum
+	 */
+	public void setServiceMethodId(int serviceMethodId, long methodTableChecksum) {
+		this.serviceMethodId = serviceMethodId;
+		this.methodTableChecksum = methodTableChecksum;
+	}
+
+	/**
+	 * @return the id of the target service method, or {@link #NO_METHOD_ID} if the method is identified by signature.
+	 */
+	public int getServiceMethodId() {
+		return serviceMethodId;
+	}
+
+	public long getMethodTableChecksum() {
+		return methodTableChecksum;
+	}
+
+	public boolean hasServiceMethodId() {
+		return this.serviceMethodId != NO_METHOD_ID;
+	}
+
+	/**
+	 * Removes the method id from this request, the method will be identified by its signature
+	 * when the request is sent to the server.
+	 */
+	public void clearServiceMethodId() {
+		this.serviceMethodId = NO_METHOD_ID;
+		this.methodTableChecksum = 0L;
+	}
+
+	/**
+	 * Sets a header on this request. The well known headers defined in {@link AstrixServiceInvocationRequestHeaders}
+	 * are mapped to their typed counterpart, any other header is stored as an extension header. <p>
+	 *
+	 * @param name
+	 * @param value
+	 */
 	public void setHeader(String name, String value) {
-		this.headers.put(name, value);
+		switch (name) {
+		case AstrixServiceInvocationRequestHeaders.API_VERSION:
+			this.apiVersion = Integer.parseInt(value);
+			return;
+		case AstrixServiceInvocationRequestHeaders.SERVICE_API:
+			this.serviceApi = value;
+			return;
+		case AstrixServiceInvocationRequestHeaders.SERVICE_METHOD_SIGNATURE:
+			this.serviceMethodSignature = value;
+			return;
+		case AstrixServiceInvocationRequestHeaders.TIMEOUT_MILLIS:
+			this.timeoutMillis = parseTimeoutMillis(value);
+			return;
+		default:
+			if (this.extensionHeaders == null) {
+				this.extensionHeaders = new HashMap<>(4);
+			}
+			this.extensionHeaders.put(name, value);
+		}
 	}
-	
+
 	public String getHeader(String name) {
-		return this.headers.get(name);
+		switch (name) {
+		case AstrixServiceInvocationRequestHeaders.API_VERSION:
+			return Integer.toString(this.apiVersion);
+		case AstrixServiceInvocationRequestHeaders.SERVICE_API:
+			return this.serviceApi;
+		case AstrixServiceInvocationRequestHeaders.SERVICE_METHOD_SIGNATURE:
+			return this.serviceMethodSignature;
+		case AstrixServiceInvocationRequestHeaders.TIMEOUT_MILLIS:
+			return this.timeoutMillis != NO_TIMEOUT ? Long.toString(this.timeoutMillis) : null;
+		default:
+			return this.extensionHeaders != null ? this.extensionHeaders.get(name) : null;
+		}
+	}
+
+	/**
+	 * Transmits the remaining time of a given deadline with this request, which allows the server
+	 * to skip the invocation if the deadline expires before the request is processed. If the request
+	 * already carries a shorter time budget it is kept. <p>
+	 *
+	 * @param deadline - the deadline of the caller, might be null
+	 */
+	public void setDeadline(AstrixDeadline deadline) {
+		if (deadline == null) {
+			return;
+		}
+		long remainingMillis = Math.max(0, deadline.getRemaining(TimeUnit.MILLISECONDS));
+		if (this.timeoutMillis == NO_TIMEOUT || remainingMillis < this.timeoutMillis) {
+			this.timeoutMillis = remainingMillis;
+		}
+	}
+
+	/**
+	 * @return the remaining time budget of the caller when this request was sent, or {@link #NO_TIMEOUT} if the request
+	 * 		   does not carry a deadline, see {@link #setDeadline(AstrixDeadline)}
+	 */
+	public long getTimeoutMillis() {
+		return timeoutMillis;
 	}
 	
+	private static long parseTimeoutMillis(String timeoutMillis) {
+		try {
+			long result = Long.parseLong(timeoutMillis);
+			return result >= 0 ? result : NO_TIMEOUT;
+		} catch (NumberFormatException e) {
+			return NO_TIMEOUT;
+		}
+	}
+
 	@Override
 	public String toString() {
-		return "Invocation Request. headers=" + this.headers.toString() + ", arguments=" + Arrays.toString(arguments);
+		return "Invocation Request. serviceApi=" + this.serviceApi
+				+ ", serviceMethodSignature=" + this.serviceMethodSignature
+				+ ", serviceMethodId=" + this.serviceMethodId
+				+ ", apiVersion=" + this.apiVersion
+				+ ", timeoutMillis=" + this.timeoutMillis
+				+ ", headers=" + getExtensionHeaders()
+				+ ", arguments=" + Arrays.toString(arguments);
 	}
 
+	/**
+	 * @return all headers, including the well known headers, in a new Map.
+	 */
 	public Map<String, String> getHeaders() {
-		return this.headers;
+		Map<String, String> result = new HashMap<>(getExtensionHeaders());
+		result.put(AstrixServiceInvocationRequestHeaders.API_VERSION, Integer.toString(this.apiVersion));
+		if (this.serviceApi != null) {
+			result.put(AstrixServiceInvocationRequestHeaders.SERVICE_API, this.serviceApi);
+		}
+		if (this.serviceMethodSignature != null) {
+			result.put(AstrixServiceInvocationRequestHeaders.SERVICE_METHOD_SIGNATURE, this.serviceMethodSignature);
+		}
+		if (this.timeoutMillis != NO_TIMEOUT) {
+			result.put(AstrixServiceInvocationRequestHeaders.TIMEOUT_MILLIS, Long.toString(this.timeoutMillis));
+		}
+		return result;
+	}
+
+	/**
+	 * @return an unmodifiable view of the extension headers attached to this request.
+	 */
+	public Map<String, String> getExtensionHeaders() {
+		if (this.extensionHeaders == null) {
+			return Collections.emptyMap();
+		}
+		return Collections.unmodifiableMap(this.extensionHeaders);
 	}
 
 	public void setAllHeaders(Map<String, String> headers) {
-		this.headers.putAll(headers);
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			setHeader(header.getKey(), header.getValue());
+		}
+	}
+
+	/**
+	 * Copies all headers, but not the arguments, from a given request to this request.
+	 *
+	 * @param source
+	 */
+	public void copyHeaders(AstrixServiceInvocationRequest source) {
+		this.apiVersion = source.apiVersion;
+		this.serviceApi = source.serviceApi;
+		this.serviceMethodSignature = source.serviceMethodSignature;
+		this.serviceMethodId = source.serviceMethodId;
+		this.methodTableChecksum = source.methodTableChecksum;
+		this.timeoutMillis = source.timeoutMillis;
+		if (source.extensionHeaders != null) {
+			this.extensionHeaders = new HashMap<>(source.extensionHeaders);
+		}
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		EnvelopeSerialization.writeWireFormatVersion(out);
+		out.writeInt(this.apiVersion);
+		EnvelopeSerialization.writeString(out, this.serviceApi);
+		out.writeInt(this.serviceMethodId);
+		if (this.serviceMethodId != NO_METHOD_ID) {
+			out.writeLong(this.methodTableChecksum);
+		} else {
+			EnvelopeSerialization.writeString(out, this.serviceMethodSignature);
+		}
+		out.writeLong(this.timeoutMillis);
+		EnvelopeSerialization.writeHeaders(out, this.extensionHeaders);
+		EnvelopeSerialization.writeObjects(out, this.arguments);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		EnvelopeSerialization.readWireFormatVersion(in);
+		this.apiVersion = in.readInt();
+		this.serviceApi = EnvelopeSerialization.readIdentifier(in);
+		this.serviceMethodId = in.readInt();
+		if (this.serviceMethodId != NO_METHOD_ID) {
+			this.methodTableChecksum = in.readLong();
+		} else {
+			this.serviceMethodSignature = EnvelopeSerialization.readIdentifier(in);
+		}
+		this.timeoutMillis = in.readLong();
+		this.extensionHeaders = EnvelopeSerialization.readHeaders(in);
+		this.arguments = EnvelopeSerialization.readObjects(in);
 	}
 
-	
 }
@@ -20,5 +20,11 @@ public class AstrixServiceInvocationRequestHeaders {
 	public static final String API_VERSION = "apiVersion";
 	public static final String SERVICE_METHOD_SIGNATURE = "serviceMethodSignature";
 	public static final String SERVICE_API = "serviceApi";
+	/**
+	 * The remaining time budget (in milliseconds) of the caller when the request was sent, see
+	 * {@link AstrixServiceInvocationRequest#setDeadline(com.avanza.astrix.core.AstrixDeadline)}. Held in a typed
+	 * field of the request, see {@link AstrixServiceInvocationRequest#getTimeoutMillis()}.
+	 */
+	public static final String TIMEOUT_MILLIS = "timeoutMillis";
 
 }
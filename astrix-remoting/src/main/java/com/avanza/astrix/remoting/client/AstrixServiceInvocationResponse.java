@@ -15,20 +15,52 @@
  */
 package com.avanza.astrix.remoting.client;
 
-import java.io.Serializable;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.HashMap;
 import java.util.Map;
 /**
- * 
+ * Envelope used to carry the result of a service invocation from server to client. <p>
+ *
+ * Uses a compact custom wire format, see {@link AstrixServiceInvocationRequest}. <p>
+ *
  * @author Elias Lindholm (elilin)
  *
  */
-public class AstrixServiceInvocationResponse implements Serializable {
+public class AstrixServiceInvocationResponse implements Externalizable {
+
+	private static final long serialVersionUID = 2L;
+	private static final String SERVICE_UNAVAILABLE_HEADER = "service-unavailable";
+
+	public enum Status {
+		/**
+		 * The service was invoked and returned normally.
+		 */
+		SUCCESS,
+		/**
+		 * The service was invoked and threw an exception.
+		 */
+		EXCEPTION,
+		/**
+		 * The service could not be invoked.
+		 */
+		SERVICE_UNAVAILABLE,
+		/**
+		 * The service method was identified by a method id, but the method table used by the
+		 * client does not match the table used by the server.
+		 */
+		METHOD_TABLE_MISMATCH
+	}
+
+	private static final Status[] STATUS_VALUES = Status.values();
 
-	private static final long serialVersionUID = 1L;
+	private Status status = Status.SUCCESS;
 	private Object responseBody;
 	/*
-	 * If the exception thrown on the server side was of type ServiceInvocationException, 
+	 * If the exception thrown on the server side was of type ServiceInvocationException,
 	 * then this field will be populated. Otherwise only thrownExceptionType and
 	 * exceptionMsg will be populated
 	 */
@@ -36,57 +68,83 @@ public class AstrixServiceInvocationResponse implements Serializable {
 	private String thrownExceptionType;
 	private String exceptionMsg;
 	private String correlationId;
+	private Map<String, String> extensionHeaders;
 
-	private final Map<String, String> headers = new HashMap<>();
-	
 	public void setResponseBody(Object responseBody) {
 		this.responseBody = responseBody;
 	}
-	
+
 	public Object getResponseBody() {
 		return responseBody;
 	}
-	
+
 	public Object getException() {
 		return thrownException;
 	}
-	
+
 	public void setException(Object exception) {
 		this.thrownException = exception;
+		if (this.status == Status.SUCCESS) {
+			this.status = Status.EXCEPTION;
+		}
 	}
-	
+
 	public void setExceptionMsg(String exceptionMsg) {
 		this.exceptionMsg = exceptionMsg;
 	}
-	
+
 	public String getExceptionMsg() {
 		return exceptionMsg;
 	}
-	
+
 	public void setThrownExceptionType(String thrownException) {
 		this.thrownExceptionType = thrownException;
+		if (this.status == Status.SUCCESS) {
+			this.status = Status.EXCEPTION;
+		}
 	}
-	
+
 	public String getThrownExceptionType() {
 		return thrownExceptionType;
 	}
-	
+
 	public boolean hasThrownException() {
 		return this.thrownExceptionType != null || this.thrownException != null;
 	}
-	
+
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * Sets an extension header on this response. The "service-unavailable" header is
+	 * mapped to the {@link Status} of this response.
+	 *
+	 * @param name
+	 * @param value
+	 */
 	public void setHeader(String name, String value) {
-		this.headers.put(name, value);
+		if (SERVICE_UNAVAILABLE_HEADER.equals(name)) {
+			setServiceUnavailable(Boolean.parseBoolean(value));
+			return;
+		}
+		if (this.extensionHeaders == null) {
+			this.extensionHeaders = new HashMap<>(4);
+		}
+		this.extensionHeaders.put(name, value);
 	}
-	
+
 	public String getHeader(String name) {
-		return this.headers.get(name);
+		if (SERVICE_UNAVAILABLE_HEADER.equals(name)) {
+			return Boolean.toString(isServiceUnavailable());
+		}
+		return this.extensionHeaders != null ? this.extensionHeaders.get(name) : null;
 	}
-	
+
 	public void setCorrelationId(String correlationId) {
 		this.correlationId = correlationId;
 	}
-	
+
 	public String getCorrelationId() {
 		return correlationId;
 	}
@@ -96,11 +154,72 @@ public class AstrixServiceInvocationResponse implements Serializable {
 	}
 
 	public boolean isServiceUnavailable() {
-		String serviceUnavailable = getHeader("service-unavailable");
-		return serviceUnavailable != null && serviceUnavailable.equalsIgnoreCase("true");
+		return this.status == Status.SERVICE_UNAVAILABLE;
+	}
+
+	public boolean isMethodTableMismatch() {
+		return this.status == Status.METHOD_TABLE_MISMATCH;
 	}
-	
+
+	public void setMethodTableMismatch() {
+		this.status = Status.METHOD_TABLE_MISMATCH;
+	}
+
 	public void setServiceUnavailable(boolean unavailable) {
-		setHeader("service-unavailable", Boolean.toString(unavailable));
+		if (unavailable) {
+			this.status = Status.SERVICE_UNAVAILABLE;
+		} else if (this.status == Status.SERVICE_UNAVAILABLE) {
+			this.status = hasThrownException() ? Status.EXCEPTION : Status.SUCCESS;
+		}
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		EnvelopeSerialization.writeWireFormatVersion(out);
+		out.writeByte(this.status.ordinal());
+		switch (this.status) {
+		case SUCCESS:
+			EnvelopeSerialization.writeObject(out, this.responseBody);
+			break;
+		case EXCEPTION:
+			EnvelopeSerialization.writeObject(out, this.thrownException);
+			EnvelopeSerialization.writeString(out, this.thrownExceptionType);
+			EnvelopeSerialization.writeString(out, this.exceptionMsg);
+			EnvelopeSerialization.writeString(out, this.correlationId);
+			break;
+		case SERVICE_UNAVAILABLE:
+		case METHOD_TABLE_MISMATCH:
+			EnvelopeSerialization.writeString(out, this.exceptionMsg);
+			EnvelopeSerialization.writeString(out, this.correlationId);
+			break;
+		}
+		EnvelopeSerialization.writeHeaders(out, this.extensionHeaders);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		EnvelopeSerialization.readWireFormatVersion(in);
+		byte status = in.readByte();
+		if (status < 0 || status >= STATUS_VALUES.length) {
+			throw new InvalidObjectException("Unknown response status: " + status);
+		}
+		this.status = STATUS_VALUES[status];
+		switch (this.status) {
+		case SUCCESS:
+			this.responseBody = EnvelopeSerialization.readObject(in);
+			break;
+		case EXCEPTION:
+			this.thrownException = EnvelopeSerialization.readObject(in);
+			this.thrownExceptionType = EnvelopeSerialization.readString(in);
+			this.exceptionMsg = EnvelopeSerialization.readString(in);
+			this.correlationId = EnvelopeSerialization.readString(in);
+			break;
+		case SERVICE_UNAVAILABLE:
+		case METHOD_TABLE_MISMATCH:
+			this.exceptionMsg = EnvelopeSerialization.readString(in);
+			this.correlationId = EnvelopeSerialization.readString(in);
+			break;
+		}
+		this.extensionHeaders = EnvelopeSerialization.readHeaders(in);
 	}
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.CompletableFuture;
+
+import rx.Observable;
+import rx.functions.Func1;
+
+import com.avanza.astrix.core.AstrixBatched;
+/**
+ * Routed remote service method that sends concurrent invocations in batches, see {@link AstrixBatched}. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public class BatchedRemoteServiceMethod extends RoutedRemoteServiceMethod {
+	
+	private final RequestBatcher batcher;
+
+	public BatchedRemoteServiceMethod(String signature, 
+									  Router router,
+									  RemotingEngine remotingEngine, 
+									  Type returnType,
+									  RequestCollapser requestCollapser,
+									  ResultCache resultCache,
+									  AstrixBatched batched,
+									  RequestBatchScheduler batchScheduler) {
+		super(signature, router, remotingEngine, returnType, requestCollapser, resultCache);
+		this.batcher = new RequestBatcher(remotingEngine, batchScheduler, batched.maxDelayMicros(), batched.maxBatchSize());
+	}
+	
+	@Override
+	protected Observable<Object> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return CancellableFuture.toObservable(batcher.submit(request, routingKey)).map(new Func1<AstrixServiceInvocationResponse, Object>() {
+			@Override
+			public Object call(AstrixServiceInvocationResponse t1) {
+				return toResult(t1);
+			}
+		});
+	}
+	
+	@Override
+	protected AstrixServiceInvocationResponse invokeRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return awaitResponse(batcher.submit(request, routingKey));
+	}
+	
+	@Override
+	protected CompletableFuture<AstrixServiceInvocationResponse> invokeRoutedRequestAsync(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return batcher.submit(request, routingKey);
+	}
+
+}
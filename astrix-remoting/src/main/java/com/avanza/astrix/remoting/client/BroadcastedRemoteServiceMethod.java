@@ -16,15 +16,11 @@
 package com.avanza.astrix.remoting.client;
 
 import java.lang.reflect.Type;
-import java.util.ArrayList;
-import java.util.List;
 
 import rx.Observable;
-import rx.functions.Func1;
 
-import com.avanza.astrix.core.AstrixRemoteResult;
+import com.avanza.astrix.core.AstrixStreamed;
 import com.avanza.astrix.core.RemoteResultReducer;
-import com.avanza.astrix.core.util.ReflectionUtil;
 
 /**
  * 
@@ -35,58 +31,40 @@ import com.avanza.astrix.core.util.ReflectionUtil;
 public class BroadcastedRemoteServiceMethod implements RemoteServiceMethod {
 	
 	private final String signature;
-	private final Class<? extends RemoteResultReducer> reducer;
 	private final RemotingEngine remotingEngine;
-	private final Type returnType;
+	private final RemoteResultReduction resultReduction;
 	
 	public BroadcastedRemoteServiceMethod(String signature,
 			Class<? extends RemoteResultReducer> reducer,
 			RemotingEngine remotingEngine, 
 			Type returnType) {
+		this(signature, reducer, remotingEngine, returnType, false);
+	}
+	
+	/**
+	 * @param streamed - whether the result from each partition should be emitted as soon as it arrives, see {@link AstrixStreamed}
+	 */
+	public BroadcastedRemoteServiceMethod(String signature,
+			Class<? extends RemoteResultReducer> reducer,
+			RemotingEngine remotingEngine, 
+			Type returnType,
+			boolean streamed) {
 		this.signature = signature;
-		this.reducer = reducer;
 		this.remotingEngine = remotingEngine;
-		this.returnType = returnType;
+		this.resultReduction = new RemoteResultReduction(remotingEngine, returnType, reducer, streamed);
 	}
 
 	public String getSignature() {
 		return signature;
 	}
 	
-	private RemoteResultReducer<?> newReducer() {
-		return ReflectionUtil.newInstance(this.reducer);
-	}
-
 	@Override
 	public Observable<?> invoke(AstrixServiceInvocationRequest invocationRequest, Object[] args) throws Exception {
-		return submitBroadcastRequest(invocationRequest, args);
-	}
-	
-	private <T> Observable<T> submitBroadcastRequest(
-			AstrixServiceInvocationRequest request, Object[] args) throws InstantiationException,
-			IllegalAccessException {
-		request.setArguments(remotingEngine.marshall(args));
-		final RemoteResultReducer<T> reducer = (RemoteResultReducer<T>) newReducer();
-		Observable<List<AstrixServiceInvocationResponse>> responesObservable = remotingEngine.submitBroadcastRequest(request);
-		if (returnType.equals(Void.TYPE)) {
-			return responesObservable.map(new Func1<List<AstrixServiceInvocationResponse>, T>() {
-				@Override
-				public T call(List<AstrixServiceInvocationResponse> t1) {
-					return null;
-				}
-			});
+		invocationRequest.setArguments(remotingEngine.marshall(args));
+		if (resultReduction.usesStream()) {
+			return resultReduction.reduceStream(remotingEngine.streamBroadcastRequest(invocationRequest));
 		}
-		return responesObservable.map(new Func1<List<AstrixServiceInvocationResponse>, T>() {
-			@Override
-			public T call(List<AstrixServiceInvocationResponse> t1) {
-				List<AstrixRemoteResult<T>> unmarshalledResponses = new ArrayList<>();
-				for (AstrixServiceInvocationResponse response : t1) {
-					AstrixRemoteResult<T> result = remotingEngine.toRemoteResult(response, returnType);
-					unmarshalledResponses.add(result);
-				}
-				return reducer.reduce(unmarshalledResponses);
-			}
-		});
+		return resultReduction.reduceAll(remotingEngine.submitBroadcastRequest(invocationRequest));
 	}
 	
-}
\ No newline at end of file
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import rx.Observable;
+import rx.Observable.OnSubscribe;
+import rx.Subscriber;
+/**
+ * A CompletableFuture that propagates {@link #cancel(boolean)} to the operation that
+ * is responsible for completing it, for instance by cancelling the underlying transport
+ * request. <p>
+ * 
+ * Note that cancellation is only propagated from the instance returned by this class. Futures
+ * derived from it using the CompletableFuture composition methods (thenApply etc) are not 
+ * cancelled when the derived future is cancelled. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ * @param <T>
+ */
+public class CancellableFuture<T> extends CompletableFuture<T> {
+	
+	private volatile Runnable cancelAction;
+
+	/**
+	 * Registers the action to run when this future is cancelled. If this future 
+	 * already is cancelled the action is run immediately.
+	 * 
+	 * @param cancelAction
+	 */
+	public final void onCancel(Runnable cancelAction) {
+		this.cancelAction = cancelAction;
+		if (isCancelled()) {
+			cancelAction.run();
+		}
+	}
+	
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		boolean cancelled = super.cancel(mayInterruptIfRunning);
+		Runnable cancelAction = this.cancelAction;
+		if (cancelled && cancelAction != null) {
+			cancelAction.run();
+		}
+		return cancelled;
+	}
+	
+	/**
+	 * Creates a future that is completed with the first item emitted by a given Observable. 
+	 * Cancelling the future unsubscribes from the Observable.
+	 * 
+	 * @param observable
+	 * @return
+	 */
+	public static <T> CancellableFuture<T> fromObservable(Observable<T> observable) {
+		final CancellableFuture<T> result = new CancellableFuture<>();
+		final Subscriber<T> subscriber = new Subscriber<T>() {
+			@Override
+			public void onNext(T t) {
+				result.complete(t);
+			}
+			@Override
+			public void onError(Throwable e) {
+				result.completeExceptionally(e);
+			}
+			@Override
+			public void onCompleted() {
+				result.complete(null);
+			}
+		};
+		result.onCancel(new Runnable() {
+			@Override
+			public void run() {
+				subscriber.unsubscribe();
+			}
+		});
+		observable.subscribe(subscriber);
+		return result;
+	}
+	
+	/**
+	 * Creates a future that is completed with the result of applying the given function to the result
+	 * of the source future. Cancelling the returned future cancels the source future.
+	 * 
+	 * @param source
+	 * @param fn
+	 * @return
+	 */
+	public static <T, R> CancellableFuture<R> map(final CompletableFuture<T> source, final Function<? super T, ? extends R> fn) {
+		final CancellableFuture<R> result = new CancellableFuture<>();
+		result.onCancel(cancelAction(source));
+		source.whenComplete(new BiConsumer<T, Throwable>() {
+			@Override
+			public void accept(T value, Throwable exception) {
+				if (exception != null) {
+					result.completeExceptionally(exception);
+					return;
+				}
+				try {
+					result.complete(fn.apply(value));
+				} catch (Throwable e) {
+					result.completeExceptionally(e);
+				}
+			}
+		});
+		return result;
+	}
+	
+	/**
+	 * Creates a future that is completed with the result of the future returned by applying the given function to the result
+	 * of the source future. Cancelling the returned future cancels the source future, or the future returned by the
+	 * given function if the source future already is completed.
+	 * 
+	 * @param source
+	 * @param fn
+	 * @return
+	 */
+	public static <T, R> CancellableFuture<R> compose(final CompletableFuture<T> source, final Function<? super T, ? extends CompletableFuture<R>> fn) {
+		final CancellableFuture<R> result = new CancellableFuture<>();
+		result.onCancel(cancelAction(source));
+		source.whenComplete(new BiConsumer<T, Throwable>() {
+			@Override
+			public void accept(T value, Throwable exception) {
+				if (exception != null) {
+					result.completeExceptionally(exception);
+					return;
+				}
+				CompletableFuture<R> next;
+				try {
+					next = fn.apply(value);
+				} catch (Throwable e) {
+					result.completeExceptionally(e);
+					return;
+				}
+				result.onCancel(cancelAction(next));
+				next.whenComplete(new BiConsumer<R, Throwable>() {
+					@Override
+					public void accept(R value, Throwable exception) {
+						if (exception != null) {
+							result.completeExceptionally(exception);
+						} else {
+							result.complete(value);
+						}
+					}
+				});
+			}
+		});
+		return result;
+	}
+	
+	/**
+	 * Creates an Observable that emits the result of a given future when the future completes. 
+	 * 
+	 * @param future
+	 * @return
+	 */
+	public static <T> Observable<T> toObservable(final CompletableFuture<T> future) {
+		return Observable.create(new OnSubscribe<T>() {
+			@Override
+			public void call(final Subscriber<? super T> subscriber) {
+				future.whenComplete(new BiConsumer<T, Throwable>() {
+					@Override
+					public void accept(T value, Throwable exception) {
+						if (exception != null) {
+							subscriber.onError(exception);
+							return;
+						}
+						subscriber.onNext(value);
+						subscriber.onCompleted();
+					}
+				});
+			}
+		});
+	}
+	
+	private static Runnable cancelAction(final CompletableFuture<?> future) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				future.cancel(false);
+			}
+		};
+	}
+
+}
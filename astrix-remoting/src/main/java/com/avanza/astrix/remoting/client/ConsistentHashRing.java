@@ -0,0 +1,261 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+/**
+ * Routes routing keys to the members of a cluster using consistent hashing. <p>
+ * 
+ * Each member owns a number of virtual nodes on a hash ring, proportional to the weight of the member, and a
+ * routing key is routed to the owner of the first virtual node following the hash of the routing key. When a
+ * member joins or leaves the ring only the routing keys owned by that member are moved, hence the routing keys
+ * of all other members are still routed to the same member. The position of the virtual nodes only depends on the
+ * member id, which means that all clients using the same members routes a given routing key to the same member. <p>
+ * 
+ * Membership changes are applied by replacing an immutable snapshot of the ring, hence routing never blocks. Each
+ * snapshot is also a {@link PartitionMapping} where each member corresponds to one partition, see {@link #partitionMapping()}. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ * @param <M> - the member type
+ */
+public final class ConsistentHashRing<M> {
+	
+	public static final int DEFAULT_VIRTUAL_NODES_PER_WEIGHT = 100;
+	
+	private final int virtualNodesPerWeight;
+	private final Map<String, WeightedMember<M>> memberById = new TreeMap<>();
+	private volatile Mapping<M> mapping;
+	
+	public ConsistentHashRing() {
+		this(DEFAULT_VIRTUAL_NODES_PER_WEIGHT);
+	}
+	
+	/**
+	 * @param virtualNodesPerWeight - the number of virtual nodes owned by a member for each unit of weight
+	 */
+	public ConsistentHashRing(int virtualNodesPerWeight) {
+		if (virtualNodesPerWeight <= 0) {
+			throw new IllegalArgumentException("virtualNodesPerWeight must be positive, was: " + virtualNodesPerWeight);
+		}
+		this.virtualNodesPerWeight = virtualNodesPerWeight;
+		this.mapping = Mapping.create(Collections.<WeightedMember<M>>emptyList(), virtualNodesPerWeight);
+	}
+	
+	/**
+	 * Adds a member to the ring, or replaces the member (and weight) for a given member id.
+	 * 
+	 * @param memberId - identifies the member, decides the position of the virtual nodes owned by the member 
+	 * @param member
+	 * @param weight - a positive weight. A member with weight 2 will receive twice as many routing keys as a member with weight 1
+	 */
+	public synchronized void setMember(String memberId, M member, int weight) {
+		if (weight <= 0) {
+			throw new IllegalArgumentException("weight must be positive, was: " + weight);
+		}
+		this.memberById.put(Objects.requireNonNull(memberId), new WeightedMember<>(memberId, Objects.requireNonNull(member), weight));
+		updateMapping();
+	}
+	
+	/**
+	 * Removes a given member from the ring. The routing keys owned by the member will be routed
+	 * to the remaining members.
+	 * 
+	 * @param memberId
+	 */
+	public synchronized void removeMember(String memberId) {
+		if (this.memberById.remove(memberId) != null) {
+			updateMapping();
+		}
+	}
+	
+	private void updateMapping() {
+		this.mapping = Mapping.create(new ArrayList<>(memberById.values()), virtualNodesPerWeight);
+	}
+	
+	/**
+	 * @param routingKey
+	 * @return the member that the given routing key is routed to, or null if the ring is empty
+	 */
+	public M getMember(RoutingKey routingKey) {
+		Mapping<M> mapping = this.mapping;
+		if (mapping.partitionCount() == 0) {
+			return null;
+		}
+		return mapping.getMember(mapping.partitionOf(routingKey.hashCode()));
+	}
+	
+	public List<M> getMembers() {
+		return this.mapping.getMembers();
+	}
+	
+	public int size() {
+		return this.mapping.partitionCount();
+	}
+	
+	/**
+	 * Returns the current members of the ring as a PartitionMapping. The mapping is not affected by 
+	 * subsequent membership changes.
+	 * 
+	 * @return
+	 */
+	public Mapping<M> partitionMapping() {
+		return this.mapping;
+	}
+	
+	/*
+	 * Murmur3 finalizer. Spreads routing keys with nearby hashes, for instance small integers, over the entire ring.
+	 */
+	static int mix(int hash) {
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		return hash;
+	}
+	
+	private static final class WeightedMember<M> {
+		private final String memberId;
+		private final M member;
+		private final int weight;
+		
+		public WeightedMember(String memberId, M member, int weight) {
+			this.memberId = memberId;
+			this.member = member;
+			this.weight = weight;
+		}
+	}
+	
+	/**
+	 * Immutable snapshot of the members in a ConsistentHashRing. Each member corresponds to a partition. <p>
+	 * 
+	 * The routing key for a given partition is the hash that was used to position one of the virtual nodes
+	 * owned by the member, hence routing the routing key using the same snapshot yields the given partition. <p>
+	 * 
+	 * @param <M>
+	 */
+	public static final class Mapping<M> implements PartitionMapping {
+		
+		private final List<M> members;
+		private final int[] nodePositions;
+		private final int[] nodeOwners;
+		private final int[] routingKeyHashes;
+		
+		private Mapping(List<M> members, int[] nodePositions, int[] nodeOwners, int[] routingKeyHashes) {
+			this.members = members;
+			this.nodePositions = nodePositions;
+			this.nodeOwners = nodeOwners;
+			this.routingKeyHashes = routingKeyHashes;
+		}
+		
+		private static <M> Mapping<M> create(List<WeightedMember<M>> weightedMembers, int virtualNodesPerWeight) {
+			int nodeCount = 0;
+			for (WeightedMember<M> member : weightedMembers) {
+				nodeCount += member.weight * virtualNodesPerWeight;
+			}
+			List<M> members = new ArrayList<>(weightedMembers.size());
+			// Each node is sorted on position (high bits), ties are broken by node index (low bits)
+			long[] nodes = new long[nodeCount];
+			int[] nodeHashes = new int[nodeCount];
+			int[] nodeMembers = new int[nodeCount];
+			int nodeIndex = 0;
+			for (int memberIndex = 0; memberIndex < weightedMembers.size(); memberIndex++) {
+				WeightedMember<M> member = weightedMembers.get(memberIndex);
+				members.add(member.member);
+				for (int virtualNode = 0; virtualNode < member.weight * virtualNodesPerWeight; virtualNode++) {
+					int nodeHash = (member.memberId + "#" + virtualNode).hashCode();
+					nodes[nodeIndex] = ((long) mix(nodeHash) << 32) | nodeIndex;
+					nodeHashes[nodeIndex] = nodeHash;
+					nodeMembers[nodeIndex] = memberIndex;
+					nodeIndex++;
+				}
+			}
+			Arrays.sort(nodes);
+			int[] nodePositions = new int[nodeCount];
+			int[] nodeOwners = new int[nodeCount];
+			int[] routingKeyHashes = new int[members.size()];
+			boolean[] hasRoutingKey = new boolean[members.size()];
+			for (int i = 0; i < nodeCount; i++) {
+				int node = (int) nodes[i];
+				nodePositions[i] = (int) (nodes[i] >> 32);
+				nodeOwners[i] = nodeMembers[node];
+				// A routing key is routed to the first node at a given position
+				boolean firstNodeAtPosition = i == 0 || nodePositions[i] != nodePositions[i - 1];
+				if (firstNodeAtPosition && !hasRoutingKey[nodeOwners[i]]) {
+					routingKeyHashes[nodeOwners[i]] = nodeHashes[node];
+					hasRoutingKey[nodeOwners[i]] = true;
+				}
+			}
+			return new Mapping<>(Collections.unmodifiableList(members), nodePositions, nodeOwners, routingKeyHashes);
+		}
+		
+		@Override
+		public int partitionCount() {
+			return members.size();
+		}
+		
+		@Override
+		public int partitionOf(int routingKeyHash) {
+			int position = mix(routingKeyHash);
+			// Find first node with nodePosition >= position
+			int low = 0;
+			int high = nodePositions.length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (nodePositions[middle] < position) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			if (low == nodePositions.length) {
+				// Wrap around the ring
+				low = 0;
+			}
+			return nodeOwners[low];
+		}
+		
+		@Override
+		public RoutingKey routingKey(int partition) {
+			return RoutingKey.create(routingKeyHashes[partition]);
+		}
+		
+		/**
+		 * @param partition
+		 * @return the member corresponding to a given partition
+		 */
+		public M getMember(int partition) {
+			return members.get(partition);
+		}
+		
+		public List<M> getMembers() {
+			return members;
+		}
+		
+		@Override
+		public String toString() {
+			return "ConsistentHashRing.Mapping[members=" + members + "]";
+		}
+	}
+
+}
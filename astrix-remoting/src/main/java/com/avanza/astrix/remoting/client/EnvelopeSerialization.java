@@ -0,0 +1,200 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+/**
+ * Helpers used by the {@link java.io.Externalizable} service invocation envelopes,
+ * i.e {@link AstrixServiceInvocationRequest} and {@link AstrixServiceInvocationResponse}. <p>
+ *
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class EnvelopeSerialization {
+
+	/*
+	 * Written as the first byte of each envelope. Must be incremented
+	 * whenever the wire format of an envelope changes.
+	 */
+	static final byte WIRE_FORMAT_VERSION = 4;
+
+	private static final int NULL_LENGTH = -1;
+
+	/*
+	 * Tags written before each argument and response body, see writeObject
+	 */
+	private static final byte NULL_TAG = 0;
+	private static final byte BYTES_TAG = 1;
+	private static final byte OBJECT_TAG = 2;
+
+	static final int MAX_CACHED_IDENTIFIERS = 10_000;
+	private static final ConcurrentMap<String, String> identifiers = new ConcurrentHashMap<>();
+
+	private EnvelopeSerialization() {
+	}
+
+	static void writeWireFormatVersion(ObjectOutput out) throws IOException {
+		out.writeByte(WIRE_FORMAT_VERSION);
+	}
+
+	static void readWireFormatVersion(ObjectInput in) throws IOException {
+		byte version = in.readByte();
+		if (version != WIRE_FORMAT_VERSION) {
+			throw new InvalidObjectException("Unsupported envelope wire format version: " + version + ", expected: " + WIRE_FORMAT_VERSION);
+		}
+	}
+
+	/**
+	 * Writes a length-prefixed UTF-8 encoded string. Unlike {@link ObjectOutput#writeUTF(String)}
+	 * this method supports null values and strings of arbitrary length.
+	 */
+	static void writeString(ObjectOutput out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(NULL_LENGTH);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	static String readString(ObjectInput in) throws IOException {
+		int length = in.readInt();
+		if (length == NULL_LENGTH) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads a string that identifies a service or service method. Such identifiers are
+	 * drawn from a small set and used as lookup keys on the server side, hence they are
+	 * canonicalized to share a single instance (with cached hashCode) for all invocations.
+	 * At most {@link #MAX_CACHED_IDENTIFIERS} identifiers are cached, any other identifier
+	 * is returned as read.
+	 */
+	static String readIdentifier(ObjectInput in) throws IOException {
+		String value = readString(in);
+		if (value == null) {
+			return null;
+		}
+		String cached = identifiers.get(value);
+		if (cached != null) {
+			return cached;
+		}
+		if (identifiers.size() >= MAX_CACHED_IDENTIFIERS) {
+			return value;
+		}
+		cached = identifiers.putIfAbsent(value, value);
+		return cached != null ? cached : value;
+	}
+
+	static void writeHeaders(ObjectOutput out, Map<String, String> headers) throws IOException {
+		if (headers == null) {
+			out.writeInt(0);
+			return;
+		}
+		out.writeInt(headers.size());
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			writeString(out, header.getKey());
+			writeString(out, header.getValue());
+		}
+	}
+
+	/**
+	 * @return the headers read, or null if no headers where written.
+	 */
+	static Map<String, String> readHeaders(ObjectInput in) throws IOException {
+		int headerCount = in.readInt();
+		if (headerCount == 0) {
+			return null;
+		}
+		Map<String, String> headers = new HashMap<>(headerCount * 2);
+		for (int i = 0; i < headerCount; i++) {
+			headers.put(readString(in), readString(in));
+		}
+		return headers;
+	}
+
+	/**
+	 * Writes a single argument or response body. Objects that are already serialized by the
+	 * AstrixObjectSerializer into a byte[], for instance UTF-8 encoded json, are written as raw
+	 * length-prefixed bytes. Any other object is written using {@link ObjectOutput#writeObject(Object)}.
+	 */
+	static void writeObject(ObjectOutput out, Object object) throws IOException {
+		if (object == null) {
+			out.writeByte(NULL_TAG);
+		} else if (object instanceof byte[]) {
+			byte[] bytes = (byte[]) object;
+			out.writeByte(BYTES_TAG);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		} else {
+			out.writeByte(OBJECT_TAG);
+			out.writeObject(object);
+		}
+	}
+
+	static Object readObject(ObjectInput in) throws IOException, ClassNotFoundException {
+		byte tag = in.readByte();
+		switch (tag) {
+		case NULL_TAG:
+			return null;
+		case BYTES_TAG:
+			byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			return bytes;
+		case OBJECT_TAG:
+			return in.readObject();
+		default:
+			throw new InvalidObjectException("Unknown object tag: " + tag);
+		}
+	}
+
+	static void writeObjects(ObjectOutput out, Object[] objects) throws IOException {
+		if (objects == null) {
+			out.writeInt(NULL_LENGTH);
+			return;
+		}
+		out.writeInt(objects.length);
+		for (Object object : objects) {
+			writeObject(out, object);
+		}
+	}
+
+	static Object[] readObjects(ObjectInput in) throws IOException, ClassNotFoundException {
+		int length = in.readInt();
+		if (length == NULL_LENGTH) {
+			return null;
+		}
+		Object[] result = new Object[length];
+		for (int i = 0; i < length; i++) {
+			result[i] = readObject(in);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.util.Arrays;
+/**
+ * Identifies an invocation of a given service method by its marshalled arguments. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class InvocationKey {
+	
+	private final Object[] marshalledArguments;
+	private final int hash;
+	
+	InvocationKey(Object[] marshalledArguments) {
+		this.marshalledArguments = marshalledArguments;
+		this.hash = Arrays.deepHashCode(marshalledArguments);
+	}
+	
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof InvocationKey)) {
+			return false;
+		}
+		InvocationKey other = (InvocationKey) obj;
+		return hash == other.hash && Arrays.deepEquals(marshalledArguments, other.marshalledArguments);
+	}
+	
+}
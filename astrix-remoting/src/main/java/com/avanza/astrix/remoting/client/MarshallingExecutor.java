@@ -0,0 +1,130 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+/**
+ * Executes the marshalling of the arguments, and unmarshalling of the response, for each 
+ * partition targeted by a partitioned or broadcasted service method. <p>
+ * 
+ * Without an Executor every payload is (un)marshalled by the invoking thread. When an Executor is 
+ * given, all payloads but the last are (un)marshalled using the executor while the invoking thread 
+ * (un)marshalls the last payload, and responses that are received one at a time (see {@link RemoteResultReduction})
+ * are unmarshalled using the executor as soon as they arrive. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class MarshallingExecutor {
+	
+	static final MarshallingExecutor CALLER_THREAD = new MarshallingExecutor(null);
+	
+	private final Executor executor;
+	private final Scheduler scheduler;
+	
+	private MarshallingExecutor(Executor executor) {
+		this.executor = executor;
+		this.scheduler = executor != null ? Schedulers.from(executor) : null;
+	}
+	
+	/**
+	 * @param executor - Executor used to (un)marshall payloads, or null to (un)marshall all payloads on the invoking thread 
+	 * @return
+	 */
+	static MarshallingExecutor create(Executor executor) {
+		if (executor == null) {
+			return CALLER_THREAD;
+		}
+		return new MarshallingExecutor(executor);
+	}
+	
+	/**
+	 * Applies a given function to each element and returns the results in the same order as the given elements.
+	 * 
+	 * @param elements
+	 * @param function
+	 * @return
+	 */
+	<T, R> List<R> map(List<T> elements, final Func1<? super T, ? extends R> function) {
+		List<R> result = new ArrayList<>(elements.size());
+		if (executor == null || elements.size() < 2) {
+			for (T element : elements) {
+				result.add(function.call(element));
+			}
+			return result;
+		}
+		List<CompletableFuture<R>> forked = new ArrayList<>(elements.size() - 1);
+		for (final T element : elements.subList(0, elements.size() - 1)) {
+			forked.add(CompletableFuture.supplyAsync(new Supplier<R>() {
+				@Override
+				public R get() {
+					return function.call(element);
+				}
+			}, executor));
+		}
+		R last = function.call(elements.get(elements.size() - 1));
+		for (CompletableFuture<R> element : forked) {
+			result.add(join(element));
+		}
+		result.add(last);
+		return result;
+	}
+	
+	/**
+	 * Applies a given function to each element emitted by a given Observable. Note that the results
+	 * might be emitted in another order than the elements when an Executor is used.
+	 * 
+	 * @param elements
+	 * @param function
+	 * @return
+	 */
+	<T, R> Observable<R> mapEach(Observable<T> elements, final Func1<? super T, ? extends R> function) {
+		if (scheduler == null) {
+			return elements.map(function);
+		}
+		return elements.flatMap(new Func1<T, Observable<R>>() {
+			@Override
+			public Observable<R> call(T element) {
+				return Observable.just(element).observeOn(scheduler).map(function);
+			}
+		});
+	}
+	
+	private static <R> R join(CompletableFuture<R> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+}
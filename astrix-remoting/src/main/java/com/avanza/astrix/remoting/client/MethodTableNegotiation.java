@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avanza.astrix.remoting.util.ServiceMethodTable;
+/**
+ * Decides how a service method is identified in each invocation request sent by a given {@link RemotingProxy}. <p>
+ *
+ * When the server has published a method table with the same checksum as the table derived
+ * by the client (see {@link ServiceMethodTable#CHECKSUM_PROPERTY}), each request identifies
+ * the target method using the (small) method id. Otherwise, or after the server reported that
+ * the tables does not match, the full method signature is used. <p>
+ *
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class MethodTableNegotiation {
+
+	private static final Logger log = LoggerFactory.getLogger(MethodTableNegotiation.class);
+
+	private final ServiceMethodTable methodTable;
+	private final String serviceApi;
+	private volatile boolean useMethodIds;
+
+	private MethodTableNegotiation(String serviceApi, ServiceMethodTable methodTable, boolean useMethodIds) {
+		this.serviceApi = serviceApi;
+		this.methodTable = methodTable;
+		this.useMethodIds = useMethodIds;
+	}
+
+	/**
+	 * @param targetServiceApi
+	 * @param serverChecksum - the checksum published by the server, or null if not known.
+	 * @return
+	 */
+	static MethodTableNegotiation create(Class<?> targetServiceApi, Long serverChecksum) {
+		ServiceMethodTable methodTable = ServiceMethodTable.create(targetServiceApi);
+		boolean tablesMatch = serverChecksum != null && serverChecksum.longValue() == methodTable.getChecksum();
+		return new MethodTableNegotiation(targetServiceApi.getName(), methodTable, tablesMatch);
+	}
+
+	void identifyServiceMethod(AstrixServiceInvocationRequest request, String methodSignature) {
+		request.setServiceMethodSignature(methodSignature);
+		if (useMethodIds) {
+			int methodId = methodTable.getMethodId(methodSignature);
+			if (methodId != AstrixServiceInvocationRequest.NO_METHOD_ID) {
+				request.setServiceMethodId(methodId, methodTable.getChecksum());
+			}
+		}
+	}
+
+	/**
+	 * Invoked when the server reported that its method table does not match the one used by
+	 * this client. All subsequent requests will identify the target method by signature.
+	 */
+	void methodTableMismatch() {
+		if (useMethodIds) {
+			log.info(String.format("Method table mismatch reported by server, falling back to method signatures. service=%s", serviceApi));
+			useMethodIds = false;
+		}
+	}
+
+	boolean usesMethodIds() {
+		return useMethodIds;
+	}
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+/**
+ * Maps routing keys to the partitions of the cluster targeted by a {@link RemotingTransportSpi}. <p>
+ * 
+ * A partitioned service method (see {@link com.avanza.astrix.core.AstrixPartitionedRouting}) uses a
+ * PartitionMapping to group the elements of the partitioned argument by partition, and then sends one request
+ * for each partition using the RoutingKey returned by {@link #routingKey(int)}. Hence, a PartitionMapping must
+ * ensure that the transport routes a request with that routing key to the same partition as an element whose
+ * routing key hashes to that partition. <p>
+ * 
+ * A PartitionMapping must not change after it is created. A transport that supports membership
+ * changes should return a new PartitionMapping when the membership changes, see {@link ConsistentHashRing}. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public interface PartitionMapping {
+	
+	/**
+	 * @return the number of partitions in this mapping
+	 */
+	int partitionCount();
+	
+	/**
+	 * @param routingKeyHash - the hashCode of a routing key
+	 * @return the partition, in the range [0, partitionCount), that the given routing key is routed to
+	 */
+	int partitionOf(int routingKeyHash);
+	
+	/**
+	 * @param partition
+	 * @return a RoutingKey that is routed to the given partition
+	 */
+	RoutingKey routingKey(int partition);
+	
+	/**
+	 * Routes a routing key with a given hash to partition: abs(hash % partitionCount). This is
+	 * the mapping used by GigaSpaces, see {@link RemotingTransportSpi#partitionMapping()}. <p>
+	 * 
+	 * @param partitionCount
+	 * @return
+	 */
+	static PartitionMapping modulo(int partitionCount) {
+		return new ModuloPartitionMapping(partitionCount);
+	}
+	
+}
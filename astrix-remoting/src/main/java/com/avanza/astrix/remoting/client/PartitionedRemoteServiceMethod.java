@@ -16,24 +16,20 @@
 package com.avanza.astrix.remoting.client;
 
 import java.lang.annotation.Annotation;
-import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Objects;
 
 import rx.Observable;
 import rx.functions.Func1;
 
 import com.avanza.astrix.core.AstrixPartitionedRouting;
-import com.avanza.astrix.core.AstrixRemoteResult;
+import com.avanza.astrix.core.AstrixStreamed;
 import com.avanza.astrix.core.RemoteResultReducer;
-import com.avanza.astrix.core.function.Consumer;
 import com.avanza.astrix.core.util.ReflectionUtil;
 /**
  * 
@@ -45,30 +41,38 @@ public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 	private final int partitionedArgumentIndex;
 	private final String methodSignature;
 	private final RemotingEngine remotingEngine;
-	private final Type targetReturnType;
-	private final Class<? extends RemoteResultReducer<?>> reducerType;
-	private final ContainerType partitionedArgumentContainerType;
-	private final PartitionedRouter router;
+	private final ArgumentPartitioner argumentPartitioner;
 	private final Method proxiedMethod;
+	private final RemoteResultReduction resultReduction;
 
 	public PartitionedRemoteServiceMethod(int partitionedArgumentIndex,
 										  Method proxiedMethod,
 										  String methodSignature, 
 										  RemotingEngine remotingEngine,
 										  Type targetReturnType) {
+		this(partitionedArgumentIndex, proxiedMethod, methodSignature, remotingEngine, targetReturnType, false);
+	}
+	
+	/**
+	 * @param streamed - whether the result from each partition should be emitted as soon as it arrives, see {@link AstrixStreamed}
+	 */
+	public PartitionedRemoteServiceMethod(int partitionedArgumentIndex,
+										  Method proxiedMethod,
+										  String methodSignature, 
+										  RemotingEngine remotingEngine,
+										  Type targetReturnType,
+										  boolean streamed) {
 		this.partitionedArgumentIndex = partitionedArgumentIndex;
 		this.proxiedMethod = proxiedMethod;
 		this.methodSignature = methodSignature;
 		this.remotingEngine = remotingEngine;
-		this.targetReturnType = targetReturnType;
 		AstrixPartitionedRouting partitionedRouting = getPartitionedRoutingAnnotation(proxiedMethod, partitionedArgumentIndex);
-		this.reducerType = getReducer(partitionedRouting, proxiedMethod);
-		this.partitionedArgumentContainerType = getPartititonedArgumentContainerType(proxiedMethod, partitionedRouting);
-		this.router = createRouter(partitionedRouting);
+		Class<? extends RemoteResultReducer<?>> reducerType = getReducer(partitionedRouting, proxiedMethod);
+		this.argumentPartitioner = createArgumentPartitioner(proxiedMethod, partitionedRouting);
+		this.resultReduction = new RemoteResultReduction(remotingEngine, targetReturnType, reducerType, streamed);
 	}
 
-	private PartitionedRouter createRouter(AstrixPartitionedRouting partitionedRouting) {
-		Class<?> elementType = this.partitionedArgumentContainerType.getElementType();
+	private PartitionedRouter createRouter(AstrixPartitionedRouting partitionedRouting, Class<?> elementType) {
 		if (!partitionedRouting.routingMethod().isEmpty()) {
 			Method routingMethod;
 			try {
@@ -83,10 +87,11 @@ public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 		return PartitionedRouter.identity();
 	}
 
-	private ContainerType getPartititonedArgumentContainerType(Method proxiedMethod, AstrixPartitionedRouting partitionBy) {
+	private ArgumentPartitioner createArgumentPartitioner(Method proxiedMethod, AstrixPartitionedRouting partitionBy) {
 		Class<?> partitionedArgumentType = proxiedMethod.getParameterTypes()[partitionedArgumentIndex];
 		if (partitionedArgumentType.isArray()) {
-			return new ArrayContainerType(partitionedArgumentType.getComponentType());
+			Class<?> elementType = partitionedArgumentType.getComponentType();
+			return ArgumentPartitioner.create(partitionedArgumentType, null, createRouter(partitionBy, elementType), partitionBy.parallelPartitioningThreshold());
 		}
 		Class<? extends Collection<?>> collectionFactory = (Class<? extends Collection<?>>) partitionBy.collectionFactory();
 		if (!proxiedMethod.getParameterTypes()[partitionedArgumentIndex].isAssignableFrom(collectionFactory)) {
@@ -100,7 +105,8 @@ public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 			throw new IllegalArgumentException("Illegal service method: " + ReflectionUtil.fullMethodName(proxiedMethod) + ".\nWhen defining a routingMethod for @AstrixPartitionedRouting the target Collection type must not be a raw type. \nwas: " + rawType);
 		}
 		ParameterizedType partitionedArgumentTypeParameters = (ParameterizedType) rawType;
-		return new CollectionContainerType(collectionFactory, (Class<?>)partitionedArgumentTypeParameters.getActualTypeArguments()[0]);
+		Class<?> elementType = (Class<?>) partitionedArgumentTypeParameters.getActualTypeArguments()[0];
+		return ArgumentPartitioner.create(partitionedArgumentType, collectionFactory, createRouter(partitionBy, elementType), partitionBy.parallelPartitioningThreshold());
 	}
 
 	private Class<? extends RemoteResultReducer<?>> getReducer(
@@ -131,218 +137,46 @@ public class PartitionedRemoteServiceMethod implements RemoteServiceMethod {
 		 * 2. Marshall arguments
 		 * 3. Execute requests
 		 */
-		ServiceInvocationPartitioner serviceInvocationPartitioner = new ServiceInvocationPartitioner();
-		List<RoutedServiceInvocationRequest> partitionInvocationRequest = serviceInvocationPartitioner.partitionInvocationRequest(invocationRequest, args);
-		Observable<List<AstrixServiceInvocationResponse>> serviceInvocationResponses = remotingEngine.submitRoutedRequests(partitionInvocationRequest);
-		return reduce(serviceInvocationResponses);
-	}
-
-	private <T> Observable<T> reduce(Observable<List<AstrixServiceInvocationResponse>> responses) {
-		if (targetReturnType.equals(Void.TYPE)) {
-			return responses.map(new Func1<List<AstrixServiceInvocationResponse>, T>() {
-				@Override
-				public T call(List<AstrixServiceInvocationResponse> t1) {
-					return null;
-				}
-			});
+		List<RoutedServiceInvocationRequest> partitionInvocationRequest = partitionInvocationRequest(invocationRequest, args);
+		if (resultReduction.usesStream()) {
+			return resultReduction.reduceStream(remotingEngine.streamRoutedRequests(partitionInvocationRequest));
+		}
+		return resultReduction.reduceAll(remotingEngine.submitRoutedRequests(partitionInvocationRequest));
+	}
+
+	private List<RoutedServiceInvocationRequest> partitionInvocationRequest(final AstrixServiceInvocationRequest invocationRequest, Object[] args) {
+		final PartitionMapping partitionMapping = remotingEngine.partitionMapping();
+		Object[] partitionedArguments = argumentPartitioner.partition(args[partitionedArgumentIndex], partitionMapping);
+		List<PartitionArguments> partitions = new ArrayList<>(partitionedArguments.length);
+		for (int targetPartition = 0; targetPartition < partitionedArguments.length; targetPartition++) {
+			if (partitionedArguments[targetPartition] != null) {
+				Object[] argumentsForPartition = Arrays.copyOf(args, args.length);
+				argumentsForPartition[partitionedArgumentIndex] = partitionedArguments[targetPartition];
+				partitions.add(new PartitionArguments(argumentsForPartition, targetPartition));
+			}
 		}
-		final RemoteResultReducer<T> reducer = newRemoteResultReducer();
-		return responses.map(new Func1<List<AstrixServiceInvocationResponse>, T>() {
+		return remotingEngine.getMarshallingExecutor().map(partitions, new Func1<PartitionArguments, RoutedServiceInvocationRequest>() {
 			@Override
-			public T call(List<AstrixServiceInvocationResponse> t1) {
-				List<AstrixRemoteResult<T>> unmarshalledResponses = new ArrayList<>(t1.size());
-				for (AstrixServiceInvocationResponse response : t1) {
-					AstrixRemoteResult<T> result = remotingEngine.toRemoteResult(response, targetReturnType);
-					unmarshalledResponses.add(result);
-				}
-				return reducer.reduce(unmarshalledResponses);
+			public RoutedServiceInvocationRequest call(PartitionArguments partition) {
+				return createInvocationRequest(invocationRequest, partition, partitionMapping);
 			}
 		});
-		
-	}
-
-	@SuppressWarnings("unchecked")
-	private <T> RemoteResultReducer<T> newRemoteResultReducer() {
-		return (RemoteResultReducer<T>) ReflectionUtil.newInstance(this.reducerType);
-	}
-
-	private ContainerBuilder newCollectionInstance() {
-		return partitionedArgumentContainerType.newInstance();
-	}
-
-	private class RoutedServiceInvocationRequestBuilder {
-		private final ContainerBuilder routingKeys;
-		private final RoutingKey targetPartitionRoutingKey;
-
-		public RoutedServiceInvocationRequestBuilder(ContainerBuilder keys, int targetPartition) {
-			this.routingKeys = keys;
-			this.targetPartitionRoutingKey = RoutingKey.create(targetPartition);
-		}
-
-		public void addKey(Object requestedKey) {
-			this.routingKeys.add(requestedKey);
-		}
-		
-		private RoutedServiceInvocationRequest createInvocationRequest(
-				AstrixServiceInvocationRequest invocationRequest,
-				Object[] unpartitionedArguments) {
-			AstrixServiceInvocationRequest partitionedRequest = new AstrixServiceInvocationRequest();
-			partitionedRequest.setAllHeaders(invocationRequest.getHeaders());
-			Object[] requestForPartition = Arrays.copyOf(unpartitionedArguments, unpartitionedArguments.length);
-			requestForPartition[partitionedArgumentIndex] = this.routingKeys.buildTarget();
-			partitionedRequest.setArguments(remotingEngine.marshall(requestForPartition));
-			return new RoutedServiceInvocationRequest(partitionedRequest, targetPartitionRoutingKey);
-		}
-	}
-	
-	private class ServiceInvocationPartitioner {
-		private final RoutedServiceInvocationRequestBuilder[] requests;
-		
-		public ServiceInvocationPartitioner() {
-			this.requests = new RoutedServiceInvocationRequestBuilder[remotingEngine.partitionCount()];
-		}
-
-		public List<RoutedServiceInvocationRequest> partitionInvocationRequest(AstrixServiceInvocationRequest invocationRequest, Object[] args) {
-			partitionedArgumentContainerType.iterateContainer(getContainerInstance(args), new Consumer<Object>() {
-				@Override
-				public void accept(Object element) {
-					addElement(element);
-				}
-			});
-			List<RoutedServiceInvocationRequest> result = new LinkedList<>();
-			for (RoutedServiceInvocationRequestBuilder routedInvocationReqeustBuilder : requests) {
-				if (routedInvocationReqeustBuilder != null) {
-					result.add(routedInvocationReqeustBuilder.createInvocationRequest(invocationRequest, args));
-				}
-			}
-			return result;
-		}
-		
-		private Object getContainerInstance(Object[] args) {
-			return args[partitionedArgumentIndex];
-		}
-
-		public void addElement(Object element) {
-			Object routingKey = router.getRoutingKey(element);
-			int targetPartition = routingKey.hashCode() % requests.length;
-			RoutedServiceInvocationRequestBuilder invocationRequestBuilderForPartition = this.requests[targetPartition];
-			if (invocationRequestBuilderForPartition == null) {
-				invocationRequestBuilderForPartition = new RoutedServiceInvocationRequestBuilder(newCollectionInstance(), targetPartition);
-				this.requests[targetPartition] = invocationRequestBuilderForPartition;
-				
-			}
-			invocationRequestBuilderForPartition.addKey(element);
-		}
-
-	}
-	
-	private interface ContainerType {
-		ContainerBuilder newInstance();
-		void iterateContainer(Object container, Consumer<Object> consumer);
-		Class<?> getElementType();
-	}
-	
-	private static class CollectionContainerType implements ContainerType {
-		private final Class<?> elementType;
-		private final Class<? extends Collection<?>> collectionFactory;
-		
-		public CollectionContainerType(Class<? extends Collection<?>> collectionFactory, Class<?> elementType) {
-			this.collectionFactory = Objects.requireNonNull(collectionFactory);
-			this.elementType = Objects.requireNonNull(elementType);
-		}
-
-		@Override
-		public ContainerBuilder newInstance() {
-			return new CollectionContainerBuilder((Collection<? super Object>) ReflectionUtil.newInstance(this.collectionFactory));
-		}
-
-		@Override
-		public void iterateContainer(Object container, Consumer<Object> consumer) {
-			for (Object element : (Collection<? extends Object>) container) {
-				consumer.accept(element);
-			}
-		}
-		
-		@Override
-		public Class<?> getElementType() {
-			return elementType;
-		}
 	}
-	
-	private static class ArrayContainerType implements ContainerType {
-		
-		private final Class<?> elementType;
-		
-		public ArrayContainerType(Class<?> elementType) {
-			this.elementType = elementType;
-		}
 
-		@Override
-		public ContainerBuilder newInstance() {
-			return new ArrayContainerBuilder(elementType);
-		}
-
-		@Override
-		public void iterateContainer(Object container, Consumer<Object> consumer) {
-			for (int i = 0; i < Array.getLength(container); i++) {
-				consumer.accept(Array.get(container, i));
-			}
-		}
-		
-		@Override
-		public Class<?> getElementType() {
-			return this.elementType;
-		}
+	private RoutedServiceInvocationRequest createInvocationRequest(AstrixServiceInvocationRequest invocationRequest, PartitionArguments partition, PartitionMapping partitionMapping) {
+		AstrixServiceInvocationRequest partitionedRequest = new AstrixServiceInvocationRequest();
+		partitionedRequest.copyHeaders(invocationRequest);
+		partitionedRequest.setArguments(remotingEngine.marshall(partition.arguments));
+		return new RoutedServiceInvocationRequest(partitionedRequest, partitionMapping.routingKey(partition.targetPartition));
 	}
 	
-	private static class ArrayContainerBuilder extends ContainerBuilder {
-		
-		private final Class<?> elementType;
-		private final List<Object> elements = new ArrayList<>();
-		
-		public ArrayContainerBuilder(Class<?> elementType) {
-			this.elementType = elementType;
-		}
-		
-		@Override
-		void add(Object element) {
-			elements.add(element);
-		}
-		
-		@Override
-		Object buildTarget() {
-			Object array = Array.newInstance(elementType, elements.size());
-			int nextIndex = 0;
-			for (Object element : elements) {
-				Array.set(array, nextIndex, element);
-				nextIndex++;
-			}
-			return array;
-		}
-	}
-	
-	private static abstract class ContainerBuilder {
-		
-		abstract void add(Object element);
-		
-		abstract Object buildTarget();
-	}
-	
-	private static class CollectionContainerBuilder extends ContainerBuilder {
-		private Collection<? super Object> collection;
-
-		public CollectionContainerBuilder(Collection<? super Object> collection) {
-			this.collection = collection;
-		}
-		
-		@Override
-		void add(Object element) {
-			this.collection.add(element);
-		}
+	private static final class PartitionArguments {
+		private final Object[] arguments;
+		private final int targetPartition;
 		
-		@Override
-		Object buildTarget() {
-			return collection;
+		public PartitionArguments(Object[] arguments, int targetPartition) {
+			this.arguments = arguments;
+			this.targetPartition = targetPartition;
 		}
 	}
 	
@@ -18,9 +18,10 @@ package com.avanza.astrix.remoting.client;
 import java.lang.reflect.Method;
 import java.util.Objects;
 
-import com.avanza.astrix.core.util.ReflectionUtil;
+import com.avanza.astrix.core.util.MethodInvoker;
 
 /**
+ * Decides what routing key to use for each element in a partitioned argument. <p>
  * 
  * @author Elias Lindholm (elilin)
  *
@@ -52,14 +53,14 @@ abstract class PartitionedRouter {
 		}
 	}
 	private static class RoutingMethod extends PartitionedRouter {
-		private final Method method;
+		private final MethodInvoker method;
 		public RoutingMethod(Method method) {
-			this.method = Objects.requireNonNull(method);
+			this.method = MethodInvoker.create(Objects.requireNonNull(method));
 		}
 		@Override
 		Object getRoutingKey(Object element) {
 			try {
-				return ReflectionUtil.invokeMethod(method, element, null);
+				return method.invoke(element, null);
 			} catch (Throwable e) {
 				throw new RuntimeException("Failed to invoke routing Method on: " + element, e);
 			}
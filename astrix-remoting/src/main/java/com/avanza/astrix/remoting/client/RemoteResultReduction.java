@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.lang.reflect.Type;
+import java.util.List;
+
+import rx.Observable;
+import rx.functions.Action2;
+import rx.functions.Func0;
+import rx.functions.Func1;
+
+import com.avanza.astrix.core.AstrixRemoteResult;
+import com.avanza.astrix.core.AstrixStreamed;
+import com.avanza.astrix.core.IncrementalRemoteResultReducer;
+import com.avanza.astrix.core.RemoteResultReducer;
+import com.avanza.astrix.core.util.ReflectionUtil;
+/**
+ * Reduces the responses from the partitions targeted by a broadcasted or partitioned service method. <p>
+ * 
+ * Responses are reduced in one of three ways:
+ * <ol>
+ * <li>Streamed - The result from each partition is emitted as soon as it arrives, see {@link AstrixStreamed}</li>
+ * <li>Incrementally - Each response is accumulated as soon as it is unmarshalled, see {@link IncrementalRemoteResultReducer}</li>
+ * <li>All at once - All responses are reduced when the responses from all partitions are unmarshalled</li>
+ * </ol>
+ * 
+ * Only streamed methods receive the responses one at a time from the transport. The other methods 
+ * receive all responses in a single batch, which allows the transport to dispatch all requests at once 
+ * and to identify the target method by its id. <p>
+ * 
+ * A new reducer is created for each subscription, i.e. the reducer state is never shared between two 
+ * subscriptions to the same Observable. The responses are unmarshalled using the {@link MarshallingExecutor} 
+ * of the {@link RemotingEngine}. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class RemoteResultReduction {
+	
+	private final RemotingEngine remotingEngine;
+	private final Type returnType;
+	private final Class<? extends RemoteResultReducer> reducerType;
+	private final boolean streamed;
+	
+	RemoteResultReduction(RemotingEngine remotingEngine, Type returnType, Class<? extends RemoteResultReducer> reducerType, boolean streamed) {
+		this.remotingEngine = remotingEngine;
+		this.returnType = returnType;
+		this.reducerType = reducerType;
+		this.streamed = streamed;
+	}
+	
+	/**
+	 * @return true if responses should be received using {@link #reduceStream(Observable)}, false
+	 * 		   if they should be received using {@link #reduceAll(Observable)}
+	 */
+	boolean usesStream() {
+		return streamed && !returnType.equals(Void.TYPE);
+	}
+	
+	<T> Observable<T> reduceStream(Observable<AstrixServiceInvocationResponse> responses) {
+		Observable<AstrixRemoteResult<T>> results = remotingEngine.getMarshallingExecutor().mapEach(responses, this.<T>unmarshaller());
+		return results.map(new Func1<AstrixRemoteResult<T>, T>() {
+			@Override
+			public T call(AstrixRemoteResult<T> result) {
+				return result.getResult();
+			}
+		});
+	}
+	
+	<T> Observable<T> reduceAll(Observable<List<AstrixServiceInvocationResponse>> responses) {
+		if (returnType.equals(Void.TYPE)) {
+			return responses.map(new Func1<List<AstrixServiceInvocationResponse>, T>() {
+				@Override
+				public T call(List<AstrixServiceInvocationResponse> t1) {
+					return null;
+				}
+			});
+		}
+		if (IncrementalRemoteResultReducer.class.isAssignableFrom(reducerType)) {
+			return responses.flatMap(new Func1<List<AstrixServiceInvocationResponse>, Observable<T>>() {
+				@Override
+				public Observable<T> call(List<AstrixServiceInvocationResponse> t1) {
+					return accumulate(Observable.from(t1));
+				}
+			});
+		}
+		return responses.map(new Func1<List<AstrixServiceInvocationResponse>, T>() {
+			@Override
+			public T call(List<AstrixServiceInvocationResponse> t1) {
+				List<AstrixRemoteResult<T>> unmarshalledResponses = remotingEngine.getMarshallingExecutor().map(t1, RemoteResultReduction.this.<T>unmarshaller());
+				RemoteResultReducer<T> reducer = newReducer();
+				return reducer.reduce(unmarshalledResponses);
+			}
+		});
+	}
+	
+	private <T> Observable<T> accumulate(Observable<AstrixServiceInvocationResponse> responses) {
+		Observable<AstrixRemoteResult<T>> results = remotingEngine.getMarshallingExecutor().mapEach(responses, this.<T>unmarshaller());
+		return results.collect(new Func0<IncrementalRemoteResultReducer<T>>() {
+			@Override
+			public IncrementalRemoteResultReducer<T> call() {
+				return newReducer();
+			}
+		}, new Action2<IncrementalRemoteResultReducer<T>, AstrixRemoteResult<T>>() {
+			@Override
+			public void call(IncrementalRemoteResultReducer<T> reducer, AstrixRemoteResult<T> result) {
+				reducer.accumulate(result);
+			}
+		}).map(new Func1<IncrementalRemoteResultReducer<T>, T>() {
+			@Override
+			public T call(IncrementalRemoteResultReducer<T> reducer) {
+				return reducer.result();
+			}
+		});
+	}
+	
+	private <T> Func1<AstrixServiceInvocationResponse, AstrixRemoteResult<T>> unmarshaller() {
+		return new Func1<AstrixServiceInvocationResponse, AstrixRemoteResult<T>>() {
+			@Override
+			public AstrixRemoteResult<T> call(AstrixServiceInvocationResponse response) {
+				return remotingEngine.toRemoteResult(response, returnType);
+			}
+		};
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <R extends RemoteResultReducer<?>> R newReducer() {
+		return (R) ReflectionUtil.newInstance(this.reducerType);
+	}
+
+}
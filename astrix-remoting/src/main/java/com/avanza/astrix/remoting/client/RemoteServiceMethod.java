@@ -15,6 +15,8 @@
  */
 package com.avanza.astrix.remoting.client;
 
+import java.util.concurrent.CompletableFuture;
+
 import rx.Observable;
 
 /**
@@ -25,4 +27,31 @@ import rx.Observable;
 public interface RemoteServiceMethod {
 	String getSignature();
 	Observable<?> invoke(AstrixServiceInvocationRequest invocationRequest, Object[] args) throws Exception;
+	
+	/**
+	 * Invokes the remote service method and waits for the result. Used for synchronous service
+	 * methods, i.e methods that neither return an Observable nor a Future.
+	 * 
+	 * @param invocationRequest
+	 * @param args
+	 * @return
+	 * @throws Exception
+	 */
+	default Object invokeAndWait(AstrixServiceInvocationRequest invocationRequest, Object[] args) throws Exception {
+		return invoke(invocationRequest, args).toBlocking().first();
+	}
+	
+	/**
+	 * Invokes the remote service method without waiting for the result. Used for service methods
+	 * returning a CompletableFuture, CompletionStage or Future. Cancelling the returned future 
+	 * cancels the underlying invocation if supported by the transport. 
+	 * 
+	 * @param invocationRequest
+	 * @param args
+	 * @return
+	 * @throws Exception
+	 */
+	default CompletableFuture<?> invokeAsync(AstrixServiceInvocationRequest invocationRequest, Object[] args) throws Exception {
+		return CancellableFuture.fromObservable(invoke(invocationRequest, args));
+	}
 }
\ No newline at end of file
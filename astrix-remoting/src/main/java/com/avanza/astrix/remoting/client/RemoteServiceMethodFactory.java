@@ -19,8 +19,14 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 
+import rx.Observable;
+
+import com.avanza.astrix.core.AstrixBatched;
 import com.avanza.astrix.core.AstrixBroadcast;
+import com.avanza.astrix.core.AstrixCached;
+import com.avanza.astrix.core.AstrixCollapsed;
 import com.avanza.astrix.core.AstrixPartitionedRouting;
+import com.avanza.astrix.core.AstrixStreamed;
 import com.avanza.astrix.core.RemoteResultReducer;
 import com.avanza.astrix.core.util.ReflectionUtil;
 /**
@@ -32,26 +38,81 @@ public class RemoteServiceMethodFactory {
 
 	private final RemotingEngine remotingEngine;
 	private final RoutingStrategy routingStrategy;
+	private final RemotingProxyOptions options;
+	private final ResultCacheRegistry resultCacheRegistry;
+	private RequestBatchScheduler batchScheduler;
 	
 	public RemoteServiceMethodFactory(RemotingEngine remotingEngine,
 			RoutingStrategy routingStrategy) {
+		this(remotingEngine, routingStrategy, RemotingProxyOptions.create());
+	}
+	
+	public RemoteServiceMethodFactory(RemotingEngine remotingEngine,
+			RoutingStrategy routingStrategy, RemotingProxyOptions options) {
 		this.remotingEngine = remotingEngine;
 		this.routingStrategy = routingStrategy;
+		this.options = options;
+		// Caches of proxies created without a registry can't be invalidated by anyone else
+		this.resultCacheRegistry = options.getResultCacheRegistry() != null ? options.getResultCacheRegistry() : new ResultCacheRegistry();
 	}
 
 	public RemoteServiceMethod createRemoteServiceMethod(
 			Class<?> targetServiceType, Method proxiedMethod, Type targetReturnType) {
 		String methodSignature = ReflectionUtil.methodSignatureWithoutReturnType(proxiedMethod);
+		boolean streamed = Observable.class.equals(proxiedMethod.getReturnType()) 
+				&& getAnnotation(AstrixStreamed.class, proxiedMethod, targetServiceType) != null;
 		if (proxiedMethod.isAnnotationPresent(AstrixBroadcast.class)) {
 			return new BroadcastedRemoteServiceMethod(methodSignature,
 					getRemoteResultReducerClass(proxiedMethod, targetServiceType),
-					remotingEngine, targetReturnType);
+					remotingEngine, targetReturnType, streamed);
 		}
 		int partitionedByArgumentIndex = getPartitionedByAnnotation(proxiedMethod);
 		if (partitionedByArgumentIndex >= 0) {
-			return new PartitionedRemoteServiceMethod(partitionedByArgumentIndex, proxiedMethod, methodSignature, remotingEngine, targetReturnType);
+			return new PartitionedRemoteServiceMethod(partitionedByArgumentIndex, proxiedMethod, methodSignature, remotingEngine, targetReturnType, streamed);
+		}
+		RequestCollapser requestCollapser = null;
+		if (getAnnotation(AstrixCollapsed.class, proxiedMethod, targetServiceType) != null) {
+			requestCollapser = new RequestCollapser(RequestCollapsingMetrics.forServiceMethod(targetServiceType.getName(), methodSignature));
+		}
+		ResultCache resultCache = null;
+		AstrixCached cached = getAnnotation(AstrixCached.class, proxiedMethod, targetServiceType);
+		if (cached != null) {
+			resultCache = ResultCache.create(targetServiceType.getName(), methodSignature, cached, options.getResultCacheSettings(), resultCacheRegistry);
+		}
+		AstrixBatched batched = getAnnotation(AstrixBatched.class, proxiedMethod, targetServiceType);
+		if (batched != null) {
+			return new BatchedRemoteServiceMethod(methodSignature, routingStrategy.create(proxiedMethod), remotingEngine, targetReturnType, requestCollapser, resultCache, batched, getBatchScheduler());
+		}
+		return new RoutedRemoteServiceMethod(methodSignature, routingStrategy.create(proxiedMethod), remotingEngine, targetReturnType, requestCollapser, resultCache);
+	}
+	
+	/*
+	 * Proxies created without a scheduler use a scheduler of their own, whose thread 
+	 * terminates when idle.
+	 */
+	private synchronized RequestBatchScheduler getBatchScheduler() {
+		if (options.getRequestBatchScheduler() != null) {
+			return options.getRequestBatchScheduler();
+		}
+		if (batchScheduler == null) {
+			batchScheduler = new RequestBatchScheduler();
+		}
+		return batchScheduler;
+	}
+	
+	/*
+	 * Annotations might be defined either on the proxied method, or on the corresponding
+	 * method in the target service api, for instance when proxying MyServiceAsync
+	 */
+	private static <A extends Annotation> A getAnnotation(Class<A> annotationType, Method proxiedMethod, Class<?> targetServiceType) {
+		if (proxiedMethod.isAnnotationPresent(annotationType)) {
+			return proxiedMethod.getAnnotation(annotationType);
+		}
+		try {
+			return targetServiceType.getMethod(proxiedMethod.getName(), proxiedMethod.getParameterTypes()).getAnnotation(annotationType);
+		} catch (NoSuchMethodException e) {
+			return null;
 		}
-		return new RoutedRemoteServiceMethod(methodSignature, routingStrategy.create(proxiedMethod), remotingEngine, targetReturnType);
 	}
 	
 	public static int getPartitionedByAnnotation(Method m) {
@@ -17,8 +17,11 @@ package com.avanza.astrix.remoting.client;
 
 import java.lang.reflect.Type;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 import rx.Observable;
+import rx.functions.Func1;
 
 import com.avanza.astrix.core.AstrixObjectSerializer;
 import com.avanza.astrix.core.AstrixRemoteResult;
@@ -33,11 +36,19 @@ public final class RemotingEngine {
 	private final RemotingTransport serviceTransport;
 	private final AstrixObjectSerializer objectSerializer;
 	private final int apiVersion;
+	private final MethodTableNegotiation methodTableNegotiation;
+	private final MarshallingExecutor marshallingExecutor;
 	
-	public RemotingEngine(RemotingTransport serviceTransport, AstrixObjectSerializer objectSerializer, int apiVersion) {
+	RemotingEngine(RemotingTransport serviceTransport, AstrixObjectSerializer objectSerializer, int apiVersion, MethodTableNegotiation methodTableNegotiation) {
+		this(serviceTransport, objectSerializer, apiVersion, methodTableNegotiation, MarshallingExecutor.CALLER_THREAD);
+	}
+	
+	RemotingEngine(RemotingTransport serviceTransport, AstrixObjectSerializer objectSerializer, int apiVersion, MethodTableNegotiation methodTableNegotiation, MarshallingExecutor marshallingExecutor) {
 		this.serviceTransport = serviceTransport;
 		this.objectSerializer = objectSerializer;
 		this.apiVersion = apiVersion;
+		this.methodTableNegotiation = methodTableNegotiation;
+		this.marshallingExecutor = marshallingExecutor;
 	}
 
 	protected final <T> AstrixRemoteResult<T> toRemoteResult(AstrixServiceInvocationResponse response, Type returnType) {
@@ -81,20 +92,150 @@ public final class RemotingEngine {
 		return new RemoteServiceInvocationException(response.getExceptionMsg(), response.getThrownExceptionType(), null);			
 	}
 	
-	final Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
-		return this.serviceTransport.submitRoutedRequest(request, routingKey);
+	final Observable<AstrixServiceInvocationResponse> submitRoutedRequest(final AstrixServiceInvocationRequest request, final RoutingKey routingKey) {
+		Observable<AstrixServiceInvocationResponse> response = this.serviceTransport.submitRoutedRequest(request, routingKey);
+		if (!request.hasServiceMethodId()) {
+			return response;
+		}
+		return response.flatMap(new Func1<AstrixServiceInvocationResponse, Observable<AstrixServiceInvocationResponse>>() {
+			@Override
+			public Observable<AstrixServiceInvocationResponse> call(AstrixServiceInvocationResponse response) {
+				if (!response.isMethodTableMismatch()) {
+					return Observable.just(response);
+				}
+				methodTableNegotiation.methodTableMismatch();
+				request.clearServiceMethodId();
+				return serviceTransport.submitRoutedRequest(request, routingKey);
+			}
+		});
+	}
+	
+	final AstrixServiceInvocationResponse invokeRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		AstrixServiceInvocationResponse response = this.serviceTransport.invokeRoutedRequest(request, routingKey);
+		if (!request.hasServiceMethodId() || !response.isMethodTableMismatch()) {
+			return response;
+		}
+		methodTableNegotiation.methodTableMismatch();
+		request.clearServiceMethodId();
+		return serviceTransport.invokeRoutedRequest(request, routingKey);
+	}
+	
+	final CompletableFuture<AstrixServiceInvocationResponse> invokeRoutedRequestAsync(final AstrixServiceInvocationRequest request, final RoutingKey routingKey) {
+		CompletableFuture<AstrixServiceInvocationResponse> response = this.serviceTransport.invokeRoutedRequestAsync(request, routingKey);
+		if (!request.hasServiceMethodId()) {
+			return response;
+		}
+		return CancellableFuture.compose(response, new Function<AstrixServiceInvocationResponse, CompletableFuture<AstrixServiceInvocationResponse>>() {
+			@Override
+			public CompletableFuture<AstrixServiceInvocationResponse> apply(AstrixServiceInvocationResponse response) {
+				if (!response.isMethodTableMismatch()) {
+					return CompletableFuture.completedFuture(response);
+				}
+				methodTableNegotiation.methodTableMismatch();
+				request.clearServiceMethodId();
+				return serviceTransport.invokeRoutedRequestAsync(request, routingKey);
+			}
+		});
+	}
+	
+	final Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequestBatch(final List<AstrixServiceInvocationRequest> requests, final RoutingKey routingKey) {
+		Observable<List<AstrixServiceInvocationResponse>> responses = this.serviceTransport.submitRoutedRequestBatch(requests, routingKey);
+		if (!requests.get(0).hasServiceMethodId()) {
+			return responses;
+		}
+		return responses.flatMap(new Func1<List<AstrixServiceInvocationResponse>, Observable<List<AstrixServiceInvocationResponse>>>() {
+			@Override
+			public Observable<List<AstrixServiceInvocationResponse>> call(List<AstrixServiceInvocationResponse> responses) {
+				if (!containsMethodTableMismatch(responses)) {
+					return Observable.just(responses);
+				}
+				methodTableNegotiation.methodTableMismatch();
+				for (AstrixServiceInvocationRequest request : requests) {
+					request.clearServiceMethodId();
+				}
+				return serviceTransport.submitRoutedRequestBatch(requests, routingKey);
+			}
+		});
+	}
+	
+	final Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(final List<RoutedServiceInvocationRequest> requests) {
+		Observable<List<AstrixServiceInvocationResponse>> responses = this.serviceTransport.submitRoutedRequests(requests);
+		if (requests.isEmpty() || !requests.get(0).getRequest().hasServiceMethodId()) {
+			return responses;
+		}
+		return responses.flatMap(new Func1<List<AstrixServiceInvocationResponse>, Observable<List<AstrixServiceInvocationResponse>>>() {
+			@Override
+			public Observable<List<AstrixServiceInvocationResponse>> call(List<AstrixServiceInvocationResponse> responses) {
+				if (!containsMethodTableMismatch(responses)) {
+					return Observable.just(responses);
+				}
+				methodTableNegotiation.methodTableMismatch();
+				for (RoutedServiceInvocationRequest request : requests) {
+					request.getRequest().clearServiceMethodId();
+				}
+				return serviceTransport.submitRoutedRequests(requests);
+			}
+		});
+	}
+
+	final Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(final AstrixServiceInvocationRequest request) {
+		Observable<List<AstrixServiceInvocationResponse>> responses = this.serviceTransport.submitBroadcastRequest(request);
+		if (!request.hasServiceMethodId()) {
+			return responses;
+		}
+		return responses.flatMap(new Func1<List<AstrixServiceInvocationResponse>, Observable<List<AstrixServiceInvocationResponse>>>() {
+			@Override
+			public Observable<List<AstrixServiceInvocationResponse>> call(List<AstrixServiceInvocationResponse> responses) {
+				if (!containsMethodTableMismatch(responses)) {
+					return Observable.just(responses);
+				}
+				methodTableNegotiation.methodTableMismatch();
+				request.clearServiceMethodId();
+				return serviceTransport.submitBroadcastRequest(request);
+			}
+		});
 	}
 	
-	final Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(List<RoutedServiceInvocationRequest> requests) {
-		return this.serviceTransport.submitRoutedRequests(requests);
+	/*
+	 * Responses are emitted as soon as they arrive, and there is no way to tell which request a
+	 * given response corresponds to. Hence it's not possible to resend only the requests that was
+	 * rejected due to a method table mismatch. Therefore streamed requests always identify the
+	 * target method by signature.
+	 */
+	final Observable<AstrixServiceInvocationResponse> streamRoutedRequests(List<RoutedServiceInvocationRequest> requests) {
+		for (RoutedServiceInvocationRequest request : requests) {
+			request.getRequest().clearServiceMethodId();
+		}
+		return this.serviceTransport.streamRoutedRequests(requests);
+	}
+	
+	final Observable<AstrixServiceInvocationResponse> streamBroadcastRequest(AstrixServiceInvocationRequest request) {
+		request.clearServiceMethodId();
+		return this.serviceTransport.streamBroadcastRequest(request);
+	}
+	
+	private static boolean containsMethodTableMismatch(List<AstrixServiceInvocationResponse> responses) {
+		for (AstrixServiceInvocationResponse response : responses) {
+			if (response.isMethodTableMismatch()) {
+				return true;
+			}
+		}
+		return false;
 	}
 
-	final Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(AstrixServiceInvocationRequest request) {
-		return this.serviceTransport.submitBroadcastRequest(request);
+	/**
+	 * @return the MarshallingExecutor used to (un)marshall the payloads for requests targeting multiple partitions
+	 */
+	final MarshallingExecutor getMarshallingExecutor() {
+		return marshallingExecutor;
 	}
 
 	public int partitionCount() {
 		return this.serviceTransport.partitionCount();
 	}
+	
+	final PartitionMapping partitionMapping() {
+		return this.serviceTransport.partitionMapping();
+	}
 
 }
@@ -20,15 +20,20 @@ import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Future;
 
 import rx.Observable;
 
 import com.avanza.astrix.core.AstrixCallStackTrace;
+import com.avanza.astrix.core.AstrixDeadline;
 import com.avanza.astrix.core.AstrixObjectSerializer;
 import com.avanza.astrix.core.util.ReflectionUtil;
+import com.avanza.astrix.core.util.StubGenerator;
+import com.avanza.astrix.core.util.StubMethod;
+import com.avanza.astrix.remoting.util.ServiceMethodTable;
 /**
  * 
  * @author Elias Lindholm (elilin)
@@ -38,11 +43,26 @@ public class RemotingProxy implements InvocationHandler {
 	
 	private final int apiVersion;
 	private final String serviceApi;
-	private final ConcurrentMap<Method, RemoteServiceMethod> remoteServiceMethodByMethod = new ConcurrentHashMap<>();
+	private final Map<Method, ProxyMethod> proxyMethodByMethod = new HashMap<>();
 	private final RemoteServiceMethodFactory remoteServiceMethodFactory;
+	private final MethodTableNegotiation methodTableNegotiation;
 
 	public static <T> T create(Class<T> proxyApi, Class<?> targetApi, RemotingTransport transport, AstrixObjectSerializer objectSerializer, RoutingStrategy routingStrategy) {
-		RemotingProxy handler = new RemotingProxy(proxyApi, targetApi, objectSerializer, transport, routingStrategy);
+		return create(proxyApi, targetApi, transport, objectSerializer, routingStrategy, RemotingProxyOptions.create());
+	}
+	
+	/**
+	 * Same as {@link #create(Class, Class, RemotingTransport, AstrixObjectSerializer, RoutingStrategy)}, but 
+	 * allows overriding the default options, see {@link RemotingProxyOptions}. <p>
+	 * 
+	 * @param options
+	 */
+	public static <T> T create(Class<T> proxyApi, Class<?> targetApi, RemotingTransport transport, AstrixObjectSerializer objectSerializer, RoutingStrategy routingStrategy, RemotingProxyOptions options) {
+		MethodTableNegotiation methodTableNegotiation = MethodTableNegotiation.create(targetApi, ServiceMethodTable.parseChecksum(options.getServerMethodTableChecksum()));
+		RemotingProxy handler = new RemotingProxy(proxyApi, targetApi, objectSerializer, transport, routingStrategy, methodTableNegotiation, options);
+		if (options.isGenerateStub() && StubGenerator.canGenerateStub(proxyApi)) {
+			return StubGenerator.createDispatchingStub(proxyApi, handler.proxyMethodByMethod, handler.toString());
+		}
 		T serviceProxy = (T) Proxy.newProxyInstance(RemotingProxy.class.getClassLoader(), new Class[]{proxyApi}, handler);
 		return serviceProxy;
 	}
@@ -51,11 +71,14 @@ public class RemotingProxy implements InvocationHandler {
 						  Class<?> targetServiceApi,
 							    AstrixObjectSerializer objectSerializer,
 							    RemotingTransport AstrixServiceTransport,
-							    RoutingStrategy routingStrategy) {
+							    RoutingStrategy routingStrategy,
+							    MethodTableNegotiation methodTableNegotiation,
+							    RemotingProxyOptions options) {
 		this.serviceApi = targetServiceApi.getName();
 		this.apiVersion = objectSerializer.version();
-		RemotingEngine remotingEngine = new RemotingEngine(AstrixServiceTransport, objectSerializer, apiVersion);
-		this.remoteServiceMethodFactory = new RemoteServiceMethodFactory(remotingEngine, routingStrategy);
+		this.methodTableNegotiation = methodTableNegotiation;
+		RemotingEngine remotingEngine = new RemotingEngine(AstrixServiceTransport, objectSerializer, apiVersion, methodTableNegotiation, MarshallingExecutor.create(options.getMarshallingExecutor()));
+		this.remoteServiceMethodFactory = new RemoteServiceMethodFactory(remotingEngine, routingStrategy, options);
 		/*
 		 * For each of the following services the "targetServiceType" resolves to MyService:
 		 *  - MyService
@@ -66,7 +89,7 @@ public class RemotingProxy implements InvocationHandler {
 		for (Method proxiedMethod : proxiedServiceApi.getMethods()) {
 			Type returnType = getReturnType(proxiedMethod);
 			RemoteServiceMethod remoteServiceMethod = this.remoteServiceMethodFactory.createRemoteServiceMethod(targetServiceType, proxiedMethod, returnType);
-			remoteServiceMethodByMethod.put(proxiedMethod, remoteServiceMethod);
+			proxyMethodByMethod.put(proxiedMethod, new ProxyMethod(remoteServiceMethod, proxiedMethod.getReturnType()));
 		}
 	}
 
@@ -80,28 +103,7 @@ public class RemotingProxy implements InvocationHandler {
 		if (method.getDeclaringClass().equals(Object.class)) {
 			return ReflectionUtil.invokeMethod(method, this, args);
 		}
-		RemoteServiceMethod remoteServiceMethod = this.remoteServiceMethodByMethod.get(method);
-		
-		AstrixServiceInvocationRequest invocationRequest = new AstrixServiceInvocationRequest();
-		
-		invocationRequest.setHeader("apiVersion", Integer.toString(this.apiVersion));
-		invocationRequest.setHeader("serviceMethodSignature", remoteServiceMethod.getSignature());
-		invocationRequest.setHeader("serviceApi", this.serviceApi);
-		
-		Observable<?> result = remoteServiceMethod.invoke(invocationRequest, args);
-		if (isObservableType(method.getReturnType())) {
-			return result;
-		}
-		if (isFutureType(method.getReturnType())) {
-			return new FutureAdapter<>(result);
-		}
-		try {
-			return result.toBlocking().first();
-		} catch (Exception e) {
-			// Append invocation call stack
-			appendStackTrace(e, new AstrixCallStackTrace());
-			throw e;
-		}
+		return this.proxyMethodByMethod.get(method).invoke(args);
 	}
 
 	private static void appendStackTrace(Throwable exception, AstrixCallStackTrace trace) {
@@ -119,16 +121,61 @@ public class RemotingProxy implements InvocationHandler {
 		return method.getGenericReturnType();
 	}
 
-	private boolean isObservableOrFutureType(Class<?> returnType) {
-		return isFutureType(returnType) || isObservableType(returnType);
+	private static boolean isObservableOrFutureType(Class<?> returnType) {
+		return isFutureType(returnType) || isCompletionStageType(returnType) || isObservableType(returnType);
 	}
 
-	private boolean isObservableType(Class<?> returnType) {
+	private static boolean isObservableType(Class<?> returnType) {
 		return Observable.class.isAssignableFrom(returnType);
 	}
 
-	private boolean isFutureType(Class<?> returnType) {
+	private static boolean isFutureType(Class<?> returnType) {
 		return Future.class.isAssignableFrom(returnType);
 	}
 	
+	private static boolean isCompletionStageType(Class<?> returnType) {
+		return CompletionStage.class.isAssignableFrom(returnType);
+	}
+	
+	/*
+	 * Invokes a given RemoteServiceMethod and adapts the result to the return type of the proxied method.
+	 * Used both by the Proxy and by generated stubs.
+	 */
+	private class ProxyMethod implements StubMethod {
+		
+		private final RemoteServiceMethod remoteServiceMethod;
+		private final boolean observableResult;
+		private final boolean futureResult;
+		
+		public ProxyMethod(RemoteServiceMethod remoteServiceMethod, Class<?> returnType) {
+			this.remoteServiceMethod = remoteServiceMethod;
+			this.observableResult = isObservableType(returnType);
+			this.futureResult = isFutureType(returnType) || isCompletionStageType(returnType);
+		}
+
+		@Override
+		public Object invoke(Object[] args) throws Throwable {
+			AstrixServiceInvocationRequest invocationRequest = new AstrixServiceInvocationRequest();
+			
+			invocationRequest.setApiVersion(apiVersion);
+			methodTableNegotiation.identifyServiceMethod(invocationRequest, remoteServiceMethod.getSignature());
+			invocationRequest.setServiceApi(serviceApi);
+			invocationRequest.setDeadline(AstrixDeadline.current());
+			
+			if (!observableResult && !futureResult) {
+				try {
+					return remoteServiceMethod.invokeAndWait(invocationRequest, args);
+				} catch (Exception e) {
+					// Append invocation call stack
+					appendStackTrace(e, new AstrixCallStackTrace());
+					throw e;
+				}
+			}
+			if (observableResult) {
+				return remoteServiceMethod.invoke(invocationRequest, args);
+			}
+			return remoteServiceMethod.invokeAsync(invocationRequest, args);
+		}
+	}
+	
 }
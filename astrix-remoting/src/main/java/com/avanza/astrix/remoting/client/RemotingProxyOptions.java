@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Executor;
+
+import com.avanza.astrix.core.AstrixBatched;
+import com.avanza.astrix.core.AstrixCached;
+import com.avanza.astrix.core.util.StubGenerator;
+import com.avanza.astrix.remoting.util.ServiceMethodTable;
+/**
+ * Optional settings used when creating a {@link RemotingProxy}, see 
+ * {@link RemotingProxy#create(Class, Class, RemotingTransport, com.avanza.astrix.core.AstrixObjectSerializer, RoutingStrategy, RemotingProxyOptions)}. <p>
+ * 
+ * Each option not set uses its default value. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class RemotingProxyOptions {
+	
+	private String serverMethodTableChecksum = null;
+	private boolean generateStub = false;
+	private ResultCacheSettings resultCacheSettings = ResultCacheSettings.DEFAULT;
+	private Executor marshallingExecutor = null;
+	private RequestBatchScheduler requestBatchScheduler = null;
+	private ResultCacheRegistry resultCacheRegistry = null;
+	
+	public static RemotingProxyOptions create() {
+		return new RemotingProxyOptions();
+	}
+	
+	private RemotingProxyOptions() {
+	}
+	
+	/**
+	 * Identifies each service method using a method id, rather than the full method signature, when the 
+	 * given checksum matches the checksum of the {@link ServiceMethodTable} derived from the target api. <p>
+	 * 
+	 * @param serverMethodTableChecksum - the method table checksum published by the server, see {@link ServiceMethodTable#CHECKSUM_PROPERTY}.
+	 *                                    Might be null (default), in which case all methods are identified by signature.
+	 * @return
+	 */
+	public RemotingProxyOptions serverMethodTableChecksum(String serverMethodTableChecksum) {
+		this.serverMethodTableChecksum = serverMethodTableChecksum;
+		return this;
+	}
+	
+	/**
+	 * Whether to use a generated stub rather than a {@link Proxy}. A generated stub invokes the {@link RemoteServiceMethod}
+	 * for each method directly, see {@link StubGenerator}. If no stub can be generated for the proxied api a Proxy
+	 * is used. Defaults to false. <p>
+	 * 
+	 * @param generateStub
+	 * @return
+	 */
+	public RemotingProxyOptions generateStub(boolean generateStub) {
+		this.generateStub = generateStub;
+		return this;
+	}
+	
+	/**
+	 * Overrides the settings used by the {@link ResultCache} for each method annotated with {@link AstrixCached}. 
+	 * Defaults to {@link ResultCacheSettings#DEFAULT}. <p>
+	 * 
+	 * @param resultCacheSettings
+	 * @return
+	 */
+	public RemotingProxyOptions resultCacheSettings(ResultCacheSettings resultCacheSettings) {
+		this.resultCacheSettings = resultCacheSettings;
+		return this;
+	}
+	
+	/**
+	 * Allows (un)marshalling the payload for each partition targeted by a partitioned or broadcasted service method
+	 * using a given Executor, rather than (un)marshalling all payloads on the invoking thread. <p>
+	 * 
+	 * @param marshallingExecutor - Executor used to (un)marshall payloads, or null (default) to (un)marshall all payloads on the invoking thread
+	 * @return
+	 */
+	public RemotingProxyOptions marshallingExecutor(Executor marshallingExecutor) {
+		this.marshallingExecutor = marshallingExecutor;
+		return this;
+	}
+	
+	/**
+	 * Schedules sending of the pending batches of service methods annotated with {@link AstrixBatched}. 
+	 * Might be null (default), in which case the proxy uses a scheduler of its own. <p>
+	 * 
+	 * @param requestBatchScheduler
+	 * @return
+	 */
+	public RemotingProxyOptions requestBatchScheduler(RequestBatchScheduler requestBatchScheduler) {
+		this.requestBatchScheduler = requestBatchScheduler;
+		return this;
+	}
+	
+	/**
+	 * Registers the {@link ResultCache} for each method annotated with {@link AstrixCached} in a given registry, which
+	 * allows invalidating the cached results. Might be null (default), in which case the caches are not registered. <p>
+	 * 
+	 * @param resultCacheRegistry
+	 * @return
+	 */
+	public RemotingProxyOptions resultCacheRegistry(ResultCacheRegistry resultCacheRegistry) {
+		this.resultCacheRegistry = resultCacheRegistry;
+		return this;
+	}
+	
+	String getServerMethodTableChecksum() {
+		return serverMethodTableChecksum;
+	}
+	
+	boolean isGenerateStub() {
+		return generateStub;
+	}
+	
+	ResultCacheSettings getResultCacheSettings() {
+		return resultCacheSettings;
+	}
+	
+	Executor getMarshallingExecutor() {
+		return marshallingExecutor;
+	}
+	
+	RequestBatchScheduler getRequestBatchScheduler() {
+		return requestBatchScheduler;
+	}
+	
+	ResultCacheRegistry getResultCacheRegistry() {
+		return resultCacheRegistry;
+	}
+
+}
@@ -16,9 +16,14 @@
 package com.avanza.astrix.remoting.client;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 import java.util.List;
 
+import rx.Observable;
+
+import com.avanza.astrix.core.IncrementalRemoteResultReducer;
 import com.avanza.astrix.core.RemoteResultReducer;
 import com.avanza.astrix.core.util.ReflectionUtil;
 
@@ -32,8 +37,9 @@ final class RemotingProxyUtil {
 	private static void validateRemoteResultReducerReturnType(
 			Method targetServiceMethod,
 			Class<? extends RemoteResultReducer<?>> reducerType) {
-		Method reduceMethod = ReflectionUtil.getMethod(reducerType, "reduce", List.class);
-		Class<?> returnType = targetServiceMethod.getReturnType();
+		Method reduceMethod = IncrementalRemoteResultReducer.class.isAssignableFrom(reducerType) ? ReflectionUtil.getMethod(reducerType, "result")
+																								 : ReflectionUtil.getMethod(reducerType, "reduce", List.class);
+		Class<?> returnType = getResultType(targetServiceMethod);
 		if (returnType.equals(Void.TYPE)) {
 			return;
 		}
@@ -50,6 +56,27 @@ final class RemotingProxyUtil {
 		}
 	}
 
-	
+	/*
+	 * For service methods returning an Observable, the RemoteResultReducer reduces 
+	 * the results into the type emitted by the Observable.
+	 */
+	private static Class<?> getResultType(Method serviceMethod) {
+		Class<?> returnType = serviceMethod.getReturnType();
+		if (!Observable.class.equals(returnType)) {
+			return returnType;
+		}
+		Type genericReturnType = serviceMethod.getGenericReturnType();
+		if (!(genericReturnType instanceof ParameterizedType)) {
+			return Object.class;
+		}
+		Type resultType = ((ParameterizedType) genericReturnType).getActualTypeArguments()[0];
+		if (resultType instanceof ParameterizedType) {
+			return (Class<?>) ((ParameterizedType) resultType).getRawType();
+		}
+		if (resultType instanceof Class) {
+			return (Class<?>) resultType;
+		}
+		return Object.class;
+	}
 
 }
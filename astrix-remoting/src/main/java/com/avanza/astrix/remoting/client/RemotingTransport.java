@@ -16,6 +16,7 @@
 package com.avanza.astrix.remoting.client;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import rx.Observable;
 /**
@@ -39,6 +40,18 @@ public class RemotingTransport {
 		return impl.submitRoutedRequest(request, routingKey);
 	}
 	
+	public AstrixServiceInvocationResponse invokeRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return impl.invokeRoutedRequest(request, routingKey);
+	}
+	
+	public CompletableFuture<AstrixServiceInvocationResponse> invokeRoutedRequestAsync(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return impl.invokeRoutedRequestAsync(request, routingKey);
+	}
+	
+	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequestBatch(List<AstrixServiceInvocationRequest> requests, RoutingKey routingKey) {
+		return impl.submitRoutedRequestBatch(requests, routingKey);
+	}
+	
 	public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(List<RoutedServiceInvocationRequest> requests) {
 		return impl.submitRoutedRequests(requests);
 	}
@@ -47,9 +60,21 @@ public class RemotingTransport {
 		return impl.submitBroadcastRequest(request);
 	}
 
+	public Observable<AstrixServiceInvocationResponse> streamRoutedRequests(List<RoutedServiceInvocationRequest> requests) {
+		return impl.streamRoutedRequests(requests);
+	}
+	
+	public Observable<AstrixServiceInvocationResponse> streamBroadcastRequest(AstrixServiceInvocationRequest request) {
+		return impl.streamBroadcastRequest(request);
+	}
+
 	public int partitionCount() {
 		return this.impl.partitionCount();
 	}
 	
+	public PartitionMapping partitionMapping() {
+		return this.impl.partitionMapping();
+	}
+	
 
 }
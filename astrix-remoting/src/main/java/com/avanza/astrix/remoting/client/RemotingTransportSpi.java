@@ -15,10 +15,17 @@
  */
 package com.avanza.astrix.remoting.client;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import rx.Observable;
+import rx.functions.Func1;
+import rx.functions.FuncN;
+
+import com.avanza.astrix.core.AstrixBatched;
+import com.avanza.astrix.core.AstrixStreamed;
 /**
  * SPI for implementing a RemotingTransport. <p>
  * 
@@ -56,6 +63,67 @@ public interface RemotingTransportSpi {
 	 */
 	Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey);
 	
+	/**
+	 * Sends a single routed invocation request to the target cluster member and waits for the response. <p>
+	 * 
+	 * Used for synchronous service invocations. Implementations are encouraged to override the
+	 * default implementation, which blocks on the Observable returned by {@link #submitRoutedRequest(AstrixServiceInvocationRequest, RoutingKey)},
+	 * with a version that waits for the response without composing an Observable for each invocation. Any fault
+	 * tolerance applied to submitRoutedRequest must be applied to this method as well. <p>
+	 * 
+	 * @param request
+	 * @param routingKey
+	 * @return the response from the given invocation request.
+	 */
+	default AstrixServiceInvocationResponse invokeRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return submitRoutedRequest(request, routingKey).toBlocking().first();
+	}
+	
+	/**
+	 * Sends a single routed invocation request to the target cluster member without waiting for the response. <p>
+	 * 
+	 * Used for service methods returning a CompletableFuture, CompletionStage or Future. Cancelling the returned
+	 * future should cancel the underlying request if possible. The default implementation subscribes to the Observable 
+	 * returned by {@link #submitRoutedRequest(AstrixServiceInvocationRequest, RoutingKey)} and unsubscribes when
+	 * the future is cancelled. Any fault tolerance applied to submitRoutedRequest must be applied to this method as well. <p> 
+	 * 
+	 * @param request
+	 * @param routingKey
+	 * @return a future that will be completed with the response from the given invocation request.
+	 */
+	default CompletableFuture<AstrixServiceInvocationResponse> invokeRoutedRequestAsync(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return CancellableFuture.fromObservable(submitRoutedRequest(request, routingKey));
+	}
+	
+	/**
+	 * Sends a batch of invocation requests to the cluster member identified by the given routingKey. Used
+	 * for service methods annotated with {@link AstrixBatched}. <p>
+	 * 
+	 * Implementations are encouraged to send all requests in a single message and invoke them using 
+	 * {@link com.avanza.astrix.remoting.server.AstrixServiceActivator#invokeServices(List)}. The default implementation sends each request
+	 * using {@link #submitRoutedRequest(AstrixServiceInvocationRequest, RoutingKey)}. <p>
+	 * 
+	 * @param requests
+	 * @param routingKey
+	 * @return an Observable that will emit one item with the responses, in the same order as the given requests.
+	 */
+	default Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequestBatch(List<AstrixServiceInvocationRequest> requests, RoutingKey routingKey) {
+		List<Observable<AstrixServiceInvocationResponse>> responses = new ArrayList<>(requests.size());
+		for (AstrixServiceInvocationRequest request : requests) {
+			responses.add(submitRoutedRequest(request, routingKey));
+		}
+		return Observable.zip(responses, new FuncN<List<AstrixServiceInvocationResponse>>() {
+			@Override
+			public List<AstrixServiceInvocationResponse> call(Object... args) {
+				List<AstrixServiceInvocationResponse> result = new ArrayList<>(args.length);
+				for (Object response : args) {
+					result.add((AstrixServiceInvocationResponse) response);
+				}
+				return result;
+			}
+		});
+	}
+	
 	/**
 	 * Sends each service invocation to the associate target cluster member.
 	 * 
@@ -73,9 +141,63 @@ public interface RemotingTransportSpi {
 	 */
 	Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(AstrixServiceInvocationRequest request);
 	
+	/**
+	 * Sends each service invocation to the associated target cluster member, and emits each response
+	 * as soon as it arrives. <p>
+	 * 
+	 * Used for partitioned service methods that are streamed, see {@link AstrixStreamed}. Since the returned Observable
+	 * emits one item for each response, a timeout mechanism that only relates to the first emitted item is not enough
+	 * (see design note above). Implementations must ensure that the returned Observable fails if not all 
+	 * responses are received in time. The default implementation emits the responses from 
+	 * {@link #submitRoutedRequests(Collection)}, i.e. it does not emit any response until all responses are received. <p>
+	 * 
+	 * @param requests
+	 * @return an Observable that emits one item for the response from each invocation
+	 */
+	default Observable<AstrixServiceInvocationResponse> streamRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
+		return submitRoutedRequests(requests).flatMapIterable(new Func1<List<AstrixServiceInvocationResponse>, Iterable<AstrixServiceInvocationResponse>>() {
+			@Override
+			public Iterable<AstrixServiceInvocationResponse> call(List<AstrixServiceInvocationResponse> responses) {
+				return responses;
+			}
+		});
+	}
+	
+	/**
+	 * Sends a service invocation request to each member in the cluster, and emits each response as soon as 
+	 * it arrives. <p>
+	 * 
+	 * The same timeout requirements as for {@link #streamRoutedRequests(Collection)} applies. The default implementation
+	 * emits the responses from {@link #submitBroadcastRequest(AstrixServiceInvocationRequest)}. <p>
+	 * 
+	 * @param request
+	 * @return an Observable that emits one item for the response from each member in the cluster.
+	 */
+	default Observable<AstrixServiceInvocationResponse> streamBroadcastRequest(AstrixServiceInvocationRequest request) {
+		return submitBroadcastRequest(request).flatMapIterable(new Func1<List<AstrixServiceInvocationResponse>, Iterable<AstrixServiceInvocationResponse>>() {
+			@Override
+			public Iterable<AstrixServiceInvocationResponse> call(List<AstrixServiceInvocationResponse> responses) {
+				return responses;
+			}
+		});
+	}
+	
 	/**
 	 * 
 	 * @return the number of members in the target cluster.
 	 */
 	int partitionCount();
+	
+	/**
+	 * Returns the mapping used to route elements of a partitioned argument to the partitions of the
+	 * target cluster. A transport that does not route a RoutingKey to partition abs(hash % partitionCount()),
+	 * for instance a transport that uses consistent hashing, must override this method. <p>
+	 * 
+	 * Default implementation returns {@link PartitionMapping#modulo(int)} for the current partitionCount. <p>
+	 * 
+	 * @return
+	 */
+	default PartitionMapping partitionMapping() {
+		return PartitionMapping.modulo(partitionCount());
+	}
 }
\ No newline at end of file
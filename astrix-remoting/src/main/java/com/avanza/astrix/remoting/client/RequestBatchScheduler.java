@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PreDestroy;
+
+import com.avanza.astrix.core.AstrixBatched;
+import com.avanza.astrix.core.util.NamedThreadFactory;
+/**
+ * Schedules sending of the pending batches of the service methods annotated with {@link AstrixBatched},
+ * see {@link RemotingProxyOptions#requestBatchScheduler(RequestBatchScheduler)}. <p>
+ * 
+ * When created by astrix a single scheduler is shared by all proxies created by a given AstrixContext, 
+ * and the scheduler is shut down when the context is destroyed. The scheduler thread is started on demand
+ * and terminated when idle. Batches scheduled after the scheduler is shut down are sent immediately. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class RequestBatchScheduler {
+	
+	private static final long KEEP_ALIVE_SECONDS = 60;
+	
+	private final ScheduledThreadPoolExecutor executor;
+	
+	public RequestBatchScheduler() {
+		this.executor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("Astrix.RequestBatcher"));
+		this.executor.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+	
+	void schedule(Runnable sendBatch, long delayMicros) {
+		try {
+			executor.schedule(sendBatch, delayMicros, TimeUnit.MICROSECONDS);
+		} catch (RejectedExecutionException e) {
+			sendBatch.run();
+		}
+	}
+	
+	@PreDestroy
+	public void destroy() {
+		// Batches already scheduled are still sent when their delay has passed
+		executor.shutdown();
+	}
+
+}
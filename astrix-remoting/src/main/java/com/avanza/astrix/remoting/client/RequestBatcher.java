@@ -0,0 +1,198 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+import rx.Subscriber;
+
+/**
+ * Accumulates routed invocation requests per target partition and sends each 
+ * batch using {@link RemotingEngine#submitRoutedRequestBatch(List, RoutingKey)}. <p>
+ * 
+ * A batch is sent when it contains maxBatchSize requests, or when maxDelay has passed
+ * since the first request was added to the batch, see {@link RequestBatchScheduler}. A batch containing a single request
+ * is sent as an ordinary routed request. <p>
+ * 
+ * Note that cancelling the future returned by {@link #submit(AstrixServiceInvocationRequest, RoutingKey)}
+ * does not cancel the underlying request, since it might be shared by other invocations. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class RequestBatcher {
+	
+	private final ConcurrentMap<Integer, Batch> pendingBatchByPartition = new ConcurrentHashMap<>();
+	private final RemotingEngine remotingEngine;
+	private final RequestBatchScheduler scheduler;
+	private final long maxDelayMicros;
+	private final int maxBatchSize;
+	
+	RequestBatcher(RemotingEngine remotingEngine, RequestBatchScheduler scheduler, long maxDelayMicros, int maxBatchSize) {
+		this.remotingEngine = remotingEngine;
+		this.scheduler = scheduler;
+		this.maxDelayMicros = maxDelayMicros;
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+	}
+
+	CompletableFuture<AstrixServiceInvocationResponse> submit(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		if (maxBatchSize == 1) {
+			return remotingEngine.invokeRoutedRequestAsync(request, routingKey);
+		}
+		Integer partition = getPartition(routingKey);
+		CompletableFuture<AstrixServiceInvocationResponse> response = new CompletableFuture<>();
+		while (true) {
+			Batch batch = pendingBatchByPartition.get(partition);
+			boolean createdBatch = false;
+			if (batch == null) {
+				batch = new Batch(partition, routingKey);
+				Batch existing = pendingBatchByPartition.putIfAbsent(partition, batch);
+				createdBatch = existing == null;
+				if (existing != null) {
+					batch = existing;
+				}
+			}
+			int batchSize = batch.add(request, response);
+			if (batchSize < 0) {
+				// Batch already sent, try again with a new batch
+				pendingBatchByPartition.remove(partition, batch);
+				continue;
+			}
+			if (batchSize == maxBatchSize) {
+				pendingBatchByPartition.remove(partition, batch);
+				batch.send();
+			} else if (createdBatch) {
+				// Scheduled after adding the request since the scheduler might send the batch immediately 
+				scheduler.schedule(batch, maxDelayMicros);
+			}
+			return response;
+		}
+	}
+	
+	private Integer getPartition(RoutingKey routingKey) {
+		PartitionMapping partitionMapping = remotingEngine.partitionMapping();
+		if (partitionMapping.partitionCount() <= 0) {
+			return routingKey.hashCode();
+		}
+		return partitionMapping.partitionOf(routingKey.hashCode());
+	}
+	
+	private final class Batch implements Runnable {
+		
+		private final Integer partition;
+		private final RoutingKey routingKey;
+		private final List<AstrixServiceInvocationRequest> requests = new ArrayList<>();
+		private final List<CompletableFuture<AstrixServiceInvocationResponse>> responses = new ArrayList<>();
+		private boolean closed = false;
+		
+		public Batch(Integer partition, RoutingKey routingKey) {
+			this.partition = partition;
+			this.routingKey = routingKey;
+		}
+
+		/**
+		 * @return the size of the batch after adding the given request, or -1 if this batch is closed
+		 */
+		synchronized int add(AstrixServiceInvocationRequest request, CompletableFuture<AstrixServiceInvocationResponse> response) {
+			if (closed) {
+				return -1;
+			}
+			requests.add(request);
+			responses.add(response);
+			if (requests.size() == maxBatchSize) {
+				closed = true;
+			}
+			return requests.size();
+		}
+		
+		@Override
+		public void run() {
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+				closed = true;
+			}
+			pendingBatchByPartition.remove(partition, this);
+			send();
+		}
+		
+		void send() {
+			if (requests.size() == 1) {
+				sendSingleRequest();
+				return;
+			}
+			try {
+				sendBatch();
+			} catch (RuntimeException e) {
+				failAll(e);
+			}
+		}
+		
+		private void failAll(Throwable e) {
+			for (CompletableFuture<AstrixServiceInvocationResponse> response : responses) {
+				response.completeExceptionally(e);
+			}
+		}
+
+		private void sendBatch() {
+			remotingEngine.submitRoutedRequestBatch(requests, routingKey).subscribe(new Subscriber<List<AstrixServiceInvocationResponse>>() {
+				@Override
+				public void onNext(List<AstrixServiceInvocationResponse> batchResponse) {
+					for (int i = 0; i < responses.size(); i++) {
+						if (i < batchResponse.size()) {
+							responses.get(i).complete(batchResponse.get(i));
+						} else {
+							responses.get(i).completeExceptionally(new IllegalStateException(
+									String.format("Missing response in batch. expectedResponses=%s receivedResponses=%s", responses.size(), batchResponse.size())));
+						}
+					}
+				}
+				@Override
+				public void onError(Throwable e) {
+					failAll(e);
+				}
+				@Override
+				public void onCompleted() {
+				}
+			});
+		}
+
+		private void sendSingleRequest() {
+			final CompletableFuture<AstrixServiceInvocationResponse> response = responses.get(0);
+			try {
+				remotingEngine.invokeRoutedRequestAsync(requests.get(0), routingKey).whenComplete(new BiConsumer<AstrixServiceInvocationResponse, Throwable>() {
+					@Override
+					public void accept(AstrixServiceInvocationResponse result, Throwable exception) {
+						if (exception != null) {
+							response.completeExceptionally(exception);
+						} else {
+							response.complete(result);
+						}
+					}
+				});
+			} catch (RuntimeException e) {
+				response.completeExceptionally(e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import com.avanza.astrix.core.AstrixCollapsed;
+/**
+ * Lets concurrent identical invocations of a given service method share a single in-flight
+ * invocation, see {@link AstrixCollapsed}. Two invocations are considered identical if the
+ * marshalled arguments are equal. <p>
+ * 
+ * Each invocation receives its own future, which means that cancelling the future returned 
+ * for one invocation does not affect other invocations sharing the same in-flight invocation. <p>
+ * 
+ * The shared response is unmarshalled by each invocation. Note that serializers that does not
+ * copy the result, i.e {@link com.avanza.astrix.core.AstrixObjectSerializer.NoVersioningSupport}, 
+ * returns the same result instance to all invocations sharing an in-flight invocation. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class RequestCollapser {
+	
+	private final ConcurrentMap<InvocationKey, CompletableFuture<AstrixServiceInvocationResponse>> inFlightInvocations = new ConcurrentHashMap<>();
+	private final RequestCollapsingMetrics metrics;
+	
+	RequestCollapser(RequestCollapsingMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @param request - the request, with marshalled arguments
+	 * @param invocation - used to send the request unless an identical invocation is in flight
+	 * @return
+	 */
+	CompletableFuture<AstrixServiceInvocationResponse> submit(AstrixServiceInvocationRequest request, 
+															  Supplier<CompletableFuture<AstrixServiceInvocationResponse>> invocation) {
+		final InvocationKey key = new InvocationKey(request.getArguments());
+		final CompletableFuture<AstrixServiceInvocationResponse> response = new CompletableFuture<>();
+		CompletableFuture<AstrixServiceInvocationResponse> inFlightResponse = inFlightInvocations.putIfAbsent(key, response);
+		if (inFlightResponse != null) {
+			metrics.invocation(true);
+			return newSubscriber(inFlightResponse);
+		}
+		metrics.invocation(false);
+		CompletableFuture<AstrixServiceInvocationResponse> invocationResponse;
+		try {
+			invocationResponse = invocation.get();
+		} catch (RuntimeException e) {
+			inFlightInvocations.remove(key, response);
+			response.completeExceptionally(e);
+			throw e;
+		}
+		invocationResponse.whenComplete(new BiConsumer<AstrixServiceInvocationResponse, Throwable>() {
+			@Override
+			public void accept(AstrixServiceInvocationResponse result, Throwable exception) {
+				inFlightInvocations.remove(key, response);
+				if (exception != null) {
+					response.completeExceptionally(exception);
+				} else {
+					response.complete(result);
+				}
+			}
+		});
+		return newSubscriber(response);
+	}
+	
+	private static CompletableFuture<AstrixServiceInvocationResponse> newSubscriber(CompletableFuture<AstrixServiceInvocationResponse> response) {
+		final CompletableFuture<AstrixServiceInvocationResponse> result = new CompletableFuture<>();
+		response.whenComplete(new BiConsumer<AstrixServiceInvocationResponse, Throwable>() {
+			@Override
+			public void accept(AstrixServiceInvocationResponse value, Throwable exception) {
+				if (exception != null) {
+					result.completeExceptionally(exception);
+				} else {
+					result.complete(value);
+				}
+			}
+		});
+		return result;
+	}
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.avanza.astrix.core.AstrixCollapsed;
+/**
+ * Counts invocations of a service method annotated with {@link AstrixCollapsed}, and how 
+ * many of those that was collapsed into another in-flight invocation. <p>
+ * 
+ * Metrics are aggregated per service method across all proxies in the same jvm. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class RequestCollapsingMetrics {
+	
+	private static final ConcurrentMap<String, RequestCollapsingMetrics> metricsByServiceMethod = new ConcurrentHashMap<>();
+	
+	private final String serviceApi;
+	private final String methodSignature;
+	private final LongAdder invocationCount = new LongAdder();
+	private final LongAdder collapsedInvocationCount = new LongAdder();
+	
+	private RequestCollapsingMetrics(String serviceApi, String methodSignature) {
+		this.serviceApi = serviceApi;
+		this.methodSignature = methodSignature;
+	}
+	
+	static RequestCollapsingMetrics forServiceMethod(String serviceApi, String methodSignature) {
+		String key = serviceApi + "#" + methodSignature;
+		RequestCollapsingMetrics metrics = metricsByServiceMethod.get(key);
+		if (metrics != null) {
+			return metrics;
+		}
+		metrics = new RequestCollapsingMetrics(serviceApi, methodSignature);
+		RequestCollapsingMetrics existing = metricsByServiceMethod.putIfAbsent(key, metrics);
+		return existing != null ? existing : metrics;
+	}
+	
+	/**
+	 * @param serviceApi
+	 * @param methodSignature
+	 * @return the metrics for the given service method, or null if no invocation of the
+	 * 		   given method has been collapsed.
+	 */
+	public static RequestCollapsingMetrics get(String serviceApi, String methodSignature) {
+		return metricsByServiceMethod.get(serviceApi + "#" + methodSignature);
+	}
+	
+	/**
+	 * @return the metrics for all service methods using request collapsing.
+	 */
+	public static Collection<RequestCollapsingMetrics> getAll() {
+		return new ArrayList<>(metricsByServiceMethod.values());
+	}
+	
+	void invocation(boolean collapsed) {
+		invocationCount.increment();
+		if (collapsed) {
+			collapsedInvocationCount.increment();
+		}
+	}
+	
+	public String getServiceApi() {
+		return serviceApi;
+	}
+	
+	public String getMethodSignature() {
+		return methodSignature;
+	}
+	
+	/**
+	 * @return the total number of invocations of the service method
+	 */
+	public long getInvocationCount() {
+		return invocationCount.sum();
+	}
+	
+	/**
+	 * @return the number of invocations that received the response from another in-flight invocation.
+	 */
+	public long getCollapsedInvocationCount() {
+		return collapsedInvocationCount.sum();
+	}
+	
+	/**
+	 * @return the fraction of all invocations that was collapsed, in the range [0, 1]
+	 */
+	public double getCollapseRatio() {
+		long invocations = getInvocationCount();
+		if (invocations == 0) {
+			return 0;
+		}
+		return getCollapsedInvocationCount() / (double) invocations;
+	}
+	
+	@Override
+	public String toString() {
+		return "RequestCollapsingMetrics[service=" + serviceApi + " method=" + methodSignature 
+				+ " invocations=" + getInvocationCount() + " collapsed=" + getCollapsedInvocationCount() + "]";
+	}
+
+}
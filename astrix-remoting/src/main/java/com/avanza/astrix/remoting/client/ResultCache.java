@@ -0,0 +1,184 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import com.avanza.astrix.core.AstrixCached;
+/**
+ * Caches the responses of successful invocations of a given service method, see {@link AstrixCached}. 
+ * Responses are cached using the marshalled arguments as key. Each invocation unmarshalls the cached 
+ * response. Note that serializers that does not copy the result, i.e 
+ * {@link com.avanza.astrix.core.AstrixObjectSerializer.NoVersioningSupport}, returns the same 
+ * result instance to all invocations served by a given cached response. <p>
+ * 
+ * A cached response is evicted when its ttl expires, or when the cache is full, in which case the
+ * oldest response is evicted. All cached results for a given service api might be invalidated
+ * using {@link ResultCacheRegistry#invalidateAll(Class)}. <p>
+ * 
+ * Lookups does not acquire any lock. Inserting, evicting and invalidating responses are
+ * synchronized on the cache. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class ResultCache {
+	
+	private final ConcurrentMap<InvocationKey, CachedResponse> cachedResponses = new ConcurrentHashMap<>();
+	private final LinkedHashMap<InvocationKey, CachedResponse> insertionOrder = new LinkedHashMap<>(); // guarded by this
+	private final AstrixCached cached;
+	private final ResultCacheSettings settings;
+	private final ResultCacheMetrics metrics;
+	private final LongSupplier nanoClock;
+	private volatile long generation = 0;
+	
+	ResultCache(AstrixCached cached, ResultCacheSettings settings, ResultCacheMetrics metrics, LongSupplier nanoClock) {
+		this.cached = cached;
+		this.settings = settings;
+		this.metrics = metrics;
+		this.nanoClock = nanoClock;
+	}
+	
+	static ResultCache create(String serviceApi, String methodSignature, AstrixCached cached, ResultCacheSettings settings, ResultCacheRegistry registry) {
+		ResultCache resultCache = new ResultCache(cached, settings, ResultCacheMetrics.forServiceMethod(serviceApi, methodSignature), new LongSupplier() {
+			@Override
+			public long getAsLong() {
+				return System.nanoTime();
+			}
+		});
+		registry.register(serviceApi, resultCache);
+		return resultCache;
+	}
+	
+	/**
+	 * @param request - the request, with marshalled arguments
+	 * @param invocation - used to send the request unless a response is cached
+	 * @return
+	 */
+	CompletableFuture<AstrixServiceInvocationResponse> submit(AstrixServiceInvocationRequest request,
+															  Supplier<CompletableFuture<AstrixServiceInvocationResponse>> invocation) {
+		if (!settings.isEnabled()) {
+			return invocation.get();
+		}
+		final InvocationKey key = new InvocationKey(request.getArguments());
+		AstrixServiceInvocationResponse cachedResponse = get(key);
+		if (cachedResponse != null) {
+			metrics.hit();
+			return CompletableFuture.completedFuture(cachedResponse);
+		}
+		metrics.miss();
+		// Responses to invocations sent before the cache was invalidated must not be cached
+		final long invocationGeneration = generation;
+		CompletableFuture<AstrixServiceInvocationResponse> response = invocation.get();
+		response.whenComplete(new BiConsumer<AstrixServiceInvocationResponse, Throwable>() {
+			@Override
+			public void accept(AstrixServiceInvocationResponse result, Throwable exception) {
+				if (exception == null && isCacheable(result)) {
+					put(key, result, invocationGeneration);
+				}
+			}
+		});
+		return response;
+	}
+	
+	private static boolean isCacheable(AstrixServiceInvocationResponse response) {
+		return !response.hasThrownException() && !response.isServiceUnavailable() && !response.isMethodTableMismatch();
+	}
+	
+	private AstrixServiceInvocationResponse get(InvocationKey key) {
+		CachedResponse cachedResponse = cachedResponses.get(key);
+		if (cachedResponse == null) {
+			return null;
+		}
+		if (cachedResponse.expiresAt - nanoClock.getAsLong() <= 0) {
+			expire(cachedResponse);
+			return null;
+		}
+		return cachedResponse.response;
+	}
+	
+	private synchronized void put(InvocationKey key, AstrixServiceInvocationResponse response, long invocationGeneration) {
+		long ttlMillis = settings.getTtlMillis(cached);
+		if (invocationGeneration != generation || ttlMillis <= 0) {
+			return;
+		}
+		CachedResponse cachedResponse = new CachedResponse(key, response, nanoClock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(ttlMillis));
+		// Remove before put to move the key last in insertion order
+		insertionOrder.remove(key);
+		insertionOrder.put(key, cachedResponse);
+		cachedResponses.put(key, cachedResponse);
+		int maxEntries = settings.getMaxEntries(cached);
+		Iterator<CachedResponse> oldestFirst = insertionOrder.values().iterator();
+		while (insertionOrder.size() > maxEntries && oldestFirst.hasNext()) {
+			CachedResponse evicted = oldestFirst.next();
+			oldestFirst.remove();
+			cachedResponses.remove(evicted.key, evicted);
+			metrics.eviction();
+		}
+	}
+	
+	private synchronized void expire(CachedResponse cachedResponse) {
+		if (insertionOrder.remove(cachedResponse.key, cachedResponse)) {
+			cachedResponses.remove(cachedResponse.key, cachedResponse);
+			metrics.eviction();
+		}
+	}
+	
+	/**
+	 * Invalidates all cached results in this cache.
+	 */
+	public synchronized void invalidateAll() {
+		generation++;
+		insertionOrder.clear();
+		cachedResponses.clear();
+	}
+	
+	/**
+	 * @return the number of cached results that has not expired
+	 */
+	public int size() {
+		long now = nanoClock.getAsLong();
+		int size = 0;
+		for (CachedResponse cachedResponse : cachedResponses.values()) {
+			if (cachedResponse.expiresAt - now > 0) {
+				size++;
+			}
+		}
+		return size;
+	}
+	
+	private static final class CachedResponse {
+		
+		private final InvocationKey key;
+		private final AstrixServiceInvocationResponse response;
+		private final long expiresAt;
+		
+		public CachedResponse(InvocationKey key, AstrixServiceInvocationResponse response, long expiresAt) {
+			this.key = key;
+			this.response = response;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.avanza.astrix.core.AstrixCached;
+/**
+ * Counts cache hits, misses and evictions for a service method annotated with {@link AstrixCached}. <p>
+ * 
+ * Metrics are aggregated per service method across all proxies in the same jvm. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class ResultCacheMetrics {
+	
+	private static final ConcurrentMap<String, ResultCacheMetrics> metricsByServiceMethod = new ConcurrentHashMap<>();
+	
+	private final String serviceApi;
+	private final String methodSignature;
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder missCount = new LongAdder();
+	private final LongAdder evictionCount = new LongAdder();
+	
+	private ResultCacheMetrics(String serviceApi, String methodSignature) {
+		this.serviceApi = serviceApi;
+		this.methodSignature = methodSignature;
+	}
+	
+	static ResultCacheMetrics forServiceMethod(String serviceApi, String methodSignature) {
+		String key = serviceApi + "#" + methodSignature;
+		ResultCacheMetrics metrics = metricsByServiceMethod.get(key);
+		if (metrics != null) {
+			return metrics;
+		}
+		metrics = new ResultCacheMetrics(serviceApi, methodSignature);
+		ResultCacheMetrics existing = metricsByServiceMethod.putIfAbsent(key, metrics);
+		return existing != null ? existing : metrics;
+	}
+	
+	/**
+	 * @param serviceApi
+	 * @param methodSignature
+	 * @return the metrics for the given service method, or null if no result of the
+	 * 		   given method is cached.
+	 */
+	public static ResultCacheMetrics get(String serviceApi, String methodSignature) {
+		return metricsByServiceMethod.get(serviceApi + "#" + methodSignature);
+	}
+	
+	/**
+	 * @return the metrics for all service methods using result caching.
+	 */
+	public static Collection<ResultCacheMetrics> getAll() {
+		return new ArrayList<>(metricsByServiceMethod.values());
+	}
+	
+	void hit() {
+		hitCount.increment();
+	}
+	
+	void miss() {
+		missCount.increment();
+	}
+	
+	void eviction() {
+		evictionCount.increment();
+	}
+	
+	public String getServiceApi() {
+		return serviceApi;
+	}
+	
+	public String getMethodSignature() {
+		return methodSignature;
+	}
+	
+	/**
+	 * @return the number of invocations that was served from the cache
+	 */
+	public long getHitCount() {
+		return hitCount.sum();
+	}
+	
+	/**
+	 * @return the number of invocations that was sent to the server
+	 */
+	public long getMissCount() {
+		return missCount.sum();
+	}
+	
+	/**
+	 * @return the number of cached results that was removed before being explicitly invalidated, 
+	 * 		   either because the cache was full or because the result expired.
+	 */
+	public long getEvictionCount() {
+		return evictionCount.sum();
+	}
+	
+	/**
+	 * @return the fraction of all invocations that was served from the cache, in the range [0, 1]
+	 */
+	public double getHitRatio() {
+		long hits = getHitCount();
+		long invocations = hits + getMissCount();
+		if (invocations == 0) {
+			return 0;
+		}
+		return hits / (double) invocations;
+	}
+	
+	@Override
+	public String toString() {
+		return "ResultCacheMetrics[service=" + serviceApi + " method=" + methodSignature 
+				+ " hits=" + getHitCount() + " misses=" + getMissCount() + " evictions=" + getEvictionCount() + "]";
+	}
+
+}
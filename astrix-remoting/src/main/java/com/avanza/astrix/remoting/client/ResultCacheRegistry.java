@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import com.avanza.astrix.core.AstrixCached;
+/**
+ * Keeps track of the {@link ResultCache}'s of the proxies created using a given registry, see 
+ * {@link RemotingProxyOptions#resultCacheRegistry(ResultCacheRegistry)}, which allows invalidating 
+ * all cached results for a given service api. <p>
+ * 
+ * When created by astrix a single registry is shared by all proxies created by a given AstrixContext,
+ * hence invalidating the results for a service api does not affect proxies created by other contexts. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class ResultCacheRegistry {
+	
+	private final Map<String, Set<ResultCache>> cachesByServiceApi = new HashMap<>(); // guarded by this
+	
+	synchronized void register(String serviceApi, ResultCache resultCache) {
+		removeEmptyCacheSets();
+		Set<ResultCache> caches = cachesByServiceApi.get(serviceApi);
+		if (caches == null) {
+			caches = Collections.newSetFromMap(new WeakHashMap<ResultCache, Boolean>());
+			cachesByServiceApi.put(serviceApi, caches);
+		}
+		caches.add(resultCache);
+	}
+	
+	/*
+	 * The caches are weakly referenced, hence the set for a given service api is
+	 * emptied when all proxies for the api are garbage collected.
+	 */
+	private void removeEmptyCacheSets() {
+		Iterator<Set<ResultCache>> caches = cachesByServiceApi.values().iterator();
+		while (caches.hasNext()) {
+			if (caches.next().isEmpty()) {
+				caches.remove();
+			}
+		}
+	}
+	
+	/**
+	 * Invalidates all cached results for all methods annotated with {@link AstrixCached} in a 
+	 * given service api, across all proxies registered in this registry. <p>
+	 * 
+	 * @param serviceApi
+	 */
+	public synchronized void invalidateAll(Class<?> serviceApi) {
+		Set<ResultCache> caches = cachesByServiceApi.get(serviceApi.getName());
+		if (caches == null) {
+			return;
+		}
+		if (caches.isEmpty()) {
+			cachesByServiceApi.remove(serviceApi.getName());
+			return;
+		}
+		for (ResultCache resultCache : caches) {
+			resultCache.invalidateAll();
+		}
+	}
+
+}
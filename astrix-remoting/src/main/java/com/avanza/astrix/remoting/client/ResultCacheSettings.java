@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import com.avanza.astrix.core.AstrixCached;
+/**
+ * Settings used by the {@link ResultCache} of each service method annotated with {@link AstrixCached}
+ * in a given {@link RemotingProxy}. <p>
+ * 
+ * The default settings uses the values defined by the {@link AstrixCached} annotation. Subclasses might
+ * override the settings, typically by reading them from the configuration. Each setting is read every time
+ * it is used, which means that changes are applied at runtime. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public class ResultCacheSettings {
+	
+	public static final ResultCacheSettings DEFAULT = new ResultCacheSettings();
+	
+	/**
+	 * @return whether results should be cached. When disabled all invocations are sent to the server.
+	 */
+	public boolean isEnabled() {
+		return true;
+	}
+	
+	/**
+	 * @param cached - the annotation defined on the service method
+	 * @return the maximum number of results cached for the service method
+	 */
+	public int getMaxEntries(AstrixCached cached) {
+		return cached.maxEntries();
+	}
+	
+	/**
+	 * @param cached - the annotation defined on the service method
+	 * @return the time (in milliseconds) a result is cached
+	 */
+	public long getTtlMillis(AstrixCached cached) {
+		return cached.ttlMillis();
+	}
+
+}
@@ -16,25 +16,64 @@
 package com.avanza.astrix.remoting.client;
 
 import java.lang.reflect.Type;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import rx.Observable;
+import rx.exceptions.Exceptions;
 import rx.functions.Func1;
 
+import com.avanza.astrix.core.AstrixCached;
+import com.avanza.astrix.core.AstrixCollapsed;
+
 public class RoutedRemoteServiceMethod implements RemoteServiceMethod {
 
 	private final String signature;
 	private final Router router;
 	private final RemotingEngine remotingEngine;
 	private final Type returnType;
+	private final RequestCollapser requestCollapser;
+	private final ResultCache resultCache;
 
 	public RoutedRemoteServiceMethod(String signature, 
 									 Router router,
 									 RemotingEngine remotingEngine, 
 									 Type returnType) {
+		this(signature, router, remotingEngine, returnType, null);
+	}
+	
+	/**
+	 * @param requestCollapser - used to collapse identical in-flight invocations, or null if request collapsing
+	 * 							 should not be used, see {@link AstrixCollapsed}.
+	 */
+	public RoutedRemoteServiceMethod(String signature, 
+									 Router router,
+									 RemotingEngine remotingEngine, 
+									 Type returnType,
+									 RequestCollapser requestCollapser) {
+		this(signature, router, remotingEngine, returnType, requestCollapser, null);
+	}
+	
+	/**
+	 * @param requestCollapser - used to collapse identical in-flight invocations, or null if request collapsing
+	 * 							 should not be used, see {@link AstrixCollapsed}.
+	 * @param resultCache - used to cache the results of successful invocations, or null if result caching
+	 * 						should not be used, see {@link AstrixCached}.
+	 */
+	public RoutedRemoteServiceMethod(String signature, 
+									 Router router,
+									 RemotingEngine remotingEngine, 
+									 Type returnType,
+									 RequestCollapser requestCollapser,
+									 ResultCache resultCache) {
 		this.signature = signature;
 		this.router = router;
 		this.remotingEngine = remotingEngine;
 		this.returnType = returnType;
+		this.requestCollapser = requestCollapser;
+		this.resultCache = resultCache;
 	}
 
 	public String getSignature() {
@@ -43,12 +82,98 @@ public class RoutedRemoteServiceMethod implements RemoteServiceMethod {
 	
 	@Override
 	public Observable<?> invoke(AstrixServiceInvocationRequest invocationRequest, Object[] args) throws Exception {
+		RoutingKey routingKey = prepareRequest(invocationRequest, args);
+		if (interceptsInvocations()) {
+			return CancellableFuture.toObservable(intercept(invocationRequest, routingKey)).map(new Func1<AstrixServiceInvocationResponse, Object>() {
+				@Override
+				public Object call(AstrixServiceInvocationResponse t1) {
+					return toResult(t1);
+				}
+			});
+		}
+		return submitRoutedRequest(invocationRequest, routingKey);
+	}
+	
+	@Override
+	public Object invokeAndWait(AstrixServiceInvocationRequest invocationRequest, Object[] args) throws Exception {
+		RoutingKey routingKey = prepareRequest(invocationRequest, args);
+		if (interceptsInvocations()) {
+			return toResult(awaitResponse(intercept(invocationRequest, routingKey)));
+		}
+		return toResult(invokeRoutedRequest(invocationRequest, routingKey));
+	}
+	
+	@Override
+	public CompletableFuture<?> invokeAsync(AstrixServiceInvocationRequest invocationRequest, Object[] args) throws Exception {
+		RoutingKey routingKey = prepareRequest(invocationRequest, args);
+		CompletableFuture<AstrixServiceInvocationResponse> response;
+		if (interceptsInvocations()) {
+			response = intercept(invocationRequest, routingKey);
+		} else {
+			response = invokeRoutedRequestAsync(invocationRequest, routingKey);
+		}
+		return CancellableFuture.map(response, new Function<AstrixServiceInvocationResponse, Object>() {
+			@Override
+			public Object apply(AstrixServiceInvocationResponse response) {
+				return toResult(response);
+			}
+		});
+	}
+	
+	private RoutingKey prepareRequest(AstrixServiceInvocationRequest invocationRequest, Object[] args) throws Exception {
 		invocationRequest.setArguments(remotingEngine.marshall(args));
 		RoutingKey routingKey = router.getRoutingKey(args);
 		if (routingKey == null) {
 			throw new IllegalStateException(String.format("Service method is routed but the defined remotingKey value was null: method=%s", signature));
 		}
-		return submitRoutedRequest(invocationRequest, routingKey);
+		return routingKey;
+	}
+	
+	private boolean interceptsInvocations() {
+		return requestCollapser != null || resultCache != null;
+	}
+	
+	/*
+	 * Invocations are first looked up in the result cache (if any), and cache misses
+	 * are collapsed (if request collapsing is used) before sent to the server. 
+	 */
+	private CompletableFuture<AstrixServiceInvocationResponse> intercept(final AstrixServiceInvocationRequest request, final RoutingKey routingKey) {
+		if (resultCache == null) {
+			return collapse(request, routingKey);
+		}
+		return resultCache.submit(request, new Supplier<CompletableFuture<AstrixServiceInvocationResponse>>() {
+			@Override
+			public CompletableFuture<AstrixServiceInvocationResponse> get() {
+				return collapse(request, routingKey);
+			}
+		});
+	}
+	
+	private CompletableFuture<AstrixServiceInvocationResponse> collapse(final AstrixServiceInvocationRequest request, final RoutingKey routingKey) {
+		if (requestCollapser == null) {
+			return invokeRoutedRequestAsync(request, routingKey);
+		}
+		return requestCollapser.submit(request, new Supplier<CompletableFuture<AstrixServiceInvocationResponse>>() {
+			@Override
+			public CompletableFuture<AstrixServiceInvocationResponse> get() {
+				return invokeRoutedRequestAsync(request, routingKey);
+			}
+		});
+	}
+	
+	protected static AstrixServiceInvocationResponse awaitResponse(CompletableFuture<AstrixServiceInvocationResponse> response) {
+		try {
+			return response.get();
+		} catch (ExecutionException e) {
+			throw Exceptions.propagate(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for response", e);
+		}
+	}
+	
+	protected final Object toResult(AstrixServiceInvocationResponse response) {
+		return remotingEngine.toRemoteResult(response, returnType).getResult();
 	}
 	
 	protected Observable<Object> submitRoutedRequest(AstrixServiceInvocationRequest request,
@@ -58,9 +183,17 @@ public class RoutedRemoteServiceMethod implements RemoteServiceMethod {
 		return response.map(new Func1<AstrixServiceInvocationResponse, Object>() {
 			@Override
 			public Object call(AstrixServiceInvocationResponse t1) {
-				return remotingEngine.toRemoteResult(t1, returnType).getResult();
+				return toResult(t1);
 			}
 		});
 	}
 	
+	protected AstrixServiceInvocationResponse invokeRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return remotingEngine.invokeRoutedRequest(request, routingKey);
+	}
+	
+	protected CompletableFuture<AstrixServiceInvocationResponse> invokeRoutedRequestAsync(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+		return remotingEngine.invokeRoutedRequestAsync(request, routingKey);
+	}
+	
 }
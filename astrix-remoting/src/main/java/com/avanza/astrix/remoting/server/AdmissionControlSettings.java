@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.server;
+
+import com.avanza.astrix.core.AstrixStrategy;
+
+/**
+ * Settings used by the admission control of an {@link AstrixServiceActivator}, which limits the number
+ * of concurrent invocations of each published service, and of each method of a service. Invocations
+ * exceeding a limit are rejected immediately with a service unavailable response. <p>
+ * 
+ * The default settings does not limit the concurrency. Subclasses might override the settings, typically
+ * by reading them from the configuration. Each setting is read every time it is used, which means that
+ * changes are applied at runtime. <p>
+ * 
+ * The settings are an astrix strategy, hence the settings used by an activator created by astrix might be
+ * replaced by registering a strategy instance, or by setting a property named after this class to the
+ * name of a subclass. <p>
+ * 
+ * When the limit is adaptive the maximum concurrency is used as an upper bound for a limit that is adjusted
+ * using additive increase/multiplicative decrease based on the latency of each invocation. The limit is
+ * decreased, at most once per round trip, when the smoothed latency of the invoked method exceeds the long term
+ * average latency of the same method by more than the latency tolerance, and increased when an invocation 
+ * completes within the tolerance while at least half of the limit is in use. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+@AstrixStrategy(AdmissionControlSettings.class)
+public class AdmissionControlSettings {
+	
+	public static final AdmissionControlSettings DEFAULT = new AdmissionControlSettings();
+	
+	/**
+	 * @param serviceApi
+	 * @return the maximum number of concurrent invocations of all methods of the given service, or a
+	 * 		   negative value if the concurrency of the service is not limited
+	 */
+	public int getMaxConcurrency(String serviceApi) {
+		return -1;
+	}
+	
+	/**
+	 * @param serviceApi
+	 * @param methodSignature - the signature of the method, without return type
+	 * @return the maximum number of concurrent invocations of the given service method, or a
+	 * 		   negative value if the concurrency of the method is not limited
+	 */
+	public int getMaxConcurrency(String serviceApi, String methodSignature) {
+		return -1;
+	}
+	
+	/**
+	 * @param serviceApi
+	 * @return whether the limits of the given service, and of its methods, are adapted to the observed latency 
+	 */
+	public boolean isAdaptive(String serviceApi) {
+		return false;
+	}
+	
+	/**
+	 * @return the lower bound for an adaptive limit
+	 */
+	public int getMinConcurrency() {
+		return 1;
+	}
+	
+	/**
+	 * @return the ratio between the smoothed latency of a method and the long term average latency of that
+	 * 		   method that is tolerated before an adaptive limit is decreased
+	 */
+	public double getLatencyTolerance() {
+		return 2.0;
+	}
+	
+	/**
+	 * @return the factor an adaptive limit is multiplied with when it is decreased
+	 */
+	public double getBackoffRatio() {
+		return 0.9;
+	}
+
+}
@@ -16,27 +16,54 @@
 package com.avanza.astrix.remoting.server;
 
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.avanza.astrix.core.AstrixDeadline;
 import com.avanza.astrix.core.AstrixObjectSerializer;
 import com.avanza.astrix.core.ServiceInvocationException;
+import com.avanza.astrix.core.util.MethodInvoker;
 import com.avanza.astrix.core.util.ReflectionUtil;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 import com.avanza.astrix.remoting.client.MissingServiceMethodException;
+import com.avanza.astrix.remoting.util.ServiceMethodTable;
+
+import rx.Observable;
+import rx.Subscriber;
 /**
  * Server side component used to invoke exported services. <p> 
  * 
+ * A provider might either implement the published api, or an asynchronous variant of it
+ * where some (or all) methods return a {@link CompletionStage} or an {@link Observable} of
+ * the return type declared by the published api, for instance a provider for a <code>FooService</code>
+ * might implement <code>FooServiceAsync</code>. Invocations of such methods are completed
+ * when the returned CompletionStage (or Observable) completes, see {@link #invokeServiceAsync(AstrixServiceInvocationRequest)}. <p>
+ * 
+ * The number of concurrent invocations of each service, and of each service method, might be limited
+ * using {@link AdmissionControlSettings}. Invocations exceeding a limit are rejected immediately with a 
+ * service unavailable response, see {@link #getMetrics()}. When the activator is created by astrix the 
+ * settings are resolved as a strategy, see {@link AdmissionControlSettings}. <p>
+ * 
+ * Requests carrying a deadline (see {@link AstrixServiceInvocationRequest#setDeadline(AstrixDeadline)}) are
+ * skipped if the deadline has expired before the service is invoked. Otherwise the deadline is attached to the 
+ * invoking thread while the service is invoked, see {@link AstrixDeadline#current()}. <p>
+ * 
  * @author Elias Lindholm (elilin)
  *
  */
@@ -44,63 +71,303 @@ public class AstrixServiceActivator {
 	
 	private static final Logger logger = LoggerFactory.getLogger(AstrixServiceActivator.class);
 	private final ConcurrentMap<String, PublishedService<?>> serviceByType = new ConcurrentHashMap<>();
+	private final AdmissionControlSettings admissionControlSettings;
+	
+	public AstrixServiceActivator(AdmissionControlSettings admissionControlSettings) {
+		this.admissionControlSettings = admissionControlSettings;
+	}
 	
 	static class PublishedService<T> {
 
 		private final T service;
-		private final Map<String, Method> methodBySignature = new HashMap<>();
+		private final ServiceMethodTable methodTable;
+		private final ServiceMethodInvoker[] invokers;
 		private final AstrixObjectSerializer objectSerializer;
+		private final ConcurrencyLimit serviceLimit;
+		private final AdmissionControlSettings admissionControlSettings;
+		private final String serviceApi;
 
-		public PublishedService(T service, AstrixObjectSerializer serializer, Class<?>... providedApis) {
+		public PublishedService(T service, AstrixObjectSerializer serializer, Class<?> providedApi, AdmissionControlSettings admissionControlSettings) {
 			this.service = service;
 			this.objectSerializer = serializer;
-			for (Class<?> api : providedApis) {
-				for (Method m : api.getMethods()) {
-					methodBySignature.put(ReflectionUtil.methodSignatureWithoutReturnType(m), m);
+			this.admissionControlSettings = admissionControlSettings;
+			this.serviceApi = providedApi.getName();
+			this.methodTable = ServiceMethodTable.create(providedApi);
+			this.invokers = new ServiceMethodInvoker[methodTable.size()];
+			this.serviceLimit = ConcurrencyLimit.forService(admissionControlSettings, providedApi.getName());
+			boolean implementsApi = providedApi.isAssignableFrom(service.getClass());
+			for (int methodId = 0; methodId < invokers.length; methodId++) {
+				Method serviceMethod = methodTable.getMethod(methodId);
+				Method implementation = implementsApi ? serviceMethod : findAsyncImplementation(service.getClass(), serviceMethod);
+				if (implementation == null) {
+					throw new IllegalArgumentException("Provider: " + service.getClass() + " does not implement: " + providedApi 
+							+ ". Missing implementation of: " + serviceMethod);
+				}
+				String methodSignature = ReflectionUtil.methodSignatureWithoutReturnType(serviceMethod);
+				ConcurrencyLimit methodLimit = ConcurrencyLimit.forServiceMethod(admissionControlSettings, providedApi.getName(), methodSignature);
+				ServiceInvocationMetrics metrics = new ServiceInvocationMetrics(providedApi.getName(), methodSignature, methodLimit);
+				this.invokers[methodId] = new ServiceMethodInvoker(serviceMethod, implementation, methodLimit, metrics);
+			}
+		}
+		
+		/*
+		 * Finds the public method of the provider with the same name and parameter types as 
+		 * a given service method, that either returns the same type as the service method, or
+		 * a CompletionStage/Observable. Methods declared in a public interface are preferred since
+		 * those can be invoked without reflection.
+		 */
+		private static Method findAsyncImplementation(Class<?> providerType, Method serviceMethod) {
+			Method implementation;
+			try {
+				implementation = providerType.getMethod(serviceMethod.getName(), serviceMethod.getParameterTypes());
+			} catch (NoSuchMethodException e) {
+				return null;
+			}
+			if (!isAsync(implementation.getReturnType()) && !serviceMethod.getReturnType().isAssignableFrom(implementation.getReturnType())) {
+				return null;
+			}
+			for (Class<?> type = providerType; type != null; type = type.getSuperclass()) {
+				for (Class<?> implementedInterface : type.getInterfaces()) {
+					try {
+						Method interfaceMethod = implementedInterface.getMethod(serviceMethod.getName(), serviceMethod.getParameterTypes());
+						if (interfaceMethod.getReturnType().equals(implementation.getReturnType())) {
+							return interfaceMethod;
+						}
+					} catch (NoSuchMethodException e) {
+						// Not declared by this interface
+					}
 				}
 			}
+			return implementation;
 		}
 		
 		public T getService() {
 			return service;
 		}
 		
-		private AstrixServiceInvocationResponse invoke(AstrixServiceInvocationRequest request, int version, String serviceApi) {
+		private AstrixServiceInvocationResponse invoke(AstrixServiceInvocationRequest request, int version, String serviceApi, long receivedNanos) {
+			if (isMethodTableMismatch(request)) {
+				return methodTableMismatch(request, serviceApi);
+			}
+			ServiceMethodInvoker serviceMethod = resolveServiceMethod(request);
+			if (serviceMethod == null) {
+				return exceptionResponse(missingServiceMethod(request, serviceApi), request, version);
+			}
+			AstrixDeadline deadline = getDeadline(request, receivedNanos);
+			if (deadline != null && deadline.isExpired()) {
+				return expired(request, serviceMethod);
+			}
+			long startNanos = System.nanoTime();
+			if (!admit(serviceMethod, startNanos - receivedNanos)) {
+				return rejected(request, serviceMethod);
+			}
+			AstrixDeadline previousDeadline = AstrixDeadline.attach(deadline);
 			try {
-				return invokeService(request, version, serviceApi);
-			} catch (Exception e) {
-				Throwable exceptionThrownByService = resolveException(e);
-				AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
-				invocationResponse.setExceptionMsg(exceptionThrownByService.getMessage());
-				invocationResponse.setCorrelationId(UUID.randomUUID().toString());
-				if (exceptionThrownByService instanceof ServiceInvocationException) {
-					invocationResponse.setException(this.objectSerializer.serialize(exceptionThrownByService, version));
+				if (serviceMethod.isAsync) {
+					// Never completes exceptionally, see invokeServiceAsync
+					return invokeServiceAsync(serviceMethod, request, version).join();
+				}
+				return invokeService(serviceMethod, request, version);
+			} catch (Throwable exceptionThrownByService) {
+				return exceptionResponse(exceptionThrownByService, request, version);
+			} finally {
+				AstrixDeadline.restore(previousDeadline);
+				release(serviceMethod, startNanos);
+			}
+		}
+		
+		private CompletableFuture<AstrixServiceInvocationResponse> invokeAsync(AstrixServiceInvocationRequest request, int version, String serviceApi, long receivedNanos) {
+			if (isMethodTableMismatch(request)) {
+				return CompletableFuture.completedFuture(methodTableMismatch(request, serviceApi));
+			}
+			final ServiceMethodInvoker serviceMethod = resolveServiceMethod(request);
+			if (serviceMethod == null) {
+				return CompletableFuture.completedFuture(exceptionResponse(missingServiceMethod(request, serviceApi), request, version));
+			}
+			AstrixDeadline deadline = getDeadline(request, receivedNanos);
+			if (deadline != null && deadline.isExpired()) {
+				return CompletableFuture.completedFuture(expired(request, serviceMethod));
+			}
+			final long startNanos = System.nanoTime();
+			if (!admit(serviceMethod, startNanos - receivedNanos)) {
+				return CompletableFuture.completedFuture(rejected(request, serviceMethod));
+			}
+			CompletableFuture<AstrixServiceInvocationResponse> response = null;
+			AstrixDeadline previousDeadline = AstrixDeadline.attach(deadline);
+			try {
+				if (serviceMethod.isAsync) {
+					response = invokeServiceAsync(serviceMethod, request, version);
 				} else {
-					invocationResponse.setThrownExceptionType(exceptionThrownByService.getClass().getName());
+					response = CompletableFuture.completedFuture(invokeService(serviceMethod, request, version));
+				}
+			} catch (Throwable exceptionThrownByService) {
+				response = CompletableFuture.completedFuture(exceptionResponse(exceptionThrownByService, request, version));
+			} finally {
+				AstrixDeadline.restore(previousDeadline);
+				// The response is null if creating the exception response failed
+				if (response == null || response.isDone()) {
+					release(serviceMethod, startNanos);
+				}
+			}
+			if (response.isDone()) {
+				return response;
+			}
+			return response.whenComplete(new BiConsumer<AstrixServiceInvocationResponse, Throwable>() {
+				@Override
+				public void accept(AstrixServiceInvocationResponse result, Throwable error) {
+					release(serviceMethod, startNanos);
 				}
-				logger.info(String.format("Service invocation ended with exception. request=%s correlationId=%s", request, invocationResponse.getCorrelationId()), exceptionThrownByService);
-				return invocationResponse;
+			});
+		}
+		
+		private boolean admit(ServiceMethodInvoker serviceMethod, long queueingTimeNanos) {
+			if (!serviceLimit.tryAcquire()) {
+				serviceMethod.metrics.rejected();
+				return false;
+			}
+			if (!serviceMethod.limit.tryAcquire()) {
+				serviceLimit.cancel();
+				serviceMethod.metrics.rejected();
+				return false;
 			}
+			serviceMethod.metrics.admitted(queueingTimeNanos);
+			return true;
+		}
+		
+		private void release(ServiceMethodInvoker serviceMethod, long startNanos) {
+			long latencyNanos = System.nanoTime() - startNanos;
+			double latencyRatio = admissionControlSettings.isAdaptive(serviceApi) ? serviceMethod.latencyBaseline.sample(latencyNanos) : 1;
+			serviceMethod.limit.release(latencyRatio);
+			serviceLimit.release(latencyRatio);
+		}
+		
+		private AstrixServiceInvocationResponse rejected(AstrixServiceInvocationRequest request, ServiceMethodInvoker serviceMethod) {
+			AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
+			invocationResponse.setServiceUnavailable(true);
+			invocationResponse.setExceptionMsg(String.format("Service invocation rejected by admission control: service=%s method=%s serviceInFlight=%s methodInFlight=%s", 
+					request.getServiceApi(), serviceMethod.metrics.getMethodSignature(), serviceLimit.getInFlight(), serviceMethod.limit.getInFlight()));
+			invocationResponse.setCorrelationId(UUID.randomUUID().toString());
+			// Logged on debug level to avoid flooding the log when the service is overloaded
+			logger.debug(String.format("Service invocation rejected. request=%s correlationId=%s", request, invocationResponse.getCorrelationId()));
+			return invocationResponse;
+		}
+		
+		/*
+		 * The deadline is defined relative to when the request was received since the clocks
+		 * of client and server are not synchronized.
+		 */
+		private static AstrixDeadline getDeadline(AstrixServiceInvocationRequest request, long receivedNanos) {
+			long timeoutMillis = request.getTimeoutMillis();
+			if (timeoutMillis < 0) {
+				return null;
+			}
+			return AstrixDeadline.at(receivedNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+		}
+		
+		private AstrixServiceInvocationResponse expired(AstrixServiceInvocationRequest request, ServiceMethodInvoker serviceMethod) {
+			serviceMethod.metrics.expired();
+			AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
+			invocationResponse.setServiceUnavailable(true);
+			invocationResponse.setExceptionMsg(String.format("Deadline of caller expired before service was invoked: service=%s method=%s timeoutMillis=%s", 
+					request.getServiceApi(), serviceMethod.metrics.getMethodSignature(), request.getTimeoutMillis()));
+			invocationResponse.setCorrelationId(UUID.randomUUID().toString());
+			logger.debug(String.format("Deadline expired. request=%s correlationId=%s", request, invocationResponse.getCorrelationId()));
+			return invocationResponse;
+		}
+		
+		private static MissingServiceMethodException missingServiceMethod(AstrixServiceInvocationRequest request, String serviceApi) {
+			return new MissingServiceMethodException(String.format("Missing service method: service=%s method=%s", serviceApi, request.getServiceMethodSignature()));
+		}
+		
+		private boolean isMethodTableMismatch(AstrixServiceInvocationRequest request) {
+			return request.getServiceMethodId() != AstrixServiceInvocationRequest.NO_METHOD_ID 
+					&& request.getMethodTableChecksum() != methodTable.getChecksum()
+					&& request.getServiceMethodSignature() == null;
 		}
 
-		private AstrixServiceInvocationResponse invokeService(
-				AstrixServiceInvocationRequest request, int version,
-				String serviceApi) throws IllegalAccessException,
-				InvocationTargetException {
-			String serviceMethodSignature = request.getHeader("serviceMethodSignature");
-			Method serviceMethod = methodBySignature.get(serviceMethodSignature);
-			if (serviceMethod == null) {
-				throw new MissingServiceMethodException(String.format("Missing service method: service=%s method=%s", serviceApi, serviceMethodSignature));
+		private AstrixServiceInvocationResponse methodTableMismatch(AstrixServiceInvocationRequest request, String serviceApi) {
+			/*
+			 * The client identified the target method using a method table that does not
+			 * match the one used by this server, for instance during a rolling upgrade
+			 * where the api has changed. Let the client resend the request using method signatures.
+			 */
+			AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
+			invocationResponse.setMethodTableMismatch();
+			invocationResponse.setExceptionMsg(String.format("Method table mismatch: service=%s clientChecksum=%s serverChecksum=%s", 
+					serviceApi, request.getMethodTableChecksum(), methodTable.getChecksum()));
+			invocationResponse.setCorrelationId(UUID.randomUUID().toString());
+			logger.info(String.format("Method table mismatch. request=%s correlationId=%s", request, invocationResponse.getCorrelationId()));
+			return invocationResponse;
+		}
+		
+		private AstrixServiceInvocationResponse exceptionResponse(Throwable exceptionThrownByService, AstrixServiceInvocationRequest request, int version) {
+			AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
+			invocationResponse.setExceptionMsg(exceptionThrownByService.getMessage());
+			invocationResponse.setCorrelationId(UUID.randomUUID().toString());
+			if (exceptionThrownByService instanceof ServiceInvocationException) {
+				invocationResponse.setException(this.objectSerializer.serialize(exceptionThrownByService, version));
+			} else {
+				invocationResponse.setThrownExceptionType(exceptionThrownByService.getClass().getName());
+			}
+			logger.info(String.format("Service invocation ended with exception. request=%s correlationId=%s", request, invocationResponse.getCorrelationId()), exceptionThrownByService);
+			return invocationResponse;
+		}
+		
+		private AstrixServiceInvocationResponse invokeService(ServiceMethodInvoker serviceMethod, AstrixServiceInvocationRequest request, int version) throws Throwable {
+			Object[] arguments = unmarshal(request.getArguments(), serviceMethod.parameterTypes, version);
+			Object result = serviceMethod.invoker.invoke(service, arguments);
+			return resultResponse(serviceMethod, result, version);
+		}
+
+		/*
+		 * The returned future never completes exceptionally. Exceptions thrown by the provider, either
+		 * when invoked or by the returned CompletionStage/Observable, are mapped to an exception response.
+		 */
+		private CompletableFuture<AstrixServiceInvocationResponse> invokeServiceAsync(final ServiceMethodInvoker serviceMethod, 
+																					  final AstrixServiceInvocationRequest request, 
+																					  final int version) throws Throwable {
+			Object[] arguments = unmarshal(request.getArguments(), serviceMethod.parameterTypes, version);
+			Object asyncResult = serviceMethod.invoker.invoke(service, arguments);
+			if (asyncResult == null) {
+				throw new IllegalStateException("Service method returned null: " + serviceMethod.invoker.getMethod());
 			}
-			Object[] arguments = unmarshal(request.getArguments(), serviceMethod.getGenericParameterTypes(), version);
-			Object result = serviceMethod.invoke(service, arguments);
+			return toCompletionStage(asyncResult).handle(new BiFunction<Object, Throwable, AstrixServiceInvocationResponse>() {
+				@Override
+				public AstrixServiceInvocationResponse apply(Object result, Throwable error) {
+					if (error instanceof CompletionException && error.getCause() != null) {
+						error = error.getCause();
+					}
+					if (error != null) {
+						return exceptionResponse(error, request, version);
+					}
+					try {
+						return resultResponse(serviceMethod, result, version);
+					} catch (RuntimeException e) {
+						return exceptionResponse(e, request, version);
+					}
+				}
+			}).toCompletableFuture();
+		}
+		
+		private AstrixServiceInvocationResponse resultResponse(ServiceMethodInvoker serviceMethod, Object result, int version) {
 			AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
-			if (!serviceMethod.getReturnType().equals(Void.TYPE)) {
+			if (!serviceMethod.isVoid) {
 				invocationResponse.setResponseBody(objectSerializer.serialize(result, version));
 			}
 			return invocationResponse;
 		}
 
+		private ServiceMethodInvoker resolveServiceMethod(AstrixServiceInvocationRequest request) {
+			int serviceMethodId = request.getServiceMethodId();
+			if (serviceMethodId == AstrixServiceInvocationRequest.NO_METHOD_ID || request.getMethodTableChecksum() != methodTable.getChecksum()) {
+				serviceMethodId = methodTable.getMethodId(request.getServiceMethodSignature());
+			}
+			if (serviceMethodId < 0 || serviceMethodId >= invokers.length) {
+				return null;
+			}
+			return invokers[serviceMethodId];
+		}
+		
 		private Object[] unmarshal(Object[] elements, Type[] types, int version) {
 			Object[] result = new Object[elements.length];
 			for (int i = 0; i < result.length; i++) {
@@ -111,11 +378,67 @@ public class AstrixServiceActivator {
 		
 	}
 	
-	public void register(Object provider, AstrixObjectSerializer objectSerializer, Class<?> publishedApi) {
-		if (!publishedApi.isAssignableFrom(provider.getClass())) {
-			throw new IllegalArgumentException("Provider: " + provider.getClass() + " does not implement: " + publishedApi);
+	/**
+	 * Holds everything required to invoke a given service method, resolved once when
+	 * the service is registered.
+	 */
+	private static final class ServiceMethodInvoker {
+		
+		private final MethodInvoker invoker;
+		private final Type[] parameterTypes;
+		private final boolean isVoid;
+		private final boolean isAsync;
+		private final ConcurrencyLimit limit;
+		private final LatencyBaseline latencyBaseline = new LatencyBaseline();
+		private final ServiceInvocationMetrics metrics;
+		
+		public ServiceMethodInvoker(Method serviceMethod, Method implementation, ConcurrencyLimit limit, ServiceInvocationMetrics metrics) {
+			this.invoker = MethodInvoker.create(implementation);
+			this.parameterTypes = serviceMethod.getGenericParameterTypes();
+			this.isVoid = serviceMethod.getReturnType().equals(Void.TYPE);
+			this.isAsync = implementation != serviceMethod && isAsync(implementation.getReturnType());
+			this.limit = limit;
+			this.metrics = metrics;
+		}
+		
+	}
+	
+	private static boolean isAsync(Class<?> returnType) {
+		return CompletionStage.class.isAssignableFrom(returnType) || Observable.class.isAssignableFrom(returnType);
+	}
+	
+	private static CompletionStage<?> toCompletionStage(Object asyncResult) {
+		if (asyncResult instanceof CompletionStage) {
+			return (CompletionStage<?>) asyncResult;
 		}
-		PublishedService<?> publishedService = new PublishedService<>(provider, objectSerializer, publishedApi);
+		final CompletableFuture<Object> result = new CompletableFuture<>();
+		((Observable<?>) asyncResult).singleOrDefault(null).subscribe(new Subscriber<Object>() {
+			@Override
+			public void onNext(Object value) {
+				result.complete(value);
+			}
+			@Override
+			public void onError(Throwable e) {
+				result.completeExceptionally(e);
+			}
+			@Override
+			public void onCompleted() {
+			}
+		});
+		return result;
+	}
+	
+	/**
+	 * Publishes a given provider. The provider must either implement the published api, or
+	 * provide a public method with the same name and parameter types for each method in the published
+	 * api, returning either the same type or a {@link CompletionStage} or {@link Observable}. <p>
+	 * 
+	 * @param provider
+	 * @param objectSerializer
+	 * @param publishedApi
+	 */
+	public void register(Object provider, AstrixObjectSerializer objectSerializer, Class<?> publishedApi) {
+		PublishedService<?> publishedService = new PublishedService<>(provider, objectSerializer, publishedApi, admissionControlSettings);
 		this.serviceByType.put(publishedApi.getName(), publishedService);
 	}
 	
@@ -124,31 +447,123 @@ public class AstrixServiceActivator {
 	 * @return
 	 */
 	public AstrixServiceInvocationResponse invokeService(AstrixServiceInvocationRequest request) {
+		return invokeService(request, System.nanoTime());
+	}
+	
+	/**
+	 * Same as {@link #invokeService(AstrixServiceInvocationRequest)} for transports that queue
+	 * requests before invoking the service, see {@link ServiceInvocationMetrics#getMeanQueueingTimeMillis()}. <p>
+	 * 
+	 * @param request
+	 * @param receivedNanos - the value of {@link System#nanoTime()} when the request was received by the transport
+	 * @return
+	 */
+	public AstrixServiceInvocationResponse invokeService(AstrixServiceInvocationRequest request, long receivedNanos) {
 		PublishedService<?> publishedService = null;
-		int version = Integer.parseInt(request.getHeader("apiVersion"));
-		String serviceApi = request.getHeader("serviceApi");
+		int version = request.getApiVersion();
+		String serviceApi = request.getServiceApi();
 		publishedService = this.serviceByType.get(serviceApi);
 		if (publishedService == null) {
 			/*
 			 * Service not available. This might happen in rare conditions when a processing unit
 			 * is restarted and old clients connects to the space before the framework is fully initialized. 
 			 */
-			AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
-			invocationResponse.setServiceUnavailable(true);;
-			invocationResponse.setExceptionMsg("Service not available in service activator: " + serviceApi);
-			invocationResponse.setCorrelationId(UUID.randomUUID().toString());
-			logger.info(String.format("Service not available. request=%s correlationId=%s", request, invocationResponse.getCorrelationId()));
-			return invocationResponse;
+			return serviceUnavailable(request);
 		}
-		return publishedService.invoke(request, version, serviceApi);
+		return publishedService.invoke(request, version, serviceApi, receivedNanos);
 	}
 
-	private static Throwable resolveException(Exception e) {
-		if (e instanceof InvocationTargetException) {
-			// Invoked service threw an exception
-			return InvocationTargetException.class.cast(e).getTargetException();
+	private static AstrixServiceInvocationResponse serviceUnavailable(AstrixServiceInvocationRequest request) {
+		AstrixServiceInvocationResponse invocationResponse = new AstrixServiceInvocationResponse();
+		invocationResponse.setServiceUnavailable(true);
+		invocationResponse.setExceptionMsg("Service not available in service activator: " + request.getServiceApi());
+		invocationResponse.setCorrelationId(UUID.randomUUID().toString());
+		logger.info(String.format("Service not available. request=%s correlationId=%s", request, invocationResponse.getCorrelationId()));
+		return invocationResponse;
+	}
+	
+	/**
+	 * Invokes a service without waiting for providers that complete the invocation asynchronously,
+	 * ie providers returning a {@link CompletionStage} or an {@link Observable}. 
+	 * Invocations of synchronous service methods are completed before this method returns. <p>
+	 * 
+	 * The returned future never completes exceptionally, exceptions thrown by the service are
+	 * reported in the response the same way as for {@link #invokeService(AstrixServiceInvocationRequest)}. <p>
+	 * 
+	 * @param request
+	 * @return
+	 */
+	public CompletableFuture<AstrixServiceInvocationResponse> invokeServiceAsync(AstrixServiceInvocationRequest request) {
+		return invokeServiceAsync(request, System.nanoTime());
+	}
+	
+	/**
+	 * Same as {@link #invokeServiceAsync(AstrixServiceInvocationRequest)} for transports that queue
+	 * requests before invoking the service, see {@link ServiceInvocationMetrics#getMeanQueueingTimeMillis()}. <p>
+	 * 
+	 * @param request
+	 * @param receivedNanos - the value of {@link System#nanoTime()} when the request was received by the transport
+	 * @return
+	 */
+	public CompletableFuture<AstrixServiceInvocationResponse> invokeServiceAsync(AstrixServiceInvocationRequest request, long receivedNanos) {
+		PublishedService<?> publishedService = this.serviceByType.get(request.getServiceApi());
+		if (publishedService == null) {
+			return CompletableFuture.completedFuture(serviceUnavailable(request));
+		}
+		return publishedService.invokeAsync(request, request.getApiVersion(), request.getServiceApi(), receivedNanos);
+	}
+	
+	/**
+	 * @param serviceApi
+	 * @param methodSignature - the signature of the method, without return type
+	 * @return the metrics for the given service method, or null if no such method is published
+	 */
+	public ServiceInvocationMetrics getMetrics(String serviceApi, String methodSignature) {
+		PublishedService<?> publishedService = this.serviceByType.get(serviceApi);
+		if (publishedService == null) {
+			return null;
+		}
+		int methodId = publishedService.methodTable.getMethodId(methodSignature);
+		return methodId >= 0 ? publishedService.invokers[methodId].metrics : null;
+	}
+	
+	/**
+	 * @return the metrics for all published service methods
+	 */
+	public Collection<ServiceInvocationMetrics> getMetrics() {
+		List<ServiceInvocationMetrics> result = new ArrayList<>();
+		for (PublishedService<?> publishedService : serviceByType.values()) {
+			for (ServiceMethodInvoker serviceMethod : publishedService.invokers) {
+				result.add(serviceMethod.metrics);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Invokes each request in a batch of invocation requests.
+	 * 
+	 * @param requests
+	 * @return the responses, in the same order as the given requests
+	 */
+	public List<AstrixServiceInvocationResponse> invokeServices(List<AstrixServiceInvocationRequest> requests) {
+		return invokeServices(requests, System.nanoTime());
+	}
+	
+	/**
+	 * Same as {@link #invokeServices(List)} for transports that queue requests before invoking 
+	 * the services. Each request in the batch is considered received when the batch was received. <p>
+	 * 
+	 * @param requests
+	 * @param receivedNanos - the value of {@link System#nanoTime()} when the batch was received by the transport
+	 * @return the responses, in the same order as the given requests
+	 */
+	public List<AstrixServiceInvocationResponse> invokeServices(List<AstrixServiceInvocationRequest> requests, long receivedNanos) {
+		List<AstrixServiceInvocationResponse> responses = new ArrayList<>(requests.size());
+		for (AstrixServiceInvocationRequest request : requests) {
+			responses.add(invokeService(request, receivedNanos));
 		}
-		return e;
+		return responses;
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.server;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of concurrent invocations of a service, or of a single service method,
+ * as defined by {@link AdmissionControlSettings}. <p>
+ * 
+ * The number of invocations in flight is tracked even if the concurrency is not limited. An adaptive
+ * limit is adjusted based on the smoothed latency of the invoked method, see {@link LatencyBaseline}. It is decreased
+ * at most once per round trip, that is not until the invocations in flight when it was last decreased have completed,
+ * since those invocations were admitted under the previous limit. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class ConcurrencyLimit {
+	
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AdmissionControlSettings settings;
+	private final String serviceApi;
+	private final String methodSignature;
+	
+	private volatile int adaptiveLimit = -1;
+	// Guarded by this
+	private double estimatedLimit = -1;
+	private int samplesUntilDecrease = 0;
+	
+	private ConcurrencyLimit(AdmissionControlSettings settings, String serviceApi, String methodSignature) {
+		this.settings = settings;
+		this.serviceApi = serviceApi;
+		this.methodSignature = methodSignature;
+	}
+	
+	static ConcurrencyLimit forService(AdmissionControlSettings settings, String serviceApi) {
+		return new ConcurrencyLimit(settings, serviceApi, null);
+	}
+
+	static ConcurrencyLimit forServiceMethod(AdmissionControlSettings settings, String serviceApi, String methodSignature) {
+		return new ConcurrencyLimit(settings, serviceApi, methodSignature);
+	}
+	
+	/**
+	 * Acquires a permit for an invocation, which must be returned using either {@link #release(double)}
+	 * or {@link #cancel()}.
+	 * 
+	 * @return true if the invocation is admitted, false if the limit is reached
+	 */
+	boolean tryAcquire() {
+		int limit = getLimit();
+		if (limit < 0) {
+			inFlight.incrementAndGet();
+			return true;
+		}
+		while (true) {
+			int current = inFlight.get();
+			if (current >= limit) {
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the permit of a completed invocation.
+	 * 
+	 * @param latencyRatio - the ratio between the smoothed latency of the invoked method and its baseline, see {@link LatencyBaseline}
+	 */
+	void release(double latencyRatio) {
+		int inFlightBeforeRelease = inFlight.getAndDecrement();
+		if (settings.isAdaptive(serviceApi)) {
+			int maxConcurrency = getMaxConcurrency();
+			if (maxConcurrency >= 0) {
+				onSample(latencyRatio, inFlightBeforeRelease, maxConcurrency);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the permit of an invocation that was never started.
+	 */
+	void cancel() {
+		inFlight.decrementAndGet();
+	}
+	
+	private synchronized void onSample(double latencyRatio, int inFlight, int maxConcurrency) {
+		if (estimatedLimit < 0) {
+			estimatedLimit = maxConcurrency;
+		}
+		if (samplesUntilDecrease > 0) {
+			samplesUntilDecrease--;
+		}
+		if (latencyRatio > settings.getLatencyTolerance()) {
+			if (samplesUntilDecrease == 0) {
+				estimatedLimit = Math.max(settings.getMinConcurrency(), estimatedLimit * settings.getBackoffRatio());
+				samplesUntilDecrease = inFlight;
+			}
+		} else if (inFlight * 2 >= estimatedLimit) {
+			estimatedLimit = Math.min(maxConcurrency, estimatedLimit + 1);
+		}
+		adaptiveLimit = (int) estimatedLimit;
+	}
+	
+	/**
+	 * @return the current limit, or -1 if the concurrency is not limited
+	 */
+	int getLimit() {
+		int maxConcurrency = getMaxConcurrency();
+		if (maxConcurrency < 0) {
+			return -1;
+		}
+		int adaptiveLimit = this.adaptiveLimit;
+		if (adaptiveLimit < 0 || !settings.isAdaptive(serviceApi)) {
+			return maxConcurrency;
+		}
+		return Math.min(adaptiveLimit, maxConcurrency);
+	}
+	
+	int getInFlight() {
+		return inFlight.get();
+	}
+
+	private int getMaxConcurrency() {
+		if (methodSignature == null) {
+			return settings.getMaxConcurrency(serviceApi);
+		}
+		return settings.getMaxConcurrency(serviceApi, methodSignature);
+	}
+	
+}
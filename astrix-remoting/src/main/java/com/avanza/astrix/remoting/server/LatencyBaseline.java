@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.server;
+
+/**
+ * Tracks the latency of a single service method, which an adaptive {@link ConcurrencyLimit} uses to
+ * detect congestion. <p>
+ * 
+ * The latency of each invocation is smoothed using an exponentially weighted moving average, which is compared
+ * with the long term average latency of the method, the baseline. Comparing smoothed latencies, rather than the
+ * latency of single invocations, ensures that the normal variance in latency of a method is not interpreted as 
+ * congestion. <p>
+ * 
+ * The baseline is tracked per method since methods of the same service might have very different
+ * latencies. A service wide baseline would be defined by the fastest method, and all invocations of 
+ * slower methods would then be interpreted as congestion. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class LatencyBaseline {
+	
+	/*
+	 * The number of samples the baseline is averaged over. The baseline follows a permanent change in
+	 * latency within a few windows, which allows an adaptive limit to recover.
+	 */
+	private static final int WINDOW = 1000;
+	
+	/*
+	 * The weight of the latest sample in the smoothed latency.
+	 */
+	private static final double SMOOTHING = 0.1;
+	
+	// Guarded by this
+	private double smoothedLatencyNanos;
+	private double baselineNanos;
+	private int samples = 0;
+	
+	/**
+	 * @param latencyNanos - the latency of a completed invocation
+	 * @return the ratio between the smoothed latency and the baseline, including the given latency
+	 */
+	synchronized double sample(long latencyNanos) {
+		if (samples < WINDOW) {
+			samples++;
+		}
+		if (samples == 1) {
+			smoothedLatencyNanos = latencyNanos;
+		} else {
+			smoothedLatencyNanos += SMOOTHING * (latencyNanos - smoothedLatencyNanos);
+		}
+		// Plain average of all samples until the first window is filled
+		baselineNanos += (latencyNanos - baselineNanos) / samples;
+		if (baselineNanos <= 0) {
+			return 1;
+		}
+		return smoothedLatencyNanos / baselineNanos;
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics for the invocations of a service method published in an {@link AstrixServiceActivator}. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class ServiceInvocationMetrics {
+	
+	private final String serviceApi;
+	private final String methodSignature;
+	private final ConcurrencyLimit limit;
+	private final LongAdder invocationCount = new LongAdder();
+	private final LongAdder rejectedCount = new LongAdder();
+	private final LongAdder expiredCount = new LongAdder();
+	private final LongAdder totalQueueingTimeNanos = new LongAdder();
+	
+	ServiceInvocationMetrics(String serviceApi, String methodSignature, ConcurrencyLimit limit) {
+		this.serviceApi = serviceApi;
+		this.methodSignature = methodSignature;
+		this.limit = limit;
+	}
+	
+	void admitted(long queueingTimeNanos) {
+		invocationCount.increment();
+		totalQueueingTimeNanos.add(queueingTimeNanos);
+	}
+	
+	void rejected() {
+		rejectedCount.increment();
+	}
+	
+	void expired() {
+		expiredCount.increment();
+	}
+	
+	public String getServiceApi() {
+		return serviceApi;
+	}
+	
+	public String getMethodSignature() {
+		return methodSignature;
+	}
+	
+	/**
+	 * @return the number of invocations that was admitted by the admission control
+	 */
+	public long getInvocationCount() {
+		return invocationCount.sum();
+	}
+	
+	/**
+	 * @return the number of invocations that was rejected by the admission control
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.sum();
+	}
+	
+	/**
+	 * @return the number of invocations that was skipped since the deadline of the caller expired
+	 * 		   before the service was invoked
+	 */
+	public long getExpiredCount() {
+		return expiredCount.sum();
+	}
+	
+	/**
+	 * @return the number of invocations currently in progress
+	 */
+	public int getInFlight() {
+		return limit.getInFlight();
+	}
+	
+	/**
+	 * @return the current concurrency limit of the service method, or -1 if the concurrency is not limited
+	 */
+	public int getConcurrencyLimit() {
+		return limit.getLimit();
+	}
+	
+	/**
+	 * @return the mean time (in milliseconds) that admitted invocations was queued by the transport before
+	 * 		   being invoked
+	 */
+	public double getMeanQueueingTimeMillis() {
+		long invocations = getInvocationCount();
+		if (invocations == 0) {
+			return 0;
+		}
+		return totalQueueingTimeNanos.sum() / (double) invocations / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+	
+	@Override
+	public String toString() {
+		return "ServiceInvocationMetrics[service=" + serviceApi + " method=" + methodSignature 
+				+ " invocations=" + getInvocationCount() + " rejected=" + getRejectedCount() + " expired=" + getExpiredCount()
+				+ " inFlight=" + getInFlight() + " limit=" + getConcurrencyLimit() + "]";
+	}
+
+}
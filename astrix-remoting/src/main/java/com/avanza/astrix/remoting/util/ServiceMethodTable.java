@@ -0,0 +1,143 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.util;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.avanza.astrix.core.util.ReflectionUtil;
+/**
+ * Assigns a small integer id to each method of a service api. <p>
+ *
+ * The method id's are derived from the sorted method signatures of the api, which means that
+ * a client and a server that uses the same version of a given api will assign the same
+ * id to each method. The checksum identifies the table, and can be used to verify that the
+ * table used by the client is the same as the one used by the server before dispatching
+ * an invocation on method id. <p>
+ *
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class ServiceMethodTable {
+
+	/**
+	 * Service property used by a server to publish the checksum of the method table for
+	 * an exported service.
+	 */
+	public static final String CHECKSUM_PROPERTY = "methodTableChecksum";
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final Method[] methods;
+	private final String[] signatures;
+	private final Map<String, Integer> methodIdBySignature;
+	private final long checksum;
+
+	private ServiceMethodTable(Map<String, Method> methodBySignature) {
+		this.methods = methodBySignature.values().toArray(new Method[methodBySignature.size()]);
+		this.signatures = methodBySignature.keySet().toArray(new String[methodBySignature.size()]);
+		this.methodIdBySignature = new HashMap<>(signatures.length * 2);
+		for (int methodId = 0; methodId < signatures.length; methodId++) {
+			this.methodIdBySignature.put(signatures[methodId], methodId);
+		}
+		this.checksum = checksum(signatures);
+	}
+
+	public static ServiceMethodTable create(Class<?> serviceApi) {
+		Map<String, Method> methodBySignature = new TreeMap<>();
+		for (Method m : serviceApi.getMethods()) {
+			methodBySignature.put(ReflectionUtil.methodSignatureWithoutReturnType(m), m);
+		}
+		return new ServiceMethodTable(methodBySignature);
+	}
+
+	/**
+	 * Parses a checksum published using {@link #CHECKSUM_PROPERTY}.
+	 *
+	 * @param checksum
+	 * @return the checksum, or null if the given property value is null or malformed.
+	 */
+	public static Long parseChecksum(String checksum) {
+		if (checksum == null) {
+			return null;
+		}
+		try {
+			return Long.valueOf(checksum);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static long checksum(String[] signatures) {
+		// 64-bit FNV-1a hash over all signatures
+		long hash = FNV_OFFSET_BASIS;
+		for (String signature : signatures) {
+			for (int i = 0; i < signature.length(); i++) {
+				hash ^= signature.charAt(i);
+				hash *= FNV_PRIME;
+			}
+			hash ^= ';';
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+
+	/**
+	 * @param signature - method signature as returned by {@link ReflectionUtil#methodSignatureWithoutReturnType(Method)}
+	 * @return the id of the given method, or -1 if no such method exists in this table
+	 */
+	public int getMethodId(String signature) {
+		Integer methodId = this.methodIdBySignature.get(signature);
+		return methodId != null ? methodId.intValue() : -1;
+	}
+
+	/**
+	 * @param methodId
+	 * @return the Method with the given id, or null if the id is out of range
+	 */
+	public Method getMethod(int methodId) {
+		if (methodId < 0 || methodId >= methods.length) {
+			return null;
+		}
+		return methods[methodId];
+	}
+
+	/**
+	 * @param signature
+	 * @return the Method with the given signature, or null if no such method exists in this table
+	 */
+	public Method getMethod(String signature) {
+		return getMethod(getMethodId(signature));
+	}
+
+	public long getChecksum() {
+		return checksum;
+	}
+
+	public int size() {
+		return methods.length;
+	}
+
+	@Override
+	public String toString() {
+		return "ServiceMethodTable[checksum=" + checksum + ", methods=" + Arrays.toString(signatures) + "]";
+	}
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ArgumentPartitionerTest {
+	
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static final Class<? extends Collection<?>> ARRAY_LIST = (Class) ArrayList.class;
+	
+	@Test
+	public void routesPrimitiveElementsToSamePartitionAsBoxedElements() throws Exception {
+		long[] elements = new long[] { 1L, -7L, Long.MAX_VALUE, Long.MIN_VALUE, 1L << 40, -3L };
+		ArgumentPartitioner partitioner = ArgumentPartitioner.create(long[].class, null, PartitionedRouter.identity(), -1);
+		
+		Object[] partitioned = partitioner.partition(elements, PartitionMapping.modulo(3));
+		
+		List<List<Long>> expected = Arrays.<List<Long>>asList(new ArrayList<Long>(), new ArrayList<Long>(), new ArrayList<Long>());
+		for (long element : elements) {
+			expected.get(Math.abs(Long.valueOf(element).hashCode() % 3)).add(element);
+		}
+		for (int partition = 0; partition < 3; partition++) {
+			assertEquals(expected.get(partition).toString(), Arrays.toString((long[]) partitioned[partition]));
+		}
+	}
+	
+	@Test
+	public void partitionsWithoutElementsAreNull() throws Exception {
+		ArgumentPartitioner partitioner = ArgumentPartitioner.create(String[].class, null, PartitionedRouter.identity(), -1);
+		
+		Object[] partitioned = partitioner.partition(new String[] { "a", "b" }, PartitionMapping.modulo(3)); // "a".hashCode() = 97, "b".hashCode() = 98
+		
+		assertNull(partitioned[0]);
+		assertArrayEquals(new String[] { "a" }, (String[]) partitioned[1]);
+		assertArrayEquals(new String[] { "b" }, (String[]) partitioned[2]);
+	}
+	
+	@Test
+	public void parallelPartitioningKeepsOrderOfElementsRoutedToEachPartition() throws Exception {
+		List<Integer> elements = new ArrayList<>();
+		for (int i = -5_000; i < 5_000; i++) {
+			elements.add(i * 31);
+		}
+		ArgumentPartitioner sequential = ArgumentPartitioner.create(List.class, ARRAY_LIST, PartitionedRouter.identity(), -1);
+		ArgumentPartitioner parallel = ArgumentPartitioner.create(List.class, ARRAY_LIST, PartitionedRouter.identity(), 100);
+
+		assertEquals(Arrays.asList(sequential.partition(elements, PartitionMapping.modulo(4))), Arrays.asList(parallel.partition(elements, PartitionMapping.modulo(4))));
+	}
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.avanza.astrix.core.AstrixDeadline;
+import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse.Status;
+
+public class AstrixServiceInvocationEnvelopeTest {
+
+	@Test
+	public void requestRoundTrip() throws Exception {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setApiVersion(2);
+		request.setServiceApi("com.avanza.FooService");
+		request.setServiceMethodSignature("foo(java.lang.String)");
+		request.setHeader("traceId", "abc-123");
+		request.setArguments(new Object[] { "bar", 21 });
+
+		AstrixServiceInvocationRequest deserialized = roundTrip(request);
+
+		assertEquals(2, deserialized.getApiVersion());
+		assertEquals("com.avanza.FooService", deserialized.getServiceApi());
+		assertEquals("foo(java.lang.String)", deserialized.getServiceMethodSignature());
+		assertEquals("abc-123", deserialized.getHeader("traceId"));
+		assertArrayEquals(new Object[] { "bar", 21 }, deserialized.getArguments());
+	}
+
+	@Test
+	public void serializedArgumentsAndResponseBodyAreCarriedAsRawBytes() throws Exception {
+		byte[] json = "{\"foo\":\"bar\"}".getBytes("UTF-8");
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setArguments(new Object[] { json, null, "baz" });
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setResponseBody(json);
+
+		Object[] arguments = roundTrip(request).getArguments();
+
+		assertArrayEquals(json, (byte[]) arguments[0]);
+		assertNull(arguments[1]);
+		assertEquals("baz", arguments[2]);
+		assertArrayEquals(json, (byte[]) roundTrip(response).getResponseBody());
+	}
+
+	@Test
+	public void methodSignatureIsOmittedWhenMethodIdIsUsed() throws Exception {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setServiceApi("com.avanza.FooService");
+		request.setServiceMethodSignature("foo(java.lang.String)");
+		request.setServiceMethodId(3, 42L);
+
+		AstrixServiceInvocationRequest deserialized = roundTrip(request);
+
+		assertEquals(3, deserialized.getServiceMethodId());
+		assertEquals(42L, deserialized.getMethodTableChecksum());
+		assertNull(deserialized.getServiceMethodSignature());
+	}
+
+	@Test
+	public void serviceIdentifiersAreCanonicalizedOnDeserialization() throws Exception {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setServiceApi(new String("com.avanza.FooService"));
+		request.setServiceMethodSignature(new String("foo()"));
+
+		AstrixServiceInvocationRequest first = roundTrip(request);
+		AstrixServiceInvocationRequest second = roundTrip(request);
+
+		assertEquals("com.avanza.FooService", first.getServiceApi());
+		assertSame(first.getServiceApi(), second.getServiceApi());
+		assertSame(first.getServiceMethodSignature(), second.getServiceMethodSignature());
+	}
+
+	@Test
+	public void wellKnownHeadersAreMappedToTypedFields() throws Exception {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setHeader(AstrixServiceInvocationRequestHeaders.API_VERSION, "3");
+		request.setHeader(AstrixServiceInvocationRequestHeaders.SERVICE_API, "com.avanza.FooService");
+		request.setHeader(AstrixServiceInvocationRequestHeaders.TIMEOUT_MILLIS, "250");
+
+		assertEquals(3, request.getApiVersion());
+		assertEquals("com.avanza.FooService", request.getServiceApi());
+		assertEquals(250, request.getTimeoutMillis());
+		assertTrue(request.getExtensionHeaders().isEmpty());
+	}
+
+	@Test
+	public void deadlineIsCarriedInTypedField() throws Exception {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setDeadline(AstrixDeadline.after(1, TimeUnit.SECONDS));
+		request.setDeadline(AstrixDeadline.after(1, TimeUnit.MINUTES));
+
+		AstrixServiceInvocationRequest deserialized = roundTrip(request);
+
+		assertTrue(deserialized.getTimeoutMillis() > 0);
+		assertTrue("Shorter time budget is kept", deserialized.getTimeoutMillis() <= 1000);
+		assertTrue(deserialized.getExtensionHeaders().isEmpty());
+		assertEquals(AstrixServiceInvocationRequest.NO_TIMEOUT, roundTrip(new AstrixServiceInvocationRequest()).getTimeoutMillis());
+	}
+
+	@Test
+	public void noArgumentRequestRoundTrip() throws Exception {
+		AstrixServiceInvocationRequest deserialized = roundTrip(new AstrixServiceInvocationRequest());
+
+		assertNull(deserialized.getArguments());
+		assertNull(deserialized.getServiceApi());
+		assertTrue(deserialized.getExtensionHeaders().isEmpty());
+	}
+
+	@Test
+	public void successfulResponseRoundTrip() throws Exception {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setResponseBody("result");
+
+		AstrixServiceInvocationResponse deserialized = roundTrip(response);
+
+		assertEquals(Status.SUCCESS, deserialized.getStatus());
+		assertEquals("result", deserialized.getResponseBody());
+		assertFalse(deserialized.hasThrownException());
+		assertFalse(deserialized.isServiceUnavailable());
+	}
+
+	@Test
+	public void exceptionResponseRoundTrip() throws Exception {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setThrownExceptionType(IllegalArgumentException.class.getName());
+		response.setExceptionMsg("error-msg");
+		response.setCorrelationId("correlation-id");
+
+		AstrixServiceInvocationResponse deserialized = roundTrip(response);
+
+		assertEquals(Status.EXCEPTION, deserialized.getStatus());
+		assertTrue(deserialized.hasThrownException());
+		assertEquals(IllegalArgumentException.class.getName(), deserialized.getThrownExceptionType());
+		assertEquals("error-msg", deserialized.getExceptionMsg());
+		assertEquals("correlation-id", deserialized.getCorrelationId());
+	}
+
+	@Test
+	public void serviceUnavailableResponseRoundTrip() throws Exception {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setServiceUnavailable(true);
+		response.setExceptionMsg("not available");
+		response.setHeader("traceId", "abc-123");
+
+		AstrixServiceInvocationResponse deserialized = roundTrip(response);
+
+		assertTrue(deserialized.isServiceUnavailable());
+		assertEquals("true", deserialized.getHeader("service-unavailable"));
+		assertEquals("not available", deserialized.getExceptionMsg());
+		assertEquals("abc-123", deserialized.getHeader("traceId"));
+	}
+
+	@Test
+	public void methodTableMismatchResponseRoundTrip() throws Exception {
+		AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+		response.setMethodTableMismatch();
+		response.setExceptionMsg("mismatch");
+
+		AstrixServiceInvocationResponse deserialized = roundTrip(response);
+
+		assertTrue(deserialized.isMethodTableMismatch());
+		assertFalse(deserialized.isServiceUnavailable());
+		assertEquals("mismatch", deserialized.getExceptionMsg());
+	}
+
+	@Test(expected = InvalidObjectException.class)
+	public void unknownResponseStatusIsRejected() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeByte(EnvelopeSerialization.WIRE_FORMAT_VERSION);
+			out.writeByte(Status.values().length);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			new AstrixServiceInvocationResponse().readExternal(in);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T extends Serializable> T roundTrip(T object) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(object);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			return (T) in.readObject();
+		}
+	}
+
+}
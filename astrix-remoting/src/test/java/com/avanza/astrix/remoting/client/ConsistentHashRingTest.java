@@ -0,0 +1,91 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ConsistentHashRingTest {
+	
+	private final ConsistentHashRing<String> ring = new ConsistentHashRing<>();
+	
+	@Test
+	public void routesRoutingKeysForEachPartitionToMemberOfThatPartition() throws Exception {
+		ring.setMember("a", "member-a", 1);
+		ring.setMember("b", "member-b", 1);
+		ring.setMember("c", "member-c", 1);
+		
+		ConsistentHashRing.Mapping<String> partitionMapping = ring.partitionMapping();
+		assertEquals(3, partitionMapping.partitionCount());
+		for (int partition = 0; partition < 3; partition++) {
+			assertSame(partitionMapping.getMember(partition), ring.getMember(partitionMapping.routingKey(partition)));
+		}
+		for (int key = -1000; key < 1000; key++) {
+			assertSame(ring.getMember(RoutingKey.create(key)), partitionMapping.getMember(partitionMapping.partitionOf(key)));
+		}
+	}
+	
+	@Test
+	public void onlyRoutingKeysOwnedByLeavingMemberAreMoved() throws Exception {
+		ring.setMember("a", "member-a", 1);
+		ring.setMember("b", "member-b", 1);
+		ring.setMember("c", "member-c", 1);
+		Map<Integer, String> memberByKey = new HashMap<>();
+		for (int key = 0; key < 10_000; key++) {
+			memberByKey.put(key, ring.getMember(RoutingKey.create(key)));
+		}
+		
+		ring.removeMember("b");
+		
+		for (int key = 0; key < 10_000; key++) {
+			String member = ring.getMember(RoutingKey.create(key));
+			if (!"member-b".equals(memberByKey.get(key))) {
+				assertEquals(memberByKey.get(key), member);
+			}
+			assertTrue(!"member-b".equals(member));
+		}
+	}
+	
+	@Test
+	public void membersReceiveRoutingKeysInProportionToTheirWeight() throws Exception {
+		ring.setMember("a", "member-a", 1);
+		ring.setMember("b", "member-b", 3);
+		int routedToA = 0;
+		for (int key = 0; key < 100_000; key++) {
+			if ("member-a".equals(ring.getMember(RoutingKey.create(key)))) {
+				routedToA++;
+			}
+		}
+		assertEquals(0.25, routedToA / 100_000d, 0.05);
+	}
+	
+	@Test
+	public void emptyRingHasNoMembers() throws Exception {
+		ring.setMember("a", "member-a", 1);
+		ring.removeMember("a");
+		
+		assertNull(ring.getMember(RoutingKey.create(1)));
+		assertEquals(0, ring.partitionMapping().partitionCount());
+	}
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import com.avanza.astrix.core.AstrixCached;
+
+public class ResultCacheTest {
+	
+	private long currentTimeNanos = 0;
+	private final List<AstrixServiceInvocationRequest> sentRequests = new ArrayList<>();
+	private final ResultCacheMetrics metrics = ResultCacheMetrics.forServiceMethod(ResultCacheTest.class.getName(), "get(java.lang.String)");
+	
+	@Test
+	public void cachedResponseExpiresWhenTtlElapses() throws Exception {
+		ResultCache resultCache = createCache(ResultCacheSettings.DEFAULT);
+		long evictionsBefore = metrics.getEvictionCount();
+		AstrixServiceInvocationResponse response = submit(resultCache, "a").get();
+		
+		currentTimeNanos += TimeUnit.MILLISECONDS.toNanos(999);
+		assertSame(response, submit(resultCache, "a").get());
+		assertEquals(1, sentRequests.size());
+		
+		currentTimeNanos += TimeUnit.MILLISECONDS.toNanos(1);
+		submit(resultCache, "a").get();
+		assertEquals(2, sentRequests.size());
+		assertEquals(1, metrics.getEvictionCount() - evictionsBefore);
+	}
+	
+	@Test
+	public void sizeDoesNotCountExpiredResults() throws Exception {
+		ResultCache resultCache = createCache(ResultCacheSettings.DEFAULT);
+		submit(resultCache, "a").get();
+		currentTimeNanos += TimeUnit.MILLISECONDS.toNanos(500);
+		submit(resultCache, "b").get();
+		assertEquals(2, resultCache.size());
+		
+		currentTimeNanos += TimeUnit.MILLISECONDS.toNanos(500);
+		assertEquals(1, resultCache.size());
+	}
+	
+	@Test
+	public void settingsAreReadEachTimeTheyAreUsed() throws Exception {
+		final int[] maxEntries = new int[] { 1 };
+		final boolean[] enabled = new boolean[] { true };
+		ResultCache resultCache = createCache(new ResultCacheSettings() {
+			@Override
+			public int getMaxEntries(AstrixCached cached) {
+				return maxEntries[0];
+			}
+			@Override
+			public boolean isEnabled() {
+				return enabled[0];
+			}
+		});
+		submit(resultCache, "a").get();
+		submit(resultCache, "b").get();
+		assertEquals(1, resultCache.size());
+		
+		maxEntries[0] = 2;
+		submit(resultCache, "a").get();
+		submit(resultCache, "b").get();
+		assertEquals(2, resultCache.size());
+		assertEquals(3, sentRequests.size());
+		
+		enabled[0] = false;
+		submit(resultCache, "a").get();
+		assertEquals(4, sentRequests.size());
+	}
+	
+	@Test
+	public void responsesToInvocationsSentBeforeCacheWasInvalidatedAreNotCached() throws Exception {
+		ResultCache resultCache = createCache(ResultCacheSettings.DEFAULT);
+		final CompletableFuture<AstrixServiceInvocationResponse> pendingResponse = new CompletableFuture<>();
+		resultCache.submit(request("a"), new Supplier<CompletableFuture<AstrixServiceInvocationResponse>>() {
+			@Override
+			public CompletableFuture<AstrixServiceInvocationResponse> get() {
+				return pendingResponse;
+			}
+		});
+		resultCache.invalidateAll();
+		pendingResponse.complete(new AstrixServiceInvocationResponse());
+		assertEquals(0, resultCache.size());
+	}
+	
+	private ResultCache createCache(ResultCacheSettings settings) throws Exception {
+		AstrixCached cached = CachedService.class.getMethod("get", String.class).getAnnotation(AstrixCached.class);
+		return new ResultCache(cached, settings, metrics, new LongSupplier() {
+			@Override
+			public long getAsLong() {
+				return currentTimeNanos;
+			}
+		});
+	}
+	
+	private CompletableFuture<AstrixServiceInvocationResponse> submit(ResultCache resultCache, String argument) {
+		final AstrixServiceInvocationRequest request = request(argument);
+		return resultCache.submit(request, new Supplier<CompletableFuture<AstrixServiceInvocationResponse>>() {
+			@Override
+			public CompletableFuture<AstrixServiceInvocationResponse> get() {
+				sentRequests.add(request);
+				AstrixServiceInvocationResponse response = new AstrixServiceInvocationResponse();
+				response.setResponseBody("value-" + request.getArguments()[0]);
+				return CompletableFuture.completedFuture(response);
+			}
+		});
+	}
+
+	private static AstrixServiceInvocationRequest request(String argument) {
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setArguments(new Object[] { argument });
+		return request;
+	}
+	
+	public interface CachedService {
+		@AstrixCached(ttlMillis = 1000)
+		String get(String key);
+	}
+
+}
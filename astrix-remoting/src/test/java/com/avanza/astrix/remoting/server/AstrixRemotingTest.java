@@ -17,51 +17,87 @@ package com.avanza.astrix.remoting.server;
 
 import static org.hamcrest.CoreMatchers.startsWith;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasItem;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.Test;
 import org.mockito.Mockito;
 
 import rx.Observable;
 import rx.Subscriber;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
 
+import com.avanza.astrix.context.AstrixApplicationContext;
 import com.avanza.astrix.context.JavaSerializationSerializer;
+import com.avanza.astrix.context.TestAstrixConfigurer;
+import com.avanza.astrix.core.AstrixBatched;
 import com.avanza.astrix.core.AstrixBroadcast;
+import com.avanza.astrix.core.AstrixCached;
+import com.avanza.astrix.core.AstrixCollapsed;
+import com.avanza.astrix.core.AstrixDeadline;
 import com.avanza.astrix.core.AstrixObjectSerializer;
 import com.avanza.astrix.core.AstrixPartitionedRouting;
 import com.avanza.astrix.core.AstrixRemoteResult;
+import com.avanza.astrix.core.AstrixStreamed;
+import com.avanza.astrix.core.IncrementalRemoteResultReducer;
 import com.avanza.astrix.core.RemoteResultReducer;
 import com.avanza.astrix.core.RemoteServiceInvocationException;
 import com.avanza.astrix.core.ServiceInvocationException;
 import com.avanza.astrix.core.ServiceUnavailableException;
+import com.avanza.astrix.core.util.NamedThreadFactory;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.AstrixServiceInvocationResponse;
 import com.avanza.astrix.remoting.client.DefaultAstrixRoutingStrategy;
 import com.avanza.astrix.remoting.client.IncompatibleRemoteResultReducerException;
 import com.avanza.astrix.remoting.client.RemotingProxy;
+import com.avanza.astrix.remoting.client.RemotingProxyOptions;
+import com.avanza.astrix.remoting.client.ResultCacheRegistry;
+import com.avanza.astrix.remoting.client.ResultCacheMetrics;
 import com.avanza.astrix.remoting.client.RemotingTransport;
 import com.avanza.astrix.remoting.client.RemotingTransportSpi;
+import com.avanza.astrix.remoting.client.RequestBatchScheduler;
+import com.avanza.astrix.remoting.client.RequestCollapsingMetrics;
 import com.avanza.astrix.remoting.client.RoutedServiceInvocationRequest;
 import com.avanza.astrix.remoting.client.Router;
 import com.avanza.astrix.remoting.client.RoutingKey;
 import com.avanza.astrix.remoting.client.RoutingStrategy;
+import com.avanza.astrix.remoting.util.ServiceMethodTable;
 
 /**
  * 
@@ -71,7 +107,7 @@ import com.avanza.astrix.remoting.client.RoutingStrategy;
 public class AstrixRemotingTest {
 
 	AstrixObjectSerializer objectSerializer = new JavaSerializationSerializer(1);
-	AstrixServiceActivator partition1 = new AstrixServiceActivator();
+	AstrixServiceActivator partition1 = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
 	
 	private static class NoRoutingStrategy implements RoutingStrategy {
 		@Override
@@ -216,7 +252,7 @@ public class AstrixRemotingTest {
 
 	@Test
 	public void broadcastRequest() throws Exception {
-		AstrixServiceActivator partition2 = new AstrixServiceActivator();
+		AstrixServiceActivator partition2 = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
 		PingService impl = new PingService() {
 			@Override
 			public List<String> ping(String msg) {
@@ -235,8 +271,8 @@ public class AstrixRemotingTest {
 	
 	@Test
 	public void partitionedRequest() throws Exception {
-		AstrixServiceActivator evenPartition = new AstrixServiceActivator();
-		AstrixServiceActivator oddPartition = new AstrixServiceActivator();
+		AstrixServiceActivator evenPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		AstrixServiceActivator oddPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
 		CalculatorListService eventPartitionCalculator = new CalculatorListService() {
 			@Override
 			public Integer squareSum(Collection<Integer> nums) {
@@ -272,10 +308,137 @@ public class AstrixRemotingTest {
 		assertEquals(1 + 4 + 9 + 16 + 25, squareSum);
 	}
 	
+	@Test
+	public void streamedPartitionedRequest_emitsResultFromEachPartitionAsSoonAsItArrives() throws Exception {
+		AstrixServiceActivator evenPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		AstrixServiceActivator oddPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		evenPartition.register(new StreamedPingServiceImpl(), objectSerializer, StreamedPingService.class);
+		oddPartition.register(new StreamedPingServiceImpl(), objectSerializer, StreamedPingService.class);
+		final PublishSubject<AstrixServiceInvocationResponse> responses = PublishSubject.create();
+		final List<RoutedServiceInvocationRequest> sentRequests = new ArrayList<>();
+		PartitionedDirectTransport transport = new PartitionedDirectTransport(Arrays.asList(evenPartition, oddPartition)) {
+			@Override
+			public Observable<AstrixServiceInvocationResponse> streamRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
+				sentRequests.addAll(requests);
+				return responses;
+			}
+		};
+		ObservableStreamedPingService pingService = RemotingProxy.create(ObservableStreamedPingService.class, StreamedPingService.class, RemotingTransport.create(transport), objectSerializer, new NoRoutingStrategy());
+		
+		TestSubscriber<List<Integer>> subscriber = new TestSubscriber<>();
+		pingService.ping(Arrays.asList(1, 2, 3)).subscribe(subscriber);
+		assertEquals(2, sentRequests.size());
+		
+		responses.onNext(evenPartition.invokeService(sentRequests.get(0).getRequest()));
+		subscriber.assertReceivedOnNext(Arrays.asList(Arrays.asList(2)));
+		
+		responses.onNext(oddPartition.invokeService(sentRequests.get(1).getRequest()));
+		responses.onCompleted();
+		subscriber.assertReceivedOnNext(Arrays.asList(Arrays.asList(2), Arrays.asList(1, 3)));
+		subscriber.assertTerminalEvent();
+		subscriber.assertNoErrors();
+	}
+	
+	@Test
+	public void partitionedRequest_incrementalReducerAccumulatesResponseFromEachPartition() throws Exception {
+		AstrixServiceActivator evenPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		AstrixServiceActivator oddPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		evenPartition.register(new StreamedPingServiceImpl(), objectSerializer, StreamedPingService.class);
+		oddPartition.register(new StreamedPingServiceImpl(), objectSerializer, StreamedPingService.class);
+		
+		StreamedPingService pingService = RemotingProxy.create(StreamedPingService.class, StreamedPingService.class, directTransport(evenPartition, oddPartition), objectSerializer, new NoRoutingStrategy());
+		assertEquals(Integer.valueOf(1 + 2 + 3 + 4), pingService.sum(Arrays.asList(1, 2, 3, 4)));
+		assertThat(pingService.ping(Arrays.asList(1, 2, 3)), containsInAnyOrder(1, 2, 3));
+	}
+	
+	@Test
+	public void partitionedRequest_incrementalReducerReceivesAllResponsesInSingleBatchIdentifiedByMethodId() throws Exception {
+		AstrixServiceActivator evenPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		AstrixServiceActivator oddPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		evenPartition.register(new IncrementalSumServiceImpl(), objectSerializer, IncrementalSumService.class);
+		oddPartition.register(new IncrementalSumServiceImpl(), objectSerializer, IncrementalSumService.class);
+		final List<RoutedServiceInvocationRequest> sentRequests = new ArrayList<>();
+		PartitionedDirectTransport transport = new PartitionedDirectTransport(Arrays.asList(evenPartition, oddPartition)) {
+			@Override
+			public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
+				sentRequests.addAll(requests);
+				return super.submitRoutedRequests(requests);
+			}
+			@Override
+			public Observable<AstrixServiceInvocationResponse> streamRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
+				throw new AssertionError("Only streamed methods should receive responses one at a time");
+			}
+		};
+		String serverChecksum = Long.toString(ServiceMethodTable.create(IncrementalSumService.class).getChecksum());
+		IncrementalSumService sumService = RemotingProxy.create(IncrementalSumService.class, IncrementalSumService.class, RemotingTransport.create(transport), objectSerializer, new NoRoutingStrategy(), RemotingProxyOptions.create().serverMethodTableChecksum(serverChecksum));
+		
+		assertEquals(Integer.valueOf(1 + 2 + 3 + 4), sumService.sum(Arrays.asList(1, 2, 3, 4)));
+		assertEquals(2, sentRequests.size());
+		assertTrue(sentRequests.get(0).getRequest().hasServiceMethodId());
+		assertTrue(sentRequests.get(1).getRequest().hasServiceMethodId());
+	}
+	
+	@Test
+	public void partitionedRequest_createsNewReducerForEachSubscription() throws Exception {
+		AstrixServiceActivator evenPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		AstrixServiceActivator oddPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		evenPartition.register(new IncrementalSumServiceImpl(), objectSerializer, IncrementalSumService.class);
+		oddPartition.register(new IncrementalSumServiceImpl(), objectSerializer, IncrementalSumService.class);
+		ObservableIncrementalSumService sumService = RemotingProxy.create(ObservableIncrementalSumService.class, IncrementalSumService.class, directTransport(evenPartition, oddPartition), objectSerializer, new NoRoutingStrategy());
+		
+		Observable<Integer> sum = sumService.sum(Arrays.asList(1, 2, 3, 4));
+		assertEquals(Integer.valueOf(1 + 2 + 3 + 4), sum.toBlocking().first());
+		assertEquals(Integer.valueOf(1 + 2 + 3 + 4), sum.toBlocking().first());
+	}
+	
+	@Test
+	public void partitionedRequest_marshallsPayloadForEachPartitionUsingMarshallingExecutor() throws Exception {
+		AstrixServiceActivator evenPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		AstrixServiceActivator oddPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		evenPartition.register(new PartitionedPingServiceImpl(), objectSerializer, PartitionedPingService.class);
+		oddPartition.register(new PartitionedPingServiceImpl(), objectSerializer, PartitionedPingService.class);
+		evenPartition.register(new StreamedPingServiceImpl(), objectSerializer, StreamedPingService.class);
+		oddPartition.register(new StreamedPingServiceImpl(), objectSerializer, StreamedPingService.class);
+		
+		final Set<String> marshallingThreads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		AstrixObjectSerializer recordingSerializer = new AstrixObjectSerializer() {
+			@Override
+			public Object serialize(Object element, int version) {
+				marshallingThreads.add(Thread.currentThread().getName());
+				return objectSerializer.serialize(element, version);
+			}
+			@Override
+			public <T> T deserialize(Object element, Type type, int version) {
+				marshallingThreads.add(Thread.currentThread().getName());
+				return objectSerializer.deserialize(element, type, version);
+			}
+			@Override
+			public int version() {
+				return objectSerializer.version();
+			}
+		};
+		ExecutorService marshallingExecutor = Executors.newFixedThreadPool(2, new NamedThreadFactory("marshalling"));
+		try {
+			PartitionedPingService partitionedPing = RemotingProxy.create(PartitionedPingService.class, PartitionedPingService.class, directTransport(evenPartition, oddPartition), 
+																		  recordingSerializer, new NoRoutingStrategy(), RemotingProxyOptions.create().marshallingExecutor(marshallingExecutor));
+			assertThat(partitionedPing.ping(new int[]{1, 2, 3, 4}), containsInAnyOrder(1, 2, 3, 4));
+			assertThat(marshallingThreads, hasItem(startsWith("marshalling")));
+			assertThat(marshallingThreads, hasItem(Thread.currentThread().getName()));
+			
+			marshallingThreads.clear();
+			StreamedPingService streamedPing = RemotingProxy.create(StreamedPingService.class, StreamedPingService.class, directTransport(evenPartition, oddPartition), 
+																	recordingSerializer, new NoRoutingStrategy(), RemotingProxyOptions.create().marshallingExecutor(marshallingExecutor));
+			assertEquals(Integer.valueOf(1 + 2 + 3 + 4), streamedPing.sum(Arrays.asList(1, 2, 3, 4)));
+			assertThat(marshallingThreads, hasItem(startsWith("marshalling")));
+		} finally {
+			marshallingExecutor.shutdown();
+		}
+	}
+	
 	@Test
 	public void partitionedRequest_GenericArrayArgument() throws Exception {
-		AstrixServiceActivator evenPartition = new AstrixServiceActivator();
-		AstrixServiceActivator oddPartition = new AstrixServiceActivator();
+		AstrixServiceActivator evenPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		AstrixServiceActivator oddPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
 		PartitionedPingService eventPartitionPing = new PartitionedPingServiceImpl();
 		PartitionedPingService oddPartitionPing = new PartitionedPingServiceImpl();
 		
@@ -293,8 +456,8 @@ public class AstrixRemotingTest {
 	
 	@Test
 	public void partitionedRequest_voidReturnType() throws Exception {
-		AstrixServiceActivator evenPartition = new AstrixServiceActivator();
-		AstrixServiceActivator oddPartition = new AstrixServiceActivator();
+		AstrixServiceActivator evenPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		AstrixServiceActivator oddPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
 		PartitionedPingService eventPartitionPing = new PartitionedPingServiceImpl();
 		PartitionedPingService oddPartitionPing = new PartitionedPingServiceImpl();
 		
@@ -307,8 +470,8 @@ public class AstrixRemotingTest {
 	
 	@Test
 	public void partitionedRequest_emptyArgument() throws Exception {
-		AstrixServiceActivator evenPartition = new AstrixServiceActivator();
-		AstrixServiceActivator oddPartition = new AstrixServiceActivator();
+		AstrixServiceActivator evenPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		AstrixServiceActivator oddPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
 		PartitionedPingService evenPartitionPing = Mockito.mock(PartitionedPingService.class);
 		PartitionedPingService oddPartitionPing = Mockito.mock(PartitionedPingService.class);
 		
@@ -323,8 +486,8 @@ public class AstrixRemotingTest {
 	
 	@Test(expected = RemoteServiceInvocationException.class)
 	public void partitoinedRoutingRequest_NonServiceInovcationExcpetion_WrappedInRemoteServiceInvocation() throws Exception {
-		AstrixServiceActivator evenPartition = new AstrixServiceActivator();
-		AstrixServiceActivator oddPartition = new AstrixServiceActivator();
+		AstrixServiceActivator evenPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		AstrixServiceActivator oddPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
 		PartitionedPingService evenPartitionPing = new PartitionedPingServiceImpl() {
 			@Override
 			public List<String> ping(String... nums) {
@@ -343,8 +506,8 @@ public class AstrixRemotingTest {
 	
 	@Test
 	public void partitionedRequest_routingOnPropertyOnTargetObject() throws Exception {
-		AstrixServiceActivator evenPartition = new AstrixServiceActivator();
-		AstrixServiceActivator oddPartition = new AstrixServiceActivator();
+		AstrixServiceActivator evenPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		AstrixServiceActivator oddPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
 		CalculatorArrayPojoService eventPartitionCalculator = new CalculatorArrayPojoService() {
 			@Override
 			public Integer squareSum(NumPojo... nums) {
@@ -386,8 +549,8 @@ public class AstrixRemotingTest {
 	
 	@Test
 	public void partitionedRequest_routingOnPropertyOnTargetObject_CollectionArgument() throws Exception {
-		AstrixServiceActivator evenPartition = new AstrixServiceActivator();
-		AstrixServiceActivator oddPartition = new AstrixServiceActivator();
+		AstrixServiceActivator evenPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		AstrixServiceActivator oddPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
 		CalculatorListPojoService eventPartitionCalculator = new CalculatorListPojoServiceImpl();
 		CalculatorListPojoService oddPartitionCalculator = new CalculatorListPojoServiceImpl();
 		
@@ -401,14 +564,14 @@ public class AstrixRemotingTest {
 	
 	@Test(expected = IllegalArgumentException.class)
 	public void partitionedRequest_routingOnProperty_throwsExceptionForRawTypes() throws Exception {
-		AstrixServiceActivator evenPartition = new AstrixServiceActivator();
+		AstrixServiceActivator evenPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
 		RemotingProxy.create(ServiceWithRawListRoutingArgument.class, ServiceWithRawListRoutingArgument.class, 
 				directTransport(evenPartition), objectSerializer, new DefaultAstrixRoutingStrategy());
 	}
 	
 	@Test(expected = IllegalArgumentException.class)
 	public void partitionedRequest_routingOnProperty_throwsExceptionForMissingMethods() throws Exception {
-		AstrixServiceActivator evenPartition = new AstrixServiceActivator();
+		AstrixServiceActivator evenPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
 		RemotingProxy.create(ServiceWithListMissingRoutingPropertyMethod.class, ServiceWithListMissingRoutingPropertyMethod.class,
 				directTransport(evenPartition), objectSerializer, new DefaultAstrixRoutingStrategy());
 	}
@@ -423,21 +586,21 @@ public class AstrixRemotingTest {
 	
 	@Test(expected = IllegalArgumentException.class)
 	public void partitionedService_IncompatibleCollectionType_throwsException() throws Exception {
-		AstrixServiceActivator evenPartition = new AstrixServiceActivator();
+		AstrixServiceActivator evenPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
 		RemotingProxy.create(InvalidCollectionTypePartitionedService.class, InvalidCollectionTypePartitionedService.class, 
 				directTransport(evenPartition), objectSerializer, new NoRoutingStrategy());
 	}
 	
 	@Test(expected = IncompatibleRemoteResultReducerException.class)
 	public void partitionedService_IncompatibleReducer_throwsException() throws Exception {
-		AstrixServiceActivator evenPartition = new AstrixServiceActivator();
+		AstrixServiceActivator evenPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
 		RemotingProxy.create(InvalidReducerPartitionedService.class, InvalidReducerPartitionedService.class,
 				directTransport(evenPartition), objectSerializer, new NoRoutingStrategy());
 	}
 	
 	@Test
 	public void partitionedService_NonListCollection() throws Exception {
-		AstrixServiceActivator evenPartition = new AstrixServiceActivator();
+		AstrixServiceActivator evenPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
 		PartitionedServiceUsingSet sevenPartitionService = new PartitionedServiceUsingSet() {
 			@Override
 			public Set<Integer> ping(Set<Integer> nums) {
@@ -510,6 +673,615 @@ public class AstrixRemotingTest {
 		assertEquals(provider.broadcast(new BroadcastRequest("kalle")), broadcastService.broadcast(new BroadcastRequest("kalle")));
 	}
 	
+	@Test
+	public void identifiesServiceMethodsByMethodIdWhenMethodTableChecksumMatches() throws Exception {
+		TestService impl = new TestService() {
+			@Override
+			public HelloResponse hello(HelloRequest message) {
+				return new HelloResponse("reply-" + message.getMesssage());
+			}
+			@Override
+			public String hello(HelloRequest message, String greeting) {
+				return greeting + message.getMesssage();
+			}
+		};
+		partition1.register(impl, objectSerializer, TestService.class);
+		SerializingTransport transport = new SerializingTransport(new PartitionedDirectTransport(Arrays.asList(partition1)));
+		String serverChecksum = Long.toString(ServiceMethodTable.create(TestService.class).getChecksum());
+		
+		TestService testService = RemotingProxy.create(TestService.class, TestService.class, RemotingTransport.create(transport), objectSerializer, new NoRoutingStrategy(), RemotingProxyOptions.create().serverMethodTableChecksum(serverChecksum));
+
+		assertEquals("reply-kalle", testService.hello(new HelloRequest("kalle")).getGreeting());
+		assertEquals("replyTo-kalle", testService.hello(new HelloRequest("kalle"), "replyTo-"));
+		assertTrue(transport.lastRequest.hasServiceMethodId());
+		assertNull(transport.lastRequest.getServiceMethodSignature());
+	}
+	
+	@Test
+	public void identifiesServiceMethodsBySignatureWhenMethodTableChecksumIsUnknown() throws Exception {
+		TestService impl = new TestService() {
+			@Override
+			public HelloResponse hello(HelloRequest message) {
+				return new HelloResponse("reply-" + message.getMesssage());
+			}
+			@Override
+			public String hello(HelloRequest message, String greeting) {
+				return greeting + message.getMesssage();
+			}
+		};
+		partition1.register(impl, objectSerializer, TestService.class);
+		SerializingTransport transport = new SerializingTransport(new PartitionedDirectTransport(Arrays.asList(partition1)));
+		
+		TestService testService = RemotingProxy.create(TestService.class, TestService.class, RemotingTransport.create(transport), objectSerializer, new NoRoutingStrategy(), RemotingProxyOptions.create().serverMethodTableChecksum("-1"));
+
+		assertEquals("reply-kalle", testService.hello(new HelloRequest("kalle")).getGreeting());
+		assertFalse(transport.lastRequest.hasServiceMethodId());
+		assertEquals("hello(com.avanza.astrix.remoting.server.AstrixRemotingTest$HelloRequest)", transport.lastRequest.getServiceMethodSignature());
+	}
+	
+	@Test
+	public void serviceActivatorRespondsWithMethodTableMismatchForUnknownMethodTable() throws Exception {
+		partition1.register(Mockito.mock(TestService.class), objectSerializer, TestService.class);
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setApiVersion(objectSerializer.version());
+		request.setServiceApi(TestService.class.getName());
+		request.setServiceMethodId(0, ServiceMethodTable.create(TestService.class).getChecksum() + 1);
+		request.setArguments(new Object[] { objectSerializer.serialize(new HelloRequest("kalle"), objectSerializer.version()) });
+		
+		AstrixServiceInvocationResponse response = partition1.invokeService(request);
+		
+		assertTrue(response.isMethodTableMismatch());
+	}
+	
+	@Test
+	public void resendsRequestUsingMethodSignatureWhenServerReportsMethodTableMismatch() throws Exception {
+		TestService impl = new TestService() {
+			@Override
+			public HelloResponse hello(HelloRequest message) {
+				return new HelloResponse("reply-" + message.getMesssage());
+			}
+			@Override
+			public String hello(HelloRequest message, String greeting) {
+				return greeting + message.getMesssage();
+			}
+		};
+		partition1.register(impl, objectSerializer, TestService.class);
+		final PartitionedDirectTransport directTransport = new PartitionedDirectTransport(Arrays.asList(partition1));
+		SerializingTransport transport = new SerializingTransport(directTransport) {
+			@Override
+			public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+				if (request.hasServiceMethodId()) {
+					// Simulate server using another version of the api
+					AstrixServiceInvocationResponse mismatch = new AstrixServiceInvocationResponse();
+					mismatch.setMethodTableMismatch();
+					return Observable.just(mismatch);
+				}
+				return super.submitRoutedRequest(request, routingKey);
+			}
+		};
+		String serverChecksum = Long.toString(ServiceMethodTable.create(TestService.class).getChecksum());
+		
+		TestService testService = RemotingProxy.create(TestService.class, TestService.class, RemotingTransport.create(transport), objectSerializer, new NoRoutingStrategy(), RemotingProxyOptions.create().serverMethodTableChecksum(serverChecksum));
+		
+		assertEquals("reply-kalle", testService.hello(new HelloRequest("kalle")).getGreeting());
+		assertEquals("reply-kalle", testService.hello(new HelloRequest("kalle")).getGreeting());
+		assertFalse(transport.lastRequest.hasServiceMethodId());
+	}
+	
+	@Test
+	public void synchronousInvocationsWaitForResponseUsingInvokeRoutedRequest() throws Exception {
+		TestService impl = new TestService() {
+			@Override
+			public HelloResponse hello(HelloRequest message) {
+				return new HelloResponse("reply-" + message.getMesssage());
+			}
+			@Override
+			public String hello(HelloRequest message, String greeting) {
+				return greeting + message.getMesssage();
+			}
+		};
+		partition1.register(impl, objectSerializer, TestService.class);
+		final AtomicInteger invokeRoutedRequestCount = new AtomicInteger();
+		SerializingTransport transport = new SerializingTransport(new PartitionedDirectTransport(Arrays.asList(partition1))) {
+			@Override
+			public AstrixServiceInvocationResponse invokeRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+				invokeRoutedRequestCount.incrementAndGet();
+				return super.invokeRoutedRequest(request, routingKey);
+			}
+		};
+		TestService testService = RemotingProxy.create(TestService.class, TestService.class, RemotingTransport.create(transport), objectSerializer, new NoRoutingStrategy());
+		
+		assertEquals("reply-kalle", testService.hello(new HelloRequest("kalle")).getGreeting());
+		assertEquals(1, invokeRoutedRequestCount.get());
+		
+		ObservableTestService observableTestService = RemotingProxy.create(ObservableTestService.class, TestService.class, RemotingTransport.create(transport), objectSerializer, new NoRoutingStrategy());
+		assertEquals("reply-kalle", observableTestService.hello(new HelloRequest("kalle")).toBlocking().first().getGreeting());
+		assertEquals(1, invokeRoutedRequestCount.get());
+	}
+	
+	@Test
+	public void supportsCompletableFutureAndCompletionStageReturnTypes() throws Exception {
+		TestService impl = new TestService() {
+			@Override
+			public HelloResponse hello(HelloRequest message) {
+				return new HelloResponse("reply-" + message.getMesssage());
+			}
+			@Override
+			public String hello(HelloRequest message, String greeting) {
+				if (greeting == null) {
+					throw new IllegalArgumentException("greeting");
+				}
+				return greeting + message.getMesssage();
+			}
+		};
+		partition1.register(impl, objectSerializer, TestService.class);
+		CompletableTestService testService = RemotingProxy.create(CompletableTestService.class, TestService.class, directTransport(partition1), objectSerializer, new NoRoutingStrategy());
+		
+		assertEquals("reply-kalle", testService.hello(new HelloRequest("kalle")).get().getGreeting());
+		assertEquals("hi-kalle", testService.hello(new HelloRequest("kalle"), "hi-").toCompletableFuture().get());
+		try {
+			testService.hello(new HelloRequest("kalle"), null).toCompletableFuture().get();
+			fail("Expected service exception to be propagated through future");
+		} catch (ExecutionException e) {
+			assertEquals(RemoteServiceInvocationException.class, e.getCause().getClass());
+		}
+	}
+	
+	@Test
+	public void cancellingReturnedFutureCancelsUnderlyingRequest() throws Exception {
+		final CompletableFuture<AstrixServiceInvocationResponse> pendingResponse = new CompletableFuture<>();
+		SerializingTransport transport = new SerializingTransport(new PartitionedDirectTransport(Arrays.asList(partition1))) {
+			@Override
+			public CompletableFuture<AstrixServiceInvocationResponse> invokeRoutedRequestAsync(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+				return pendingResponse;
+			}
+		};
+		CompletableTestService testService = RemotingProxy.create(CompletableTestService.class, TestService.class, RemotingTransport.create(transport), objectSerializer, new NoRoutingStrategy());
+		
+		CompletableFuture<HelloResponse> response = testService.hello(new HelloRequest("kalle"));
+		assertFalse(response.isDone());
+		assertTrue(response.cancel(true));
+		assertTrue(pendingResponse.isCancelled());
+	}
+	
+	@Test
+	public void asynchronousServiceImplementationCompletesInvocationWhenReturnedFutureCompletes() throws Exception {
+		final CompletableFuture<HelloResponse> pendingHello = new CompletableFuture<>();
+		CompletableTestService impl = new CompletableTestService() {
+			@Override
+			public CompletableFuture<HelloResponse> hello(HelloRequest message) {
+				return pendingHello;
+			}
+			@Override
+			public CompletionStage<String> hello(HelloRequest message, String greeting) {
+				CompletableFuture<String> result = new CompletableFuture<>();
+				result.completeExceptionally(new IllegalArgumentException("greeting"));
+				return result;
+			}
+		};
+		partition1.register(impl, objectSerializer, TestService.class);
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setApiVersion(objectSerializer.version());
+		request.setServiceApi(TestService.class.getName());
+		request.setServiceMethodSignature("hello(com.avanza.astrix.remoting.server.AstrixRemotingTest$HelloRequest)");
+		request.setArguments(new Object[] { objectSerializer.serialize(new HelloRequest("kalle"), objectSerializer.version()) });
+		
+		CompletableFuture<AstrixServiceInvocationResponse> response = partition1.invokeServiceAsync(request);
+		assertFalse(response.isDone());
+		
+		pendingHello.complete(new HelloResponse("reply-kalle"));
+		assertTrue(response.isDone());
+		HelloResponse reply = objectSerializer.deserialize(response.get().getResponseBody(), HelloResponse.class, objectSerializer.version());
+		assertEquals("reply-kalle", reply.getGreeting());
+		
+		TestService testService = RemotingProxy.create(TestService.class, TestService.class, directTransport(partition1), objectSerializer, new NoRoutingStrategy());
+		assertEquals("reply-kalle", testService.hello(new HelloRequest("kalle")).getGreeting());
+		try {
+			testService.hello(new HelloRequest("kalle"), "hi-");
+			fail("Expected exception completing returned CompletionStage to be propagated");
+		} catch (RemoteServiceInvocationException e) {
+			assertThat(e.getMessage(), startsWith("Remote service threw exception, see server log for details. [java.lang.IllegalArgumentException: greeting]"));
+		}
+	}
+	
+	@Test
+	public void supportsServiceImplementationsReturningObservable() throws Exception {
+		ObservableTestService impl = new ObservableTestService() {
+			@Override
+			public Observable<HelloResponse> hello(HelloRequest message) {
+				return Observable.just(new HelloResponse("reply-" + message.getMesssage()));
+			}
+			@SuppressWarnings("unused")
+			public String hello(HelloRequest message, String greeting) {
+				return greeting + message.getMesssage();
+			}
+		};
+		partition1.register(impl, objectSerializer, TestService.class);
+		TestService testService = RemotingProxy.create(TestService.class, TestService.class, directTransport(partition1), objectSerializer, new NoRoutingStrategy());
+		
+		assertEquals("reply-kalle", testService.hello(new HelloRequest("kalle")).getGreeting());
+		assertEquals("hi-kalle", testService.hello(new HelloRequest("kalle"), "hi-"));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void registeringProviderMissingImplementationOfServiceMethodThrowsException() throws Exception {
+		ObservableTestService impl = new ObservableTestService() {
+			@Override
+			public Observable<HelloResponse> hello(HelloRequest message) {
+				return Observable.just(new HelloResponse("reply-" + message.getMesssage()));
+			}
+		};
+		partition1.register(impl, objectSerializer, TestService.class);
+	}
+	
+	@Test
+	public void rejectsInvocationsExceedingConcurrencyLimitOfServiceMethod() throws Exception {
+		final String helloSignature = "hello(com.avanza.astrix.remoting.server.AstrixRemotingTest$HelloRequest)";
+		AstrixServiceActivator partition = new AstrixServiceActivator(new AdmissionControlSettings() {
+			@Override
+			public int getMaxConcurrency(String serviceApi, String methodSignature) {
+				return helloSignature.equals(methodSignature) ? 1 : -1;
+			}
+		});
+		final CompletableFuture<HelloResponse> pendingHello = new CompletableFuture<>();
+		CompletableTestService impl = new CompletableTestService() {
+			@Override
+			public CompletableFuture<HelloResponse> hello(HelloRequest message) {
+				return pendingHello;
+			}
+			@Override
+			public CompletionStage<String> hello(HelloRequest message, String greeting) {
+				return CompletableFuture.completedFuture(greeting + message.getMesssage());
+			}
+		};
+		partition.register(impl, objectSerializer, TestService.class);
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setApiVersion(objectSerializer.version());
+		request.setServiceApi(TestService.class.getName());
+		request.setServiceMethodSignature(helloSignature);
+		request.setArguments(new Object[] { objectSerializer.serialize(new HelloRequest("kalle"), objectSerializer.version()) });
+		
+		CompletableFuture<AstrixServiceInvocationResponse> inFlight = partition.invokeServiceAsync(request);
+		AstrixServiceInvocationResponse rejected = partition.invokeService(request);
+		assertTrue(rejected.isServiceUnavailable());
+		TestService testService = RemotingProxy.create(TestService.class, TestService.class, directTransport(partition), objectSerializer, new NoRoutingStrategy());
+		assertEquals("hi-kalle", testService.hello(new HelloRequest("kalle"), "hi-"));
+		
+		ServiceInvocationMetrics metrics = partition.getMetrics(TestService.class.getName(), helloSignature);
+		assertEquals(1, metrics.getInFlight());
+		assertEquals(1, metrics.getInvocationCount());
+		assertEquals(1, metrics.getRejectedCount());
+		assertEquals(1, metrics.getConcurrencyLimit());
+		
+		pendingHello.complete(new HelloResponse("reply-kalle"));
+		assertFalse(inFlight.get().isServiceUnavailable());
+		assertEquals(0, metrics.getInFlight());
+		assertEquals("reply-kalle", testService.hello(new HelloRequest("kalle")).getGreeting());
+	}
+	
+	@Test
+	public void serviceActivatorCreatedByAstrixUsesAdmissionControlSettingsStrategy() throws Exception {
+		final String helloSignature = "hello(com.avanza.astrix.remoting.server.AstrixRemotingTest$HelloRequest)";
+		TestAstrixConfigurer astrixConfigurer = new TestAstrixConfigurer();
+		astrixConfigurer.registerStrategy(AdmissionControlSettings.class, new AdmissionControlSettings() {
+			@Override
+			public int getMaxConcurrency(String serviceApi, String methodSignature) {
+				return helloSignature.equals(methodSignature) ? 1 : -1;
+			}
+		});
+		try (AstrixApplicationContext astrixContext = (AstrixApplicationContext) astrixConfigurer.configure()) {
+			AstrixServiceActivator partition = astrixContext.getInstance(AstrixServiceActivator.class);
+			partition.register(new TestService() {
+				@Override
+				public HelloResponse hello(HelloRequest message) {
+					return new HelloResponse("reply-" + message.getMesssage());
+				}
+				@Override
+				public String hello(HelloRequest message, String greeting) {
+					return greeting + message.getMesssage();
+				}
+			}, objectSerializer, TestService.class);
+			
+			assertEquals(1, partition.getMetrics(TestService.class.getName(), helloSignature).getConcurrencyLimit());
+			TestService testService = RemotingProxy.create(TestService.class, TestService.class, directTransport(partition), objectSerializer, new NoRoutingStrategy());
+			assertEquals("reply-kalle", testService.hello(new HelloRequest("kalle")).getGreeting());
+		}
+	}
+	
+	@Test
+	public void releasesPermitWhenExceptionThrownByServiceCantBeSerialized() throws Exception {
+		final String helloSignature = "hello(com.avanza.astrix.remoting.server.AstrixRemotingTest$HelloRequest)";
+		AstrixServiceActivator partition = new AstrixServiceActivator(new AdmissionControlSettings() {
+			@Override
+			public int getMaxConcurrency(String serviceApi, String methodSignature) {
+				return 1;
+			}
+		});
+		AstrixObjectSerializer failingExceptionSerializer = new AstrixObjectSerializer() {
+			@Override
+			public Object serialize(Object element, int version) {
+				if (element instanceof Throwable) {
+					throw new IllegalStateException("Failed to serialize exception");
+				}
+				return objectSerializer.serialize(element, version);
+			}
+			@Override
+			public <T> T deserialize(Object element, Type type, int version) {
+				return objectSerializer.deserialize(element, type, version);
+			}
+			@Override
+			public int version() {
+				return objectSerializer.version();
+			}
+		};
+		partition.register(new TestService() {
+			@Override
+			public HelloResponse hello(HelloRequest message) {
+				throw new MyCustomServiceException();
+			}
+			@Override
+			public String hello(HelloRequest message, String greeting) {
+				return greeting + message.getMesssage();
+			}
+		}, failingExceptionSerializer, TestService.class);
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setApiVersion(objectSerializer.version());
+		request.setServiceApi(TestService.class.getName());
+		request.setServiceMethodSignature(helloSignature);
+		request.setArguments(new Object[] { objectSerializer.serialize(new HelloRequest("kalle"), objectSerializer.version()) });
+		
+		try {
+			partition.invokeServiceAsync(request);
+			fail("Expected exception response to fail");
+		} catch (IllegalStateException expected) {
+		}
+		ServiceInvocationMetrics metrics = partition.getMetrics(TestService.class.getName(), helloSignature);
+		assertEquals(0, metrics.getInFlight());
+	}
+	
+	@Test
+	public void propagatesDeadlineOfCallerToProviderAndNestedInvocations() throws Exception {
+		final AtomicReference<AstrixDeadline> nestedInvocationDeadline = new AtomicReference<>();
+		AstrixServiceActivator nestedPartition = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
+		nestedPartition.register(new TestService() {
+			@Override
+			public HelloResponse hello(HelloRequest message) {
+				throw new UnsupportedOperationException();
+			}
+			@Override
+			public String hello(HelloRequest message, String greeting) {
+				nestedInvocationDeadline.set(AstrixDeadline.current());
+				return greeting + message.getMesssage();
+			}
+		}, objectSerializer, TestService.class);
+		final TestService nestedService = RemotingProxy.create(TestService.class, TestService.class, directTransport(nestedPartition), objectSerializer, new NoRoutingStrategy());
+		partition1.register(new TestService() {
+			@Override
+			public HelloResponse hello(HelloRequest message) {
+				assertNotNull(AstrixDeadline.current());
+				return new HelloResponse(nestedService.hello(message, "nested-"));
+			}
+			@Override
+			public String hello(HelloRequest message, String greeting) {
+				throw new UnsupportedOperationException();
+			}
+		}, objectSerializer, TestService.class);
+		TestService testService = RemotingProxy.create(TestService.class, TestService.class, directTransport(partition1), objectSerializer, new NoRoutingStrategy());
+		
+		AstrixDeadline previous = AstrixDeadline.attach(AstrixDeadline.after(10, TimeUnit.SECONDS));
+		try {
+			assertEquals("nested-kalle", testService.hello(new HelloRequest("kalle")).getGreeting());
+		} finally {
+			AstrixDeadline.restore(previous);
+		}
+		
+		assertNotNull(nestedInvocationDeadline.get());
+		long remainingMillis = nestedInvocationDeadline.get().getRemaining(TimeUnit.MILLISECONDS);
+		assertTrue("remainingMillis=" + remainingMillis, remainingMillis > 0 && remainingMillis <= 10_000);
+		assertNull(AstrixDeadline.current());
+	}
+	
+	@Test
+	public void skipsInvocationsWhoseDeadlineHasExpiredBeforeServiceIsInvoked() throws Exception {
+		TestService impl = Mockito.mock(TestService.class);
+		partition1.register(impl, objectSerializer, TestService.class);
+		String helloSignature = "hello(com.avanza.astrix.remoting.server.AstrixRemotingTest$HelloRequest)";
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setApiVersion(objectSerializer.version());
+		request.setServiceApi(TestService.class.getName());
+		request.setServiceMethodSignature(helloSignature);
+		request.setArguments(new Object[] { objectSerializer.serialize(new HelloRequest("kalle"), objectSerializer.version()) });
+		request.setDeadline(AstrixDeadline.at(System.nanoTime() - 1));
+		
+		AstrixServiceInvocationResponse response = partition1.invokeService(request);
+		
+		assertTrue(response.isServiceUnavailable());
+		Mockito.verifyZeroInteractions(impl);
+		assertEquals(1, partition1.getMetrics(TestService.class.getName(), helloSignature).getExpiredCount());
+	}
+	
+	@Test
+	public void deadlineIsMeasuredFromTimeWhenRequestWasReceivedByTransport() throws Exception {
+		TestService impl = Mockito.mock(TestService.class);
+		partition1.register(impl, objectSerializer, TestService.class);
+		String helloSignature = "hello(com.avanza.astrix.remoting.server.AstrixRemotingTest$HelloRequest)";
+		AstrixServiceInvocationRequest request = new AstrixServiceInvocationRequest();
+		request.setApiVersion(objectSerializer.version());
+		request.setServiceApi(TestService.class.getName());
+		request.setServiceMethodSignature(helloSignature);
+		request.setArguments(new Object[] { objectSerializer.serialize(new HelloRequest("kalle"), objectSerializer.version()) });
+		request.setDeadline(AstrixDeadline.after(1, TimeUnit.SECONDS));
+		long receivedNanos = System.nanoTime() - TimeUnit.SECONDS.toNanos(2);
+		
+		AstrixServiceInvocationResponse response = partition1.invokeServices(Arrays.asList(request), receivedNanos).get(0);
+		
+		assertTrue(response.isServiceUnavailable());
+		Mockito.verifyZeroInteractions(impl);
+		assertEquals(1, partition1.getMetrics(TestService.class.getName(), helloSignature).getExpiredCount());
+	}
+	
+	@Test
+	public void concurrentInvocationsOfBatchedMethodAreSentInSingleBatch() throws Exception {
+		partition1.register(new BatchedServiceImpl(), objectSerializer, BatchedService.class);
+		final List<Integer> batchSizes = new ArrayList<>();
+		SerializingTransport transport = new SerializingTransport(new PartitionedDirectTransport(Arrays.asList(partition1))) {
+			@Override
+			public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequestBatch(List<AstrixServiceInvocationRequest> requests, RoutingKey routingKey) {
+				batchSizes.add(requests.size());
+				return Observable.just(partition1.invokeServices(requests));
+			}
+		};
+		BatchedServiceAsync batchedService = RemotingProxy.create(BatchedServiceAsync.class, BatchedService.class, RemotingTransport.create(transport), objectSerializer, new NoRoutingStrategy());
+		
+		CompletableFuture<String> first = batchedService.echo("a");
+		CompletableFuture<String> second = batchedService.echo("b");
+		assertFalse(first.isDone());
+		CompletableFuture<String> third = batchedService.echo("c");
+		
+		assertEquals("echo-a", first.get());
+		assertEquals("echo-b", second.get());
+		assertEquals("echo-c", third.get());
+		assertEquals(Arrays.asList(3), batchSizes);
+	}
+	
+	@Test
+	public void batchIsSentWhenMaxDelayHasPassed() throws Exception {
+		partition1.register(new BatchedServiceImpl(), objectSerializer, BatchedService.class);
+		BatchedService batchedService = RemotingProxy.create(BatchedService.class, BatchedService.class, directTransport(partition1), objectSerializer, new NoRoutingStrategy());
+		
+		assertEquals("echo-a", batchedService.echoWithShortDelay("a"));
+	}
+	
+	@Test
+	public void batchesAreSentWithoutDelayOnceBatchSchedulerIsDestroyed() throws Exception {
+		partition1.register(new BatchedServiceImpl(), objectSerializer, BatchedService.class);
+		RequestBatchScheduler batchScheduler = new RequestBatchScheduler();
+		BatchedServiceAsync batchedService = RemotingProxy.create(BatchedServiceAsync.class, BatchedService.class, directTransport(partition1), objectSerializer, 
+																  new NoRoutingStrategy(), RemotingProxyOptions.create().requestBatchScheduler(batchScheduler));
+		CompletableFuture<String> scheduled = batchedService.echoWithShortDelay("a");
+		batchScheduler.destroy();
+		
+		assertEquals("echo-a", scheduled.get(1, TimeUnit.SECONDS));
+		assertEquals("echo-b", batchedService.echo("b").get(1, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void batchedResponsesAreDemultiplexedInRequestOrder() throws Exception {
+		partition1.register(new BatchedServiceImpl(), objectSerializer, BatchedService.class);
+		BatchedServiceAsync batchedService = RemotingProxy.create(BatchedServiceAsync.class, BatchedService.class, directTransport(partition1), objectSerializer, new NoRoutingStrategy());
+		
+		CompletableFuture<String> first = batchedService.echo("a");
+		CompletableFuture<String> second = batchedService.echo(null);
+		CompletableFuture<String> third = batchedService.echo("c");
+		
+		assertEquals("echo-a", first.get());
+		assertEquals("echo-c", third.get());
+		try {
+			second.get();
+			fail("Expected exception");
+		} catch (ExecutionException e) {
+			assertEquals(RemoteServiceInvocationException.class, e.getCause().getClass());
+		}
+	}
+	
+	@Test
+	public void concurrentIdenticalInvocationsOfCollapsedMethodShareSingleInFlightInvocation() throws Exception {
+		partition1.register(new CollapsedServiceImpl(), objectSerializer, CollapsedService.class);
+		final List<AstrixServiceInvocationRequest> sentRequests = new ArrayList<>();
+		final List<CompletableFuture<AstrixServiceInvocationResponse>> pendingResponses = new ArrayList<>();
+		SerializingTransport transport = new SerializingTransport(new PartitionedDirectTransport(Arrays.asList(partition1))) {
+			@Override
+			public CompletableFuture<AstrixServiceInvocationResponse> invokeRoutedRequestAsync(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+				CompletableFuture<AstrixServiceInvocationResponse> response = new CompletableFuture<>();
+				sentRequests.add(request);
+				pendingResponses.add(response);
+				return response;
+			}
+		};
+		CollapsedServiceAsync collapsedService = RemotingProxy.create(CollapsedServiceAsync.class, CollapsedService.class, RemotingTransport.create(transport), objectSerializer, new NoRoutingStrategy());
+		RequestCollapsingMetrics metrics = RequestCollapsingMetrics.get(CollapsedService.class.getName(), "get(java.lang.String)");
+		long invocationCountBefore = metrics.getInvocationCount();
+		long collapsedCountBefore = metrics.getCollapsedInvocationCount();
+		
+		CompletableFuture<String> first = collapsedService.get("a");
+		CompletableFuture<String> second = collapsedService.get("a");
+		CompletableFuture<String> third = collapsedService.get("b");
+		assertEquals(2, sentRequests.size());
+		
+		second.cancel(true); // Should not affect other invocations
+		for (int i = 0; i < sentRequests.size(); i++) {
+			pendingResponses.get(i).complete(partition1.invokeService(sentRequests.get(i)));
+		}
+		assertEquals("value-a", first.get());
+		assertEquals("value-b", third.get());
+		assertEquals(3, metrics.getInvocationCount() - invocationCountBefore);
+		assertEquals(1, metrics.getCollapsedInvocationCount() - collapsedCountBefore);
+		
+		collapsedService.get("a");
+		assertEquals("Completed invocations should not be shared", 3, sentRequests.size());
+	}
+	
+	@Test
+	public void resultsOfCachedMethodAreServedFromCacheUntilEvictedOrInvalidated() throws Exception {
+		CachedServiceImpl impl = new CachedServiceImpl();
+		partition1.register(impl, objectSerializer, CachedService.class);
+		ResultCacheRegistry resultCacheRegistry = new ResultCacheRegistry();
+		CachedService cachedService = RemotingProxy.create(CachedService.class, CachedService.class, directTransport(partition1), objectSerializer, 
+														   new NoRoutingStrategy(), RemotingProxyOptions.create().resultCacheRegistry(resultCacheRegistry));
+		ResultCacheMetrics metrics = ResultCacheMetrics.get(CachedService.class.getName(), "get(java.lang.String)");
+		long hitsBefore = metrics.getHitCount();
+		long evictionsBefore = metrics.getEvictionCount();
+		
+		assertEquals("a-1", cachedService.get("a"));
+		assertEquals("a-1", cachedService.get("a"));
+		assertEquals(1, impl.invocationCount.get());
+		assertEquals(1, metrics.getHitCount() - hitsBefore);
+		
+		resultCacheRegistry.invalidateAll(CachedService.class);
+		assertEquals("a-2", cachedService.get("a"));
+		
+		// maxEntries = 2, should evict the result for "a"
+		assertEquals("b-3", cachedService.get("b"));
+		assertEquals("c-4", cachedService.get("c"));
+		assertEquals(1, metrics.getEvictionCount() - evictionsBefore);
+		assertEquals("c-4", cachedService.get("c"));
+		assertEquals("a-5", cachedService.get("a"));
+	}
+	
+	@Test
+	public void invalidatingCachedResultsDoesNotAffectProxiesRegisteredInOtherRegistries() throws Exception {
+		CachedServiceImpl impl = new CachedServiceImpl();
+		partition1.register(impl, objectSerializer, CachedService.class);
+		ResultCacheRegistry resultCacheRegistry = new ResultCacheRegistry();
+		CachedService cachedService = RemotingProxy.create(CachedService.class, CachedService.class, directTransport(partition1), objectSerializer, 
+														   new NoRoutingStrategy(), RemotingProxyOptions.create().resultCacheRegistry(resultCacheRegistry));
+		CachedService otherCachedService = RemotingProxy.create(CachedService.class, CachedService.class, directTransport(partition1), objectSerializer, 
+																new NoRoutingStrategy(), RemotingProxyOptions.create().resultCacheRegistry(new ResultCacheRegistry()));
+		assertEquals("a-1", cachedService.get("a"));
+		assertEquals("a-2", otherCachedService.get("a"));
+		
+		resultCacheRegistry.invalidateAll(CachedService.class);
+		
+		assertEquals("a-3", cachedService.get("a"));
+		assertEquals("a-2", otherCachedService.get("a"));
+	}
+	
+	@Test
+	public void failedInvocationsOfCachedMethodAreNotCached() throws Exception {
+		CachedServiceImpl impl = new CachedServiceImpl();
+		partition1.register(impl, objectSerializer, CachedService.class);
+		CachedService cachedService = RemotingProxy.create(CachedService.class, CachedService.class, directTransport(partition1), objectSerializer, new NoRoutingStrategy());
+		for (int i = 0; i < 2; i++) {
+			try {
+				cachedService.get(null);
+				fail("Expected exception to be thrown");
+			} catch (ServiceInvocationException e) {
+				// Expected
+			}
+		}
+		assertEquals(2, impl.invocationCount.get());
+	}
+	
 	@Test(expected = ServiceUnavailableException.class)
 	public void request_NoCorrespondingServiceRegisteredInServiceActivator_throwsServiceUnavailableException() throws Exception {
 		TestService missingRemoteService = RemotingProxy.create(TestService.class, TestService.class,
@@ -517,6 +1289,43 @@ public class AstrixRemotingTest {
 		missingRemoteService.hello(new HelloRequest("foo"));
 	}
 	
+	@Test
+	public void invokesServiceUsingGeneratedStub() throws Exception {
+		PublicTestService impl = new PublicTestService() {
+			@Override
+			public HelloResponse hello(HelloRequest message) {
+				return new HelloResponse("reply-" + message.getMesssage());
+			}
+			@Override
+			public int add(int a, int b) {
+				return a + b;
+			}
+			@Override
+			public void ping(String message) {
+			}
+		};
+		partition1.register(impl, objectSerializer, PublicTestService.class);
+		
+		PublicTestService testService = RemotingProxy.create(PublicTestService.class, PublicTestService.class, directTransport(partition1), 
+															 objectSerializer, new NoRoutingStrategy(), RemotingProxyOptions.create().generateStub(true));
+		assertFalse(Proxy.isProxyClass(testService.getClass()));
+		assertEquals("reply-kalle", testService.hello(new HelloRequest("kalle")).getGreeting());
+		assertEquals(5, testService.add(2, 3));
+		testService.ping("foo");
+		assertEquals("RemotingProxy[" + PublicTestService.class.getName() + "]", testService.toString());
+	}
+	
+	@Test
+	public void generatedStubUsesObservableVersionOfAService() throws Exception {
+		PublicTestService impl = Mockito.mock(PublicTestService.class);
+		Mockito.when(impl.add(2, 3)).thenReturn(5);
+		partition1.register(impl, objectSerializer, PublicTestService.class);
+		
+		ObservablePublicTestService testService = RemotingProxy.create(ObservablePublicTestService.class, PublicTestService.class, directTransport(partition1), 
+																	   objectSerializer, new NoRoutingStrategy(), RemotingProxyOptions.create().generateStub(true));
+		assertEquals(Integer.valueOf(5), testService.add(2, 3).toBlocking().first());
+	}
+	
 	@Test
 	public void useObservableVersionOfAService() throws Exception {
 		TestService impl = new TestService() {
@@ -570,7 +1379,7 @@ public class AstrixRemotingTest {
 			}
 			
 		};
-		partition1 = new AstrixServiceActivator();
+		partition1 = new AstrixServiceActivator(AdmissionControlSettings.DEFAULT);
 		
 		TestService impl = new TestService() {
 			@Override
@@ -943,6 +1752,63 @@ public class AstrixRemotingTest {
 
 	}
 	
+	public interface StreamedPingService {
+		@AstrixStreamed
+		List<Integer> ping(@AstrixPartitionedRouting List<Integer> nums);
+		@AstrixStreamed
+		Integer sum(@AstrixPartitionedRouting(reducer = IncrementalSummingReducer.class) List<Integer> nums);
+	}
+	
+	public interface ObservableStreamedPingService {
+		Observable<List<Integer>> ping(@AstrixPartitionedRouting List<Integer> nums);
+	}
+	
+	public static class StreamedPingServiceImpl implements StreamedPingService {
+		@Override
+		public List<Integer> ping(List<Integer> nums) {
+			return nums;
+		}
+		@Override
+		public Integer sum(List<Integer> nums) {
+			int sum = 0;
+			for (int num : nums) {
+				sum += num;
+			}
+			return sum;
+		}
+	}
+	
+	public interface IncrementalSumService {
+		Integer sum(@AstrixPartitionedRouting(reducer = IncrementalSummingReducer.class) List<Integer> nums);
+	}
+	
+	public interface ObservableIncrementalSumService {
+		Observable<Integer> sum(@AstrixPartitionedRouting(reducer = IncrementalSummingReducer.class) List<Integer> nums);
+	}
+	
+	public static class IncrementalSumServiceImpl implements IncrementalSumService {
+		@Override
+		public Integer sum(List<Integer> nums) {
+			int sum = 0;
+			for (int num : nums) {
+				sum += num;
+			}
+			return sum;
+		}
+	}
+	
+	public static class IncrementalSummingReducer implements IncrementalRemoteResultReducer<Integer> {
+		private int sum = 0;
+		@Override
+		public void accumulate(AstrixRemoteResult<Integer> result) {
+			sum += result.getResult();
+		}
+		@Override
+		public Integer result() {
+			return sum;
+		}
+	}
+	
 	public static class PartitionedPingServiceImpl implements PartitionedPingService {
 		
 		@Override
@@ -1047,10 +1913,84 @@ public class AstrixRemotingTest {
 		String hello(String message, String greeting);
 	}
 	
+	public interface PublicTestService {
+		HelloResponse hello(HelloRequest message);
+		int add(int a, int b);
+		void ping(String message);
+	}
+	
+	public interface ObservablePublicTestService {
+		Observable<Integer> add(int a, int b);
+	}
+	
 	interface ObservableTestService {
 		Observable<HelloResponse> hello(HelloRequest message);
 	}
 	
+	public interface CollapsedService {
+		@AstrixCollapsed
+		String get(String key);
+	}
+	
+	public interface CollapsedServiceAsync {
+		CompletableFuture<String> get(String key);
+	}
+	
+	public static class CollapsedServiceImpl implements CollapsedService {
+		@Override
+		public String get(String key) {
+			return "value-" + key;
+		}
+	}
+	
+	public interface CachedService {
+		@AstrixCached(maxEntries = 2)
+		String get(String key);
+	}
+	
+	public static class CachedServiceImpl implements CachedService {
+		private final AtomicInteger invocationCount = new AtomicInteger();
+		@Override
+		public String get(String key) {
+			int invocation = invocationCount.incrementAndGet();
+			if (key == null) {
+				throw new IllegalArgumentException("key");
+			}
+			return key + "-" + invocation;
+		}
+	}
+	
+	public interface BatchedService {
+		@AstrixBatched(maxDelayMicros = 10_000_000, maxBatchSize = 3)
+		String echo(String msg);
+		@AstrixBatched(maxDelayMicros = 1000, maxBatchSize = 100)
+		String echoWithShortDelay(String msg);
+	}
+	
+	public interface BatchedServiceAsync {
+		CompletableFuture<String> echo(String msg);
+		CompletableFuture<String> echoWithShortDelay(String msg);
+	}
+	
+	public static class BatchedServiceImpl implements BatchedService {
+		@Override
+		public String echo(String msg) {
+			if (msg == null) {
+				throw new IllegalArgumentException("msg");
+			}
+			return "echo-" + msg;
+		}
+		@Override
+		public String echoWithShortDelay(String msg) {
+			return echo(msg);
+		}
+	}
+	
+	interface CompletableTestService {
+		CompletableFuture<HelloResponse> hello(HelloRequest message);
+		CompletionStage<String> hello(HelloRequest message, String greeting);
+	}
+	
 	interface TestServiceAsync {
 		Future<HelloResponse> hello(HelloRequest message);
 	}
@@ -1172,4 +2112,55 @@ public class AstrixRemotingTest {
 		
 	}
 	
+	private static class SerializingTransport implements RemotingTransportSpi {
+		
+		private final RemotingTransportSpi target;
+		private volatile AstrixServiceInvocationRequest lastRequest;
+		
+		public SerializingTransport(RemotingTransportSpi target) {
+			this.target = target;
+		}
+
+		@Override
+		public Observable<AstrixServiceInvocationResponse> submitRoutedRequest(AstrixServiceInvocationRequest request, RoutingKey routingKey) {
+			this.lastRequest = roundTrip(request);
+			return target.submitRoutedRequest(this.lastRequest, routingKey);
+		}
+
+		@Override
+		public Observable<List<AstrixServiceInvocationResponse>> submitRoutedRequests(Collection<RoutedServiceInvocationRequest> requests) {
+			List<RoutedServiceInvocationRequest> serializedRequests = new ArrayList<>(requests.size());
+			for (RoutedServiceInvocationRequest request : requests) {
+				serializedRequests.add(new RoutedServiceInvocationRequest(roundTrip(request.getRequest()), request.getRoutingkey()));
+			}
+			return target.submitRoutedRequests(serializedRequests);
+		}
+
+		@Override
+		public Observable<List<AstrixServiceInvocationResponse>> submitBroadcastRequest(AstrixServiceInvocationRequest request) {
+			this.lastRequest = roundTrip(request);
+			return target.submitBroadcastRequest(this.lastRequest);
+		}
+
+		@Override
+		public int partitionCount() {
+			return target.partitionCount();
+		}
+		
+		private static AstrixServiceInvocationRequest roundTrip(AstrixServiceInvocationRequest request) {
+			try {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+					out.writeObject(request);
+				}
+				try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+					return (AstrixServiceInvocationRequest) in.readObject();
+				}
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+		
+	}
+	
 }
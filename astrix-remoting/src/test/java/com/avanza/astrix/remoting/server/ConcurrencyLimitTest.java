@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ConcurrencyLimitTest {
+	
+	private static final String SERVICE = "com.avanza.FooService";
+	private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+	
+	private final AdmissionControlSettings adaptiveSettings = new AdmissionControlSettings() {
+		@Override
+		public int getMaxConcurrency(String serviceApi) {
+			return 10;
+		}
+		@Override
+		public boolean isAdaptive(String serviceApi) {
+			return true;
+		}
+		@Override
+		public int getMinConcurrency() {
+			return 2;
+		}
+	};
+	
+	@Test
+	public void unlimitedConcurrencyTracksInvocationsInFlight() throws Exception {
+		ConcurrencyLimit limit = ConcurrencyLimit.forService(AdmissionControlSettings.DEFAULT, SERVICE);
+		assertTrue(limit.tryAcquire());
+		assertTrue(limit.tryAcquire());
+		assertEquals(2, limit.getInFlight());
+		assertEquals(-1, limit.getLimit());
+		
+		limit.release(1);
+		limit.cancel();
+		assertEquals(0, limit.getInFlight());
+	}
+	
+	@Test
+	public void fixedLimitRejectsInvocationsWhenLimitIsReached() throws Exception {
+		ConcurrencyLimit limit = ConcurrencyLimit.forServiceMethod(new AdmissionControlSettings() {
+			@Override
+			public int getMaxConcurrency(String serviceApi, String methodSignature) {
+				return 2;
+			}
+		}, SERVICE, "foo()");
+		assertTrue(limit.tryAcquire());
+		assertTrue(limit.tryAcquire());
+		assertFalse(limit.tryAcquire());
+		
+		limit.release(1);
+		assertTrue(limit.tryAcquire());
+	}
+	
+	@Test
+	public void adaptiveLimitIsDecreasedWhenLatencyIncreasesAndRecoversWhenLatencyDrops() throws Exception {
+		ConcurrencyLimit limit = ConcurrencyLimit.forService(adaptiveSettings, SERVICE);
+		LatencyBaseline baseline = new LatencyBaseline();
+		assertEquals(10, limit.getLimit());
+		for (int i = 0; i < 100; i++) {
+			complete(limit, baseline, 5, 1 * MILLIS);
+		}
+		assertEquals(10, limit.getLimit());
+		
+		complete(limit, baseline, 5, 10 * MILLIS);
+		assertEquals("Limit is decreased at most once per round trip", 9, limit.getLimit());
+		
+		for (int i = 0; i < 20; i++) {
+			complete(limit, baseline, limit.getLimit(), 10 * MILLIS);
+		}
+		assertEquals("Limit is bounded by min concurrency", 2, limit.getLimit());
+		
+		for (int i = 0; i < 30; i++) {
+			complete(limit, baseline, limit.getLimit(), 1 * MILLIS);
+		}
+		assertEquals(10, limit.getLimit());
+	}
+	
+	@Test
+	public void adaptiveLimitIsNotDecreasedByNormalVarianceInLatency() throws Exception {
+		ConcurrencyLimit limit = ConcurrencyLimit.forService(adaptiveSettings, SERVICE);
+		LatencyBaseline baseline = new LatencyBaseline();
+		Random random = new Random(1);
+		int minLimit = limit.getLimit();
+		long limitSum = 0;
+		for (int i = 0; i < 2000; i++) {
+			int concurrentInvocations = limit.getLimit();
+			for (int j = 0; j < concurrentInvocations; j++) {
+				assertTrue(limit.tryAcquire());
+			}
+			for (int j = 0; j < concurrentInvocations; j++) {
+				limit.release(baseline.sample(mixedLatency(random)));
+			}
+			minLimit = Math.min(minLimit, limit.getLimit());
+			limitSum += limit.getLimit();
+		}
+		assertTrue("Expected limit to stay close to max concurrency, but dropped to: " + minLimit, minLimit >= 5);
+		assertTrue("Expected average limit close to max concurrency, but was: " + limitSum / 2000d, limitSum / 2000d >= 9);
+		
+		for (int i = 0; i < 20; i++) {
+			complete(limit, baseline, limit.getLimit(), 100 * MILLIS);
+		}
+		assertEquals("Limit is decreased when latency increases", 2, limit.getLimit());
+	}
+	
+	/*
+	 * Most invocations completes within 1-2 ms, some within 3-6 ms and a few outliers within 20-50 ms
+	 */
+	private static long mixedLatency(Random random) {
+		int percentile = random.nextInt(100);
+		if (percentile < 90) {
+			return MILLIS + (long) (random.nextDouble() * MILLIS);
+		}
+		if (percentile < 98) {
+			return 3 * MILLIS + (long) (random.nextDouble() * 3 * MILLIS);
+		}
+		return 20 * MILLIS + (long) (random.nextDouble() * 30 * MILLIS);
+	}
+	
+	@Test
+	public void adaptiveServiceLimitComparesLatencyOfEachMethodWithItsOwnBaseline() throws Exception {
+		ConcurrencyLimit limit = ConcurrencyLimit.forService(adaptiveSettings, SERVICE);
+		LatencyBaseline fastMethod = new LatencyBaseline();
+		LatencyBaseline slowMethod = new LatencyBaseline();
+		for (int i = 0; i < 10; i++) {
+			complete(limit, fastMethod, 5, 1 * MILLIS);
+			complete(limit, slowMethod, 5, 20 * MILLIS);
+		}
+		assertEquals(10, limit.getLimit());
+		
+		complete(limit, slowMethod, 5, 200 * MILLIS);
+		assertTrue("Expected limit to decrease, but was: " + limit.getLimit(), limit.getLimit() < 10);
+	}
+	
+	private static void complete(ConcurrencyLimit limit, LatencyBaseline baseline, int concurrentInvocations, long latencyNanos) {
+		for (int i = 0; i < concurrentInvocations; i++) {
+			assertTrue(limit.tryAcquire());
+		}
+		for (int i = 0; i < concurrentInvocations; i++) {
+			limit.release(baseline.sample(latencyNanos));
+		}
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.remoting.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.Method;
+
+import org.junit.Test;
+
+public class ServiceMethodTableTest {
+	
+	public interface PricingService {
+		double price(String instrument);
+		double price(String instrument, int volume);
+		void clear();
+	}
+	
+	public interface PricingServiceV2 {
+		double price(String instrument);
+		double price(String instrument, int volume);
+		void clear();
+		void reload();
+	}
+	
+	@Test
+	public void assignsMethodIdsInSignatureOrder() throws Exception {
+		ServiceMethodTable table = ServiceMethodTable.create(PricingService.class);
+		
+		assertEquals(3, table.size());
+		assertEquals(0, table.getMethodId("clear()"));
+		assertEquals(1, table.getMethodId("price(java.lang.String)"));
+		assertEquals(2, table.getMethodId("price(java.lang.String, int)"));
+	}
+	
+	@Test
+	public void resolvesMethodById() throws Exception {
+		ServiceMethodTable table = ServiceMethodTable.create(PricingService.class);
+		Method priceWithVolume = PricingService.class.getMethod("price", String.class, int.class);
+		
+		assertEquals(priceWithVolume, table.getMethod(table.getMethodId("price(java.lang.String, int)")));
+		assertNull(table.getMethod(3));
+		assertNull(table.getMethod(-1));
+		assertEquals(-1, table.getMethodId("unknown()"));
+	}
+	
+	@Test
+	public void checksumIsStableForSameApi() throws Exception {
+		assertEquals(ServiceMethodTable.create(PricingService.class).getChecksum(), ServiceMethodTable.create(PricingService.class).getChecksum());
+	}
+	
+	@Test
+	public void checksumDiffersWhenApiChanges() throws Exception {
+		assertFalse(ServiceMethodTable.create(PricingService.class).getChecksum() == ServiceMethodTable.create(PricingServiceV2.class).getChecksum());
+	}
+	
+	@Test
+	public void malformedChecksumIsParsedAsNull() throws Exception {
+		assertNull(ServiceMethodTable.parseChecksum(null));
+		assertNull(ServiceMethodTable.parseChecksum("not-a-number"));
+		assertEquals(Long.valueOf(-17L), ServiceMethodTable.parseChecksum("-17"));
+	}
+
+}
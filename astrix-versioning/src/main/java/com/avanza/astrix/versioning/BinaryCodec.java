@@ -0,0 +1,646 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.versioning;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+/**
+ * Compact, version aware binary codec. <p>
+ * 
+ * Each type that is serialized must be registered along with its schema, i.e the fields to 
+ * serialize, see {@link Builder#registerType(Class)}. A field is identified on the wire by its
+ * position in the schema, hence new fields must always be appended to the end of a schema. <p>
+ * 
+ * Each field might be annotated with the api version it was added in. When serializing to an older
+ * version such fields are skipped, and when deserializing from an older version they are set to a default value.
+ * Fields that are not known by the reader, for instance fields added in a later version, are skipped. <p>
+ * 
+ * Apart from registered types the codec supports primitives and their wrappers, String, enums, byte[], Date,
+ * and Collection's and Map's of supported types. Values are encoded based on their runtime type and decoded based
+ * on the declared type of the target field, hence the declared type of a field must be a concrete registered type
+ * rather than a supertype. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+public final class BinaryCodec {
+	
+	static final int WIRE_VARINT = 0;
+	static final int WIRE_FIXED64 = 1;
+	static final int WIRE_LENGTH_DELIMITED = 2;
+	static final int WIRE_FIXED32 = 5;
+	
+	private final Map<Class<?>, TypeSchema> schemaByType;
+	private final ConcurrentMap<Type, ValueReader> readerByType = new ConcurrentHashMap<>();
+	
+	private BinaryCodec(Map<Class<?>, TypeSchema> schemaByType) {
+		this.schemaByType = schemaByType;
+	}
+	
+	public static Builder builder() {
+		return new Builder();
+	}
+	
+	/**
+	 * Serializes a given value into the format of a given version.
+	 * 
+	 * @param value - might be null
+	 * @param toVersion
+	 * @return
+	 */
+	public byte[] serialize(Object value, int toVersion) {
+		BinaryOutput out = new BinaryOutput(64);
+		if (value == null) {
+			out.writeByte(0);
+		} else {
+			out.writeByte(1);
+			writeValue(out, value, toVersion);
+		}
+		return out.toByteArray();
+	}
+	
+	/**
+	 * Deserializes a value serialized by {@link #serialize(Object, int)}.
+	 * 
+	 * @param data
+	 * @param type - the declared type of the value
+	 * @param fromVersion - the version the data was serialized into
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T deserialize(byte[] data, Type type, int fromVersion) {
+		BinaryInput in = new BinaryInput(data);
+		if (in.readByte() == 0) {
+			return null;
+		}
+		return (T) readerFor(type).read(in, fromVersion);
+	}
+	
+	private ValueReader readerFor(Type type) {
+		ValueReader reader = readerByType.get(type);
+		if (reader == null) {
+			reader = createReader(type);
+			readerByType.putIfAbsent(type, reader);
+		}
+		return reader;
+	}
+	
+	// ---------------------------------------------------------------------------------
+	// Encoding, based on the runtime type of each value
+	// ---------------------------------------------------------------------------------
+	
+	private int wireType(Object value) {
+		if (value instanceof Double) {
+			return WIRE_FIXED64;
+		}
+		if (value instanceof Float) {
+			return WIRE_FIXED32;
+		}
+		if (value instanceof Number || value instanceof Boolean || value instanceof Character || value instanceof Date) {
+			return WIRE_VARINT;
+		}
+		return WIRE_LENGTH_DELIMITED;
+	}
+	
+	private void writeValue(BinaryOutput out, Object value, int toVersion) {
+		if (value instanceof String) {
+			out.writeString((String) value);
+		} else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+			out.writeZigZag(((Number) value).longValue());
+		} else if (value instanceof Boolean) {
+			out.writeVarint(((Boolean) value).booleanValue() ? 1 : 0);
+		} else if (value instanceof Double) {
+			out.writeFixed64(Double.doubleToLongBits((Double) value));
+		} else if (value instanceof Float) {
+			out.writeFixed32(Float.floatToIntBits((Float) value));
+		} else if (value instanceof Character) {
+			out.writeVarint(((Character) value).charValue());
+		} else if (value instanceof Date) {
+			out.writeZigZag(((Date) value).getTime());
+		} else if (value instanceof Enum) {
+			out.writeString(((Enum<?>) value).name());
+		} else if (value instanceof byte[]) {
+			out.writeLengthDelimited((byte[]) value);
+		} else if (value instanceof Collection) {
+			writeCollection(out, (Collection<?>) value, toVersion);
+		} else if (value instanceof Map) {
+			writeMap(out, (Map<?, ?>) value, toVersion);
+		} else {
+			writeMessage(out, value, toVersion);
+		}
+	}
+	
+	private void writeNullableValue(BinaryOutput out, Object value, int toVersion) {
+		if (value == null) {
+			out.writeByte(0);
+			return;
+		}
+		out.writeByte(1);
+		writeValue(out, value, toVersion);
+	}
+	
+	private void writeCollection(BinaryOutput out, Collection<?> collection, int toVersion) {
+		int start = out.beginLengthDelimited();
+		out.writeVarint(collection.size());
+		for (Object element : collection) {
+			writeNullableValue(out, element, toVersion);
+		}
+		out.endLengthDelimited(start);
+	}
+	
+	private void writeMap(BinaryOutput out, Map<?, ?> map, int toVersion) {
+		int start = out.beginLengthDelimited();
+		out.writeVarint(map.size());
+		for (Map.Entry<?, ?> entry : map.entrySet()) {
+			writeNullableValue(out, entry.getKey(), toVersion);
+			writeNullableValue(out, entry.getValue(), toVersion);
+		}
+		out.endLengthDelimited(start);
+	}
+	
+	private void writeMessage(BinaryOutput out, Object value, int toVersion) {
+		TypeSchema schema = getSchema(value.getClass());
+		int start = out.beginLengthDelimited();
+		for (FieldSchema field : schema.fields) {
+			if (field.sinceVersion > toVersion) {
+				continue;
+			}
+			Object fieldValue = field.get(value);
+			if (fieldValue == null) {
+				continue;
+			}
+			out.writeVarint((field.id << 3) | wireType(fieldValue));
+			writeValue(out, fieldValue, toVersion);
+		}
+		out.endLengthDelimited(start);
+	}
+	
+	private TypeSchema getSchema(Class<?> type) {
+		TypeSchema schema = schemaByType.get(type);
+		if (schema == null) {
+			throw new IllegalArgumentException("No binary schema registered for type: " + type.getName());
+		}
+		return schema;
+	}
+	
+	// ---------------------------------------------------------------------------------
+	// Decoding, based on the declared type of each value
+	// ---------------------------------------------------------------------------------
+	
+	private interface ValueReader {
+		Object read(BinaryInput in, int fromVersion);
+	}
+	
+	private ValueReader createReader(Type type) {
+		if (type instanceof ParameterizedType) {
+			ParameterizedType parameterizedType = (ParameterizedType) type;
+			Class<?> rawType = (Class<?>) parameterizedType.getRawType();
+			Type[] typeArguments = parameterizedType.getActualTypeArguments();
+			if (Collection.class.isAssignableFrom(rawType)) {
+				return new CollectionReader(rawType, readerFor(typeArguments[0]));
+			}
+			if (Map.class.isAssignableFrom(rawType)) {
+				return new MapReader(rawType, readerFor(typeArguments[0]), readerFor(typeArguments[1]));
+			}
+			return createReader(rawType);
+		}
+		if (!(type instanceof Class)) {
+			throw new IllegalArgumentException("Unsupported type: " + type);
+		}
+		final Class<?> c = (Class<?>) type;
+		if (c == String.class) {
+			return new ValueReader() {
+				@Override
+				public Object read(BinaryInput in, int fromVersion) {
+					return in.readString();
+				}
+			};
+		}
+		if (c == int.class || c == Integer.class) {
+			return new ValueReader() {
+				@Override
+				public Object read(BinaryInput in, int fromVersion) {
+					return (int) in.readZigZag();
+				}
+			};
+		}
+		if (c == long.class || c == Long.class) {
+			return new ValueReader() {
+				@Override
+				public Object read(BinaryInput in, int fromVersion) {
+					return in.readZigZag();
+				}
+			};
+		}
+		if (c == short.class || c == Short.class) {
+			return new ValueReader() {
+				@Override
+				public Object read(BinaryInput in, int fromVersion) {
+					return (short) in.readZigZag();
+				}
+			};
+		}
+		if (c == byte.class || c == Byte.class) {
+			return new ValueReader() {
+				@Override
+				public Object read(BinaryInput in, int fromVersion) {
+					return (byte) in.readZigZag();
+				}
+			};
+		}
+		if (c == boolean.class || c == Boolean.class) {
+			return new ValueReader() {
+				@Override
+				public Object read(BinaryInput in, int fromVersion) {
+					return in.readVarint() != 0;
+				}
+			};
+		}
+		if (c == char.class || c == Character.class) {
+			return new ValueReader() {
+				@Override
+				public Object read(BinaryInput in, int fromVersion) {
+					return (char) in.readVarint();
+				}
+			};
+		}
+		if (c == double.class || c == Double.class) {
+			return new ValueReader() {
+				@Override
+				public Object read(BinaryInput in, int fromVersion) {
+					return Double.longBitsToDouble(in.readFixed64());
+				}
+			};
+		}
+		if (c == float.class || c == Float.class) {
+			return new ValueReader() {
+				@Override
+				public Object read(BinaryInput in, int fromVersion) {
+					return Float.intBitsToFloat(in.readFixed32());
+				}
+			};
+		}
+		if (c == Date.class) {
+			return new ValueReader() {
+				@Override
+				public Object read(BinaryInput in, int fromVersion) {
+					return new Date(in.readZigZag());
+				}
+			};
+		}
+		if (c == byte[].class) {
+			return new ValueReader() {
+				@Override
+				public Object read(BinaryInput in, int fromVersion) {
+					return in.readLengthDelimited();
+				}
+			};
+		}
+		if (c.isEnum()) {
+			return new EnumReader(c);
+		}
+		if (Collection.class.isAssignableFrom(c) || Map.class.isAssignableFrom(c)) {
+			throw new IllegalArgumentException("Element type of " + c.getName() + " must be declared using generics");
+		}
+		final TypeSchema schema = getSchema(c);
+		return new ValueReader() {
+			@Override
+			public Object read(BinaryInput in, int fromVersion) {
+				return readMessage(in, schema, fromVersion);
+			}
+		};
+	}
+	
+	private static int expectedWireType(Type type) {
+		Class<?> c = type instanceof ParameterizedType ? (Class<?>) ((ParameterizedType) type).getRawType() : (Class<?>) type;
+		if (c == double.class || c == Double.class) {
+			return WIRE_FIXED64;
+		}
+		if (c == float.class || c == Float.class) {
+			return WIRE_FIXED32;
+		}
+		if (c.isPrimitive() || Number.class.isAssignableFrom(c) || c == Boolean.class || c == Character.class || c == Date.class) {
+			return WIRE_VARINT;
+		}
+		return WIRE_LENGTH_DELIMITED;
+	}
+	
+	private Object readMessage(BinaryInput in, TypeSchema schema, int fromVersion) {
+		Object result = schema.newInstance();
+		int previousLimit = in.pushLimit();
+		while (in.hasRemaining()) {
+			long key = in.readVarint();
+			int fieldId = (int) (key >>> 3);
+			int wireType = (int) (key & 0x7);
+			FieldSchema field = schema.getField(fieldId);
+			if (field == null || field.wireType != wireType) {
+				// Unknown field, for instance added in a later version
+				in.skip(wireType);
+				continue;
+			}
+			field.set(result, field.reader.read(in, fromVersion));
+		}
+		in.popLimit(previousLimit);
+		for (FieldSchema field : schema.fields) {
+			if (field.sinceVersion > fromVersion && field.defaultValue != null) {
+				field.set(result, field.defaultValue);
+			}
+		}
+		return result;
+	}
+	
+	private static Object readNullable(BinaryInput in, ValueReader reader, int fromVersion) {
+		if (in.readByte() == 0) {
+			return null;
+		}
+		return reader.read(in, fromVersion);
+	}
+	
+	private static final class EnumReader implements ValueReader {
+		private final Class<?> enumType;
+		
+		EnumReader(Class<?> enumType) {
+			this.enumType = enumType;
+		}
+		
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		@Override
+		public Object read(BinaryInput in, int fromVersion) {
+			return Enum.valueOf((Class) enumType, in.readString());
+		}
+	}
+	
+	private static final class CollectionReader implements ValueReader {
+		private final Class<?> collectionType;
+		private final ValueReader elementReader;
+		
+		CollectionReader(Class<?> collectionType, ValueReader elementReader) {
+			this.collectionType = collectionType;
+			this.elementReader = elementReader;
+		}
+
+		@Override
+		public Object read(BinaryInput in, int fromVersion) {
+			int previousLimit = in.pushLimit();
+			int size = (int) in.readVarint();
+			Collection<Object> result = newCollection(size);
+			for (int i = 0; i < size; i++) {
+				result.add(readNullable(in, elementReader, fromVersion));
+			}
+			in.popLimit(previousLimit);
+			return result;
+		}
+		
+		@SuppressWarnings("unchecked")
+		private Collection<Object> newCollection(int size) {
+			if (collectionType.isAssignableFrom(ArrayList.class)) {
+				return new ArrayList<>(size);
+			}
+			if (collectionType.isAssignableFrom(HashSet.class)) {
+				return new HashSet<>(Math.max(16, size * 2));
+			}
+			if (collectionType.isAssignableFrom(TreeSet.class)) {
+				return new TreeSet<>();
+			}
+			return (Collection<Object>) newInstance(collectionType);
+		}
+	}
+	
+	private static final class MapReader implements ValueReader {
+		private final Class<?> mapType;
+		private final ValueReader keyReader;
+		private final ValueReader valueReader;
+		
+		MapReader(Class<?> mapType, ValueReader keyReader, ValueReader valueReader) {
+			this.mapType = mapType;
+			this.keyReader = keyReader;
+			this.valueReader = valueReader;
+		}
+		
+		@Override
+		public Object read(BinaryInput in, int fromVersion) {
+			int previousLimit = in.pushLimit();
+			int size = (int) in.readVarint();
+			Map<Object, Object> result = newMap(size);
+			for (int i = 0; i < size; i++) {
+				Object key = readNullable(in, keyReader, fromVersion);
+				result.put(key, readNullable(in, valueReader, fromVersion));
+			}
+			in.popLimit(previousLimit);
+			return result;
+		}
+		
+		@SuppressWarnings("unchecked")
+		private Map<Object, Object> newMap(int size) {
+			if (mapType.isAssignableFrom(HashMap.class)) {
+				return new HashMap<>(Math.max(16, size * 2));
+			}
+			if (mapType.isAssignableFrom(TreeMap.class)) {
+				return new TreeMap<>();
+			}
+			if (mapType.isAssignableFrom(LinkedHashMap.class)) {
+				return new LinkedHashMap<>();
+			}
+			return (Map<Object, Object>) newInstance(mapType);
+		}
+	}
+	
+	private static Object newInstance(Class<?> type) {
+		try {
+			return type.newInstance();
+		} catch (InstantiationException | IllegalAccessException e) {
+			throw new IllegalArgumentException("Failed to create instance of: " + type.getName(), e);
+		}
+	}
+	
+	// ---------------------------------------------------------------------------------
+	// Schemas
+	// ---------------------------------------------------------------------------------
+	
+	private static final class TypeSchema {
+		private final Constructor<?> constructor;
+		private final FieldSchema[] fields;
+		
+		TypeSchema(Constructor<?> constructor, FieldSchema[] fields) {
+			this.constructor = constructor;
+			this.fields = fields;
+		}
+		
+		FieldSchema getField(int id) {
+			if (id < 1 || id > fields.length) {
+				return null;
+			}
+			return fields[id - 1];
+		}
+		
+		Object newInstance() {
+			try {
+				return constructor.newInstance();
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalArgumentException("Failed to create instance of: " + constructor.getDeclaringClass().getName(), e);
+			}
+		}
+	}
+	
+	private static final class FieldSchema {
+		private final int id;
+		private final Field field;
+		private final int sinceVersion;
+		private final Object defaultValue;
+		private final int wireType;
+		private ValueReader reader;
+		
+		FieldSchema(int id, Field field, int sinceVersion, Object defaultValue) {
+			this.id = id;
+			this.field = field;
+			this.sinceVersion = sinceVersion;
+			this.defaultValue = defaultValue;
+			this.wireType = expectedWireType(field.getGenericType());
+		}
+		
+		Object get(Object target) {
+			try {
+				return field.get(target);
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		
+		void set(Object target, Object value) {
+			try {
+				field.set(target, value);
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+	
+	public static final class Builder {
+		
+		private final Map<Class<?>, TypeSchemaBuilder> schemaBuilders = new LinkedHashMap<>();
+		
+		private Builder() {
+		}
+		
+		/**
+		 * Registers a type that should be serializable by the codec. The type must have a
+		 * zero argument constructor. <p>
+		 * 
+		 * @param type
+		 * @return a builder used to define the schema of the given type
+		 */
+		public TypeSchemaBuilder registerType(Class<?> type) {
+			TypeSchemaBuilder schemaBuilder = new TypeSchemaBuilder(type);
+			schemaBuilders.put(type, schemaBuilder);
+			return schemaBuilder;
+		}
+		
+		public BinaryCodec build() {
+			Map<Class<?>, TypeSchema> schemaByType = new HashMap<>();
+			for (TypeSchemaBuilder schemaBuilder : schemaBuilders.values()) {
+				schemaByType.put(schemaBuilder.type, schemaBuilder.build());
+			}
+			BinaryCodec codec = new BinaryCodec(schemaByType);
+			// Resolve all readers eagerly to detect unsupported field types when building the codec 
+			for (TypeSchema schema : schemaByType.values()) {
+				for (FieldSchema field : schema.fields) {
+					field.reader = codec.readerFor(field.field.getGenericType());
+				}
+			}
+			return codec;
+		}
+	}
+	
+	public static final class TypeSchemaBuilder {
+		
+		private final Class<?> type;
+		private final List<FieldSchema> fields = new ArrayList<>();
+		private final Set<String> fieldNames = new HashSet<>();
+		
+		private TypeSchemaBuilder(Class<?> type) {
+			this.type = type;
+		}
+		
+		/**
+		 * Appends a field that has been part of the type since the first version. 
+		 * 
+		 * @param name
+		 * @return
+		 */
+		public TypeSchemaBuilder field(String name) {
+			return field(name, 0, null);
+		}
+		
+		/**
+		 * Appends a field that was added to the type in a given version. <p>
+		 * 
+		 * @param name
+		 * @param sinceVersion - the version the field was added in. The field is not serialized to older versions.
+		 * @param defaultValue - value used when deserializing from older versions, might be null
+		 * @return
+		 */
+		public TypeSchemaBuilder field(String name, int sinceVersion, Object defaultValue) {
+			if (!fieldNames.add(name)) {
+				throw new IllegalArgumentException("Field already registered: " + type.getName() + "." + name);
+			}
+			Field field = findField(name);
+			if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) {
+				throw new IllegalArgumentException("Field must be non static and non final: " + type.getName() + "." + name);
+			}
+			field.setAccessible(true);
+			fields.add(new FieldSchema(fields.size() + 1, field, sinceVersion, defaultValue));
+			return this;
+		}
+		
+		private Field findField(String name) {
+			for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+				try {
+					return c.getDeclaredField(name);
+				} catch (NoSuchFieldException e) {
+					// Continue with superclass
+				}
+			}
+			throw new IllegalArgumentException("No such field: " + type.getName() + "." + name);
+		}
+		
+		private TypeSchema build() {
+			try {
+				Constructor<?> constructor = type.getDeclaredConstructor();
+				constructor.setAccessible(true);
+				return new TypeSchema(constructor, fields.toArray(new FieldSchema[fields.size()]));
+			} catch (NoSuchMethodException e) {
+				throw new IllegalArgumentException("Type must have a zero argument constructor: " + type.getName(), e);
+			}
+		}
+	}
+	
+}
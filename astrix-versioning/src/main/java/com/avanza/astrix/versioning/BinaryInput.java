@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.versioning;
+
+import java.nio.charset.StandardCharsets;
+/**
+ * Reads values encoded by a {@link BinaryOutput}. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class BinaryInput {
+	
+	private final byte[] buffer;
+	private int position;
+	private int limit;
+	
+	BinaryInput(byte[] buffer) {
+		this.buffer = buffer;
+		this.limit = buffer.length;
+	}
+	
+	boolean hasRemaining() {
+		return position < limit;
+	}
+	
+	private void require(int bytes) {
+		if (position + bytes > limit) {
+			throw new IllegalArgumentException("Truncated binary data, position=" + position + " limit=" + limit);
+		}
+	}
+	
+	int readByte() {
+		require(1);
+		return buffer[position++];
+	}
+	
+	long readVarint() {
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = readByte();
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+		}
+		throw new IllegalArgumentException("Malformed varint at position " + position);
+	}
+	
+	long readZigZag() {
+		long value = readVarint();
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	int readFixed32() {
+		require(4);
+		int result = 0;
+		for (int i = 0; i < 4; i++) {
+			result |= (buffer[position++] & 0xFF) << (8 * i);
+		}
+		return result;
+	}
+	
+	long readFixed64() {
+		require(8);
+		long result = 0;
+		for (int i = 0; i < 8; i++) {
+			result |= (buffer[position++] & 0xFFL) << (8 * i);
+		}
+		return result;
+	}
+	
+	int readLength() {
+		long length = readVarint();
+		if (length < 0 || length > limit - position) {
+			throw new IllegalArgumentException("Invalid length: " + length + " at position " + position);
+		}
+		return (int) length;
+	}
+	
+	byte[] readLengthDelimited() {
+		int length = readLength();
+		byte[] result = new byte[length];
+		System.arraycopy(buffer, position, result, 0, length);
+		position += length;
+		return result;
+	}
+	
+	String readString() {
+		int length = readLength();
+		String result = new String(buffer, position, length, StandardCharsets.UTF_8);
+		position += length;
+		return result;
+	}
+	
+	/**
+	 * Restricts reading to the content of the length delimited value at the current position.
+	 * 
+	 * @return the previous limit, to be passed to {@link #popLimit(int)}
+	 */
+	int pushLimit() {
+		int length = readLength();
+		int previousLimit = limit;
+		limit = position + length;
+		return previousLimit;
+	}
+	
+	void popLimit(int previousLimit) {
+		position = limit;
+		limit = previousLimit;
+	}
+	
+	void skip(int wireType) {
+		switch (wireType) {
+		case BinaryCodec.WIRE_VARINT:
+			readVarint();
+			return;
+		case BinaryCodec.WIRE_FIXED64:
+			require(8);
+			position += 8;
+			return;
+		case BinaryCodec.WIRE_FIXED32:
+			require(4);
+			position += 4;
+			return;
+		case BinaryCodec.WIRE_LENGTH_DELIMITED:
+			int length = readLength();
+			position += length;
+			return;
+		default:
+			throw new IllegalArgumentException("Unknown wire type: " + wireType);
+		}
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.versioning;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+/**
+ * Growable byte buffer used by the {@link BinaryCodec} to encode values. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
+final class BinaryOutput {
+	
+	private byte[] buffer;
+	private int position;
+	
+	BinaryOutput(int initialCapacity) {
+		this.buffer = new byte[initialCapacity];
+	}
+	
+	int position() {
+		return position;
+	}
+	
+	byte[] toByteArray() {
+		return Arrays.copyOf(buffer, position);
+	}
+	
+	private void ensureCapacity(int additionalBytes) {
+		int required = position + additionalBytes;
+		if (required > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length * 2));
+		}
+	}
+	
+	void writeByte(int value) {
+		ensureCapacity(1);
+		buffer[position++] = (byte) value;
+	}
+	
+	void writeBytes(byte[] bytes) {
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, buffer, position, bytes.length);
+		position += bytes.length;
+	}
+	
+	void writeVarint(long value) {
+		ensureCapacity(10);
+		while ((value & ~0x7FL) != 0) {
+			buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte) value;
+	}
+	
+	void writeZigZag(long value) {
+		writeVarint((value << 1) ^ (value >> 63));
+	}
+	
+	void writeFixed32(int value) {
+		ensureCapacity(4);
+		for (int i = 0; i < 4; i++) {
+			buffer[position++] = (byte) (value >>> (8 * i));
+		}
+	}
+	
+	void writeFixed64(long value) {
+		ensureCapacity(8);
+		for (int i = 0; i < 8; i++) {
+			buffer[position++] = (byte) (value >>> (8 * i));
+		}
+	}
+	
+	void writeLengthDelimited(byte[] bytes) {
+		writeVarint(bytes.length);
+		writeBytes(bytes);
+	}
+	
+	void writeString(String value) {
+		writeLengthDelimited(value.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Reserves space for the length prefix of a length delimited value whose content 
+	 * is written directly after the call to this method.
+	 * 
+	 * @return the position of the content, to be passed to {@link #endLengthDelimited(int)}
+	 */
+	int beginLengthDelimited() {
+		writeByte(0);
+		return position;
+	}
+	
+	/**
+	 * Writes the length prefix of a value started with {@link #beginLengthDelimited()}. If the length requires 
+	 * more than one byte the content is moved forward to make room for it.
+	 */
+	void endLengthDelimited(int contentStart) {
+		int length = position - contentStart;
+		int prefixSize = varintSize(length);
+		if (prefixSize > 1) {
+			ensureCapacity(prefixSize - 1);
+			System.arraycopy(buffer, contentStart, buffer, contentStart + prefixSize - 1, length);
+			position += prefixSize - 1;
+		}
+		int prefixPosition = contentStart - 1;
+		long value = length;
+		while ((value & ~0x7FL) != 0) {
+			buffer[prefixPosition++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[prefixPosition] = (byte) value;
+	}
+	
+	private static int varintSize(int value) {
+		int size = 1;
+		while ((value & ~0x7F) != 0) {
+			size++;
+			value >>>= 7;
+		}
+		return size;
+	}
+
+}
@@ -18,6 +18,8 @@ package com.avanza.astrix.versioning;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.codehaus.jackson.node.ObjectNode;
 
@@ -35,6 +37,8 @@ class JsonMessageMigrator<T> {
 	private Class<T> type;
 	private List<JsonMessageMigrationWithVersion<T>> migrationsInOrder;
 	private List<JsonMessageMigrationWithVersion<T>> migrationsInReverseOrder;
+	private final ConcurrentMap<Integer, AstrixJsonMessageMigration<T>[]> upgradeChainByVersion = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Integer, AstrixJsonMessageMigration<T>[]> downgradeChainByVersion = new ConcurrentHashMap<>();
 	
 	public JsonMessageMigrator(Class<T> type,
 							   List<JsonMessageMigrationWithVersion<T>> migrations) {
@@ -47,22 +51,73 @@ class JsonMessageMigrator<T> {
 	}
 
 	public void upgrade(ObjectNode json, int fromVersion) {
-		for (JsonMessageMigrationWithVersion<T> migration : migrationsInOrder) {
-			if (migration.getVersion() < fromVersion) {
-				continue;
-			}
+		for (AstrixJsonMessageMigration<T> migration : upgradeChain(fromVersion)) {
 			migration.upgrade(json);
 		}
 	}
 	
+	/**
+	 * Returns true if messages on the given version must be migrated to reach the current
+	 * version (or vice versa), ie if there is at least one migration from the given version
+	 * or later. <p>
+	 * 
+	 * @param version
+	 * @return
+	 */
+	public boolean hasMigrationsFrom(int version) {
+		return !migrationsInOrder.isEmpty() && migrationsInReverseOrder.get(0).getVersion() >= version;
+	}
+	
 	public void downgrade(ObjectNode json, int toVersion) {
-		for (JsonMessageMigrationWithVersion<T> migration : migrationsInReverseOrder) {
-			if (!(migration.getVersion() >= toVersion)) {
-				return;
-			}
+		for (AstrixJsonMessageMigration<T> migration : downgradeChain(toVersion)) {
 			migration.downgrade(json);
 		}
 	}
+	
+	/**
+	 * Returns the migrations that should be applied, in order, to upgrade a message
+	 * from the given version to the current version. The chain is only resolved once
+	 * for each version. <p>
+	 * 
+	 * @param fromVersion
+	 * @return
+	 */
+	public AstrixJsonMessageMigration<T>[] upgradeChain(int fromVersion) {
+		AstrixJsonMessageMigration<T>[] result = upgradeChainByVersion.get(fromVersion);
+		if (result == null) {
+			result = createChain(migrationsInOrder, fromVersion);
+			upgradeChainByVersion.putIfAbsent(fromVersion, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the migrations that should be applied, in order, to downgrade a message
+	 * from the current version to the given version. The chain is only resolved once
+	 * for each version. <p>
+	 * 
+	 * @param toVersion
+	 * @return
+	 */
+	public AstrixJsonMessageMigration<T>[] downgradeChain(int toVersion) {
+		AstrixJsonMessageMigration<T>[] result = downgradeChainByVersion.get(toVersion);
+		if (result == null) {
+			result = createChain(migrationsInReverseOrder, toVersion);
+			downgradeChainByVersion.putIfAbsent(toVersion, result);
+		}
+		return result;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private AstrixJsonMessageMigration<T>[] createChain(List<JsonMessageMigrationWithVersion<T>> migrations, int version) {
+		List<AstrixJsonMessageMigration<T>> chain = new ArrayList<>();
+		for (JsonMessageMigrationWithVersion<T> migration : migrations) {
+			if (migration.getVersion() >= version) {
+				chain.add(migration.migration);
+			}
+		}
+		return chain.toArray(new AstrixJsonMessageMigration[chain.size()]);
+	}
 
 	public Class<T> getJavaType() {
 		return type;
@@ -82,14 +137,6 @@ class JsonMessageMigrator<T> {
 			return version;
 		}
 		
-		void downgrade(ObjectNode json) {
-			this.migration.downgrade(json);
-		}
-		
-		void upgrade(ObjectNode json) {
-			this.migration.upgrade(json);
-		}
-
 		@Override
 		public int compareTo(JsonMessageMigrationWithVersion<T> other) {
 			return getVersion() - other.getVersion();
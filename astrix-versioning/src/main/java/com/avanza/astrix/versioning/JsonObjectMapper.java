@@ -16,6 +16,7 @@
 package com.avanza.astrix.versioning;
 
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 /**
  * 
  * @author Elias Lindholm (elilin)
@@ -37,6 +38,21 @@ public class JsonObjectMapper {
 		}
 	}
 	
+	/**
+	 * Serializes a given object into UTF-8 encoded json. <p>
+	 * 
+	 * @param object
+	 * @param toVersion
+	 * @return
+	 */
+	public byte[] serializeToBytes(Object object, int toVersion) {
+		try {
+			return impl.serializeToBytes(object, toVersion);
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to serialize: " + object + ".", e);
+		}
+	}
+	
 	public <T> T deserialize(String json, Class<T> target, int fromVersion) {
 		try {
 			return impl.deserialize(json, target, fromVersion);
@@ -53,6 +69,22 @@ public class JsonObjectMapper {
 		}
 	}
 	
+	/**
+	 * Deserializes UTF-8 encoded json. <p>
+	 * 
+	 * @param json
+	 * @param target
+	 * @param fromVersion
+	 * @return
+	 */
+	public <T> T deserialize(byte[] json, Type target, int fromVersion) {
+		try {
+			return impl.deserialize(json, target, fromVersion);
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to deserialize: " + new String(json, StandardCharsets.UTF_8) + " into type: " + target, e);
+		}
+	}
+	
 	public static JsonObjectMapper create(Impl impl) {
 		return new JsonObjectMapper(impl);
 	}
@@ -61,6 +93,14 @@ public class JsonObjectMapper {
 	public interface Impl {
 		String serialize(Object object, int toVersion) throws Exception;
 		<T> T deserialize(String json, Type target, int fromVersion) throws Exception;
+		
+		default byte[] serializeToBytes(Object object, int toVersion) throws Exception {
+			return serialize(object, toVersion).getBytes(StandardCharsets.UTF_8);
+		}
+		
+		default <T> T deserialize(byte[] json, Type target, int fromVersion) throws Exception {
+			return deserialize(new String(json, StandardCharsets.UTF_8), target, fromVersion);
+		}
 	}
 	
 }
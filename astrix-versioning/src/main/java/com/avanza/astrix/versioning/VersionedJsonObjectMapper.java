@@ -32,50 +32,160 @@ import org.codehaus.jackson.map.DeserializationContext;
 import org.codehaus.jackson.map.JsonDeserializer;
 import org.codehaus.jackson.map.JsonSerializer;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectReader;
+import org.codehaus.jackson.map.ObjectWriter;
 import org.codehaus.jackson.map.SerializerProvider;
 import org.codehaus.jackson.map.module.SimpleModule;
-import org.codehaus.jackson.map.type.TypeFactory;
 import org.codehaus.jackson.node.ObjectNode;
-import org.codehaus.jackson.type.JavaType;
 
 import com.avanza.astrix.provider.versioning.AstrixJsonApiMigration;
 import com.avanza.astrix.provider.versioning.AstrixJsonMessageMigration;
 import com.avanza.astrix.provider.versioning.JacksonObjectMapperBuilder;
 import com.avanza.astrix.versioning.JsonMessageMigrator.Builder;
 
+/**
+ * JsonObjectMapper.Impl that migrates messages between the current version of an api
+ * and the version used by a remote peer. <p>
+ * 
+ * One ObjectMapper is used for each peer version. Types that have at least one migration
+ * from the peer version or later are intercepted by a migrating serializer/deserializer that
+ * converts the message to a tree and applies the migrations, with the peer version bound
+ * to the serializer when the ObjectMapper is created. All other types, and all types when
+ * the peer uses the current version, are serialized using plain streaming databind. <p>
+ * 
+ * The ObjectReader/ObjectWriter used for a given type is created once and cached. <p>
+ * 
+ * @author Elias Lindholm (elilin)
+ *
+ */
 public class VersionedJsonObjectMapper implements JsonObjectMapper.Impl {
 	
-	private ObjectMapper migratingMapper;
-	private ThreadLocal<Integer> versionHolder;
+	private final ObjectMapper rawMapper;
+	private final List<JsonSerializerHolder<?>> serializers;
+	private final List<JsonDeserializerHolder<?>> deserializers;
+	private final Map<Class<?>, JsonMessageMigrator<?>> migratorsByType;
+	private final VersionMapper nonMigratingMapper;
+	private final ConcurrentMap<Integer, VersionMapper> mapperByVersion = new ConcurrentHashMap<>();
 	
-	public VersionedJsonObjectMapper(ThreadLocal<Integer> versionHolder,
-								 ObjectMapper migratingMapper) {
-				this.versionHolder = versionHolder;
-				this.migratingMapper = migratingMapper;
+	VersionedJsonObjectMapper(ObjectMapper rawMapper,
+							  List<JsonSerializerHolder<?>> serializers,
+							  List<JsonDeserializerHolder<?>> deserializers,
+							  Map<Class<?>, JsonMessageMigrator<?>> migratorsByType) {
+		this.rawMapper = rawMapper;
+		this.serializers = serializers;
+		this.deserializers = deserializers;
+		this.migratorsByType = migratorsByType;
+		this.nonMigratingMapper = new VersionMapper(rawMapper);
 	}
 
 	@Override
 	public String serialize(Object object, int toVersion) throws Exception {
-		versionHolder.set(toVersion);
-		try {
-			return migratingMapper.writeValueAsString(object);
-		} finally {
-			versionHolder.remove();
+		if (object == null) {
+			return rawMapper.writeValueAsString(null);
+		}
+		return getMapper(toVersion).writer(object.getClass()).writeValueAsString(object);
+	}
+
+	@Override
+	public byte[] serializeToBytes(Object object, int toVersion) throws Exception {
+		if (object == null) {
+			return rawMapper.writeValueAsBytes(null);
 		}
+		return getMapper(toVersion).writer(object.getClass()).writeValueAsBytes(object);
 	}
 
 	@Override
 	public <T> T deserialize(String json, Type target, int fromVersion) throws Exception {
-		versionHolder.set(fromVersion);
-		try {
-			JavaType javaType = migratingMapper.getTypeFactory().constructType(target);
-			return migratingMapper.readValue(json, javaType);
-		} finally {
-			versionHolder.remove();
+		return getMapper(fromVersion).reader(target).readValue(json);
+	}
+	
+	@Override
+	public <T> T deserialize(byte[] json, Type target, int fromVersion) throws Exception {
+		return getMapper(fromVersion).reader(target).readValue(json, 0, json.length);
+	}
+	
+	private VersionMapper getMapper(int version) {
+		VersionMapper result = mapperByVersion.get(version);
+		if (result != null) {
+			return result;
 		}
+		result = createMapper(version);
+		VersionMapper existing = mapperByVersion.putIfAbsent(version, result);
+		return existing != null ? existing : result;
+	}
+
+	private VersionMapper createMapper(int version) {
+		List<JsonMessageMigrator<?>> migrators = new ArrayList<>();
+		for (JsonMessageMigrator<?> migrator : this.migratorsByType.values()) {
+			if (migrator.hasMigrationsFrom(version)) {
+				migrators.add(migrator);
+			}
+		}
+		if (migrators.isEmpty()) {
+			return nonMigratingMapper;
+		}
+		return new VersionMapper(buildMigratingMapper(migrators, version));
 	}
 	
-	// TODO: document whats going on in this class (the migrating object mapper)
+	private ObjectMapper buildMigratingMapper(List<JsonMessageMigrator<?>> migrators, int version) {
+		SimpleModule module = new SimpleModule("Astrix-migratingModule", new Version(1,0,0, ""));
+		Map<Class<?>, JsonMessageMigrator<?>> migratorByType = new HashMap<>();
+		for (JsonMessageMigrator<?> migrator : migrators) {
+			registerSerializerAndDeserializer(module, migrator, version);
+			migratorByType.put(migrator.getJavaType(), migrator);
+		}
+		// register custom serializers/deserializers for all custom types without migrator since those won't be intercepted by migratingObjectMapper
+		for (JsonDeserializerHolder<?> deserializer : this.deserializers) {
+			if (!migratorByType.containsKey(deserializer.type)) {
+				deserializer.register(module);
+			}
+		}
+		for (JsonSerializerHolder<?> serializer : this.serializers) {
+			if (!migratorByType.containsKey(serializer.type)) {
+				serializer.register(module);
+			}
+		}
+		ObjectMapper result = new ObjectMapper();
+		result.registerModule(module);
+		return result;
+	}
+
+	private <T> void registerSerializerAndDeserializer(SimpleModule module, JsonMessageMigrator<T> migrator, int version) {
+		module.addSerializer(migrator.getJavaType(), new MigratingJsonSerializer<>(rawMapper, migrator, version));
+		module.addDeserializer(migrator.getJavaType(), new MigratingJsonDeserializer<>(rawMapper, migrator, version));
+	}
+	
+	/**
+	 * Caches the ObjectReader's and ObjectWriter's for a given ObjectMapper. <p>
+	 */
+	private static class VersionMapper {
+		
+		private final ObjectMapper mapper;
+		private final ConcurrentMap<Type, ObjectReader> readerByType = new ConcurrentHashMap<>();
+		private final ConcurrentMap<Class<?>, ObjectWriter> writerByType = new ConcurrentHashMap<>();
+		
+		VersionMapper(ObjectMapper mapper) {
+			this.mapper = mapper;
+		}
+		
+		ObjectReader reader(Type type) {
+			ObjectReader result = readerByType.get(type);
+			if (result == null) {
+				result = mapper.reader(mapper.getTypeFactory().constructType(type));
+				readerByType.putIfAbsent(type, result);
+			}
+			return result;
+		}
+		
+		ObjectWriter writer(Class<?> type) {
+			ObjectWriter result = writerByType.get(type);
+			if (result == null) {
+				result = mapper.writerWithType(type);
+				writerByType.putIfAbsent(type, result);
+			}
+			return result;
+		}
+	}
 	
 	static class JsonSerializerHolder<T> {
 		
@@ -111,20 +221,16 @@ public class VersionedJsonObjectMapper implements JsonObjectMapper.Impl {
 
 	static class MigratingJsonSerializer<T> extends JsonSerializer<T> {
 		
-		private ObjectMapper rawMapper;
-		private JsonMessageMigrator<T> migrator;
-		private ThreadLocal<Integer> versionHolder;
+		private final ObjectMapper rawMapper;
+		private final Class<T> type;
+		private final AstrixJsonMessageMigration<T>[] migrations;
 		
 		public MigratingJsonSerializer(ObjectMapper rawMapper,
 				JsonMessageMigrator<T> migrator,
-				ThreadLocal<Integer> versionHolder) {
+				int version) {
 			this.rawMapper = rawMapper;
-			this.migrator = migrator;
-			this.versionHolder = versionHolder;
-		}
-
-		public static <T> MigratingJsonSerializer<T> create(ObjectMapper rawMapper, JsonMessageMigrator<T> migrator, ThreadLocal<Integer> versionHolder) {
-			return new MigratingJsonSerializer<>(rawMapper, migrator, versionHolder);
+			this.type = migrator.getJavaType();
+			this.migrations = migrator.downgradeChain(version);
 		}
 		
 		@Override
@@ -132,43 +238,35 @@ public class VersionedJsonObjectMapper implements JsonObjectMapper.Impl {
 				SerializerProvider provider) throws IOException,
 				JsonProcessingException {
 			ObjectNode objectNode = rawMapper.convertValue(value, ObjectNode.class);
-			migrator.downgrade(objectNode, getVersion());
+			for (AstrixJsonMessageMigration<T> migration : migrations) {
+				migration.downgrade(objectNode);
+			}
 			jgen.writeObject(objectNode);					
 		}
-		
-		int getVersion() {
-			return versionHolder.get();
-		}
 	}
 	
 	static class MigratingJsonDeserializer<T> extends JsonDeserializer<T> {
 		
-		private ObjectMapper rawMapper;
-		private JsonMessageMigrator<T> migrator;
-		private ThreadLocal<Integer> versionHolder;
+		private final ObjectMapper rawMapper;
+		private final Class<T> type;
+		private final AstrixJsonMessageMigration<T>[] migrations;
 		
 		public MigratingJsonDeserializer(ObjectMapper rawMapper,
 				JsonMessageMigrator<T> migrator,
-				ThreadLocal<Integer> versionHolder) {
+				int version) {
 			this.rawMapper = rawMapper;
-			this.migrator = migrator;
-			this.versionHolder = versionHolder;
-		}
-
-		public static <T> MigratingJsonDeserializer<T> create(ObjectMapper rawMapper, JsonMessageMigrator<T> migrator, ThreadLocal<Integer> versionHolder) {
-			return new MigratingJsonDeserializer<>(rawMapper, migrator, versionHolder);
+			this.type = migrator.getJavaType();
+			this.migrations = migrator.upgradeChain(version);
 		}
 		
 		@Override
 		public T deserialize(JsonParser jp, DeserializationContext ctxt)
 				throws IOException, JsonProcessingException {
 			ObjectNode objectNode = jp.readValueAs(ObjectNode.class);
-			migrator.upgrade(objectNode, getVersion());
-			return rawMapper.convertValue(objectNode, migrator.getJavaType());					
-		}
-		
-		int getVersion() {
-			return versionHolder.get();
+			for (AstrixJsonMessageMigration<T> migration : migrations) {
+				migration.upgrade(objectNode);
+			}
+			return rawMapper.convertValue(objectNode, type);					
 		}
 	}
 	
@@ -226,42 +324,12 @@ public class VersionedJsonObjectMapper implements JsonObjectMapper.Impl {
 		}
 		
 		public VersionedJsonObjectMapper build() {
-			ThreadLocal<Integer> versionHolder = new ThreadLocal<>();
-			ObjectMapper rawMapper = buildRaw();
-			ObjectMapper migratingMapper = buildMigratingMapper(rawMapper, versionHolder);
-			return new VersionedJsonObjectMapper(versionHolder, migratingMapper);
+			return new VersionedJsonObjectMapper(buildRaw(), 
+												 new ArrayList<>(this.serializers), 
+												 new ArrayList<>(this.deserializers), 
+												 this.migratorsByType);
 		}
 		
-		private ObjectMapper buildMigratingMapper(ObjectMapper rawMapper, ThreadLocal<Integer> versionHolder) {
-			SimpleModule module = new SimpleModule("Astrix-migratingModule", new Version(1,0,0, ""));
-			for (JsonMessageMigrator<?> migrator : this.migratorsByType.values()) {
-				registerSerializerAndDeserializer(rawMapper, versionHolder, module, migrator);
-			}
-			// register custom serializers/deserializers for all custom types without migrator since those won't be intercepted by migratingObjectMapper
-			for (JsonDeserializerHolder<?> deserializer : this.deserializers) {
-				if (!this.migratorsByType.containsKey(deserializer.type)) {
-					deserializer.register(module);
-				}
-			}
-			for (JsonSerializerHolder<?> serializer : this.serializers) {
-				if (!this.migratorsByType.containsKey(serializer.type)) {
-					serializer.register(module);
-				}
-			}
-
-			ObjectMapper result = new ObjectMapper();
-			result.registerModule(module);
-			return result;
-		}
-
-		private <T> void registerSerializerAndDeserializer(ObjectMapper rawMapper,
-														   ThreadLocal<Integer> versionHolder, 
-														   SimpleModule module,
-														   JsonMessageMigrator<T> migrator) {
-			module.addSerializer(migrator.getJavaType(), MigratingJsonSerializer.create(rawMapper, migrator, versionHolder));
-			module.addDeserializer(migrator.getJavaType(), MigratingJsonDeserializer.create(rawMapper, migrator, versionHolder));
-		}
-
 		private ObjectMapper buildRaw() {
 			SimpleModule rawModule = new SimpleModule("Astrix-rawModule", new Version(1,0,0, ""));
 			for (JsonDeserializerHolder<?> deserializer : this.deserializers) {
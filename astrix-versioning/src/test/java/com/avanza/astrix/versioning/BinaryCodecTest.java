@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014 Avanza Bank AB
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.avanza.astrix.versioning;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import com.google.common.reflect.TypeToken;
+
+public class BinaryCodecTest {
+	
+	private final BinaryCodec codecV2 = createV2Codec();
+	
+	private static BinaryCodec createV2Codec() {
+		BinaryCodec.Builder builder = BinaryCodec.builder();
+		builder.registerType(Restaurant.class)
+			   .field("name")
+			   .field("rating")
+			   .field("kind")
+			   .field("foodType", 2, "unknown");
+		builder.registerType(Guide.class)
+			   .field("restaurants")
+			   .field("restaurantsByName")
+			   .field("tags")
+			   .field("published")
+			   .field("price")
+			   .field("open")
+			   .field("logo");
+		return builder.build();
+	}
+	
+	private static BinaryCodec createV1Codec() {
+		BinaryCodec.Builder builder = BinaryCodec.builder();
+		builder.registerType(Restaurant.class)
+			   .field("name")
+			   .field("rating")
+			   .field("kind");
+		return builder.build();
+	}
+	
+	@Test
+	public void roundTripsRegisteredTypesCollectionsAndMaps() throws Exception {
+		Guide guide = new Guide();
+		guide.restaurants = Arrays.asList(new Restaurant("a", 5, Kind.LUNCH, "thai"), null, new Restaurant("b", -3, null, "sushi"));
+		guide.restaurantsByName = Collections.singletonMap("a", new Restaurant("a", 5, Kind.DINNER, "thai"));
+		guide.tags = new TreeSet<>(Arrays.asList("cheap", "fast"));
+		guide.published = new Date(1234567890L);
+		guide.price = 99.5;
+		guide.open = true;
+		guide.logo = new byte[] { 1, 2, 3 };
+		
+		Guide deserialized = codecV2.deserialize(codecV2.serialize(guide, 2), Guide.class, 2);
+		
+		assertEquals(3, deserialized.restaurants.size());
+		assertEquals("a", deserialized.restaurants.get(0).name);
+		assertEquals(5, deserialized.restaurants.get(0).rating);
+		assertEquals(Kind.LUNCH, deserialized.restaurants.get(0).kind);
+		assertEquals("thai", deserialized.restaurants.get(0).foodType);
+		assertNull(deserialized.restaurants.get(1));
+		assertEquals(-3, deserialized.restaurants.get(2).rating);
+		assertNull(deserialized.restaurants.get(2).kind);
+		assertEquals(Kind.DINNER, deserialized.restaurantsByName.get("a").kind);
+		assertEquals(guide.tags, deserialized.tags);
+		assertEquals(guide.published, deserialized.published);
+		assertEquals(99.5, deserialized.price, 0.0);
+		assertEquals(Boolean.TRUE, deserialized.open);
+		assertArrayEquals(new byte[] { 1, 2, 3 }, deserialized.logo);
+	}
+	
+	@Test
+	public void roundTripsRootCollectionsAndSimpleValues() throws Exception {
+		Type listOfRestaurants = new TypeToken<List<Restaurant>>() {}.getType();
+		List<Restaurant> restaurants = codecV2.deserialize(codecV2.serialize(Arrays.asList(new Restaurant("a", 1, Kind.LUNCH, "thai")), 2), listOfRestaurants, 2);
+		
+		assertEquals("a", restaurants.get(0).name);
+		assertEquals("kalle", codecV2.deserialize(codecV2.serialize("kalle", 2), String.class, 2));
+		assertEquals(Long.MIN_VALUE, codecV2.<Long>deserialize(codecV2.serialize(Long.MIN_VALUE, 2), long.class, 2).longValue());
+		assertNull(codecV2.deserialize(codecV2.serialize(null, 2), Restaurant.class, 2));
+	}
+	
+	@Test
+	public void fieldsAddedInLaterVersionAreSkippedWhenSerializingToOlderVersion() throws Exception {
+		byte[] v1Data = codecV2.serialize(new Restaurant("a", 5, Kind.LUNCH, "thai"), 1);
+		
+		Restaurant readByV1 = createV1Codec().deserialize(v1Data, Restaurant.class, 1);
+		Restaurant upgraded = codecV2.deserialize(v1Data, Restaurant.class, 1);
+		
+		assertEquals("a", readByV1.name);
+		assertNull(readByV1.foodType);
+		assertEquals("unknown", upgraded.foodType);
+	}
+	
+	@Test
+	public void unknownFieldsAreSkipped() throws Exception {
+		byte[] v2Data = codecV2.serialize(new Restaurant("a", 5, Kind.LUNCH, "thai"), 2);
+		
+		Restaurant readByV1 = createV1Codec().deserialize(v2Data, Restaurant.class, 2);
+		
+		assertEquals("a", readByV1.name);
+		assertEquals(5, readByV1.rating);
+		assertEquals(Kind.LUNCH, readByV1.kind);
+		assertNull(readByV1.foodType);
+	}
+	
+	@Test
+	public void largeMessagesAreLengthPrefixedCorrectly() throws Exception {
+		char[] name = new char[100_000];
+		Arrays.fill(name, 'x');
+		Restaurant restaurant = new Restaurant(new String(name), 1, Kind.LUNCH, "thai");
+		
+		Restaurant deserialized = codecV2.deserialize(codecV2.serialize(restaurant, 2), Restaurant.class, 2);
+		
+		assertEquals(restaurant.name, deserialized.name);
+		assertEquals("thai", deserialized.foodType);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void serializingUnregisteredTypeThrowsIllegalArgumentException() throws Exception {
+		codecV2.serialize(new Object(), 2);
+	}
+	
+	public enum Kind {
+		LUNCH, DINNER
+	}
+	
+	public static class Restaurant {
+		private String name;
+		private int rating;
+		private Kind kind;
+		private String foodType;
+		
+		public Restaurant() {
+		}
+		
+		public Restaurant(String name, int rating, Kind kind, String foodType) {
+			this.name = name;
+			this.rating = rating;
+			this.kind = kind;
+			this.foodType = foodType;
+		}
+	}
+	
+	public static class Guide {
+		private List<Restaurant> restaurants;
+		private Map<String, Restaurant> restaurantsByName;
+		private Set<String> tags;
+		private Date published;
+		private double price;
+		private Boolean open;
+		private byte[] logo;
+	}
+
+}
@@ -16,11 +16,13 @@
 package com.avanza.astrix.versioning;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.codehaus.jackson.node.ObjectNode;
 import org.junit.Test;
@@ -48,6 +50,19 @@ public class VersionedJsonObjectMapperTest {
 		assertEquals("kalle", foo.getFoo());
 	}
 	
+	@Test
+	public void canSerializeToAndDeserializeFromUtf8EncodedJson() throws Exception {
+		this.apiMigrations.add(new TestPojoV1ToV2Migration());
+		JsonObjectMapper objectMapper = JsonObjectMapper.create(new VersionedObjectMapperBuilder(apiMigrations).build());
+		
+		byte[] json = objectMapper.serializeToBytes(new TestPojoV1("k\u00e5lle"), 1);
+		
+		assertEquals(objectMapper.serialize(new TestPojoV1("k\u00e5lle"), 1), new String(json, "UTF-8"));
+		TestPojoV2 v2Pojo = objectMapper.deserialize(json, TestPojoV2.class, 1);
+		assertEquals("k\u00e5lle", v2Pojo.getFoo());
+		assertEquals("defaultBar", v2Pojo.getBar());
+	}
+	
 	@Test
 	public void upgradesOldDocuments() throws Exception {
 		this.apiMigrations.add(new TestPojoV1ToV2Migration());
@@ -118,7 +133,42 @@ public class VersionedJsonObjectMapperTest {
 		assertEquals("defaultBar", deserializedPojos.get(0).getBar());
 	}
 	
+	@Test
+	public void doesNotMigrateMessagesOnCurrentVersion() throws Exception {
+		TestPojoV1ToV2Migration migration = new TestPojoV1ToV2Migration();
+		this.apiMigrations.add(migration);
+		VersionedObjectMapperBuilder objectMapperBuilder = new VersionedObjectMapperBuilder(apiMigrations);
+		VersionedJsonObjectMapper objectMapper = objectMapperBuilder.build();
+		
+		TestPojoV2 testPojo = new TestPojoV2();
+		testPojo.setBar("b1");
+		testPojo.setFoo("f1");
+		String pojoJsonV2 = objectMapper.serialize(testPojo, 2);
+		TestPojoV2 deserialized = objectMapper.deserialize(pojoJsonV2, TestPojoV2.class, 2);
+		
+		assertEquals("b1", deserialized.getBar());
+		assertEquals(0, migration.migratedMessageCount.get());
+	}
+	
+	@Test
+	public void migratesEachMessageToVersionGivenForInvocation() throws Exception {
+		this.apiMigrations.add(new TestPojoV1ToV2Migration());
+		VersionedObjectMapperBuilder objectMapperBuilder = new VersionedObjectMapperBuilder(apiMigrations);
+		VersionedJsonObjectMapper objectMapper = objectMapperBuilder.build();
+		
+		TestPojoV2 testPojo = new TestPojoV2();
+		testPojo.setBar("b1");
+		testPojo.setFoo("f1");
+		
+		assertEquals("{\"foo\":\"f1\"}", objectMapper.serialize(testPojo, 1));
+		assertEquals("{\"foo\":\"f1\",\"bar\":\"b1\"}", objectMapper.serialize(testPojo, 2));
+		assertEquals("{\"foo\":\"f1\"}", new String(objectMapper.serializeToBytes(testPojo, 1), "UTF-8"));
+		assertEquals("defaultBar", objectMapper.<TestPojoV2>deserialize("{\"foo\":\"f1\"}", TestPojoV2.class, 1).getBar());
+		assertNull(objectMapper.<TestPojoV2>deserialize("{\"foo\":\"f1\"}", TestPojoV2.class, 2).getBar());
+	}
+	
 	private final class TestPojoV1ToV2Migration implements AstrixJsonApiMigration {
+		private final AtomicInteger migratedMessageCount = new AtomicInteger();
 		@Override
 		public AstrixJsonMessageMigration<?>[] getMigrations() {
 			return new AstrixJsonMessageMigration<?>[] {
@@ -129,10 +179,12 @@ public class VersionedJsonObjectMapperTest {
 					}
 					@Override
 					public void upgrade(ObjectNode json) {
+						migratedMessageCount.incrementAndGet();
 						json.put("bar", "defaultBar");
 					}
 					@Override
 					public void downgrade(ObjectNode json) {
+						migratedMessageCount.incrementAndGet();
 						json.remove("bar");
 					}
 				}